@@ -0,0 +1,142 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.magicdgs.readtools.utils.trimming;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for {@link AdapterMatcher}.
+ *
+ * <p>The Mott's algorithm is benchmarked on the same reads as a baseline: adapter trimming is
+ * expected to have a throughput comparable to {@link TrimmingUtil#trimPointsMott(byte[], int,
+ * int[])} for reads without adapter, which are the most common ones.
+ *
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class AdapterMatcherBenchmark {
+
+    /** Number of reads per invocation. */
+    private static final int NUMBER_OF_READS = 1024;
+
+    private static final String ADAPTER = "AGATCGGAAGAGC";
+
+    /** Simulated adapter content of the reads. */
+    public enum AdapterContent {
+        /** Reads without adapter. */
+        NONE,
+        /** Reads with a partial adapter at the end. */
+        PARTIAL,
+        /** Reads with a complete adapter (with up to one error) at a random position. */
+        FULL
+    }
+
+    @Param({"100", "150", "250"})
+    public int readLength;
+
+    @Param({"NONE", "PARTIAL", "FULL"})
+    public AdapterContent content;
+
+    @Param({"0.1"})
+    public double maxErrorRate;
+
+    private AdapterMatcher matcher;
+    private byte[][] bases;
+    private byte[][] quals;
+    private int[] toFill;
+
+    @Setup
+    public void setup() {
+        final Random random = new Random(1984);
+        matcher = new AdapterMatcher(ADAPTER, maxErrorRate, 3);
+        bases = new byte[NUMBER_OF_READS][];
+        quals = new byte[NUMBER_OF_READS][];
+        for (int i = 0; i < NUMBER_OF_READS; i++) {
+            bases[i] = simulateBases(random, readLength, content);
+            quals[i] = new byte[readLength];
+            for (int j = 0; j < readLength; j++) {
+                quals[i][j] = (byte) (2 + random.nextInt(39));
+            }
+        }
+        toFill = new int[2];
+    }
+
+    @Benchmark
+    public void findAdapterStart(final Blackhole blackhole) {
+        for (final byte[] b : bases) {
+            blackhole.consume(matcher.findAdapterStart(b));
+        }
+    }
+
+    @Benchmark
+    public void trimPointsMottBaseline(final Blackhole blackhole) {
+        for (final byte[] q : quals) {
+            TrimmingUtil.trimPointsMott(q, 20, toFill);
+            blackhole.consume(toFill[0]);
+            blackhole.consume(toFill[1]);
+        }
+    }
+
+    private static byte[] simulateBases(final Random random, final int length,
+            final AdapterContent content) {
+        final byte[] bases = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bases[i] = (byte) "ACGT".charAt(random.nextInt(4));
+        }
+        final int start;
+        switch (content) {
+            case PARTIAL:
+                start = length - 3 - random.nextInt(ADAPTER.length() - 3);
+                break;
+            case FULL:
+                start = random.nextInt(length - ADAPTER.length());
+                break;
+            default:
+                return bases;
+        }
+        for (int i = start, j = 0; i < length && j < ADAPTER.length(); i++, j++) {
+            bases[i] = (byte) ADAPTER.charAt(j);
+        }
+        // one mismatch in the complete adapters
+        if (content == AdapterContent.FULL) {
+            bases[start + random.nextInt(ADAPTER.length())] = 'N';
+        }
+        return bases;
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.magicdgs.readtools.utils.trimming;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for {@link TrimmingUtil#trimPointPolyTail(byte[], byte, int, double)}.
+ *
+ * <p>The trailing Ns and Mott's algorithms (the default trimmers) are benchmarked on the same
+ * reads as a baseline: poly-G trimming is expected to be much cheaper for reads without tail,
+ * which are the most common ones.
+ *
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class PolyTailBenchmark {
+
+    /** Number of reads per invocation. */
+    private static final int NUMBER_OF_READS = 1024;
+
+    /** Simulated poly-G content of the reads. */
+    public enum TailContent {
+        /** Reads without tail. */
+        NONE,
+        /** Reads with a poly-G tail of random length (with some mismatches). */
+        TAIL
+    }
+
+    @Param({"100", "150", "250"})
+    public int readLength;
+
+    @Param({"NONE", "TAIL"})
+    public TailContent content;
+
+    private byte[][] bases;
+    private byte[][] quals;
+    private int[] toFill;
+
+    @Setup
+    public void setup() {
+        final Random random = new Random(1984);
+        bases = new byte[NUMBER_OF_READS][];
+        quals = new byte[NUMBER_OF_READS][];
+        for (int i = 0; i < NUMBER_OF_READS; i++) {
+            bases[i] = simulateBases(random, readLength, content);
+            quals[i] = new byte[readLength];
+            for (int j = 0; j < readLength; j++) {
+                quals[i][j] = (byte) (2 + random.nextInt(39));
+            }
+        }
+        toFill = new int[2];
+    }
+
+    @Benchmark
+    public void trimPointPolyTail(final Blackhole blackhole) {
+        for (final byte[] b : bases) {
+            blackhole.consume(TrimmingUtil.trimPointPolyTail(b, (byte) 'G', 10, 0.125));
+        }
+    }
+
+    @Benchmark
+    public void trimPointsTrailingNsBaseline(final Blackhole blackhole) {
+        for (final byte[] b : bases) {
+            blackhole.consume(TrimmingUtil.trimPointsTrailingNs(b));
+        }
+    }
+
+    @Benchmark
+    public void trimPointsMottBaseline(final Blackhole blackhole) {
+        for (final byte[] q : quals) {
+            TrimmingUtil.trimPointsMott(q, 20, toFill);
+            blackhole.consume(toFill[0]);
+            blackhole.consume(toFill[1]);
+        }
+    }
+
+    private static byte[] simulateBases(final Random random, final int length,
+            final TailContent content) {
+        final byte[] bases = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bases[i] = (byte) "ACGT".charAt(random.nextInt(4));
+        }
+        if (content == TailContent.TAIL) {
+            // tails between 10 and half of the read, with one mismatch every 16 bases
+            for (int i = length - 10 - random.nextInt(length / 2 - 10); i < length; i++) {
+                bases[i] = (byte) ((random.nextInt(16) == 0) ? 'A' : 'G');
+            }
+        }
+        return bases;
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.magicdgs.readtools.utils.trimming;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the Mott's algorithm implementations in {@link TrimmingUtil}.
+ *
+ * <p>Each invocation trims a batch of simulated quality profiles, to avoid that the JIT
+ * specializes for a single array.
+ *
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class TrimmingUtilBenchmark {
+
+    /** Number of quality profiles per invocation. */
+    private static final int NUMBER_OF_PROFILES = 1024;
+
+    /** Simulated quality profiles. */
+    public enum QualityProfile {
+        /** High quality along the read, with rare low-quality bases. */
+        GOOD,
+        /** Quality decays towards the 3' end (typical of Illumina reads). */
+        DEGRADING,
+        /** Low quality with some high quality stretches. */
+        LOW
+    }
+
+    @Param({"100", "150", "250"})
+    public int readLength;
+
+    @Param({"GOOD", "DEGRADING", "LOW"})
+    public QualityProfile profile;
+
+    @Param({"20"})
+    public int trimQual;
+
+    private byte[][] quals;
+    private int[] toFill;
+
+    @Setup
+    public void setup() {
+        final Random random = new Random(1984);
+        quals = new byte[NUMBER_OF_PROFILES][];
+        for (int i = 0; i < NUMBER_OF_PROFILES; i++) {
+            quals[i] = simulateQualities(random, readLength, profile);
+        }
+        toFill = new int[2];
+    }
+
+    @Benchmark
+    public void trimPointsMott(final Blackhole blackhole) {
+        for (final byte[] q : quals) {
+            blackhole.consume(TrimmingUtil.trimPointsMott(q, trimQual));
+        }
+    }
+
+    @Benchmark
+    public void trimPointsMottToFill(final Blackhole blackhole) {
+        for (final byte[] q : quals) {
+            TrimmingUtil.trimPointsMott(q, trimQual, toFill);
+            blackhole.consume(toFill[0]);
+            blackhole.consume(toFill[1]);
+        }
+    }
+
+    private static byte[] simulateQualities(final Random random, final int length,
+            final QualityProfile profile) {
+        final byte[] quals = new byte[length];
+        final int decayStart = (profile == QualityProfile.DEGRADING)
+                ? length / 2 + random.nextInt(length / 2) : length;
+        for (int i = 0; i < length; i++) {
+            int qual;
+            switch (profile) {
+                case LOW:
+                    qual = (random.nextInt(4) == 0) ? 30 + random.nextInt(10) : 2 + random.nextInt(18);
+                    break;
+                default:
+                    qual = 30 + random.nextInt(11);
+                    if (i > decayStart) {
+                        qual -= (i - decayStart) / 2 + random.nextInt(5);
+                    }
+                    if (random.nextInt(50) == 0) {
+                        qual = 2;
+                    }
+            }
+            quals[i] = (byte) Math.max(2, qual);
+        }
+        return quals;
+    }
+}
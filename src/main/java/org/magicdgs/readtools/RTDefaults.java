@@ -25,6 +25,7 @@
 package org.magicdgs.readtools;
 
 import org.magicdgs.readtools.utils.read.writer.SplitGATKWriter;
+import org.magicdgs.readtools.utils.read.writer.WaitStrategy;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -60,6 +61,18 @@ public final class RTDefaults {
     /** Suffix for discarded output file(s). Default="_discarded" */
     public static final String DISCARDED_OUTPUT_SUFFIX;
 
+    /** Use a compiled trimming/filtering pipeline (single loop over trimmers/filters). Default=false. */
+    public static final boolean COMPILED_TRIMMING_PIPELINE;
+
+    /** Number of threads for compressing BAM outputs (0 for single-threaded HTSJDK compression). Default=0. */
+    public static final int BGZF_COMPRESSION_THREADS;
+
+    /** Number of threads for encoding FASTQ, Distmap and BAM outputs (0 for encoding in the writing thread). Default=0. */
+    public static final int ENCODING_THREADS;
+
+    /** Strategy for waiting on full/empty queues in asynchronous writers (SPIN, YIELD or PARK). Default=PARK. */
+    public static final WaitStrategy ASYNC_WAIT_STRATEGY;
+
     static {
         BARCODE_INDEX_DELIMITER = getStringProperty("barcode_index_delimiter", "-");
         BARCODE_QUALITY_DELIMITER = getStringProperty("barcode_quality_delimiter", " ");
@@ -67,6 +80,10 @@ public final class RTDefaults {
         SAMPLING_QUALITY_CHECKING_FREQUENCY = getIntProperty("sampling_quality_checking_frequency", 1000);
         FORCE_OVERWRITE = getBooleanProperty("force_overwrite", false);
         DISCARDED_OUTPUT_SUFFIX = getStringProperty("discarded_output_suffix", SplitGATKWriter.KEY_SPLIT_SEPARATOR + "discarded");
+        COMPILED_TRIMMING_PIPELINE = getBooleanProperty("compiled_trimming_pipeline", false);
+        BGZF_COMPRESSION_THREADS = getIntProperty("bgzf_compression_threads", 0);
+        ENCODING_THREADS = getIntProperty("encoding_threads", 0);
+        ASYNC_WAIT_STRATEGY = WaitStrategy.valueOf(getStringProperty("async_wait_strategy", WaitStrategy.PARK.name()).toUpperCase());
     }
 
 
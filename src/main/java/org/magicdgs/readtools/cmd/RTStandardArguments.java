@@ -142,6 +142,36 @@ public class RTStandardArguments {
     /** Parameter for keep the discarded records from an output. */
     public static final String KEEP_DISCARDED_NAME = "keepDiscarded";
 
+    /** Parameter for the maximum number of simultaneously open split outputs. */
+    public static final String MAX_OPEN_OUTPUTS_NAME = "maxOpenOutputs";
+
+    /** Parameter for the number of threads writing split outputs. */
+    public static final String OUTPUT_THREADS_NAME = "outputThreads";
+
+    /** Parameter for rolling over to a new output shard after a number of reads. */
+    public static final String SHARD_READS_NAME = "shardReads";
+
+    /** Parameter for rolling over to a new output shard after a number of bytes. */
+    public static final String SHARD_BYTES_NAME = "shardBytes";
+
+    /** Parameter for the number of output shards by read name. */
+    public static final String SHARDS_NAME = "shards";
+
+    /** Parameter for the number of threads writing output shards. */
+    public static final String SHARD_THREADS_NAME = "shardThreads";
+
+    /** Parameter for additional outputs written from the same traversal. */
+    public static final String TEE_OUTPUT_NAME = "teeOutput";
+
+    /** Parameter for the compression level of BAM and gzipped outputs. */
+    public static final String COMPRESSION_LEVEL_NAME = "compressionLevel";
+
+    /** Parameter for the number of threads compressing BAM outputs. */
+    public static final String COMPRESSION_THREADS_NAME = "compressionThreads";
+
+    /** Parameter for the number of threads encoding output records. */
+    public static final String ENCODING_THREADS_NAME = "encodingThreads";
+
     // INPUT PARAMS
 
     /** Parameter for the second of the pair (if pair-end split files). */
@@ -155,6 +185,9 @@ public class RTStandardArguments {
     /** Parameter for forcing a concrete encoding of the input. */
     public static final String FORCE_QUALITY_ENCODING_NAME = "forceEncoding";
 
+    /** Parameter for the number of threads decompressing BAM inputs. */
+    public static final String INPUT_THREADS_NAME = "inputThreads";
+
     // BARCODE PARAMS
 
     public static final String RAW_BARCODE_SEQUENCE_TAG_NAME = "rawBarcodeSequenceTags";
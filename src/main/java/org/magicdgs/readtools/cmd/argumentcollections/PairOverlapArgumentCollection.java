@@ -0,0 +1,81 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.magicdgs.readtools.cmd.argumentcollections;
+
+import org.magicdgs.readtools.utils.trimming.PairOverlapDetector;
+
+import org.broadinstitute.barclay.argparser.Argument;
+import org.broadinstitute.barclay.argparser.CommandLineException;
+
+import java.io.Serializable;
+
+/**
+ * Argument collection for detecting the overlap between pair-end reads, to trim the adapter
+ * read-through or merge the pairs.
+ *
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+public final class PairOverlapArgumentCollection implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    @Argument(fullName = "trimReadThrough", optional = true, doc = "Trim the adapter read-through in pair-end reads, detected by the overlap between the first read and the reverse complement of the second. Only applied to unmapped pairs.")
+    public boolean trimReadThrough = false;
+
+    @Argument(fullName = "mergeOverlapping", optional = true, doc = "Merge overlapping pair-end reads into a single (unpaired) read before trimming. Only applied to unmapped pairs.")
+    public boolean mergeOverlapping = false;
+
+    @Argument(fullName = "pairMinOverlap", optional = true, doc = "Minimum number of overlapping bases between the reads in a pair.")
+    public int pairMinOverlap = 20;
+
+    @Argument(fullName = "pairMaxMismatchRate", optional = true, doc = "Maximum rate of mismatches in the overlapping bases between the reads in a pair.")
+    public double pairMaxMismatchRate = 0.1;
+
+    /** Returns {@code true} if the overlap between pairs should be detected. */
+    public boolean isEnabled() {
+        return trimReadThrough || mergeOverlapping;
+    }
+
+    /**
+     * Validates that the arguments are within the range.
+     *
+     * @throws CommandLineException.BadArgumentValue if arguments are out of range.
+     */
+    public void validateArguments() {
+        if (pairMinOverlap < 1) {
+            throw new CommandLineException.BadArgumentValue("--pairMinOverlap",
+                    String.valueOf(pairMinOverlap), "Should be a positive integer.");
+        }
+        if (pairMaxMismatchRate < 0 || pairMaxMismatchRate >= 1) {
+            throw new CommandLineException.BadArgumentValue("--pairMaxMismatchRate",
+                    String.valueOf(pairMaxMismatchRate), "Should be in the range [0, 1).");
+        }
+    }
+
+    /** Gets the detector for the overlap between pairs. */
+    public PairOverlapDetector getPairOverlapDetector() {
+        return new PairOverlapDetector(pairMinOverlap, pairMaxMismatchRate);
+    }
+}
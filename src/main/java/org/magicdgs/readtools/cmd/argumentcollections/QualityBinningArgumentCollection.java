@@ -0,0 +1,169 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.magicdgs.readtools.cmd.argumentcollections;
+
+import org.magicdgs.readtools.metrics.QualityBinningMetric;
+import org.magicdgs.readtools.utils.read.transformer.QualityBinningReadTransformer;
+
+import htsjdk.samtools.SAMFileHeader;
+import org.apache.logging.log4j.Logger;
+import org.broadinstitute.barclay.argparser.Argument;
+import org.broadinstitute.barclay.argparser.CommandLineException;
+import org.broadinstitute.hellbender.utils.read.GATKRead;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Argument collection for binning the base qualities before output.
+ *
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+public final class QualityBinningArgumentCollection implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /** Binning schemes. */
+    public enum QualityBinning {
+        /** No binning. */
+        NONE,
+        /** Illumina 8-level binning. */
+        ILLUMINA,
+        /** User-defined bins. */
+        CUSTOM
+    }
+
+    // separator between the lower bound and the binned quality
+    private static final String BIN_SEPARATOR = ":";
+
+    @Argument(fullName = "qualityBinning", optional = true, doc = "Bin base qualities before output to reduce the size of compressed outputs: Illumina 8-level binning (ILLUMINA) or the bins provided with --qualityBin (CUSTOM).")
+    public QualityBinning qualityBinning = QualityBinning.NONE;
+
+    @Argument(fullName = "qualityBin", optional = true, doc = "Bin for --qualityBinning CUSTOM, formatted as lowerBound" + BIN_SEPARATOR + "binnedQuality. Qualities lower than the first bound are not modified.")
+    public List<String> qualityBins = new ArrayList<>();
+
+    // initialized on the first use
+    private QualityBinningReadTransformer transformer = null;
+
+    /** Returns {@code true} if the qualities should be binned. */
+    public boolean isEnabled() {
+        return qualityBinning != QualityBinning.NONE;
+    }
+
+    /**
+     * Validates the arguments.
+     *
+     * @throws CommandLineException.BadArgumentValue if the bins are invalid or provided without
+     *                                               the CUSTOM binning.
+     */
+    public void validateArguments() {
+        if (qualityBinning == QualityBinning.CUSTOM) {
+            parseBins();
+        } else if (!qualityBins.isEmpty()) {
+            throw new CommandLineException.BadArgumentValue("--qualityBin",
+                    qualityBins.toString(), "Only allowed with --qualityBinning CUSTOM.");
+        }
+    }
+
+    // parse the bins, throwing if they are not valid
+    private SortedMap<Integer, Integer> parseBins() {
+        if (qualityBins.isEmpty()) {
+            throw new CommandLineException.BadArgumentValue("--qualityBin", "[]",
+                    "At least one bin should be provided for --qualityBinning CUSTOM.");
+        }
+        final SortedMap<Integer, Integer> bins = new TreeMap<>();
+        for (final String bin : qualityBins) {
+            final String[] tokens = bin.split(BIN_SEPARATOR, -1);
+            try {
+                final Integer bound = Integer.valueOf(tokens[0]);
+                final Integer qual = Integer.valueOf(tokens[1]);
+                if (tokens.length == 2 && QualityBinningReadTransformer.isValidQuality(bound)
+                        && QualityBinningReadTransformer.isValidQuality(qual)
+                        && bins.put(bound, qual) == null) {
+                    continue;
+                }
+            } catch (final NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                // handled below
+            }
+            throw new CommandLineException.BadArgumentValue("--qualityBin", bin,
+                    "Should be lowerBound" + BIN_SEPARATOR + "binnedQuality (unique bounds) "
+                            + "with qualities in the range [0, 93].");
+        }
+        return bins;
+    }
+
+    // gets the transformer, creating it if necessary
+    private QualityBinningReadTransformer getTransformer() {
+        if (transformer == null) {
+            transformer = new QualityBinningReadTransformer(
+                    (qualityBinning == QualityBinning.CUSTOM)
+                            ? parseBins() : QualityBinningReadTransformer.ILLUMINA_8_LEVEL_BINS);
+        }
+        return transformer;
+    }
+
+    /**
+     * Bins the qualities of the read in-place, if the binning is enabled.
+     *
+     * @return the same read.
+     */
+    public GATKRead binQualities(final GATKRead read) {
+        return (isEnabled()) ? getTransformer().apply(read) : read;
+    }
+
+    /** Adds the binning scheme as a comment to the header, if the binning is enabled. */
+    public void updateHeader(final SAMFileHeader header) {
+        if (isEnabled()) {
+            header.addComment("Base qualities binned (" + qualityBinning + "): "
+                    + getTransformer().getBinsString());
+        }
+    }
+
+    /**
+     * Gets the statistics of the binning.
+     *
+     * @return metric for the binning; {@code null} if it is not enabled.
+     */
+    public QualityBinningMetric getMetric() {
+        return (isEnabled()) ? getTransformer().getMetric() : null;
+    }
+
+    /** Logs the statistics of the binning, if the binning is enabled. */
+    public void logMetric(final Logger logger) {
+        final QualityBinningMetric metric = getMetric();
+        if (metric != null) {
+            logger.info("Binned {} base qualities: {} to {} distinct values.",
+                    metric.BASES, metric.DISTINCT_QUALITIES_BEFORE,
+                    metric.DISTINCT_QUALITIES_AFTER);
+            logger.info("Quality entropy: {} to {} bits/quality (estimated compression gain: {}).",
+                    String.format("%.2f", metric.ENTROPY_BEFORE),
+                    String.format("%.2f", metric.ENTROPY_AFTER),
+                    String.format("%.2fx", metric.ESTIMATED_COMPRESSION_GAIN));
+        }
+    }
+}
@@ -24,6 +24,7 @@
 
 package org.magicdgs.readtools.cmd.argumentcollections;
 
+import org.magicdgs.readtools.RTDefaults;
 import org.magicdgs.readtools.cmd.RTStandardArguments;
 import org.magicdgs.readtools.exceptions.RTUserExceptions;
 import org.magicdgs.readtools.utils.read.ReadWriterFactory;
@@ -31,6 +32,7 @@ import org.magicdgs.readtools.utils.read.writer.ReadToolsIOFormat;
 
 import htsjdk.samtools.SAMFileHeader;
 import htsjdk.samtools.SAMProgramRecord;
+import org.broadinstitute.barclay.argparser.Advanced;
 import org.broadinstitute.barclay.argparser.Argument;
 
 import java.util.function.Supplier;
@@ -52,13 +54,18 @@ abstract class RTAbstractOutputBamArgumentCollection extends RTOutputArgumentCol
     @Argument(fullName = RTStandardArguments.ADD_OUTPUT_SAM_PROGRAM_RECORD, shortName = RTStandardArguments.ADD_OUTPUT_SAM_PROGRAM_RECORD, doc = "If true, adds a PG tag to created SAM/BAM/CRAM files.", optional = true, common = true)
     public boolean addOutputSAMProgramRecord = true;
 
+    @Advanced
+    @Argument(fullName = RTStandardArguments.COMPRESSION_THREADS_NAME, doc = "Number of threads compressing the BGZF blocks of each BAM output. If 0, BAM outputs are compressed in the writing thread.", optional = true, minValue = 0)
+    public int compressionThreads = RTDefaults.BGZF_COMPRESSION_THREADS;
+
     /** Gets the writer factory for the arguments, adding also the reference file. */
     @Override
     public final ReadWriterFactory getWriterFactory() {
         return super.getWriterFactory()
                 .setForceOverwrite(forceOverwrite)
                 .setCreateIndex(createOutputBamIndex)
-                .setCreateMd5File(createOutputBamMD5);
+                .setCreateMd5File(createOutputBamMD5)
+                .setCompressionThreads(compressionThreads);
     }
 
     /**
@@ -67,6 +67,9 @@ public final class RTInputArgumentCollection implements Serializable {
     @Argument(fullName = RTStandardArguments.FORCE_QUALITY_ENCODING_NAME, shortName = RTStandardArguments.FORCE_QUALITY_ENCODING_NAME, doc = "Force original quality encoding of the input files.", common = true, optional = true)
     public FastqQualityFormat forceQualityEncoding = null;
 
+    @Argument(fullName = RTStandardArguments.INPUT_THREADS_NAME, shortName = RTStandardArguments.INPUT_THREADS_NAME, doc = "Number of threads for decompressing BAM inputs. If 0, BAM inputs are decompressed in the reading thread.", common = true, optional = true, minValue = 0)
+    public int inputThreads = 0;
+
     // supplier to change the reference
     private Supplier<RTDataSource> source = null;
 
@@ -74,7 +77,8 @@ public final class RTInputArgumentCollection implements Serializable {
     private ReadReaderFactory getReaderFactory(final Path referenceFileName) {
         return new ReadReaderFactory()
                 .setReferenceSequence(referenceFileName)
-                .setValidationStringency(readValidationStringency);
+                .setValidationStringency(readValidationStringency)
+                .setThreads(inputThreads);
     }
 
     /**
@@ -24,19 +24,32 @@
 
 package org.magicdgs.readtools.cmd.argumentcollections;
 
+import org.magicdgs.readtools.RTDefaults;
 import org.magicdgs.readtools.cmd.RTStandardArguments;
+import org.magicdgs.readtools.exceptions.RTUserExceptions;
 import org.magicdgs.readtools.utils.read.ReadWriterFactory;
+import org.magicdgs.readtools.utils.read.writer.ReadToolsIOFormat;
+import org.magicdgs.readtools.utils.read.writer.ShardedGATKWriter;
+import org.magicdgs.readtools.utils.read.writer.SplitGATKWriter;
+import org.magicdgs.readtools.utils.read.writer.TeeGATKWriter;
 
 import htsjdk.samtools.SAMFileHeader;
 import htsjdk.samtools.SAMProgramRecord;
+import htsjdk.samtools.util.IOUtil;
+import org.apache.commons.io.FilenameUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.broadinstitute.barclay.argparser.Advanced;
 import org.broadinstitute.barclay.argparser.Argument;
 import org.broadinstitute.hellbender.utils.Utils;
+import org.broadinstitute.hellbender.utils.read.GATKRead;
 import org.broadinstitute.hellbender.utils.read.GATKReadWriter;
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.function.Supplier;
 
 /**
@@ -47,11 +60,38 @@ import java.util.function.Supplier;
 public abstract class RTOutputArgumentCollection implements Serializable {
     private static final long serialVersionUID = 1L;
 
+    // suffix for the single-end output of paired Distmap tee outputs
+    private static final String SINGLE_END_SUFFIX = SplitGATKWriter.KEY_SPLIT_SEPARATOR + "SE";
+
     protected final static Logger logger = LogManager.getLogger(RTOutputArgumentCollection.class);
 
     @Argument(fullName = RTStandardArguments.FORCE_OVERWRITE_NAME, shortName = RTStandardArguments.FORCE_OVERWRITE_NAME, doc = RTStandardArguments.FORCE_OVERWRITE_DOC, optional = true, common = true)
     public Boolean forceOverwrite = false;
 
+    @Argument(fullName = RTStandardArguments.SHARD_READS_NAME, doc = "Split the output into shards, rolling over to a new one after this number of reads. Mates are never split between shards. A manifest with the number of reads per shard is written.", optional = true, minValue = 1, mutex = {RTStandardArguments.SHARD_BYTES_NAME, RTStandardArguments.SHARDS_NAME})
+    public Long shardReads = null;
+
+    @Argument(fullName = RTStandardArguments.SHARD_BYTES_NAME, doc = "Split the output into shards, rolling over to a new one after approximately this number of uncompressed bytes (read names, bases and qualities). Mates are never split between shards. A manifest with the number of reads per shard is written.", optional = true, minValue = 1, mutex = {RTStandardArguments.SHARD_READS_NAME, RTStandardArguments.SHARDS_NAME})
+    public Long shardBytes = null;
+
+    @Argument(fullName = RTStandardArguments.SHARDS_NAME, doc = "Split the output into this number of shards by a hash of the read name, so mates are always in the same shard. A manifest with the number of reads per shard is written.", optional = true, minValue = 1, mutex = {RTStandardArguments.SHARD_READS_NAME, RTStandardArguments.SHARD_BYTES_NAME})
+    public Integer shards = null;
+
+    @Advanced
+    @Argument(fullName = RTStandardArguments.SHARD_THREADS_NAME, doc = "Number of threads writing the output shards concurrently. If 0, shards are written in the main thread.", optional = true, minValue = 0)
+    public int shardThreads = SplitGATKWriter.NO_WRITER_THREADS;
+
+    @Argument(fullName = RTStandardArguments.TEE_OUTPUT_NAME, doc = "Additional output(s) with the same reads, written in the same traversal by their own thread. The format is detected by the extension: SAM/BAM/CRAM, FASTQ (interleaved) or Distmap (" + ReadToolsIOFormat.DISTMAP_EXTENSION + ", pair-end if the first read is paired, with unpaired reads in a separate output with the _SE suffix). Sharding and splitting only apply to the main output.", optional = true)
+    public List<String> teeOutputs = new ArrayList<>();
+
+    @Advanced
+    @Argument(fullName = RTStandardArguments.COMPRESSION_LEVEL_NAME, doc = "Compression level for BAM and gzipped outputs.", optional = true, minValue = 0, maxValue = 9)
+    public int compressionLevel = IOUtil.getCompressionLevel();
+
+    @Advanced
+    @Argument(fullName = RTStandardArguments.ENCODING_THREADS_NAME, doc = "Number of threads encoding the FASTQ, Distmap and BAM records of each output (gzipped FASTQ outputs are compressed by these threads too). If 0, records are encoded in the writing thread.", optional = true, minValue = 0)
+    public int encodingThreads = RTDefaults.ENCODING_THREADS;
+
     /**
      * Gets a fresh default factory.
      *
@@ -63,7 +103,9 @@ public abstract class RTOutputArgumentCollection implements Serializable {
      */
     public ReadWriterFactory getWriterFactory() {
         return new ReadWriterFactory()
-                .setForceOverwrite(forceOverwrite);
+                .setForceOverwrite(forceOverwrite)
+                .setCompressionLevel(compressionLevel)
+                .setEncodingThreads(encodingThreads);
     }
 
     /**
@@ -87,8 +129,48 @@ public abstract class RTOutputArgumentCollection implements Serializable {
         Utils.nonNull(header, "null header");
         updateHeader(header, programRecord);
         validateUserOutput();
-        return createWriter(getWriterFactory().setReferencePath(referenceFile),
-                header, presorted);
+        validateTeeOutputs();
+        final ReadWriterFactory factory = getWriterFactory().setReferencePath(referenceFile);
+        final ShardedGATKWriter.Sharding sharding = getSharding();
+        final GATKReadWriter writer = (sharding == null)
+                ? createWriter(factory, header, presorted, "")
+                : new ShardedGATKWriter(suffix -> createWriter(factory, header, presorted, suffix),
+                        this::getOutputNameWithSuffix, sharding,
+                        makeMetricsFile(ShardedGATKWriter.SHARD_SUFFIX + "s"), shardThreads);
+        if (teeOutputs.isEmpty()) {
+            return writer;
+        }
+        final List<GATKReadWriter> writers = new ArrayList<>(teeOutputs.size() + 1);
+        writers.add(writer);
+        for (final String tee : teeOutputs) {
+            writers.add(ReadToolsIOFormat.isDistmap(tee)
+                    ? new DistmapTeeWriter(factory, tee)
+                    : factory.createWriter(tee, header, presorted));
+        }
+        return new TeeGATKWriter(writers, true);
+    }
+
+    // validates the extension of the tee outputs before creating any of them
+    private void validateTeeOutputs() {
+        for (final String tee : teeOutputs) {
+            if (!ReadToolsIOFormat.isSamBamOrCram(tee) && !ReadToolsIOFormat.isFastq(tee)
+                    && !ReadToolsIOFormat.isDistmap(tee)) {
+                throw new RTUserExceptions.InvalidOutputFormat(tee,
+                        "extension should be SAM/BAM/CRAM, FASTQ or Distmap");
+            }
+        }
+    }
+
+    // gets the sharding for the arguments; null if the output is not sharded
+    private ShardedGATKWriter.Sharding getSharding() {
+        if (shardReads != null) {
+            return ShardedGATKWriter.byReads(shardReads);
+        } else if (shardBytes != null) {
+            return ShardedGATKWriter.byBytes(shardBytes);
+        } else if (shards != null) {
+            return ShardedGATKWriter.byReadName(shards);
+        }
+        return null;
     }
 
     /** Gets a new output name using a suffix with the current parameters. */
@@ -114,9 +196,10 @@ public abstract class RTOutputArgumentCollection implements Serializable {
      * @param factory   the factory to use for get the output writer.
      * @param header    the header for the output file (already updated).
      * @param presorted if {@code true}, the output is assumed to be pre-sorted.
+     * @param suffix    suffix for the output name (e.g., for shards). Empty for the default.
      */
     protected abstract GATKReadWriter createWriter(final ReadWriterFactory factory,
-            final SAMFileHeader header, boolean presorted);
+            final SAMFileHeader header, boolean presorted, final String suffix);
 
     /** Updates the header if necessary. */
     protected abstract void updateHeader(final SAMFileHeader header,
@@ -136,4 +219,57 @@ public abstract class RTOutputArgumentCollection implements Serializable {
     public static final RTOutputArgumentCollection splitOutput() {
         return new RTOutputBamSplitArgumentCollection();
     }
+
+    // Distmap writer for tee outputs, which is created on the first read to know if it is paired
+    // if it is paired, unpaired reads (e.g., merged pairs) are written into a single-end output
+    private static final class DistmapTeeWriter implements GATKReadWriter {
+        private final ReadWriterFactory factory;
+        private final String output;
+        private GATKReadWriter writer = null;
+        private boolean paired = false;
+        private GATKReadWriter singleEndWriter = null;
+
+        private DistmapTeeWriter(final ReadWriterFactory factory, final String output) {
+            this.factory = factory;
+            this.output = output;
+        }
+
+        @Override
+        public void addRead(final GATKRead read) {
+            if (writer == null) {
+                paired = read.isPaired();
+                writer = factory.createDistmapWriter(output, paired);
+            }
+            if (paired && !read.isPaired()) {
+                if (singleEndWriter == null) {
+                    singleEndWriter = factory.createDistmapWriter(
+                            getSingleEndOutput(output), false);
+                }
+                singleEndWriter.addRead(read);
+            } else {
+                writer.addRead(read);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            // empty output is written as single-end
+            if (writer == null) {
+                writer = factory.createDistmapWriter(output, false);
+            }
+            writer.close();
+            if (singleEndWriter != null) {
+                singleEndWriter.close();
+            }
+        }
+    }
+
+    /**
+     * Gets the single-end output for a paired Distmap tee output, adding the single-end suffix
+     * ({@code _SE}) before the extension.
+     */
+    private static String getSingleEndOutput(final String distmapOutput) {
+        return FilenameUtils.removeExtension(distmapOutput) + SINGLE_END_SUFFIX
+                + ReadToolsIOFormat.DISTMAP_EXTENSION;
+    }
 }
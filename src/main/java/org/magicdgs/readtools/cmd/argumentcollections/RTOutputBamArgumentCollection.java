@@ -74,8 +74,9 @@ public final class RTOutputBamArgumentCollection extends RTAbstractOutputBamArgu
      */
     @Override
     protected GATKReadWriter createWriter(final ReadWriterFactory factory,
-            final SAMFileHeader header, final boolean presorted) {
+            final SAMFileHeader header, final boolean presorted, final String suffix) {
         validateUserOutput();
-        return factory.createSAMWriter(outputName, header, presorted);
+        final String output = (suffix.isEmpty()) ? outputName : getOutputNameWithSuffix(suffix);
+        return factory.createSAMWriter(output, header, presorted);
     }
 }
@@ -30,6 +30,7 @@ import org.magicdgs.readtools.utils.read.writer.ReadToolsIOFormat;
 import org.magicdgs.readtools.utils.read.writer.SplitGATKWriter;
 
 import htsjdk.samtools.SAMFileHeader;
+import org.broadinstitute.barclay.argparser.Advanced;
 import org.broadinstitute.barclay.argparser.Argument;
 import org.broadinstitute.hellbender.tools.readersplitters.LibraryNameSplitter;
 import org.broadinstitute.hellbender.tools.readersplitters.ReadGroupIdSplitter;
@@ -65,6 +66,14 @@ public final class RTOutputBamSplitArgumentCollection extends RTAbstractOutputBa
     @Argument(fullName = RTStandardArguments.LIBRARY_NAME_LONG_NAME, doc = "Split file by library.", optional = true)
     public boolean splitByLibrary = false;
 
+    @Advanced
+    @Argument(fullName = RTStandardArguments.MAX_OPEN_OUTPUTS_NAME, doc = "Maximum number of simultaneously open split outputs. Outputs closed to honor this limit are re-opened for appending if necessary. Not applied to CRAM, sorted outputs or if MD5 digests are requested. If 0, all outputs are kept open.", optional = true, minValue = 0)
+    public int maxOpenOutputs = SplitGATKWriter.UNBOUNDED_OPEN_WRITERS;
+
+    @Advanced
+    @Argument(fullName = RTStandardArguments.OUTPUT_THREADS_NAME, doc = "Number of threads writing the split outputs. Each output is always written by the same thread. If 0, outputs are written in the main thread.", optional = true, minValue = 0)
+    public int outputThreads = SplitGATKWriter.NO_WRITER_THREADS;
+
     @Override
     public String getOutputNameWithSuffix(final String suffix) {
         return outputPrefix + suffix + outputFormat.getExtension();
@@ -83,7 +92,7 @@ public final class RTOutputBamSplitArgumentCollection extends RTAbstractOutputBa
 
     @Override
     protected GATKReadWriter createWriter(final ReadWriterFactory factory,
-            final SAMFileHeader header, final boolean presorted) {
+            final SAMFileHeader header, final boolean presorted, final String suffix) {
         // set the splitter
         final List<ReaderSplitter<?>> splitter = new ArrayList<>(3);
         // first sample
@@ -101,9 +110,10 @@ public final class RTOutputBamSplitArgumentCollection extends RTAbstractOutputBa
 
         // if there is a splitter, split; if not, output a simple writer
         return splitter.isEmpty()
-                ? factory.createSAMWriter(outputPrefix + outputFormat.getExtension(),
+                ? factory.createSAMWriter(outputPrefix + suffix + outputFormat.getExtension(),
                 header, presorted)
-                : new SplitGATKWriter(outputPrefix, outputFormat,
-                        splitter, header, presorted, factory, false);
+                : new SplitGATKWriter(outputPrefix + suffix, outputFormat,
+                        splitter, header, presorted, factory, false, maxOpenOutputs,
+                        outputThreads);
     }
 }
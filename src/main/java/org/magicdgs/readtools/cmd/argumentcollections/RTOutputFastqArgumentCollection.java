@@ -32,6 +32,7 @@ import org.magicdgs.readtools.utils.read.writer.SplitGATKWriter;
 
 import htsjdk.samtools.SAMFileHeader;
 import htsjdk.samtools.SAMProgramRecord;
+import org.broadinstitute.barclay.argparser.Advanced;
 import org.broadinstitute.barclay.argparser.Argument;
 import org.broadinstitute.hellbender.tools.readersplitters.ReaderSplitter;
 import org.broadinstitute.hellbender.utils.read.GATKReadWriter;
@@ -65,6 +66,10 @@ public final class RTOutputFastqArgumentCollection extends RTOutputArgumentColle
     @Argument(fullName = RTStandardArguments.INTERLEAVED_OUTPUT_FASTQ_LONG_NAME, shortName = RTStandardArguments.INTERLEAVED_OUTPUT_FASTQ_SHORT_NAME, doc = "If true, creates an interleaved FASTQ output. Otherwise, it will be splited by pairs/single end.", optional = true)
     public boolean interleaved = false;
 
+    @Advanced
+    @Argument(fullName = RTStandardArguments.OUTPUT_THREADS_NAME, doc = "Number of threads writing the split pair/single end outputs. Each output is always written by the same thread. If 0, outputs are written in the main thread. Ignored for interleaved output.", optional = true, minValue = 0)
+    public int outputThreads = SplitGATKWriter.NO_WRITER_THREADS;
+
 
     @Override
     public ReadWriterFactory getWriterFactory() {
@@ -96,20 +101,23 @@ public final class RTOutputFastqArgumentCollection extends RTOutputArgumentColle
 
     @Override
     protected GATKReadWriter createWriter(final ReadWriterFactory factory,
-            final SAMFileHeader header, final boolean presorted) {
-        return (interleaved) ? interleavedOutput(factory) : splitOutput(factory);
+            final SAMFileHeader header, final boolean presorted, final String suffix) {
+        final String prefix = outputPrefix + suffix;
+        return (interleaved) ? interleavedOutput(factory, prefix) : splitOutput(factory, prefix);
     }
 
     // this creates the split output
-    private GATKReadWriter splitOutput(final ReadWriterFactory factory) {
+    private GATKReadWriter splitOutput(final ReadWriterFactory factory, final String prefix) {
         // header is not important for FASTQ files
-        return new SplitGATKWriter(outputPrefix, outputFormat, PAIR_END_SPLITTER,
-                new SAMFileHeader(), true, factory, false);
+        return new SplitGATKWriter(prefix, outputFormat, PAIR_END_SPLITTER,
+                new SAMFileHeader(), true, factory, false,
+                SplitGATKWriter.UNBOUNDED_OPEN_WRITERS, outputThreads);
     }
 
     // this creates the interleaved output
-    private GATKReadWriter interleavedOutput(final ReadWriterFactory factory) {
-        final String outputName = outputPrefix + outputFormat.getExtension();
+    private GATKReadWriter interleavedOutput(final ReadWriterFactory factory,
+            final String prefix) {
+        final String outputName = prefix + outputFormat.getExtension();
         return factory.createFASTQWriter(outputName);
     }
 }
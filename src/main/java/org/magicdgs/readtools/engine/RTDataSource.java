@@ -31,6 +31,7 @@ import org.magicdgs.readtools.utils.iterators.ReadTransformerIterator;
 import org.magicdgs.readtools.utils.iterators.paired.GATKReadPairedIterator;
 import org.magicdgs.readtools.utils.read.ReadReaderFactory;
 import org.magicdgs.readtools.utils.read.transformer.CheckQualityReadTransformer;
+import org.magicdgs.readtools.utils.read.transformer.IlluminaToSangerReadTransformer;
 import org.magicdgs.readtools.utils.read.transformer.SolexaToSangerReadTransformer;
 
 import com.google.common.annotations.VisibleForTesting;
@@ -42,7 +43,6 @@ import org.apache.logging.log4j.Logger;
 import org.broadinstitute.hellbender.engine.GATKDataSource;
 import org.broadinstitute.hellbender.exceptions.GATKException;
 import org.broadinstitute.hellbender.exceptions.UserException;
-import org.broadinstitute.hellbender.transformers.MisencodedBaseQualityReadTransformer;
 import org.broadinstitute.hellbender.transformers.ReadTransformer;
 import org.broadinstitute.hellbender.utils.SimpleInterval;
 import org.broadinstitute.hellbender.utils.Utils;
@@ -358,10 +358,9 @@ public final class RTDataSource implements GATKDataSource<GATKRead>, AutoCloseab
     private ReadTransformer qualityTransformer() {
         switch (getOriginalQualityEncoding()) {
             case Standard:
-                // TODO: port to GATK MisencodedBaseQualityReadTransformer
                 return new CheckQualityReadTransformer();
             case Illumina:
-                return new MisencodedBaseQualityReadTransformer();
+                return new IlluminaToSangerReadTransformer();
             case Solexa:
                 return new SolexaToSangerReadTransformer();
             default:
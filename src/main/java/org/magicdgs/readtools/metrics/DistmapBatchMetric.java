@@ -0,0 +1,69 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.magicdgs.readtools.metrics;
+
+import htsjdk.samtools.metrics.MetricBase;
+
+/**
+ * Holds the information for a pre-sorted batch of Distmap part files, to check if it could be
+ * reused when resuming a download.
+ *
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+public class DistmapBatchMetric extends MetricBase {
+
+    /** File name of the batch. */
+    public String BATCH = "";
+
+    /** Part files included in the batch (comma-separated). */
+    public String PARTS = "";
+
+    /** Size of the batch file in bytes. */
+    public long SIZE = 0;
+
+    /** MD5 checksum of the batch file. */
+    public String MD5 = "";
+
+    /** Sort order of the batch file. */
+    public String SORT_ORDER = "";
+
+    /** Other options modifying the content of the batch file (e.g., header options). */
+    public String OPTIONS = "";
+
+    /** Constructor for an empty batch. */
+    public DistmapBatchMetric() { }
+
+    /** Constructor for a batch. */
+    public DistmapBatchMetric(final String batch, final String parts, final long size,
+            final String md5, final String sortOrder, final String options) {
+        this.BATCH = batch;
+        this.PARTS = parts;
+        this.SIZE = size;
+        this.MD5 = md5;
+        this.SORT_ORDER = sortOrder;
+        this.OPTIONS = options;
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.magicdgs.readtools.metrics;
+
+import htsjdk.samtools.metrics.MetricBase;
+
+/**
+ * Holds summary statistics for quality binning.
+ *
+ * <p>The entropy of the quality distribution (bits per quality) is an estimate of the size of the
+ * quality strings after compression, and thus the ratio between the entropy before and after
+ * binning estimates the gain in compression for them.
+ *
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+public class QualityBinningMetric extends MetricBase {
+
+    /** Bins applied to the qualities (lower bound and binned quality). */
+    public String BINS = "";
+
+    /** Total number of qualities binned. */
+    public long BASES = 0;
+
+    /** Number of distinct qualities before binning. */
+    public int DISTINCT_QUALITIES_BEFORE = 0;
+
+    /** Number of distinct qualities after binning. */
+    public int DISTINCT_QUALITIES_AFTER = 0;
+
+    /** Entropy of the quality distribution before binning (bits per quality). */
+    public double ENTROPY_BEFORE = 0;
+
+    /** Entropy of the quality distribution after binning (bits per quality). */
+    public double ENTROPY_AFTER = 0;
+
+    /** Estimated compression ratio for the quality strings (entropy before/after binning). */
+    public double ESTIMATED_COMPRESSION_GAIN = 1;
+
+    /** Constructor for default bins. */
+    public QualityBinningMetric() { }
+
+    /** Constructor for provided bins. */
+    public QualityBinningMetric(final String bins) {
+        this.BINS = bins;
+    }
+}
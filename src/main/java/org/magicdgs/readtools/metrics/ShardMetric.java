@@ -0,0 +1,55 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.magicdgs.readtools.metrics;
+
+import htsjdk.samtools.metrics.MetricBase;
+
+/**
+ * Holds the number of reads written into each output shard.
+ *
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+public class ShardMetric extends MetricBase {
+
+    /** Index of the shard (0-based). */
+    public int SHARD = 0;
+
+    /** Output name for the shard (for split outputs, the prefix with the format extension). */
+    public String OUTPUT = "";
+
+    /** Number of reads written into the shard. */
+    public long READS = 0;
+
+    /** Constructor for an empty shard. */
+    public ShardMetric() { }
+
+    /** Constructor for a shard. */
+    public ShardMetric(final int shard, final String output, final long reads) {
+        this.SHARD = shard;
+        this.OUTPUT = output;
+        this.READS = reads;
+    }
+}
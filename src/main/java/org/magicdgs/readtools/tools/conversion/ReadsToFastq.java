@@ -26,6 +26,7 @@ package org.magicdgs.readtools.tools.conversion;
 
 import org.magicdgs.readtools.RTHelpConstants;
 import org.magicdgs.readtools.cmd.argumentcollections.FixBarcodeAbstractArgumentCollection;
+import org.magicdgs.readtools.cmd.argumentcollections.QualityBinningArgumentCollection;
 import org.magicdgs.readtools.cmd.argumentcollections.RTOutputArgumentCollection;
 import org.magicdgs.readtools.cmd.programgroups.RTConversionProgramGroup;
 import org.magicdgs.readtools.engine.ReadToolsWalker;
@@ -66,9 +67,19 @@ public final class ReadsToFastq extends ReadToolsWalker {
     public FixBarcodeAbstractArgumentCollection fixBarcodeArguments =
             FixBarcodeAbstractArgumentCollection.getArgumentCollection(false);
 
+    @ArgumentCollection
+    public QualityBinningArgumentCollection qualityBinningArguments =
+            new QualityBinningArgumentCollection();
+
     // the writer for the reads
     private GATKReadWriter writer;
 
+    @Override
+    public String[] customCommandLineValidation() {
+        qualityBinningArguments.validateArguments();
+        return super.customCommandLineValidation();
+    }
+
     @Override
     public void onTraversalStart() {
         final SAMFileHeader headerFromReads = getHeaderForReads();
@@ -83,6 +94,7 @@ public final class ReadsToFastq extends ReadToolsWalker {
                     "FASTQ output files are expected to be sorted by queryname, and this could cause downstream problems");
             headerFromReads.setSortOrder(SAMFileHeader.SortOrder.queryname);
         }
+        qualityBinningArguments.updateHeader(headerFromReads);
         writer = outputBamArgumentCollection.outputWriter(headerFromReads,
                 () -> getProgramRecord(headerFromReads), true, getReferencePath()
         );
@@ -90,7 +102,8 @@ public final class ReadsToFastq extends ReadToolsWalker {
 
     @Override
     protected void apply(final GATKRead read) {
-        writer.addRead(fixBarcodeArguments.fixBarcodeTags(read));
+        writer.addRead(qualityBinningArguments.binQualities(
+                fixBarcodeArguments.fixBarcodeTags(read)));
     }
 
     @Override
@@ -99,8 +112,14 @@ public final class ReadsToFastq extends ReadToolsWalker {
         logger.debug("Second: {}", pair._2);
         // this only works if it is modified in place
         fixBarcodeArguments.fixBarcodeTags(pair);
-        writer.addRead(pair._1);
-        writer.addRead(pair._2);
+        writer.addRead(qualityBinningArguments.binQualities(pair._1));
+        writer.addRead(qualityBinningArguments.binQualities(pair._2));
+    }
+
+    @Override
+    public Object onTraversalSuccess() {
+        qualityBinningArguments.logMetric(logger);
+        return null;
     }
 
     @Override
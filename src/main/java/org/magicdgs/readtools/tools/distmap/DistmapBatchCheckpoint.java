@@ -0,0 +1,199 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.magicdgs.readtools.tools.distmap;
+
+import org.magicdgs.readtools.metrics.DistmapBatchMetric;
+import org.magicdgs.readtools.utils.read.writer.ReadToolsIOFormat;
+
+import htsjdk.samtools.SAMException;
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.metrics.MetricsFile;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.broadinstitute.hellbender.exceptions.GATKException;
+import org.broadinstitute.hellbender.exceptions.UserException;
+import org.broadinstitute.hellbender.utils.Utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Checkpoint for the pre-sorted batches of Distmap part files, which allows to resume a download.
+ *
+ * <p>Completed batches are recorded in a manifest within the checkpoint directory, with their
+ * part files, size, MD5 checksum, sort order and options modifying their content. A batch is
+ * re-used if it contains the same part files and it is not modified since it was completed.
+ * Batches completed with a different sort order or options are discarded when the manifest is
+ * loaded.
+ *
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+final class DistmapBatchCheckpoint {
+
+    private static final Logger logger = LogManager.getLogger(DistmapBatchCheckpoint.class);
+
+    /** Name of the manifest file in the checkpoint directory. */
+    static final String MANIFEST_NAME = "batches" + ReadToolsIOFormat.DEFAULT_METRICS_EXTENSION;
+
+    private final Path directory;
+    private final Path manifest;
+    private final String sortOrder;
+    private final String options;
+
+    // completed batches by file name, in completion order
+    private final Map<String, DistmapBatchMetric> completed = new LinkedHashMap<>();
+
+    /**
+     * Constructor.
+     *
+     * @param directory the checkpoint directory. It is created if it does not exist; otherwise,
+     *                  the manifest (if any) is loaded.
+     * @param sortOrder the sort order of the batches.
+     * @param options   other options modifying the content of the batches.
+     */
+    DistmapBatchCheckpoint(final Path directory, final SAMFileHeader.SortOrder sortOrder,
+            final String options) {
+        this.directory = Utils.nonNull(directory, "null directory");
+        this.manifest = directory.resolve(MANIFEST_NAME);
+        this.sortOrder = Utils.nonNull(sortOrder, "null sortOrder").name();
+        this.options = Utils.nonNull(options, "null options");
+        try {
+            Files.createDirectories(directory);
+        } catch (final IOException e) {
+            throw new UserException.CouldNotCreateOutputFile(directory.toString(),
+                    e.getMessage(), e);
+        }
+        if (Files.exists(manifest)) {
+            loadManifest();
+            logger.info("Found {} completed batches in checkpoint {}", completed::size,
+                    directory::toUri);
+        }
+    }
+
+    /** Gets the checkpoint directory. */
+    Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Returns {@code true} if the batch was completed with the same parts and it is not
+     * modified; {@code false} otherwise.
+     */
+    boolean isCompleted(final Path batch, final List<Path> parts) {
+        final DistmapBatchMetric metric;
+        synchronized (completed) {
+            metric = completed.get(batch.getFileName().toString());
+        }
+        if (metric == null || !metric.PARTS.equals(joinParts(parts)) || !Files.exists(batch)) {
+            return false;
+        }
+        try {
+            return Files.size(batch) == metric.SIZE && computeMd5(batch).equals(metric.MD5);
+        } catch (final IOException e) {
+            logger.warn("Unable to verify batch {}: {}", batch.toUri(), e.getMessage());
+            return false;
+        }
+    }
+
+    /** Records the batch as completed, updating the manifest. */
+    void setCompleted(final Path batch, final List<Path> parts) {
+        final String name = batch.getFileName().toString();
+        try {
+            final DistmapBatchMetric metric = new DistmapBatchMetric(name, joinParts(parts),
+                    Files.size(batch), computeMd5(batch), sortOrder, options);
+            synchronized (completed) {
+                completed.put(name, metric);
+                writeManifest();
+            }
+        } catch (final IOException e) {
+            throw new UserException.CouldNotCreateOutputFile(manifest.toString(),
+                    e.getMessage(), e);
+        }
+    }
+
+    private void loadManifest() {
+        final MetricsFile<DistmapBatchMetric, Integer> metrics = new MetricsFile<>();
+        try (final Reader reader = Files.newBufferedReader(manifest)) {
+            metrics.read(reader);
+        } catch (final IOException | SAMException e) {
+            throw new UserException.CouldNotReadInputFile(manifest, e.getMessage(), e);
+        }
+        for (final DistmapBatchMetric m : metrics.getMetrics()) {
+            if (sortOrder.equals(m.SORT_ORDER) && options.equals(m.OPTIONS)) {
+                completed.put(m.BATCH, m);
+            } else {
+                // the batch content is different with the current options
+                logger.warn("Discarding batch {} in checkpoint {}: completed with sort order '{}' and options '{}' (current: '{}' and '{}')",
+                        m.BATCH, directory.toUri(), m.SORT_ORDER, m.OPTIONS, sortOrder, options);
+            }
+        }
+    }
+
+    // writes into a temp file first, to do not leave a truncated manifest if interrupted
+    private void writeManifest() throws IOException {
+        final MetricsFile<DistmapBatchMetric, Integer> metrics = new MetricsFile<>();
+        metrics.addAllMetrics(completed.values());
+        final Path tmp = manifest.resolveSibling(manifest.getFileName().toString() + ".tmp");
+        try (final Writer writer = Files.newBufferedWriter(tmp)) {
+            metrics.write(writer);
+        }
+        Files.move(tmp, manifest, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static String joinParts(final List<Path> parts) {
+        return parts.stream().map(p -> p.toUri().toString()).collect(Collectors.joining(","));
+    }
+
+    private static String computeMd5(final Path path) throws IOException {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("MD5");
+        } catch (final NoSuchAlgorithmException e) {
+            throw new GATKException("MD5 algorithm not available", e);
+        }
+        try (final InputStream in = new DigestInputStream(Files.newInputStream(path), digest)) {
+            final byte[] buffer = new byte[64 * 1024];
+            while (in.read(buffer) != -1) {
+                // only computing the digest
+            }
+        }
+        return String.format("%032x", new BigInteger(1, digest.digest()));
+    }
+}
@@ -26,9 +26,11 @@ package org.magicdgs.readtools.tools.distmap;
 
 import org.magicdgs.readtools.cmd.RTStandardArguments;
 import org.magicdgs.readtools.cmd.argumentcollections.RTOutputArgumentCollection;
+import org.magicdgs.readtools.utils.ThreadUtils;
 
 import avro.shaded.com.google.common.collect.Lists;
 import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMFileWriterImpl;
 import htsjdk.samtools.SAMProgramRecord;
 import htsjdk.samtools.SAMTag;
 import htsjdk.samtools.SamReaderFactory;
@@ -50,13 +52,22 @@ import org.broadinstitute.hellbender.utils.read.GATKRead;
 import org.broadinstitute.hellbender.utils.read.GATKReadWriter;
 import org.broadinstitute.hellbender.utils.read.ReadConstants;
 
-import java.io.File;
 import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -92,6 +103,14 @@ final class DistmapPartDownloader {
     @Argument(fullName = "numberOfParts", doc = "Number of part files to download, merge and pre-sort at the same time. Reduce this number if you have memory errors.", optional = true, minValue = 1)
     private int numberOfParts = 100;
 
+    @Advanced
+    @Argument(fullName = "downloadThreads", doc = "Number of batches to download and pre-sort at the same time. The records kept in memory for sorting are shared between them. Part files which are not local (e.g., in HDFS) are prefetched into the temp directory by the same number of threads, up to one batch ahead of the ones being pre-sorted.", optional = true, minValue = 1)
+    private int downloadThreads = 1;
+
+    @Advanced
+    @Argument(fullName = "checkpointDirectory", doc = "Directory to keep the pre-sorted batches, with a manifest of the completed ones. If the download is re-run with the same directory, completed batches (with the same part files, checksum, sort order and header options) are re-used and only the missing ones are downloaded. By default, batches are written into a new temp directory.", optional = true)
+    private String checkpointDirectory = null;
+
     @Advanced
     @Argument(fullName = "noRemoveTaskProgramGroup", optional = true,
             doc = "Do not remove the @PG lines generated by every task in the MapReduce Distmap run (default is remove completely). "
@@ -140,6 +159,10 @@ final class DistmapPartDownloader {
     /**
      * Download the part files in the list.
      *
+     * <p>Parts already sorted in the requested order (according to their header) are merged
+     * in a single streaming pass, keeping only the next record of each part in memory. Only the
+     * rest of the parts are pre-sorted in batches in the temp directory.
+     *
      * @param partFiles     part files to download.
      * @param programRecord function to construct a program record using the header. May return a
      *                      {@code null} program record.
@@ -153,16 +176,36 @@ final class DistmapPartDownloader {
         final ReadsDataSource toMerge;
         final boolean presorted;
 
-        if (partFiles.size() <= numberOfParts) {
+        // parts already in the requested order are merged without sorting them again
+        final List<Path> sortedParts = new ArrayList<>();
+        final List<Path> unsortedParts = new ArrayList<>();
+        for (final Path part : partFiles) {
+            if (isPresorted(getSamReaderFactory().getFileHeader(part))) {
+                sortedParts.add(part);
+            } else {
+                unsortedParts.add(part);
+            }
+        }
+        logger.debug("Pre-sorted parts: {}/{}", sortedParts::size, partFiles::size);
+
+        if (unsortedParts.isEmpty()) {
+            logger.info(
+                    "All {} parts are pre-sorted: download will be performed at the same time as merging",
+                    partFiles::size);
+            toMerge = new ReadsDataSource(partFiles, getSamReaderFactory());
+            presorted = true;
+        } else if (sortedParts.isEmpty() && partFiles.size() <= numberOfParts) {
             // logging the process and start the progress meter
             logger.info(
                     "Only {} parts found: download will be performed at the same time as merging",
                     partFiles::size);
             toMerge = new ReadsDataSource(partFiles, getSamReaderFactory());
-            presorted = isPresorted(toMerge.getHeader());
-            logger.debug("Presorted = {}", presorted);
+            presorted = false;
         } else {
-            toMerge = downloadBatchesAndPreSort(partFiles);
+            // only the parts which are not pre-sorted go through the batches
+            final List<Path> toMergeFiles = new ArrayList<>(sortedParts);
+            toMergeFiles.addAll(downloadBatchesAndPreSort(unsortedParts));
+            toMerge = new ReadsDataSource(toMergeFiles, getSamReaderFactory());
             presorted = true;
         }
 
@@ -235,7 +278,10 @@ final class DistmapPartDownloader {
                 read.clearAttribute(PG_TAG);
             }
             writer.addRead(read);
-            progressMeter.update(read);
+            // the progress meter might be shared between batches
+            synchronized (progressMeter) {
+                progressMeter.update(read);
+            }
         }
         try {
             writer.close();
@@ -247,71 +293,224 @@ final class DistmapPartDownloader {
     /**
      * Download and pre-sort the part files in batches, to the temp directory.
      *
+     * <p>Batches are processed concurrently by {@link #downloadThreads} threads, sharing the
+     * maximum number of records in RAM for sorting. Part files in other file systems (e.g., HDFS)
+     * are prefetched into the temp directory by another {@link #downloadThreads} threads, keeping
+     * at most the parts of one batch more than the ones being pre-sorted. Local part files are
+     * read directly.
+     *
+     * <p>If {@link #checkpointDirectory} is provided, batches completed in a previous run are
+     * re-used and the new ones are recorded in its manifest.
+     *
      * @param partFiles all part files to download.
      *
-     * @return temporary data source conformed by all the batches.
+     * @return the temporary (pre-sorted) batch files.
      *
-     * @see #divideIntoBatches(List)
+     * @see #divideIntoBatches(List, Path)
      */
-    private ReadsDataSource downloadBatchesAndPreSort(final List<Path> partFiles) {
+    private List<Path> downloadBatchesAndPreSort(final List<Path> partFiles) {
+        final DistmapBatchCheckpoint checkpoint = (checkpointDirectory == null) ? null
+                : new DistmapBatchCheckpoint(IOUtils.getPath(checkpointDirectory), sortOrder,
+                        // options modifying the header of the batches
+                        "noRemoveTaskProgramGroup=" + noRemoveTaskProgramGroup);
         // partition the files into batches
-        final Map<Path, ReadsDataSource> batches = divideIntoBatches(partFiles);
+        final Map<Path, List<Path>> batches = divideIntoBatches(partFiles,
+                (checkpoint == null) ? null : checkpoint.getDirectory());
 
         // logging the downloading process
-        logger.info("Downloading parts in {} batches.", batches::size);
+        logger.info("Downloading parts in {} batches ({} at the same time).", batches::size,
+                () -> downloadThreads);
         final ProgressMeter downloadProgress = buildProgressMeter();
         downloadProgress.start();
 
-        // download in batches
-        batches.forEach((path, source) -> {
-            final String batchName = path.toUri().toString();
-            final SAMFileHeader batchHeader = source.getHeader();
-            final boolean preSorted = isPresorted(batchHeader);
-            logger.debug("Downloading batch: {} (pre-sorted=).", () -> batchName, () -> preSorted);
-            writeReads(source, batchHeader,
-                    // create based on the batch name, which is BAM and does not require the reference
-                    outputArgumentCollection.getWriterFactory()
-                            // do not create indexes for the files that are batches
-                            .setCreateIndex(false)
-                            // overwrite previous batches (this should never happen, but it is a temp folder)
-                            .setForceOverwrite(true)
-                            .createSAMWriter(batchName, setHeaderOptions(batchHeader), preSorted),
-                    downloadProgress);
-            source.close();
-        });
+        // the sorting collections of the batches share the records in RAM
+        final int maxRecordsInRam =
+                Math.max(1, SAMFileWriterImpl.getDefaultMaxRecordsInRam() / downloadThreads);
+        // initialized before using it in several threads
+        final SamReaderFactory readerFactory = getSamReaderFactory();
+        // bounds the number of prefetched parts which are not pre-sorted yet
+        final Semaphore partsInFlight = new Semaphore((downloadThreads + 1) * numberOfParts);
+        final ExecutorService prefetcher = Executors.newFixedThreadPool(downloadThreads,
+                ThreadUtils.daemonThreadFactory("distmap-prefetch-"));
+        final ExecutorService pool = Executors.newFixedThreadPool(downloadThreads,
+                ThreadUtils.daemonThreadFactory("distmap-download-"));
+        try {
+            final List<Future<?>> downloads = new ArrayList<>(batches.size());
+            for (final Map.Entry<Path, List<Path>> batch : batches.entrySet()) {
+                final Path path = batch.getKey();
+                final List<Path> parts = batch.getValue();
+                if (checkpoint != null && checkpoint.isCompleted(path, parts)) {
+                    logger.info("Re-using completed batch {}", path::toUri);
+                    continue;
+                }
+                // permits are acquired in batch order, so earlier batches always get all their parts
+                final List<Future<Path>> localParts =
+                        prefetchParts(path, parts, prefetcher, partsInFlight);
+                downloads.add(pool.submit(() -> {
+                    try {
+                        final List<Path> local = localParts.stream()
+                                .map(f -> ThreadUtils.getResult(f, "downloading parts"))
+                                .collect(Collectors.toList());
+                        downloadBatch(path, local, readerFactory, maxRecordsInRam,
+                                downloadProgress);
+                        if (checkpoint != null) {
+                            checkpoint.setCompleted(path, parts);
+                        }
+                    } finally {
+                        removePrefetchedParts(path, parts, localParts, partsInFlight);
+                    }
+                }));
+            }
+            downloads.forEach(f -> ThreadUtils.getResult(f, "downloading parts"));
+        } finally {
+            prefetcher.shutdownNow();
+            pool.shutdownNow();
+        }
         downloadProgress.stop();
         logger.info("Finished download.");
-        return new ReadsDataSource(new ArrayList<>(batches.keySet()), getSamReaderFactory());
+        return new ArrayList<>(batches.keySet());
+    }
+
+    /**
+     * Submits the copy of the part files which are not local into a folder next to the batch
+     * file, waiting for the parts in flight to be below the maximum.
+     *
+     * @param batch         the batch file.
+     * @param parts         the part files for the batch.
+     * @param prefetcher    executor for copying the parts.
+     * @param partsInFlight permits for copying the parts (one per non-local part).
+     *
+     * @return the local part files, in the same order.
+     */
+    private List<Future<Path>> prefetchParts(final Path batch, final List<Path> parts,
+            final ExecutorService prefetcher, final Semaphore partsInFlight) {
+        final Path folder = getPrefetchFolder(batch);
+        final List<Future<Path>> localParts = new ArrayList<>(parts.size());
+        for (final Path part : parts) {
+            if (isLocal(part)) {
+                localParts.add(CompletableFuture.completedFuture(part));
+                continue;
+            }
+            try {
+                partsInFlight.acquire();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new GATKException("Interrupted while downloading parts", e);
+            }
+            localParts.add(prefetcher.submit(() -> {
+                final Path local = Files.createDirectories(folder)
+                        .resolve(part.getFileName().toString());
+                logger.debug("Prefetching {} into {}", part::toUri, local::toUri);
+                // overwrite copies left by an interrupted run
+                Files.copy(part, local, StandardCopyOption.REPLACE_EXISTING);
+                return local;
+            }));
+        }
+        return localParts;
+    }
+
+    /**
+     * Removes the copies of the non-local part files, waiting for the ones still in progress,
+     * and releases their permits.
+     */
+    private void removePrefetchedParts(final Path batch, final List<Path> parts,
+            final List<Future<Path>> localParts, final Semaphore partsInFlight) {
+        final Path folder = getPrefetchFolder(batch);
+        try {
+            for (int i = 0; i < parts.size(); i++) {
+                final Path part = parts.get(i);
+                if (isLocal(part)) {
+                    continue;
+                }
+                try {
+                    localParts.get(i).get();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (final ExecutionException e) {
+                    // the error is reported by the batch
+                    logger.debug("Unable to prefetch {}: {}", part::toUri, e::getCause);
+                } finally {
+                    partsInFlight.release();
+                }
+                Files.deleteIfExists(folder.resolve(part.getFileName().toString()));
+            }
+            Files.deleteIfExists(folder);
+        } catch (final IOException e) {
+            logger.warn("Unable to remove prefetched parts for {}: {}", batch.toUri(),
+                    e.getMessage());
+        }
+    }
+
+    // folder next to the batch file to prefetch the parts
+    private static Path getPrefetchFolder(final Path batch) {
+        return batch.resolveSibling(batch.getFileName().toString() + ".parts");
+    }
+
+    // parts in the default file system are read directly instead of prefetched
+    private static boolean isLocal(final Path part) {
+        return FileSystems.getDefault().equals(part.getFileSystem());
+    }
+
+    /**
+     * Pre-sorts the local part files into the batch file.
+     */
+    private void downloadBatch(final Path batch, final List<Path> localParts,
+            final SamReaderFactory readerFactory, final int maxRecordsInRam,
+            final ProgressMeter progress) {
+        final String batchName = batch.toUri().toString();
+        final ReadsDataSource source = new ReadsDataSource(localParts, readerFactory);
+        final SAMFileHeader batchHeader = source.getHeader();
+        final boolean preSorted = isPresorted(batchHeader);
+        logger.debug("Downloading batch: {} (pre-sorted={}).", () -> batchName, () -> preSorted);
+        writeReads(source, batchHeader,
+                // create based on the batch name, which is BAM and does not require the reference
+                outputArgumentCollection.getWriterFactory()
+                        // do not create indexes for the files that are batches
+                        .setCreateIndex(false)
+                        // overwrite previous batches (this should never happen, but it is a temp folder)
+                        .setForceOverwrite(true)
+                        .setMaxRecordsInRam(maxRecordsInRam)
+                        .createSAMWriter(batchName, setHeaderOptions(batchHeader), preSorted),
+                progress);
+        source.close();
     }
 
     /**
      * Divide the part files into the batches to download and pre-sort at the same time.
      *
+     * <p>Part files are sorted by name, for getting the same batches when the download is
+     * resumed.
+     *
      * @param partFiles all part files to download.
+     * @param directory the directory for the batch files. If {@code null}, a new temp directory
+     *                  is used.
      *
-     * @return a map of path to download the parts and the parts that should be used (as reads
-     * source).
+     * @return a map of path to download the parts and the parts that should be included.
      *
      * @see #downloadBatchesAndPreSort(List)
      */
-    private Map<Path, ReadsDataSource> divideIntoBatches(final List<Path> partFiles) {
+    private Map<Path, List<Path>> divideIntoBatches(final List<Path> partFiles,
+            final Path directory) {
         // partition the files into batches
-        final List<List<Path>> batches = Lists.partition(partFiles, numberOfParts);
-        final Map<Path, ReadsDataSource> toReturn = new LinkedHashMap<>(batches.size());
-
-        // creates a temp file for each in a common temp folder
-        final File tempDir = IOUtil.createTempDir(this.toString(), ".batches");
+        final List<List<Path>> batches = Lists.partition(partFiles.stream()
+                .sorted(Comparator.comparing(p -> p.toUri().toString()))
+                .collect(Collectors.toList()), numberOfParts);
+        final Map<Path, List<Path>> toReturn = new LinkedHashMap<>(batches.size());
+
+        // creates a temp file for each in a common folder
+        final Path batchDir = (directory == null)
+                ? IOUtil.createTempDir(this.toString(), ".batches").toPath()
+                : directory;
         int i = 0;
         for (final List<Path> parts : batches) {
             // create a temp file and store it in the temp parts
-            final Path tempFile =
-                    IOUtils.getPath(new File(tempDir, "batch-" + i++ + ".bam").getAbsolutePath());
+            final Path tempFile = batchDir.resolve("batch-" + i++ + ".bam");
             logger.debug("Batch file {} will contain {} parts: {}",
                     () -> tempFile.toUri().toString(),
                     () -> parts.size(),
                     () -> parts.stream().map(p -> p.toUri().toString())
                             .collect(Collectors.toList()));
-            toReturn.put(tempFile, new ReadsDataSource(parts, getSamReaderFactory()));
+            toReturn.put(tempFile, parts);
         }
 
         return toReturn;
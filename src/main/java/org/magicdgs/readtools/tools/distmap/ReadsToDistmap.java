@@ -30,11 +30,16 @@ import org.magicdgs.readtools.cmd.argumentcollections.FixBarcodeAbstractArgument
 import org.magicdgs.readtools.cmd.plugin.TrimmerPluginDescriptor;
 import org.magicdgs.readtools.cmd.programgroups.DistmapProgramGroup;
 import org.magicdgs.readtools.engine.ReadToolsWalker;
+import org.magicdgs.readtools.exceptions.RTUserExceptions;
 import org.magicdgs.readtools.tools.conversion.StandardizeReads;
+import org.magicdgs.readtools.utils.HadoopUtils;
 import org.magicdgs.readtools.utils.distmap.DistmapException;
 import org.magicdgs.readtools.utils.read.ReadWriterFactory;
+import org.magicdgs.readtools.utils.read.writer.ReadToolsIOFormat;
+import org.magicdgs.readtools.utils.read.writer.ShardedGATKWriter;
 import org.magicdgs.readtools.utils.trimming.TrimAndFilterPipeline;
 
+import hdfs.jsr203.HadoopPath;
 import org.broadinstitute.barclay.argparser.Advanced;
 import org.broadinstitute.barclay.argparser.Argument;
 import org.broadinstitute.barclay.argparser.ArgumentCollection;
@@ -45,13 +50,20 @@ import org.broadinstitute.barclay.argparser.CommandLineProgramProperties;
 import org.broadinstitute.barclay.help.DocumentedFeature;
 import org.broadinstitute.hellbender.cmdline.GATKPlugin.GATKReadFilterPluginDescriptor;
 import org.broadinstitute.hellbender.exceptions.UserException;
+import org.broadinstitute.hellbender.utils.io.IOUtils;
 import org.broadinstitute.hellbender.utils.read.GATKRead;
 import org.broadinstitute.hellbender.utils.read.GATKReadWriter;
 import scala.Tuple2;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Converts to the Distmap format
@@ -77,6 +89,11 @@ public final class ReadsToDistmap extends ReadToolsWalker {
             + "Find more information about this tool in "
             + RTHelpConstants.DOCUMENTATION_PAGE + "ReadsToDistmap.html";
 
+    // prefix for the part files if the output is split
+    private static final String PART_PREFIX = "part";
+    // size of the part files if the output is not in HDFS and no block-size is provided
+    private static final long DEFAULT_PART_SIZE = 128L * 1024 * 1024;
+
     @Argument(fullName = RTStandardArguments.FORCE_OVERWRITE_NAME, shortName = RTStandardArguments.FORCE_OVERWRITE_NAME, doc = RTStandardArguments.FORCE_OVERWRITE_DOC, common = true, optional = true)
     public Boolean forceOverwrite = false;
 
@@ -87,6 +104,10 @@ public final class ReadsToDistmap extends ReadToolsWalker {
     @Argument(fullName = RTStandardArguments.HDFS_BLOCK_SIZE_NAME, shortName = RTStandardArguments.HDFS_BLOCK_SIZE_NAME, doc = "Block-size (in bytes) for files in HDFS. If not provided, use default configuration.", optional = true)
     public Long blockSize = null;
 
+    @Advanced
+    @Argument(fullName = "outputParts", doc = "Write the output as a folder with this number of part files filled (and uploaded) in parallel. Each part file rolls over to a new one after approximately the HDFS block-size (uncompressed), to balance the input splits. Pairs are kept in the same line. The folder should be empty or not exist, unless --" + RTStandardArguments.FORCE_OVERWRITE_NAME + " is provided (removing the part files of a previous run).", optional = true, minValue = 1)
+    public Integer outputParts = null;
+
     @ArgumentCollection
     public FixBarcodeAbstractArgumentCollection fixBarcodeTags =
             FixBarcodeAbstractArgumentCollection.getArgumentCollection(false);
@@ -119,9 +140,11 @@ public final class ReadsToDistmap extends ReadToolsWalker {
         fixBarcodeTags.validateArguments();
         try {
             final CommandLineParser parser = getCommandLineParser();
+            // discarded reads are not written, so they could be filtered before trimming
             pipeline = TrimAndFilterPipeline.fromPluginDescriptors(
                     parser.getPluginDescriptor(TrimmerPluginDescriptor.class),
-                    parser.getPluginDescriptor(GATKReadFilterPluginDescriptor.class)
+                    parser.getPluginDescriptor(GATKReadFilterPluginDescriptor.class),
+                    true
             );
         } catch (final CommandLineException.BadArgumentValue e) {
             // should catch here, because it might be that the trimmer/filter pipeline is empty
@@ -129,10 +152,66 @@ public final class ReadsToDistmap extends ReadToolsWalker {
             pipeline = null;
         }
 
-        writer = new ReadWriterFactory()
+        final ReadWriterFactory factory = new ReadWriterFactory()
                 .setForceOverwrite(forceOverwrite)
-                .setHdfsBlockSize(blockSize)
-                .createDistmapWriter(output, isPaired());
+                .setHdfsBlockSize(blockSize);
+        writer = (outputParts == null)
+                ? factory.createDistmapWriter(output, isPaired())
+                : createPartsWriter(factory);
+    }
+
+    // writer for the part files in the output folder, filled at the same time
+    private GATKReadWriter createPartsWriter(final ReadWriterFactory factory) {
+        final Path folder = IOUtils.getPath(output);
+        // the manifest is ignored as input by Hadoop, because it starts with '_'
+        final Path manifest = folder.resolve("_" + PART_PREFIX + ShardedGATKWriter.SHARD_SUFFIX
+                + "s" + ReadToolsIOFormat.DEFAULT_METRICS_EXTENSION);
+        try {
+            Files.createDirectories(folder);
+            cleanPartsFolder(folder, manifest);
+        } catch (final IOException e) {
+            throw new UserException.CouldNotCreateOutputFile(output, e.getMessage(), e);
+        }
+        final long partSize;
+        if (blockSize != null) {
+            partSize = blockSize;
+        } else if (folder instanceof HadoopPath) {
+            partSize = HadoopUtils.getDefaultBlockSize((HadoopPath) folder);
+        } else {
+            partSize = DEFAULT_PART_SIZE;
+        }
+        logger.info("Writing {} part files at the same time, of approximately {} bytes",
+                outputParts, partSize);
+        final Function<String, String> partName =
+                suffix -> folder.resolve(PART_PREFIX + suffix).toUri().toString();
+        return new ShardedGATKWriter(
+                suffix -> factory.createDistmapWriter(partName.apply(suffix), isPaired()),
+                partName, ShardedGATKWriter.byBytes(partSize, outputParts), manifest,
+                outputParts);
+    }
+
+    // throws if the output folder is not empty, unless the output should be overwritten
+    // in that case, removes the part files and the manifest from a previous run, because Hadoop
+    // would read the parts not overwritten by this run
+    private void cleanPartsFolder(final Path folder, final Path manifest) throws IOException {
+        final List<Path> previous;
+        try (final Stream<Path> files = Files.list(folder)) {
+            previous = files.collect(Collectors.toList());
+        }
+        if (previous.isEmpty()) {
+            return;
+        }
+        if (!forceOverwrite) {
+            throw new RTUserExceptions.OutputFileExists(folder.toUri() + " (non-empty folder)");
+        }
+        final String partPrefix = PART_PREFIX + ShardedGATKWriter.SHARD_SUFFIX;
+        for (final Path file : previous) {
+            if (file.getFileName().toString().startsWith(partPrefix)
+                    || file.getFileName().equals(manifest.getFileName())) {
+                logger.debug("Removing {} from a previous run", file::toUri);
+                Files.delete(file);
+            }
+        }
     }
 
     /** Fixes the barcode tag(s) and write the read down. */
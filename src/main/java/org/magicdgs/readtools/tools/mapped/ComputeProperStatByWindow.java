@@ -29,22 +29,26 @@ import org.magicdgs.readtools.cmd.RTStandardArguments;
 import org.magicdgs.readtools.cmd.programgroups.MappedProgramGroup;
 import org.magicdgs.readtools.engine.RTReadWalker;
 import org.magicdgs.readtools.exceptions.RTUserExceptions;
+import org.magicdgs.readtools.utils.ThreadUtils;
 import org.magicdgs.readtools.utils.read.stats.engine.ProperStatWindowEngine;
 
 import htsjdk.samtools.SAMFileHeader;
 import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.SamReaderFactory;
 import org.broadinstitute.barclay.argparser.Argument;
 import org.broadinstitute.barclay.argparser.ArgumentCollection;
 import org.broadinstitute.barclay.argparser.CommandLineProgramProperties;
 import org.broadinstitute.barclay.argparser.ExperimentalFeature;
 import org.broadinstitute.barclay.help.DocumentedFeature;
 import org.broadinstitute.hellbender.engine.FeatureContext;
+import org.broadinstitute.hellbender.engine.ReadsDataSource;
 import org.broadinstitute.hellbender.engine.ReferenceContext;
 import org.broadinstitute.hellbender.engine.Shard;
 import org.broadinstitute.hellbender.engine.ShardBoundary;
 import org.broadinstitute.hellbender.engine.filters.ReadFilter;
 import org.broadinstitute.hellbender.engine.filters.ReadFilterLibrary;
 import org.broadinstitute.hellbender.exceptions.UserException;
+import org.broadinstitute.hellbender.transformers.ReadTransformer;
 import org.broadinstitute.hellbender.utils.IntervalUtils;
 import org.broadinstitute.hellbender.utils.SimpleInterval;
 import org.broadinstitute.hellbender.utils.io.IOUtils;
@@ -55,7 +59,13 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
@@ -74,6 +84,7 @@ import java.util.stream.Collectors;
  * <ul>
  *     <li>Pair-end data is required even for computing only single read statistics.</li>
  *     <li>Coordinate-sorted SAM/BAM/CRAM is required.</li>
+ *     <li>Processing contigs in parallel (<code>--contig-threads</code>) requires an indexed input.</li>
  *     <li>Intervals are not allowed in this tool. The statistics are computed over the genome.</li>
  *     <li>
  *         It is recommended that the file includes all the pair-end data (not only a subset of the reads).
@@ -127,6 +138,15 @@ public final class ComputeProperStatByWindow extends RTReadWalker {
     @Argument(fullName = "window-size", doc = "Window size to perform the analysis", minValue = 1)
     public Integer window;
 
+    // name for the contig-threads argument
+    private static final String CONTIG_THREADS_NAME = "contig-threads";
+    /**
+     * Number of threads to compute the statistics for different contigs at the same time. Each
+     * thread queries the reads for one contig, and thus it requires an indexed input.
+     */
+    @Argument(fullName = CONTIG_THREADS_NAME, doc = "Number of threads to process different contigs at the same time (requires an indexed input)", optional = true, minValue = 1)
+    public int contigThreads = 1;
+
     // TODO: this should be a plugin (https://github.com/magicDGS/ReadTools/issues/448)
     @ArgumentCollection
     public ComputeProperStatByWindowArgs engineArgs = new ComputeProperStatByWindowArgs();
@@ -140,6 +160,10 @@ public final class ComputeProperStatByWindow extends RTReadWalker {
     // engine for computing the stats
     private ProperStatWindowEngine engine;
 
+    // output path and windows for computing the stats
+    private Path outputPath;
+    private List<SimpleInterval> windows;
+
     @Override
     public void onTraversalStart() {
         // first check if the path exits or not
@@ -164,8 +188,19 @@ public final class ComputeProperStatByWindow extends RTReadWalker {
 
         // validate that there is a sequence dictionary
         final SAMSequenceDictionary dictionary = getBestAvailableSequenceDictionary();
-        engine = engineArgs
-                .getProperStatWindowEngine(path, makeWindows(dictionary, contig, window), dictionary);
+        outputPath = path;
+        windows = makeWindows(dictionary, contig, window);
+        if (contigThreads == 1) {
+            engine = engineArgs.getProperStatWindowEngine(path, windows, dictionary);
+        } else {
+            try (final ReadsDataSource source = createReadsDataSource()) {
+                if (!source.isQueryableByInterval()) {
+                    throw new UserException(String.format(
+                            "%s requires an indexed input for --%s greater than 1",
+                            getToolName(), CONTIG_THREADS_NAME));
+                }
+            }
+        }
     }
 
     private static List<SimpleInterval> makeWindows(final SAMSequenceDictionary dictionary,
@@ -180,6 +215,102 @@ public final class ComputeProperStatByWindow extends RTReadWalker {
                 .collect(Collectors.toList());
     }
 
+    @Override
+    public void traverse() {
+        if (contigThreads == 1) {
+            super.traverse();
+        } else {
+            traverseContigs();
+        }
+    }
+
+    /**
+     * Computes the statistics for each contig in a different thread, querying the reads for the
+     * contig. Results are written to temporary outputs, which are merged in dictionary order.
+     */
+    private void traverseContigs() {
+        // windows are already sorted in dictionary order
+        final Map<String, List<SimpleInterval>> windowsPerContig = windows.stream()
+                .collect(Collectors.groupingBy(SimpleInterval::getContig,
+                        LinkedHashMap::new, Collectors.toList()));
+        final SAMSequenceDictionary dictionary = getBestAvailableSequenceDictionary();
+        final int threads = Math.min(contigThreads, Math.max(1, windowsPerContig.size()));
+        logger.info("Computing statistics for {} contigs ({} at the same time).",
+                windowsPerContig::size, () -> threads);
+
+        final ExecutorService pool = Executors.newFixedThreadPool(threads,
+                ThreadUtils.daemonThreadFactory("compute-proper-stat-"));
+        final List<Path> contigOutputs = new ArrayList<>(windowsPerContig.size());
+        try {
+            final List<Future<?>> tasks = new ArrayList<>(windowsPerContig.size());
+            windowsPerContig.forEach((contigName, contigWindows) -> {
+                final Path contigOutput = IOUtils
+                        .createTempFile("ComputeProperStatByWindow", ".table").toPath();
+                contigOutputs.add(contigOutput);
+                tasks.add(pool.submit(() -> computeContig(contigName, contigWindows,
+                        contigOutput, dictionary, threads)));
+            });
+            tasks.forEach(f -> ThreadUtils.getResult(f, "computing statistics"));
+        } finally {
+            pool.shutdownNow();
+        }
+
+        try {
+            if (contigOutputs.isEmpty()) {
+                // output only the header
+                engineArgs.getProperStatWindowEngine(outputPath, windows, dictionary).close();
+            } else {
+                ProperStatWindowEngine.mergeOutputs(contigOutputs, outputPath);
+            }
+            for (final Path contigOutput : contigOutputs) {
+                Files.deleteIfExists(contigOutput);
+            }
+        } catch (final IOException e) {
+            throw new UserException.CouldNotCreateOutputFile(outputArg, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Computes the statistics for the windows in one contig, using its own reads data source
+     * and engine.
+     */
+    private void computeContig(final String contigName, final List<SimpleInterval> contigWindows,
+            final Path contigOutput, final SAMSequenceDictionary dictionary,
+            final int concurrentEngines) {
+        logger.debug("Computing statistics for contig {}", contigName);
+        // the filter and transformers are created for each thread
+        final ReadTransformer preTransformer = makePreReadFilterTransformer();
+        final ReadFilter filter = makeReadFilter();
+        final ReadTransformer postTransformer = makePostReadFilterTransformer();
+        final SimpleInterval contigInterval = new SimpleInterval(contigName, 1,
+                dictionary.getSequence(contigName).getSequenceLength());
+        try (final ReadsDataSource source = createReadsDataSource();
+                final ProperStatWindowEngine contigEngine = engineArgs.getProperStatWindowEngine(
+                        contigOutput, contigWindows, dictionary, concurrentEngines)) {
+            final Iterator<GATKRead> it = source.query(contigInterval);
+            while (it.hasNext()) {
+                final GATKRead read = preTransformer.apply(it.next());
+                if (filter.test(read)) {
+                    contigEngine.addRead(postTransformer.apply(read));
+                }
+            }
+        } catch (final IOException e) {
+            throw new UserException.CouldNotCreateOutputFile(contigOutput.toUri().toString(),
+                    e.getMessage(), e);
+        }
+        logger.debug("Finished contig {}", contigName);
+    }
+
+    // creates a new data source for the input reads (each thread requires its own)
+    private ReadsDataSource createReadsDataSource() {
+        SamReaderFactory factory = SamReaderFactory.makeDefault()
+                .validationStringency(readArguments.getReadValidationStringency());
+        if (hasReference()) {
+            factory = factory.referenceSequence(referenceArguments.getReferenceFile());
+        }
+        return new ReadsDataSource(readArguments.getReadPaths(), factory);
+    }
+
     @Override
     public void apply(final GATKRead read, final ReferenceContext referenceContext,
             final FeatureContext featureContext) {
@@ -40,7 +40,7 @@ import org.broadinstitute.hellbender.utils.SimpleInterval;
 
 import java.io.IOException;
 import java.nio.file.Path;
-import java.util.Collections;
+import java.util.ArrayList;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
@@ -62,6 +62,10 @@ class ComputeProperStatByWindowArgs {
     @Argument(fullName = "do-not-print-all", doc = "If set, skip printing windows with 0 reads")
     public boolean doNotPrintAll = false;
 
+    @Advanced
+    @Argument(fullName = "max-pending-mates-in-ram", doc = "Maximum number of pairs waiting for the mate to keep in memory. If exceeded, the ones with the farthest mate are spilled to disk (in the temp directory). Increasing this number reduces disk I/O for libraries with large inserts or many missing mates, but requires more memory.", optional = true, minValue = 1)
+    public int maxPendingMatesInRam = ProperStatWindowEngine.DEFAULT_MAX_PENDING_MATES_IN_RAM;
+
     @ArgumentCollection
     public PairIntegerTagListCounter tagListCounter = new PairIntegerTagListCounter();
 
@@ -85,6 +89,10 @@ class ComputeProperStatByWindowArgs {
         }
     }
 
+    // statistics initialized once (shared by all the engines)
+    private List<SingleReadStatFunction> singleReadStats = null;
+    private List<PairEndReadStatFunction> pairEndReadStats = null;
+
     /**
      * Gets the engine for computing proper-pair statistics.
      *
@@ -98,20 +106,52 @@ class ComputeProperStatByWindowArgs {
             final Path output,
             final List<SimpleInterval> windows,
             final SAMSequenceDictionary dictionary) {
+        return getProperStatWindowEngine(output, windows, dictionary, 1);
+    }
+
+    /**
+     * Gets the engine for computing proper-pair statistics, running at the same time as other
+     * engines.
+     *
+     * <p>Note: the maximum number of pairs waiting for the mate in memory is shared by the
+     * concurrent engines.
+     *
+     * @param output            path to output the results.
+     * @param windows           windows to compute the statistics on.
+     * @param dictionary        sequence dictionary for the data.
+     * @param concurrentEngines number of engines running at the same time.
+     *
+     * @return engine constructed from the arguments.
+     */
+    public ProperStatWindowEngine getProperStatWindowEngine(
+            final Path output,
+            final List<SimpleInterval> windows,
+            final SAMSequenceDictionary dictionary,
+            final int concurrentEngines) {
+        initStats();
         try {
             return new ProperStatWindowEngine(
                     dictionary,
                     windows,
-                    getSingleReadStats(),
-                    getPairEndReadStats(),
+                    singleReadStats,
+                    pairEndReadStats,
                     output,
-                    !doNotPrintAll);
+                    !doNotPrintAll,
+                    Math.max(1, maxPendingMatesInRam / concurrentEngines));
         } catch (final IOException e) {
             throw new UserException.CouldNotCreateOutputFile(output.toUri().toString(),
                     e.getMessage(), e);
         }
     }
 
+    // initializes the statistics only once (engines might be created from several threads)
+    private synchronized void initStats() {
+        if (singleReadStats == null) {
+            pairEndReadStats = getPairEndReadStats();
+            singleReadStats = getSingleReadStats();
+        }
+    }
+
     // constructs requested single-read statistics
     private List<SingleReadStatFunction> getSingleReadStats() {
         return stats.stream().map(Statistic::getStat).collect(Collectors.toList());
@@ -124,6 +164,7 @@ class ComputeProperStatByWindowArgs {
         } catch (final IllegalArgumentException e) {
             throw new UserException(e.getMessage());
         }
-        return Collections.singletonList(tagListCounter);
+        // each counter is computed separately (same output), without boxing the values
+        return new ArrayList<>(tagListCounter.getCounters());
     }
 }
@@ -27,17 +27,22 @@ package org.magicdgs.readtools.tools.trimming;
 import org.magicdgs.readtools.RTDefaults;
 import org.magicdgs.readtools.RTHelpConstants;
 import org.magicdgs.readtools.cmd.RTStandardArguments;
+import org.magicdgs.readtools.cmd.argumentcollections.PairOverlapArgumentCollection;
+import org.magicdgs.readtools.cmd.argumentcollections.QualityBinningArgumentCollection;
 import org.magicdgs.readtools.cmd.argumentcollections.RTOutputArgumentCollection;
 import org.magicdgs.readtools.cmd.plugin.TrimmerPluginDescriptor;
 import org.magicdgs.readtools.cmd.programgroups.RTManipulationProgramGroup;
 import org.magicdgs.readtools.engine.ReadToolsWalker;
 import org.magicdgs.readtools.metrics.FilterMetric;
+import org.magicdgs.readtools.metrics.QualityBinningMetric;
 import org.magicdgs.readtools.metrics.TrimmerMetric;
 import org.magicdgs.readtools.utils.read.ReadWriterFactory;
 import org.magicdgs.readtools.utils.read.ReservedTags;
+import org.magicdgs.readtools.utils.read.transformer.trimming.ApplyTrimResultReadTransformer;
 import org.magicdgs.readtools.utils.read.transformer.trimming.MottQualityTrimmer;
 import org.magicdgs.readtools.utils.read.transformer.trimming.TrailingNtrimmer;
 import org.magicdgs.readtools.utils.read.writer.NullGATKWriter;
+import org.magicdgs.readtools.utils.trimming.PairOverlapDetector;
 import org.magicdgs.readtools.utils.trimming.TrimAndFilterPipeline;
 
 import htsjdk.samtools.SAMFileHeader;
@@ -60,6 +65,7 @@ import java.io.IOException;
 import java.io.Writer;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -79,6 +85,10 @@ import java.util.List;
  *
  * </ol>
  *
+ * <p>For pair-end reads, the overlap between the mates could be used to trim the adapter
+ * read-through (<code>--trimReadThrough</code>) or to merge the pair into a single read
+ * (<code>--mergeOverlapping</code>) before the trimming/filtering pipeline.
+ *
  * @author Daniel Gomez-Sanchez (magicDGS)
  * @ReadTools.note Default arguments perform the same algorithm as the one described in
  * <a href="http://journals.plos.org/plosone/article?id=10.1371/journal.pone.0015925">
@@ -110,6 +120,14 @@ public final class TrimReads extends ReadToolsWalker {
     @Argument(fullName = RTStandardArguments.KEEP_DISCARDED_NAME, shortName = RTStandardArguments.KEEP_DISCARDED_NAME, optional = true, doc = "Keep discarded reads in a separate file. Note: For pair-end input, this file contain also mates of discarded reads (they do not have FT tag).")
     public boolean keepDiscarded = false;
 
+    @ArgumentCollection
+    public PairOverlapArgumentCollection pairOverlapArguments =
+            new PairOverlapArgumentCollection();
+
+    @ArgumentCollection
+    public QualityBinningArgumentCollection qualityBinningArguments =
+            new QualityBinningArgumentCollection();
+
     // defaults filters as in the legacy TrimFastq tool (removed)
     // for discard the ambiguous sequences (--discard-internal-N in previous tool)
     // use --readFilter AmbiguousBaseReadFilter --ambigFilterFrac 0
@@ -126,6 +144,15 @@ public final class TrimReads extends ReadToolsWalker {
     // pipeline to trim and filter
     private TrimAndFilterPipeline pipeline;
 
+    // overlap detection for pairs (null if not used)
+    private PairOverlapDetector overlapDetector = null;
+    // metric for the read-through trimming (null if not used)
+    private TrimmerMetric readThroughMetric = null;
+    private int mergedPairs = 0;
+
+    // index for the length histogram of merged pairs
+    private static final int MERGED_INDEX = 2;
+
     // writers -> keep instance to close
     private GATKReadWriter writer;
     private GATKReadWriter discardedWriter;
@@ -134,6 +161,13 @@ public final class TrimReads extends ReadToolsWalker {
     private List<Histogram<Integer>> lengthHistogramsBeforeTrimming;
     private List<Histogram<Integer>> lengthHistogramsAfterTrimming;
 
+    @Override
+    protected String[] customCommandLineValidation() {
+        pairOverlapArguments.validateArguments();
+        qualityBinningArguments.validateArguments();
+        return super.customCommandLineValidation();
+    }
+
     @Override
     public void onTraversalStart() {
         // set the length histograms
@@ -141,10 +175,23 @@ public final class TrimReads extends ReadToolsWalker {
             lengthHistogramsBeforeTrimming = Arrays.asList(
                     new Histogram<>("length", "first_before"),
                     new Histogram<>("length", "second_before"));
-            lengthHistogramsAfterTrimming = Arrays.asList(
+            lengthHistogramsAfterTrimming = new ArrayList<>(Arrays.asList(
                     new Histogram<>("length", "first_after"),
-                    new Histogram<>("length", "second_after"));
+                    new Histogram<>("length", "second_after")));
+            // set up the overlap detection
+            if (pairOverlapArguments.isEnabled()) {
+                overlapDetector = pairOverlapArguments.getPairOverlapDetector();
+            }
+            if (pairOverlapArguments.trimReadThrough) {
+                readThroughMetric = new TrimmerMetric("ReadThroughTrimmer");
+            }
+            if (pairOverlapArguments.mergeOverlapping) {
+                lengthHistogramsAfterTrimming.add(new Histogram<>("length", "merged_after"));
+            }
         } else {
+            if (pairOverlapArguments.isEnabled()) {
+                logger.warn("Pair-end overlap arguments are ignored for single-end input.");
+            }
             lengthHistogramsBeforeTrimming =
                     Collections.singletonList(new Histogram<>("length", "before"));
             lengthHistogramsAfterTrimming =
@@ -152,13 +199,16 @@ public final class TrimReads extends ReadToolsWalker {
         }
 
         // initialize the pipeline with the plugin descriptors
+        // discarded reads are only trimmed if they are kept
         final CommandLineParser commandLineParser = getCommandLineParser();
         pipeline = TrimAndFilterPipeline.fromPluginDescriptors(
                 commandLineParser.getPluginDescriptor(TrimmerPluginDescriptor.class),
-                commandLineParser.getPluginDescriptor(GATKReadFilterPluginDescriptor.class));
+                commandLineParser.getPluginDescriptor(GATKReadFilterPluginDescriptor.class),
+                !keepDiscarded);
 
         // get the writers
         final SAMFileHeader header = getHeaderForReads();
+        qualityBinningArguments.updateHeader(header);
 
         // setup the writer
         writer = outputBamArgumentCollection.outputWriter(header,
@@ -188,9 +238,32 @@ public final class TrimReads extends ReadToolsWalker {
 
     @Override
     protected void apply(final Tuple2<GATKRead, GATKRead> pair) {
+        lengthHistogramsBeforeTrimming.get(0).increment(pair._1.getLength());
+        lengthHistogramsBeforeTrimming.get(1).increment(pair._2.getLength());
+
+        // only unmapped reads have the bases as sequenced
+        if (overlapDetector != null && pair._1.isUnmapped() && pair._2.isUnmapped()) {
+            final int insert = overlapDetector.findInsertSize(
+                    pair._1.getBasesNoCopy(), pair._2.getBasesNoCopy());
+            if (pairOverlapArguments.mergeOverlapping && insert != -1) {
+                mergedPairs++;
+                final GATKRead merged = PairOverlapDetector.mergePair(pair._1, pair._2, insert);
+                if (pipeline.test(merged)) {
+                    writePassing(merged, MERGED_INDEX);
+                } else {
+                    writeDiscarded(merged);
+                }
+                return;
+            }
+            if (readThroughMetric != null) {
+                trimReadThrough(pair._1, insert);
+                trimReadThrough(pair._2, insert);
+            }
+        }
+
         // test reads
-        final boolean firstPass = testRead(pair._1, 0);
-        final boolean secondPass = testRead(pair._2, 1);
+        final boolean firstPass = pipeline.test(pair._1);
+        final boolean secondPass = pipeline.test(pair._2);
 
         if (firstPass && secondPass) {
             writePassing(pair._1, 0);
@@ -201,6 +274,15 @@ public final class TrimReads extends ReadToolsWalker {
         }
     }
 
+    // trims the part of the read after the insert size (adapter read-through)
+    private void trimReadThrough(final GATKRead read, final int insert) {
+        readThroughMetric.TOTAL++;
+        if (insert != -1 && insert < read.getLength()) {
+            readThroughMetric.TRIMMED_3_P++;
+            ApplyTrimResultReadTransformer.applyTrimPoints(read, 0, insert);
+        }
+    }
+
     // test the read and updates the length histogram
     private boolean testRead(final GATKRead read, final int index) {
         lengthHistogramsBeforeTrimming.get(index).increment(read.getLength());
@@ -212,7 +294,7 @@ public final class TrimReads extends ReadToolsWalker {
         lengthHistogramsAfterTrimming.get(index).increment(passingRead.getLength());
         // TODO: this should be moved to the default apply trimming result if it is not trimmed
         passingRead.clearAttribute(ReservedTags.ct);
-        writer.addRead(passingRead);
+        writer.addRead(qualityBinningArguments.binQualities(passingRead));
     }
 
     private void writeDiscarded(final GATKRead discardedRead) {
@@ -232,6 +314,9 @@ public final class TrimReads extends ReadToolsWalker {
         try (final Writer metricsWriter = Files.newBufferedWriter(path)) {
             // trimmer metrics with the header
             final MetricsFile<TrimmerMetric, Integer> trimming = getMetricsFile();
+            if (readThroughMetric != null) {
+                trimming.addMetric(readThroughMetric);
+            }
             trimming.addAllMetrics(pipeline.getTrimmingStats());
             trimming.write(metricsWriter);
 
@@ -242,9 +327,20 @@ public final class TrimReads extends ReadToolsWalker {
             lengthHistogramsAfterTrimming.forEach(filtering::addHistogram);
             filtering.write(metricsWriter);
 
+            // quality binning metrics without header
+            if (qualityBinningArguments.isEnabled()) {
+                final MetricsFile<QualityBinningMetric, Integer> binning = new MetricsFile<>();
+                binning.addMetric(qualityBinningArguments.getMetric());
+                binning.write(metricsWriter);
+            }
+
         } catch (IOException e) {
             throw new UserException.CouldNotCreateOutputFile(path.toString(), e.getMessage(), e);
         }
+        if (pairOverlapArguments.mergeOverlapping && isPaired()) {
+            logger.info("Merged {} overlapping pairs.", mergedPairs);
+        }
+        qualityBinningArguments.logMetric(logger);
         return null;
     }
 
@@ -84,6 +84,17 @@ public final class HadoopUtils {
                 (blockSize != null) ? blockSize : hdfs.getDefaultBlockSize(hdfsPath));
     }
 
+    /**
+     * Gets the default block-size for an HDFS file.
+     *
+     * @param path path in HDFS.
+     *
+     * @return the default block-size (in bytes).
+     */
+    public static long getDefaultBlockSize(final HadoopPath path) {
+        return path.getFileSystem().getHDFS().getDefaultBlockSize(path.getRawResolvedPath());
+    }
+
     /**
      * Compress the output stream derived from an HDFS file.
      *
@@ -0,0 +1,112 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.magicdgs.readtools.utils;
+
+import org.broadinstitute.hellbender.exceptions.GATKException;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Utilities for the thread pools used in ReadTools.
+ *
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+public final class ThreadUtils {
+
+    // cannot be instantiated
+    private ThreadUtils() {}
+
+    /**
+     * Creates a factory for daemon threads, which does not prevent exiting on errors. Threads are
+     * named with the prefix and a 1-based counter.
+     *
+     * @param prefix prefix for the thread names.
+     *
+     * @return a new thread factory.
+     */
+    public static ThreadFactory daemonThreadFactory(final String prefix) {
+        final AtomicInteger count = new AtomicInteger(0);
+        return r -> {
+            final Thread thread = new Thread(r, prefix + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Waits for the result of a task, re-throwing its exceptions.
+     *
+     * <p>Runtime exceptions and errors thrown by the task (e.g., user exceptions) are re-thrown
+     * as they are; other exceptions are wrapped into a {@link GATKException}.
+     *
+     * @param future the task to wait for.
+     * @param action description of the task for error messages (e.g., "downloading parts").
+     *
+     * @return the result of the task.
+     *
+     * @throws GATKException if the thread is interrupted while waiting (the interrupted status is
+     *                       restored) or the task throws a checked exception.
+     */
+    public static <T> T getResult(final Future<T> future, final String action) {
+        try {
+            return future.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GATKException("Interrupted while " + action, e);
+        } catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new GATKException("Error while " + action + ": " + cause.getMessage(), cause);
+        }
+    }
+
+    /**
+     * Shuts down the executor, interrupting the running tasks, and waits for them to finish. This
+     * allows to release the resources used by the tasks afterwards.
+     *
+     * @param executor the executor to shut down.
+     *
+     * @return {@code true} if all the tasks are finished; {@code false} if the thread is
+     * interrupted while waiting (the interrupted status is restored).
+     */
+    public static boolean shutdownAndAwait(final ExecutorService executor) {
+        executor.shutdownNow();
+        try {
+            return executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
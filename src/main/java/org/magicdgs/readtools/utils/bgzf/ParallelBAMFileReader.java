@@ -0,0 +1,250 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.magicdgs.readtools.utils.bgzf;
+
+import htsjdk.samtools.BAMIndex;
+import htsjdk.samtools.BAMRecordCodec;
+import htsjdk.samtools.QueryInterval;
+import htsjdk.samtools.SAMException;
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMFileSpan;
+import htsjdk.samtools.SAMFormatException;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMUtils;
+import htsjdk.samtools.SamReader;
+import htsjdk.samtools.ValidationStringency;
+import htsjdk.samtools.util.BinaryCodec;
+import htsjdk.samtools.util.CloseableIterator;
+import htsjdk.samtools.util.CloserUtil;
+import htsjdk.samtools.util.IOUtil;
+import htsjdk.samtools.util.RuntimeIOException;
+import org.broadinstitute.hellbender.utils.Utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * BAM reader which inflates the file in parallel using a
+ * {@link ParallelBlockCompressedInputStream} when iterating over the whole file.
+ *
+ * <p>Header, index and queries are delegated to the provided reader, because they require
+ * seeking into the file.
+ *
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+public final class ParallelBAMFileReader implements SamReader.PrimitiveSamReader {
+
+    // magic number for BAM files
+    private static final byte[] BAM_MAGIC = "BAM\1".getBytes();
+
+    private final SamReader.PrimitiveSamReader delegate;
+    private final Path path;
+    private final int threads;
+
+    // the current iterator, to close it with the reader
+    private ParallelBAMFileIterator iterator = null;
+
+    /**
+     * Constructor.
+     *
+     * @param delegate the reader for the header and queries of the same file.
+     * @param path     the path to the BAM file.
+     * @param threads  the number of decompression threads.
+     */
+    public ParallelBAMFileReader(final SamReader.PrimitiveSamReader delegate, final Path path,
+            final int threads) {
+        this.delegate = Utils.nonNull(delegate, "null delegate");
+        this.path = Utils.nonNull(path, "null path");
+        Utils.validateArg(threads > 0, () -> "threads should be positive: " + threads);
+        this.threads = threads;
+    }
+
+    /** Iterates over the whole file, inflating blocks in parallel. */
+    @Override
+    public CloseableIterator<SAMRecord> getIterator() {
+        if (iterator != null && iterator.isOpen()) {
+            throw new IllegalStateException("Iteration in progress");
+        }
+        try {
+            iterator = new ParallelBAMFileIterator(new ParallelBlockCompressedInputStream(
+                    IOUtil.maybeBufferInputStream(Files.newInputStream(path)),
+                    path.toUri().toString(), threads));
+        } catch (final IOException e) {
+            throw new RuntimeIOException(e);
+        }
+        return iterator;
+    }
+
+    @Override
+    public void close() {
+        CloserUtil.close(iterator);
+        delegate.close();
+    }
+
+    @Override
+    public SamReader.Type type() {
+        return delegate.type();
+    }
+
+    @Override
+    public boolean hasIndex() {
+        return delegate.hasIndex();
+    }
+
+    @Override
+    public BAMIndex getIndex() {
+        return delegate.getIndex();
+    }
+
+    @Override
+    public SAMFileHeader getFileHeader() {
+        return delegate.getFileHeader();
+    }
+
+    @Override
+    public CloseableIterator<SAMRecord> getIterator(final SAMFileSpan fileSpan) {
+        return delegate.getIterator(fileSpan);
+    }
+
+    @Override
+    public SAMFileSpan getFilePointerSpanningReads() {
+        return delegate.getFilePointerSpanningReads();
+    }
+
+    @Override
+    public CloseableIterator<SAMRecord> query(final QueryInterval[] intervals,
+            final boolean contained) {
+        return delegate.query(intervals, contained);
+    }
+
+    @Override
+    public CloseableIterator<SAMRecord> queryAlignmentStart(final String sequence,
+            final int start) {
+        return delegate.queryAlignmentStart(sequence, start);
+    }
+
+    @Override
+    public CloseableIterator<SAMRecord> queryUnmapped() {
+        return delegate.queryUnmapped();
+    }
+
+    @Override
+    public ValidationStringency getValidationStringency() {
+        return delegate.getValidationStringency();
+    }
+
+    // iterator over the records of the decompressed stream
+    private final class ParallelBAMFileIterator implements CloseableIterator<SAMRecord> {
+
+        private final InputStream stream;
+        private final BAMRecordCodec codec;
+        private final ValidationStringency stringency = getValidationStringency();
+        private SAMRecord next;
+        private long recordNumber = 0;
+        private boolean open = true;
+
+        private ParallelBAMFileIterator(final InputStream stream) {
+            this.stream = stream;
+            skipHeader(new BinaryCodec(stream));
+            this.codec = new BAMRecordCodec(getFileHeader());
+            this.codec.setInputStream(stream, path.toUri().toString());
+            advance();
+        }
+
+        // the header is already parsed by the delegate
+        private void skipHeader(final BinaryCodec binaryCodec) {
+            final byte[] magic = new byte[BAM_MAGIC.length];
+            binaryCodec.readBytes(magic);
+            if (!Arrays.equals(magic, BAM_MAGIC)) {
+                throw new SAMFormatException("Invalid BAM file header in " + path.toUri());
+            }
+            skipFully(binaryCodec.readInt());
+            final int nSequences = binaryCodec.readInt();
+            for (int i = 0; i < nSequences; i++) {
+                // name and length
+                skipFully(binaryCodec.readInt() + 4);
+            }
+        }
+
+        private void skipFully(final long n) {
+            try {
+                if (stream.skip(n) != n) {
+                    throw new SAMFormatException("Premature end of BAM header in " + path.toUri());
+                }
+            } catch (final IOException e) {
+                throw new RuntimeIOException(e);
+            }
+        }
+
+        private void advance() {
+            next = codec.decode();
+            if (next != null) {
+                recordNumber++;
+                next.setValidationStringency(stringency);
+                if (stringency != ValidationStringency.SILENT) {
+                    SAMUtils.processValidationErrors(
+                            next.isValid(stringency == ValidationStringency.STRICT),
+                            recordNumber, stringency);
+                }
+            }
+        }
+
+        private boolean isOpen() {
+            return open;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return open && next != null;
+        }
+
+        @Override
+        public SAMRecord next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            final SAMRecord toReturn = next;
+            advance();
+            return toReturn;
+        }
+
+        @Override
+        public void close() {
+            if (open) {
+                open = false;
+                try {
+                    stream.close();
+                } catch (final IOException e) {
+                    throw new SAMException("Unable to close " + path.toUri(), e);
+                }
+            }
+        }
+    }
+}
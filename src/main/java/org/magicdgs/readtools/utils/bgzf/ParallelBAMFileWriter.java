@@ -0,0 +1,150 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.magicdgs.readtools.utils.bgzf;
+
+import org.magicdgs.readtools.utils.read.writer.ParallelBatchEncoder;
+
+import htsjdk.samtools.BAMRecordCodec;
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMFileWriterImpl;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMSequenceRecord;
+import htsjdk.samtools.util.BinaryCodec;
+import htsjdk.samtools.util.BlockCompressedOutputStream;
+import htsjdk.samtools.util.RuntimeIOException;
+import org.broadinstitute.hellbender.utils.Utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * BAM writer which compresses the output in parallel using a
+ * {@link ParallelBlockCompressedOutputStream} and/or encodes the records in parallel using a
+ * {@link ParallelBatchEncoder}.
+ *
+ * <p>The output is the same as in {@link htsjdk.samtools.BAMFileWriter}, but indexing is not
+ * supported.
+ *
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+public final class ParallelBAMFileWriter extends SAMFileWriterImpl {
+
+    // magic number for BAM files
+    private static final byte[] BAM_MAGIC = "BAM\1".getBytes();
+
+    private final OutputStream stream;
+    private final BinaryCodec outputBinaryCodec;
+    private final String filename;
+    private final int encodingThreads;
+    private BAMRecordCodec bamRecordCodec = null;
+    // only used if encoding in parallel
+    private ParallelBatchEncoder<SAMRecord> batchEncoder = null;
+
+    /**
+     * Constructor.
+     *
+     * <p>Note: {@link #setSortOrder(SAMFileHeader.SortOrder, boolean)} and
+     * {@link #setHeader(SAMFileHeader)} should be called before adding any record.
+     *
+     * @param out              the underlying (uncompressed) stream.
+     * @param filename         the name of the output, for error messages. May be {@code null}.
+     * @param compressionLevel the compression level (0-9).
+     * @param threads          the number of compression threads. If {@code 0}, the output is
+     *                         compressed in the writing thread by HTSJDK.
+     * @param encodingThreads  the number of record encoding threads. If {@code 0}, the records
+     *                         are encoded in the writing thread.
+     * @param maxRecordsInRam  maximum number of records in RAM if sorting is required.
+     * @param tmpDir           temporary directory for sorting. May be {@code null}.
+     */
+    public ParallelBAMFileWriter(final OutputStream out, final String filename,
+            final int compressionLevel, final int threads, final int encodingThreads,
+            final int maxRecordsInRam, final File tmpDir) {
+        Utils.nonNull(out, "null output stream");
+        Utils.validateArg(threads >= 0, () -> "threads should be non-negative: " + threads);
+        Utils.validateArg(encodingThreads >= 0,
+                () -> "encodingThreads should be non-negative: " + encodingThreads);
+        this.stream = (threads == 0)
+                ? new BlockCompressedOutputStream(out, (File) null, compressionLevel)
+                : new ParallelBlockCompressedOutputStream(out, compressionLevel, threads);
+        this.encodingThreads = encodingThreads;
+        this.outputBinaryCodec = new BinaryCodec(stream);
+        this.outputBinaryCodec.setOutputFileName(filename);
+        this.filename = filename;
+        setMaxRecordsInRam(maxRecordsInRam);
+        if (tmpDir != null) {
+            setTempDirectory(tmpDir);
+        }
+    }
+
+    @Override
+    protected void writeHeader(final String textHeader) {
+        final SAMFileHeader header = getFileHeader();
+        outputBinaryCodec.writeBytes(BAM_MAGIC);
+        outputBinaryCodec.writeString(textHeader, true, false);
+        outputBinaryCodec.writeInt(header.getSequenceDictionary().size());
+        for (final SAMSequenceRecord sequence : header.getSequenceDictionary().getSequences()) {
+            outputBinaryCodec.writeString(sequence.getSequenceName(), true, true);
+            outputBinaryCodec.writeInt(sequence.getSequenceLength());
+        }
+        if (encodingThreads == 0) {
+            bamRecordCodec = new BAMRecordCodec(header);
+            bamRecordCodec.setOutputStream(stream, filename);
+        } else {
+            batchEncoder = new ParallelBatchEncoder<>(stream, (batch, out) -> {
+                final BAMRecordCodec codec = new BAMRecordCodec(header);
+                codec.setOutputStream(out, filename);
+                batch.forEach(codec::encode);
+            }, encodingThreads, ParallelBatchEncoder.DEFAULT_BATCH_SIZE);
+        }
+    }
+
+    @Override
+    protected void writeAlignment(final SAMRecord alignment) {
+        if (batchEncoder == null) {
+            bamRecordCodec.encode(alignment);
+        } else {
+            batchEncoder.add(alignment);
+        }
+    }
+
+    @Override
+    protected void finish() {
+        if (batchEncoder != null) {
+            try {
+                batchEncoder.close();
+            } catch (final IOException e) {
+                throw new RuntimeIOException(e);
+            }
+        }
+        outputBinaryCodec.close();
+    }
+
+    @Override
+    protected String getFilename() {
+        return filename;
+    }
+}
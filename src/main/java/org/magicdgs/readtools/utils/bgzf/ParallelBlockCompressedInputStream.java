@@ -0,0 +1,300 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.magicdgs.readtools.utils.bgzf;
+
+import org.magicdgs.readtools.utils.ThreadUtils;
+
+import htsjdk.samtools.util.BlockCompressedStreamConstants;
+import org.broadinstitute.hellbender.utils.Utils;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * BGZF input stream which inflates the upcoming blocks in parallel.
+ *
+ * <p>Compressed blocks are read sequentially from the underlying stream and submitted to a pool
+ * of worker threads for inflating. Decompressed blocks are returned in the same order as they
+ * are in the file, keeping at most twice the number of threads blocks in flight.
+ *
+ * <p>Note: this stream does not support seeking or virtual file pointers; it is intended for
+ * reading a BGZF file from the beginning to the end.
+ *
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+public final class ParallelBlockCompressedInputStream extends InputStream {
+
+    private static final byte[] EMPTY_BLOCK = new byte[0];
+
+    // counter for the thread names
+    private static final AtomicInteger POOL_COUNTER = new AtomicInteger(0);
+
+    private final InputStream in;
+    private final String source;
+    private final ExecutorService executor;
+    private final int maxBlocksInFlight;
+
+    // blocks submitted for inflating, in file order
+    private final Queue<Future<byte[]>> inFlight = new ArrayDeque<>();
+    // inflaters are shared by the worker threads
+    private final Queue<Inflater> inflaters = new ConcurrentLinkedQueue<>();
+
+    // the current decompressed block and the offset on it
+    private byte[] current = EMPTY_BLOCK;
+    private int offset = 0;
+    // true if the underlying stream is exhausted
+    private boolean endOfInput = false;
+    private boolean closed = false;
+
+    /**
+     * Constructor.
+     *
+     * @param in      the underlying (compressed) stream.
+     * @param source  the name of the source, for error messages. May be {@code null}.
+     * @param threads the number of decompression threads (at least one).
+     */
+    public ParallelBlockCompressedInputStream(final InputStream in, final String source,
+            final int threads) {
+        Utils.nonNull(in, "null input stream");
+        Utils.validateArg(threads > 0, () -> "threads should be positive: " + threads);
+        this.in = in;
+        this.source = (source == null) ? "unknown source" : source;
+        this.maxBlocksInFlight = 2 * threads;
+        this.executor = Executors.newFixedThreadPool(threads,
+                ThreadUtils.daemonThreadFactory(
+                        "bgzf-decompressor-" + POOL_COUNTER.incrementAndGet() + "-"));
+    }
+
+    @Override
+    public int read() throws IOException {
+        return ensureAvailable() ? current[offset++] & 0xFF : -1;
+    }
+
+    @Override
+    public int read(final byte[] bytes, int off, int len) throws IOException {
+        Utils.nonNull(bytes);
+        if (len == 0) {
+            return 0;
+        }
+        int totalRead = 0;
+        while (len > 0 && ensureAvailable()) {
+            final int copied = Math.min(len, current.length - offset);
+            System.arraycopy(current, offset, bytes, off, copied);
+            offset += copied;
+            off += copied;
+            len -= copied;
+            totalRead += copied;
+        }
+        return (totalRead == 0) ? -1 : totalRead;
+    }
+
+    @Override
+    public long skip(final long n) throws IOException {
+        long skipped = 0;
+        while (skipped < n && ensureAvailable()) {
+            final int toSkip = (int) Math.min(n - skipped, current.length - offset);
+            offset += toSkip;
+            skipped += toSkip;
+        }
+        return skipped;
+    }
+
+    @Override
+    public int available() throws IOException {
+        ensureOpen();
+        return current.length - offset;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            inFlight.forEach(f -> f.cancel(true));
+            inFlight.clear();
+            in.close();
+        } finally {
+            // cancelled tasks might be still inflating, so wait for them before ending the
+            // inflaters; if interrupted, they are released on finalization instead
+            if (ThreadUtils.shutdownAndAwait(executor)) {
+                inflaters.forEach(Inflater::end);
+            }
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+    }
+
+    // returns false if there is no more data
+    private boolean ensureAvailable() throws IOException {
+        ensureOpen();
+        while (offset == current.length) {
+            fillInFlight();
+            if (inFlight.isEmpty()) {
+                return false;
+            }
+            current = nextBlock();
+            offset = 0;
+        }
+        return true;
+    }
+
+    // reads compressed blocks until the maximum number of blocks in flight is reached
+    private void fillInFlight() throws IOException {
+        while (!endOfInput && inFlight.size() < maxBlocksInFlight) {
+            try {
+                final byte[] compressed = readCompressedBlock();
+                if (compressed == null) {
+                    endOfInput = true;
+                } else {
+                    inFlight.add(executor.submit(() -> inflate(compressed)));
+                }
+            } catch (final IOException e) {
+                // the error is thrown after returning the previous blocks
+                endOfInput = true;
+                final CompletableFuture<byte[]> failed = new CompletableFuture<>();
+                failed.completeExceptionally(e);
+                inFlight.add(failed);
+            }
+        }
+    }
+
+    // waits for the first block in flight
+    private byte[] nextBlock() throws IOException {
+        try {
+            return inFlight.remove().get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while inflating BGZF block from " + source);
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Unable to inflate BGZF block from " + source, e.getCause());
+        }
+    }
+
+    // reads the next compressed block (including header and footer); null if end of input
+    private byte[] readCompressedBlock() throws IOException {
+        final byte[] header = new byte[BlockCompressedStreamConstants.BLOCK_HEADER_LENGTH];
+        final int headerRead = readFully(header, 0, header.length);
+        if (headerRead == 0) {
+            return null;
+        }
+        if (headerRead != header.length || !isBgzfHeader(header)) {
+            throw new IOException("Invalid BGZF block header in " + source);
+        }
+        final int blockSize =
+                unpackShort(header, BlockCompressedStreamConstants.BLOCK_LENGTH_OFFSET) + 1;
+        if (blockSize < BlockCompressedStreamConstants.BLOCK_HEADER_LENGTH
+                + BlockCompressedStreamConstants.BLOCK_FOOTER_LENGTH) {
+            throw new IOException("Unexpected BGZF block length in " + source);
+        }
+        final byte[] block = new byte[blockSize];
+        System.arraycopy(header, 0, block, 0, header.length);
+        final int remaining = blockSize - header.length;
+        if (readFully(block, header.length, remaining) != remaining) {
+            throw new EOFException("Premature end of BGZF block in " + source);
+        }
+        return block;
+    }
+
+    // inflates the block in the worker thread
+    private byte[] inflate(final byte[] block) throws IOException {
+        final int uncompressedSize = unpackInt(block, block.length - 4);
+        if (uncompressedSize == 0) {
+            return EMPTY_BLOCK;
+        }
+        final byte[] uncompressed = new byte[uncompressedSize];
+        Inflater inflater = inflaters.poll();
+        if (inflater == null) {
+            inflater = new Inflater(true);
+        }
+        try {
+            inflater.reset();
+            inflater.setInput(block, BlockCompressedStreamConstants.BLOCK_HEADER_LENGTH,
+                    block.length - BlockCompressedStreamConstants.BLOCK_HEADER_LENGTH
+                            - BlockCompressedStreamConstants.BLOCK_FOOTER_LENGTH);
+            final int inflated = inflater.inflate(uncompressed, 0, uncompressedSize);
+            if (inflated != uncompressedSize) {
+                throw new IOException("Did not inflate expected amount of BGZF data in " + source);
+            }
+        } catch (final DataFormatException e) {
+            throw new IOException("Corrupt BGZF block in " + source, e);
+        } finally {
+            inflaters.add(inflater);
+        }
+        return uncompressed;
+    }
+
+    // reads as much as possible, returning the number of bytes read
+    private int readFully(final byte[] buffer, final int off, final int len) throws IOException {
+        int total = 0;
+        while (total < len) {
+            final int n = in.read(buffer, off + total, len - total);
+            if (n < 0) {
+                break;
+            }
+            total += n;
+        }
+        return total;
+    }
+
+    private static boolean isBgzfHeader(final byte[] header) {
+        return header[0] == BlockCompressedStreamConstants.GZIP_ID1
+                && (header[1] & 0xFF) == BlockCompressedStreamConstants.GZIP_ID2
+                && (header[3] & BlockCompressedStreamConstants.GZIP_FLG) != 0
+                && unpackShort(header, 10) == BlockCompressedStreamConstants.GZIP_XLEN
+                && header[12] == BlockCompressedStreamConstants.BGZF_ID1
+                && header[13] == BlockCompressedStreamConstants.BGZF_ID2;
+    }
+
+    private static int unpackShort(final byte[] buffer, final int pos) {
+        return (buffer[pos] & 0xFF) | ((buffer[pos + 1] & 0xFF) << 8);
+    }
+
+    private static int unpackInt(final byte[] buffer, final int pos) {
+        return unpackShort(buffer, pos) | (unpackShort(buffer, pos + 2) << 16);
+    }
+}
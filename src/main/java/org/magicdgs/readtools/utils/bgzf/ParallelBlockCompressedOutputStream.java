@@ -0,0 +1,293 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.magicdgs.readtools.utils.bgzf;
+
+import org.magicdgs.readtools.utils.ThreadUtils;
+
+import htsjdk.samtools.util.BlockCompressedStreamConstants;
+import org.broadinstitute.hellbender.utils.Utils;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * BGZF output stream which compresses blocks in parallel.
+ *
+ * <p>Bytes are accumulated into blocks of
+ * {@link BlockCompressedStreamConstants#DEFAULT_UNCOMPRESSED_BLOCK_SIZE}, which are deflated by a
+ * pool of worker threads and written to the underlying stream in the same order as they were
+ * submitted. The output is byte-identical to {@link htsjdk.samtools.util.BlockCompressedOutputStream}
+ * with the same compression level, including the terminator block written on {@link #close()}.
+ *
+ * <p>The number of blocks in flight is bounded to twice the number of threads, so memory usage
+ * does not depend on the speed of the underlying stream.
+ *
+ * <p>Note: virtual file pointers are not tracked, so this stream cannot be used for indexing.
+ *
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+public final class ParallelBlockCompressedOutputStream extends OutputStream {
+
+    private static final int UNCOMPRESSED_BLOCK_SIZE =
+            BlockCompressedStreamConstants.DEFAULT_UNCOMPRESSED_BLOCK_SIZE;
+
+    // maximum size of the deflated data (without header/footer)
+    private static final int MAX_DEFLATED_SIZE =
+            BlockCompressedStreamConstants.MAX_COMPRESSED_BLOCK_SIZE
+                    - BlockCompressedStreamConstants.BLOCK_HEADER_LENGTH
+                    - BlockCompressedStreamConstants.BLOCK_FOOTER_LENGTH;
+
+    // counter for the thread names
+    private static final AtomicInteger POOL_COUNTER = new AtomicInteger(0);
+
+    private final OutputStream out;
+    private final int compressionLevel;
+    private final ExecutorService executor;
+    private final int maxBlocksInFlight;
+
+    // blocks submitted for compression, in output order
+    private final Queue<Future<Block>> inFlight = new ArrayDeque<>();
+    // blocks ready to be re-used after being written
+    private final Queue<Block> freeBlocks = new ArrayDeque<>();
+    // deflaters are shared by the worker threads
+    private final Queue<Deflater> deflaters = new ConcurrentLinkedQueue<>();
+    private final Queue<Deflater> noCompressionDeflaters = new ConcurrentLinkedQueue<>();
+
+    // the block which is currently filled
+    private Block current = new Block();
+    private boolean closed = false;
+
+    /**
+     * Constructor.
+     *
+     * @param out              the underlying stream.
+     * @param compressionLevel the compression level (0-9).
+     * @param threads          the number of compression threads (at least one).
+     */
+    public ParallelBlockCompressedOutputStream(final OutputStream out,
+            final int compressionLevel, final int threads) {
+        Utils.nonNull(out, "null output stream");
+        Utils.validateArg(compressionLevel >= Deflater.NO_COMPRESSION
+                        && compressionLevel <= Deflater.BEST_COMPRESSION,
+                () -> "invalid compression level: " + compressionLevel);
+        Utils.validateArg(threads > 0, () -> "threads should be positive: " + threads);
+        this.out = out;
+        this.compressionLevel = compressionLevel;
+        this.maxBlocksInFlight = 2 * threads;
+        this.executor = Executors.newFixedThreadPool(threads,
+                ThreadUtils.daemonThreadFactory(
+                        "bgzf-compressor-" + POOL_COUNTER.incrementAndGet() + "-"));
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+        ensureOpen();
+        current.uncompressed[current.length++] = (byte) b;
+        if (current.length == UNCOMPRESSED_BLOCK_SIZE) {
+            submitCurrent();
+        }
+    }
+
+    @Override
+    public void write(final byte[] bytes, int offset, int length) throws IOException {
+        ensureOpen();
+        while (length > 0) {
+            final int copied = Math.min(length, UNCOMPRESSED_BLOCK_SIZE - current.length);
+            System.arraycopy(bytes, offset, current.uncompressed, current.length, copied);
+            current.length += copied;
+            offset += copied;
+            length -= copied;
+            if (current.length == UNCOMPRESSED_BLOCK_SIZE) {
+                submitCurrent();
+            }
+        }
+    }
+
+    /**
+     * Compresses the partial block (if any), waits until all pending blocks are written and
+     * flushes the underlying stream.
+     */
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        if (current.length != 0) {
+            submitCurrent();
+        }
+        while (!inFlight.isEmpty()) {
+            writeNextBlock();
+        }
+        out.flush();
+    }
+
+    /**
+     * Flushes the pending blocks, writes the BGZF terminator and closes the underlying stream.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            flush();
+            out.write(BlockCompressedStreamConstants.EMPTY_GZIP_BLOCK);
+        } finally {
+            closed = true;
+            try {
+                // the underlying stream is closed even if the pending blocks failed
+                out.close();
+            } finally {
+                // deflaters in use by a running task are released on finalization instead
+                if (ThreadUtils.shutdownAndAwait(executor)) {
+                    deflaters.forEach(Deflater::end);
+                    noCompressionDeflaters.forEach(Deflater::end);
+                }
+            }
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+    }
+
+    // submits the current block for compression and gets a new one for filling
+    private void submitCurrent() throws IOException {
+        if (inFlight.size() >= maxBlocksInFlight) {
+            writeNextBlock();
+        }
+        final Block block = current;
+        inFlight.add(executor.submit(() -> compress(block)));
+        final Block free = freeBlocks.poll();
+        current = (free == null) ? new Block() : free;
+    }
+
+    // waits for the first block in flight and writes it
+    private void writeNextBlock() throws IOException {
+        final Block block;
+        try {
+            block = inFlight.remove().get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while compressing BGZF block");
+        } catch (final ExecutionException e) {
+            throw new IOException("Unable to compress BGZF block", e.getCause());
+        }
+        out.write(block.compressed, 0, block.compressedLength);
+        block.length = 0;
+        freeBlocks.add(block);
+    }
+
+    // compress the block in the worker thread
+    private Block compress(final Block block) {
+        int deflatedSize = deflate(deflaters, compressionLevel, block);
+        if (deflatedSize < 0) {
+            // the block does not fit when compressed; store it instead (as in HTSJDK)
+            deflatedSize = deflate(noCompressionDeflaters, Deflater.NO_COMPRESSION, block);
+            if (deflatedSize < 0) {
+                throw new IllegalStateException("Unable to fit uncompressed data in a BGZF block");
+            }
+        }
+        final CRC32 crc = new CRC32();
+        crc.update(block.uncompressed, 0, block.length);
+        final int totalSize = BlockCompressedStreamConstants.BLOCK_HEADER_LENGTH + deflatedSize
+                + BlockCompressedStreamConstants.BLOCK_FOOTER_LENGTH;
+        writeHeader(block.compressed, totalSize);
+        int pos = BlockCompressedStreamConstants.BLOCK_HEADER_LENGTH + deflatedSize;
+        pos = writeInt(block.compressed, pos, (int) crc.getValue());
+        writeInt(block.compressed, pos, block.length);
+        block.compressedLength = totalSize;
+        return block;
+    }
+
+    // returns the deflated size or -1 if it does not fit into a block
+    private static int deflate(final Queue<Deflater> pool, final int level, final Block block) {
+        Deflater deflater = pool.poll();
+        if (deflater == null) {
+            deflater = new Deflater(level, true);
+        }
+        try {
+            deflater.reset();
+            deflater.setInput(block.uncompressed, 0, block.length);
+            deflater.finish();
+            final int size = deflater.deflate(block.compressed,
+                    BlockCompressedStreamConstants.BLOCK_HEADER_LENGTH, MAX_DEFLATED_SIZE);
+            return deflater.finished() ? size : -1;
+        } finally {
+            pool.add(deflater);
+        }
+    }
+
+    // writes the BGZF header for a block of the given total size
+    private static void writeHeader(final byte[] buffer, final int totalSize) {
+        buffer[0] = BlockCompressedStreamConstants.GZIP_ID1;
+        buffer[1] = (byte) BlockCompressedStreamConstants.GZIP_ID2;
+        buffer[2] = BlockCompressedStreamConstants.GZIP_CM_DEFLATE;
+        buffer[3] = BlockCompressedStreamConstants.GZIP_FLG;
+        // modification time (4 bytes) is always 0
+        writeInt(buffer, 4, 0);
+        buffer[8] = BlockCompressedStreamConstants.GZIP_XFL;
+        buffer[9] = (byte) BlockCompressedStreamConstants.GZIP_OS_UNKNOWN;
+        writeShort(buffer, 10, BlockCompressedStreamConstants.GZIP_XLEN);
+        buffer[12] = BlockCompressedStreamConstants.BGZF_ID1;
+        buffer[13] = BlockCompressedStreamConstants.BGZF_ID2;
+        writeShort(buffer, 14, BlockCompressedStreamConstants.BGZF_LEN);
+        // block size minus one
+        writeShort(buffer, BlockCompressedStreamConstants.BLOCK_LENGTH_OFFSET, totalSize - 1);
+    }
+
+    // writes a little-endian short and returns the next position
+    private static int writeShort(final byte[] buffer, final int pos, final int value) {
+        buffer[pos] = (byte) value;
+        buffer[pos + 1] = (byte) (value >>> 8);
+        return pos + 2;
+    }
+
+    // writes a little-endian int and returns the next position
+    private static int writeInt(final byte[] buffer, final int pos, final int value) {
+        return writeShort(buffer, writeShort(buffer, pos, value), value >>> 16);
+    }
+
+    // holder for the uncompressed data and the compressed block
+    private static final class Block {
+        private final byte[] uncompressed = new byte[UNCOMPRESSED_BLOCK_SIZE];
+        private final byte[] compressed =
+                new byte[BlockCompressedStreamConstants.MAX_COMPRESSED_BLOCK_SIZE];
+        private int length = 0;
+        private int compressedLength = 0;
+    }
+}
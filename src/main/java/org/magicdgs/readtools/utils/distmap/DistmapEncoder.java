@@ -80,12 +80,7 @@ public final class DistmapEncoder {
      */
     public static final String encode(final GATKRead read) {
         Utils.nonNull(read, "null read");
-        return String.format("%s%s\t%s\t%s",
-                DISTMAP_READ_NAME_INDICATOR,
-                RTReadUtils.getReadNameWithIlluminaBarcode(read),
-                read.getBasesString(),
-                ReadUtils.getBaseQualityString(read)
-        );
+        return appendRead(newBuilder(read, 1), read).toString();
     }
 
     /**
@@ -105,10 +100,29 @@ public final class DistmapEncoder {
         // TODO: see https://github.com/magicDGS/ReadTools/issues/159 for more information
 
         // encode them
-        return String.format("%s\t%s\t%s",
-                encode(pair._1),
-                pair._2.getBasesString(),
-                ReadUtils.getBaseQualityString(pair._2));
+        return appendRead(newBuilder(pair._1, 2), pair._1)
+                .append(DISTMAP_TOKEN_SEPARATOR)
+                .append(pair._2.getBasesString())
+                .append(DISTMAP_TOKEN_SEPARATOR)
+                .append(ReadUtils.getBaseQualityString(pair._2))
+                .toString();
+    }
+
+    // helper method to create a builder with enough capacity for the encoded reads
+    // the name is not accounted for the barcodes, but it is a good approximation
+    private static StringBuilder newBuilder(final GATKRead read, final int nReads) {
+        return new StringBuilder(read.getName().length() + nReads * (2 * read.getLength() + 2));
+    }
+
+    // helper method to append the name, bases and qualities of the read
+    // appending to a pre-sized builder avoids parsing the format in String.format
+    private static StringBuilder appendRead(final StringBuilder builder, final GATKRead read) {
+        return builder.append(DISTMAP_READ_NAME_INDICATOR)
+                .append(RTReadUtils.getReadNameWithIlluminaBarcode(read))
+                .append(DISTMAP_TOKEN_SEPARATOR)
+                .append(read.getBasesString())
+                .append(DISTMAP_TOKEN_SEPARATOR)
+                .append(ReadUtils.getBaseQualityString(read));
     }
 
     /**
@@ -33,7 +33,10 @@ import scala.Tuple2;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.Writer;
+import java.util.List;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 
@@ -100,10 +103,45 @@ public class DistmapGATKWriter implements GATKReadWriter {
         writer.close();
     }
 
+    /**
+     * Encodes a batch of reads in the same way as this writer, for encoding in parallel.
+     *
+     * @param reads      the reads to encode. If paired, the reads in the pair should be one after
+     *                   the other.
+     * @param paired     if {@code true}, the reads are written as paired; otherwise, as single.
+     * @param sourceName the name of the output, for error messages.
+     * @param out        stream to write the encoded reads.
+     *
+     * @throws DistmapException if paired and the last read does not have the second pair.
+     */
+    public static void encodeBatch(final List<GATKRead> reads, final boolean paired,
+            final String sourceName, final OutputStream out) throws IOException {
+        final Writer writer = new OutputStreamWriter(out);
+        if (paired) {
+            for (int i = 0; i + 1 < reads.size(); i += 2) {
+                final Tuple2<GATKRead, GATKRead> pair =
+                        new Tuple2<>(reads.get(i), reads.get(i + 1));
+                printAndCheckError(writer, sourceName, () -> DistmapEncoder.encode(pair));
+            }
+            DistmapException.distmapValidation(reads.size() % 2 == 0,
+                    () -> "missing second pair for " + reads.get(reads.size() - 1).getName());
+        } else {
+            for (final GATKRead read : reads) {
+                printAndCheckError(writer, sourceName, () -> DistmapEncoder.encode(read));
+            }
+        }
+        writer.flush();
+    }
+
     // helper method to print and with the writer and check if an error occurs to throw an exception
     // uses a supplier to do not store the String
     @VisibleForTesting
     void printAndCheckError(final Supplier<String> toPrint) {
+        printAndCheckError(writer, sourceName, toPrint);
+    }
+
+    private static void printAndCheckError(final Writer writer, final String sourceName,
+            final Supplier<String> toPrint) {
         try {
             writer.write(toPrint.get());
             writer.write("\n");
@@ -52,6 +52,14 @@ public class FastqGATKWriter implements GATKReadWriter {
 
     @Override
     public void addRead(final GATKRead read) {
+        writer.write(toFastqRecord(read));
+    }
+
+    /**
+     * Converts a read into the FASTQ record written by this class, including the Illumina
+     * barcode and the pair information in the read name.
+     */
+    public static FastqRecord toFastqRecord(final GATKRead read) {
         // adding the raw barcode information if found
         String readName = RTReadUtils.getReadNameWithIlluminaBarcode(read);
         // adding the pair information
@@ -59,10 +67,10 @@ public class FastqGATKWriter implements GATKReadWriter {
             readName += (read.isFirstOfPair())
                     ? FastqConstants.FIRST_OF_PAIR : FastqConstants.SECOND_OF_PAIR;
         }
-        writer.write(new FastqRecord(readName,
+        return new FastqRecord(readName,
                 read.getBasesString(),
                 read.getAttributeAsString(SAMTag.CO.name()),
-                ReadUtils.getBaseQualityString(read)));
+                ReadUtils.getBaseQualityString(read));
     }
 
     @Override
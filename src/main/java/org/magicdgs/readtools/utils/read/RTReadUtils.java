@@ -397,28 +397,34 @@ public class RTReadUtils {
         if (isCompletelyTrimRead(read)) {
             return true;
         }
-        // then, check the start point
-        final int startPoint = getTrimmingStartPoint(read);
-        // if the start is already larger, return
-        if (startPoint == read.getLength()) {
-            read.setAttribute(ReservedTags.ct, 1);
-            return true;
+        final int flag = getCompletelyTrimFlag(getTrimmingStartPoint(read),
+                getTrimmingEndPoint(read), read.getLength());
+        read.setAttribute(ReservedTags.ct, flag);
+        return flag != 0;
+    }
+
+    /**
+     * Gets the value of the completely trim flag ({@link ReservedTags#ct}) for the provided
+     * trimming points, as described in {@link #updateCompletelyTrimReadFlag(GATKRead)}.
+     *
+     * @param startPoint the first trimming point.
+     * @param endPoint   the last trimming point.
+     * @param length     the length of the read.
+     *
+     * @return 0 if the read is not completely trimmed; the value of the flag otherwise.
+     */
+    public static int getCompletelyTrimFlag(final int startPoint, final int endPoint,
+            final int length) {
+        // if the start is already larger
+        if (startPoint == length) {
+            return 1;
         }
-        // then, check the end point
-        final int endPoint = getTrimmingEndPoint(read);
-        // if the end is already smaller, return
+        // if the end is already smaller
         if (endPoint == 0) {
-            read.setAttribute(ReservedTags.ct, 2);
-            return true;
+            return 2;
         }
         // now check the other condition
-        final int comp = Integer.compare(startPoint, endPoint);
-        if (comp >= 0) {
-            read.setAttribute(ReservedTags.ct, 3);
-            return true;
-        }
-        read.setAttribute(ReservedTags.ct, 0);
-        return false;
+        return (startPoint >= endPoint) ? 3 : 0;
     }
 
     // helper for return a default value from an integer tag
@@ -24,12 +24,19 @@
 
 package org.magicdgs.readtools.utils.read;
 
+import org.magicdgs.readtools.utils.bgzf.ParallelBAMFileReader;
+
+import htsjdk.samtools.BamFileIoUtils;
+import htsjdk.samtools.SamInputResource;
 import htsjdk.samtools.SamReader;
 import htsjdk.samtools.SamReaderFactory;
 import htsjdk.samtools.ValidationStringency;
 import htsjdk.samtools.fastq.FastqReader;
 import htsjdk.samtools.util.IOUtil;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import org.broadinstitute.hellbender.exceptions.UserException;
+import org.broadinstitute.hellbender.utils.Utils;
 
 import java.nio.file.Path;
 import java.util.concurrent.Callable;
@@ -41,12 +48,20 @@ import java.util.function.Supplier;
  * {@link org.broadinstitute.hellbender.exceptions.UserException.CouldNotCreateOutputFile} is
  * thrown.
  *
+ * <p>BAM files are decompressed in parallel when iterating over the whole file if the number of
+ * threads is positive (see {@link #setThreads(int)}).
+ *
  * @author Daniel Gomez-Sanchez (magicDGS)
  */
 public class ReadReaderFactory {
 
+    private static final Logger logger = LogManager.getLogger(ReadReaderFactory.class);
+
     private final SamReaderFactory samFactory;
 
+    // number of threads for decompress BAM files (0 for not using parallel decompression)
+    private int threads = 0;
+
     /** Creates a default factory. */
     public ReadReaderFactory() {
         this.samFactory = SamReaderFactory.makeDefault();
@@ -71,6 +86,16 @@ public class ReadReaderFactory {
         return this;
     }
 
+    /**
+     * Sets the number of threads for decompressing BAM files. If {@code 0}, the BAM files are
+     * decompressed by HTSJDK in the reading thread.
+     */
+    public ReadReaderFactory setThreads(final int threads) {
+        Utils.validateArg(threads >= 0, () -> "threads should be non-negative: " + threads);
+        this.threads = threads;
+        return this;
+    }
+
     /** Set the reference sequence for reading. */
     public ReadReaderFactory setReferenceSequence(final Path referenceSequence) {
         samFactory.referenceSequence(referenceSequence);
@@ -79,7 +104,20 @@ public class ReadReaderFactory {
 
     /** Open a new SAMReader from a path. */
     public SamReader openSamReader(final Path path) {
-        return openWrappingException(() -> samFactory.open(path), path::toString);
+        return openWrappingException(() -> {
+            final SamReader reader = samFactory.open(path);
+            if (threads > 0 && path.toString().endsWith(BamFileIoUtils.BAM_FILE_EXTENSION)
+                    && reader instanceof SamReader.PrimitiveSamReaderToSamReaderAdapter) {
+                logger.debug("Using {} decompression threads for {}", () -> threads,
+                        path::toUri);
+                return new SamReader.PrimitiveSamReaderToSamReaderAdapter(
+                        new ParallelBAMFileReader(
+                                ((SamReader.PrimitiveSamReaderToSamReaderAdapter) reader)
+                                        .underlyingReader(), path, threads),
+                        SamInputResource.of(path));
+            }
+            return reader;
+        }, path::toString);
     }
 
     /** Open a new FastqReader from a path. */
@@ -27,24 +27,39 @@ package org.magicdgs.readtools.utils.read;
 import org.magicdgs.readtools.RTDefaults;
 import org.magicdgs.readtools.exceptions.RTUserExceptions;
 import org.magicdgs.readtools.utils.HadoopUtils;
+import org.magicdgs.readtools.utils.bgzf.ParallelBAMFileWriter;
+import org.magicdgs.readtools.utils.bgzf.ParallelBlockCompressedOutputStream;
 import org.magicdgs.readtools.utils.distmap.DistmapGATKWriter;
 import org.magicdgs.readtools.utils.fastq.FastqGATKWriter;
+import org.magicdgs.readtools.utils.read.writer.AbstractRingBufferAsyncWriter;
+import org.magicdgs.readtools.utils.read.writer.ParallelBatchEncoder;
+import org.magicdgs.readtools.utils.read.writer.ParallelBatchEncoder.BatchEncoder;
 import org.magicdgs.readtools.utils.read.writer.ReadToolsIOFormat;
+import org.magicdgs.readtools.utils.read.writer.WaitStrategy;
 
 import hdfs.jsr203.HadoopPath;
+import htsjdk.samtools.BAMRecordCodec;
+import htsjdk.samtools.BamFileIoUtils;
 import htsjdk.samtools.Defaults;
 import htsjdk.samtools.SAMException;
 import htsjdk.samtools.SAMFileHeader;
 import htsjdk.samtools.SAMFileWriter;
 import htsjdk.samtools.SAMFileWriterFactory;
+import htsjdk.samtools.SAMFileWriterImpl;
+import htsjdk.samtools.SAMRecord;
 import htsjdk.samtools.cram.build.CramIO;
-import htsjdk.samtools.fastq.AsyncFastqWriter;
 import htsjdk.samtools.fastq.BasicFastqWriter;
+import htsjdk.samtools.fastq.FastqEncoder;
+import htsjdk.samtools.fastq.FastqRecord;
 import htsjdk.samtools.fastq.FastqWriter;
 import htsjdk.samtools.util.AbstractAsyncWriter;
+import htsjdk.samtools.util.BlockCompressedOutputStream;
+import htsjdk.samtools.util.BlockCompressedStreamConstants;
 import htsjdk.samtools.util.CustomGzipOutputStream;
 import htsjdk.samtools.util.IOUtil;
 import htsjdk.samtools.util.Md5CalculatingOutputStream;
+import htsjdk.samtools.util.ProgressLoggerInterface;
+import htsjdk.samtools.util.RuntimeIOException;
 import htsjdk.tribble.AbstractFeatureReader;
 import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
 import org.apache.commons.compress.compressors.bzip2.BZip2Utils;
@@ -52,6 +67,7 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.broadinstitute.hellbender.exceptions.GATKException;
 import org.broadinstitute.hellbender.exceptions.UserException;
+import org.broadinstitute.hellbender.utils.Utils;
 import org.broadinstitute.hellbender.utils.read.GATKRead;
 import org.broadinstitute.hellbender.utils.read.GATKReadWriter;
 import org.broadinstitute.hellbender.utils.read.SAMFileGATKReadWriter;
@@ -61,9 +77,15 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintStream;
+import java.io.Writer;
 import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * Factory for generate writers for all sources of reads with the same parameters. Before opening a
@@ -73,6 +95,15 @@ import java.nio.file.Path;
  * Note: the defaults in {@link SAMFileWriterFactory} will be applied, except the useAsyncIo and
  * createMd5.
  *
+ * <p>BAM files are compressed in parallel if the number of compression threads is positive (see
+ * {@link #setCompressionThreads(int)}), unless an index is requested. In addition, FASTQ, Distmap
+ * and BAM records are encoded in parallel if the number of encoding threads is positive (see
+ * {@link #setEncodingThreads(int)}).
+ *
+ * <p>Asynchronous writers pass the records to the writing thread through a lock-free ring
+ * buffer (see {@link AbstractRingBufferAsyncWriter}), waiting with the strategy set in
+ * {@link #setAsyncWaitStrategy(WaitStrategy)}.
+ *
  * @author Daniel Gomez-Sanchez (magicDGS)
  */
 public final class ReadWriterFactory {
@@ -89,14 +120,24 @@ public final class ReadWriterFactory {
     private boolean createMd5file;
     private boolean useAsyncIo;
     private int asyncOutputBufferSize = AbstractAsyncWriter.DEFAULT_QUEUE_SIZE;
+    private WaitStrategy asyncWaitStrategy = RTDefaults.ASYNC_WAIT_STRATEGY;
     private int bufferSize = Defaults.BUFFER_SIZE;
 
+    // parameters for the parallel BAM writer
+    private boolean createIndex = Defaults.CREATE_INDEX;
+    private int maxRecordsInRam = SAMFileWriterImpl.getDefaultMaxRecordsInRam();
+    private File tmpDir = null;
+    private int compressionLevel = IOUtil.getCompressionLevel();
+    private int compressionThreads = RTDefaults.BGZF_COMPRESSION_THREADS;
+    private int encodingThreads = RTDefaults.ENCODING_THREADS;
+
     // block-size for HDFS; if null, use the default
     private Long hdfsBlockSize = null;
 
     /** Creates a default factory. */
     public ReadWriterFactory() {
-        this.samFactory = new SAMFileWriterFactory();
+        // asynchronous writing is handled by this factory
+        this.samFactory = new SAMFileWriterFactory().setUseAsyncIo(false);
         // setting the default create Md5 to the same as the samFactory default
         this.createMd5file = SAMFileWriterFactory.getDefaultCreateMd5File();
         this.useAsyncIo = Defaults.USE_ASYNC_IO_WRITE_FOR_SAMTOOLS;
@@ -107,7 +148,6 @@ public final class ReadWriterFactory {
 
     /** Sets asynchronous writing for any writer. */
     public ReadWriterFactory setUseAsyncIo(final boolean useAsyncIo) {
-        this.samFactory.setUseAsyncIo(useAsyncIo);
         this.useAsyncIo = useAsyncIo;
         return this;
     }
@@ -123,6 +163,7 @@ public final class ReadWriterFactory {
     public ReadWriterFactory setCreateIndex(final boolean createIndex) {
         logger.debug("Create index for FASTQ/Distmap writers is ignored");
         this.samFactory.setCreateIndex(createIndex);
+        this.createIndex = createIndex;
         return this;
     }
 
@@ -130,6 +171,7 @@ public final class ReadWriterFactory {
     public ReadWriterFactory setMaxRecordsInRam(final int maxRecordsInRam) {
         logger.debug("Maximum records in RAM for FASTQ/Distmap writers is ignored");
         this.samFactory.setMaxRecordsInRam(maxRecordsInRam);
+        this.maxRecordsInRam = maxRecordsInRam;
         return this;
     }
 
@@ -137,16 +179,22 @@ public final class ReadWriterFactory {
     public ReadWriterFactory setTempDirectory(final File tmpDir) {
         logger.debug("Temp directory for FASTQ/Distmap writers is ignored");
         this.samFactory.setTempDirectory(tmpDir);
+        this.tmpDir = tmpDir;
         return this;
     }
 
     /** Sets asynchronous buffer size for any writers. */
     public ReadWriterFactory setAsyncOutputBufferSize(final int asyncOutputBufferSize) {
-        this.samFactory.setAsyncOutputBufferSize(asyncOutputBufferSize);
         this.asyncOutputBufferSize = asyncOutputBufferSize;
         return this;
     }
 
+    /** Sets the strategy for waiting on full/empty queues for asynchronous writers. */
+    public ReadWriterFactory setAsyncWaitStrategy(final WaitStrategy asyncWaitStrategy) {
+        this.asyncWaitStrategy = Utils.nonNull(asyncWaitStrategy, "null asyncWaitStrategy");
+        return this;
+    }
+
     /** Sets buffer size for SAM/BAM/CRAM writers. */
     public ReadWriterFactory setBufferSize(final int bufferSize) {
         this.samFactory.setBufferSize(bufferSize);
@@ -154,6 +202,38 @@ public final class ReadWriterFactory {
         return this;
     }
 
+    /** Sets the compression level for BAM and gzipped outputs. */
+    public ReadWriterFactory setCompressionLevel(final int compressionLevel) {
+        this.samFactory.setCompressionLevel(compressionLevel);
+        this.compressionLevel = compressionLevel;
+        return this;
+    }
+
+    /**
+     * Sets the number of threads for compressing BAM outputs. If {@code 0}, the BAM is
+     * compressed in the writing thread by HTSJDK.
+     */
+    public ReadWriterFactory setCompressionThreads(final int compressionThreads) {
+        Utils.validateArg(compressionThreads >= 0,
+                () -> "compression threads should be non-negative: " + compressionThreads);
+        this.compressionThreads = compressionThreads;
+        return this;
+    }
+
+    /**
+     * Sets the number of threads for encoding FASTQ, Distmap and BAM records. If {@code 0}, the
+     * records are encoded in the writing thread.
+     *
+     * <p>Note: gzipped FASTQ files are compressed by the encoding threads too, as a multi-member
+     * gzip file.
+     */
+    public ReadWriterFactory setEncodingThreads(final int encodingThreads) {
+        Utils.validateArg(encodingThreads >= 0,
+                () -> "encoding threads should be non-negative: " + encodingThreads);
+        this.encodingThreads = encodingThreads;
+        return this;
+    }
+
     /** Sets the reference file. This is required for CRAM writers. */
     public ReadWriterFactory setReferencePath(final Path referencePath) {
         logger.debug("Reference file for FASTQ/Distmap writers is ignored");
@@ -183,7 +263,7 @@ public final class ReadWriterFactory {
         final PrintStream writer = new PrintStream(getOutputStream(path));
         final FastqWriter fastqWriter = new BasicFastqWriter(writer);
         return (this.useAsyncIo)
-                ? new AsyncFastqWriter(fastqWriter, asyncOutputBufferSize)
+                ? new AsyncFastqWriter(fastqWriter, asyncOutputBufferSize, asyncWaitStrategy)
                 : fastqWriter;
     }
 
@@ -202,8 +282,15 @@ public final class ReadWriterFactory {
     public SAMFileWriter openSAMWriter(final SAMFileHeader header, final boolean presorted,
             final Path output) {
         checkOutputAndCreateDirs(output);
+        if (useParallelBamWriter(header, output)) {
+            return openParallelBamWriter(header, presorted, output);
+        }
         try {
-            return samFactory.makeWriter(header, presorted, output, referencePath);
+            final SAMFileWriter writer =
+                    samFactory.makeWriter(header, presorted, output, referencePath);
+            return (useAsyncIo)
+                    ? new AsyncSAMWriter(writer, asyncOutputBufferSize, asyncWaitStrategy)
+                    : writer;
         } catch (final SAMException e) {
             // catch SAM exceptions as IO errors -> this are the ones that may fail
             throw new UserException.CouldNotCreateOutputFile(output.toUri().toString(), e.getMessage(), e);
@@ -222,6 +309,10 @@ public final class ReadWriterFactory {
 
     /** Creates a FASTQ writer from a String path. */
     public GATKReadWriter createFASTQWriter(final String output) {
+        if (encodingThreads > 0) {
+            return createBatchEncodingWriter(newOutputFile(output), true,
+                    ReadWriterFactory::encodeFastqBatch);
+        }
         return new FastqGATKWriter(openFastqWriter(output));
     }
 
@@ -229,10 +320,85 @@ public final class ReadWriterFactory {
     public GATKReadWriter createDistmapWriter(final String output, final boolean isPaired) {
         final Path outputPath = newOutputFile(output);
         logger.debug("Distmap output: {}", outputPath::toUri);
+        if (encodingThreads > 0) {
+            final String sourceName = outputPath.toUri().toString();
+            return createBatchEncodingWriter(outputPath, false, (batch, out) ->
+                    DistmapGATKWriter.encodeBatch(batch, isPaired, sourceName, out));
+        }
         final DistmapGATKWriter writer = new DistmapGATKWriter(
                 new OutputStreamWriter(getOutputStream(outputPath)),
                 outputPath.toUri().toString(), isPaired);
-        return (useAsyncIo) ? new AsyncGATKWriter(writer, asyncOutputBufferSize) : writer;
+        return (useAsyncIo)
+                ? new AsyncGATKWriter(writer, asyncOutputBufferSize, asyncWaitStrategy)
+                : writer;
+    }
+
+    /**
+     * Returns {@code true} if {@link #createAppendingWriter(String, SAMFileHeader)} is supported
+     * for the output; {@code false} otherwise.
+     *
+     * <p>Appending is not supported for CRAM, HDFS, if MD5 digests are requested or if an index
+     * is created for a coordinate-sorted BAM file (they will not cover the complete file).
+     *
+     * @param output the output file.
+     * @param header the header for the output.
+     */
+    public boolean supportsAppending(final String output, final SAMFileHeader header) {
+        return !createMd5file
+                && !(createIndex && header.getSortOrder() == SAMFileHeader.SortOrder.coordinate
+                        && output.endsWith(BamFileIoUtils.BAM_FILE_EXTENSION))
+                && !output.endsWith(CramIO.CRAM_FILE_EXTENSION)
+                && !(org.broadinstitute.hellbender.utils.io.IOUtils.getPath(output) instanceof HadoopPath)
+                && (ReadToolsIOFormat.isSamBamOrCram(output) || ReadToolsIOFormat.isFastq(output));
+    }
+
+    /**
+     * Creates a GATKReadWriter which appends the reads to an existing file previously created by
+     * this factory with {@link #createWriter(String, SAMFileHeader, boolean)}.
+     *
+     * <p>The header is not written again: reads are appended as plain text for SAM/FASTQ, as a
+     * new gzip member for gzipped FASTQ or as new BGZF blocks for BAM files. For BAM files, the
+     * BGZF terminator block is removed before appending, because HTSJDK stops reading on it.
+     *
+     * @param output the output file, which should exist.
+     * @param header the header for encoding SAM/BAM records.
+     *
+     * @throws UserException if the output does not support appending or could not be open.
+     */
+    public GATKReadWriter createAppendingWriter(final String output,
+            final SAMFileHeader header) {
+        if (!supportsAppending(output, header)) {
+            throw new RTUserExceptions.InvalidOutputFormat(output,
+                    "appending is not supported for this output.");
+        }
+        final Path path = org.broadinstitute.hellbender.utils.io.IOUtils.getPath(output);
+        logger.debug("Appending to {}", path::toUri);
+        final GATKReadWriter writer;
+        try {
+            if (output.endsWith(BamFileIoUtils.BAM_FILE_EXTENSION)) {
+                removeBgzfTerminator(path);
+            }
+            final OutputStream os = IOUtil.maybeBufferOutputStream(
+                    Files.newOutputStream(path, StandardOpenOption.APPEND), bufferSize);
+            if (ReadToolsIOFormat.isFastq(output)) {
+                writer = new FastqGATKWriter(new BasicFastqWriter(
+                        new PrintStream(maybeCompressedWrap(os, path))));
+            } else if (output.endsWith(BamFileIoUtils.BAM_FILE_EXTENSION)) {
+                final OutputStream bgzf = (compressionThreads > 0)
+                        ? new ParallelBlockCompressedOutputStream(os, compressionLevel,
+                        compressionThreads)
+                        : new BlockCompressedOutputStream(os, (File) null, compressionLevel);
+                writer = new SAMRecordsAppender(header, bgzf, true);
+            } else {
+                writer = new SAMRecordsAppender(header, os, false);
+            }
+        } catch (final IOException e) {
+            throwCouldNotCreateOutputPath(path, e);
+            throw new GATKException.ShouldNeverReachHereException("createAppendingWriter");
+        }
+        return (useAsyncIo)
+                ? new AsyncGATKWriter(writer, asyncOutputBufferSize, asyncWaitStrategy)
+                : writer;
     }
 
     /** Creates a GATKReadWriter based on the path extension. */
@@ -250,19 +416,101 @@ public final class ReadWriterFactory {
     ////////////////////////////////////
     // PRIVATE HELPERS
 
-    // get the output stream wrapped as necessary based on the params and path extension
-    private OutputStream getOutputStream(final Path outputPath) {
+    // creates a writer encoding in parallel; if gzipMembers, gzip files are compressed by batch
+    private GATKReadWriter createBatchEncodingWriter(final Path outputPath,
+            final boolean gzipMembers, final ParallelBatchEncoder.BatchEncoder<GATKRead> encoder) {
+        logger.debug("Using {} encoding threads for {}", () -> encodingThreads,
+                outputPath::toUri);
+        final GATKReadWriter writer;
         try {
-            // the same as in the SAMFileWriterFactory
-            // 1. get the output stream for the file (maybe buffered)
-            // Note: hadoop paths are handled differently
-            OutputStream os = getMaybeBufferedOutputStream(outputPath);
+            final OutputStream os = getUncompressedOutputStream(outputPath);
+            if (gzipMembers && !(outputPath instanceof HadoopPath)
+                    && IOUtil.hasBlockCompressedExtension(outputPath.toUri())) {
+                writer = new BatchEncodingGATKWriter(os, BatchEncoder.gzipMembers(encoder,
+                        compressionLevel), encodingThreads);
+            } else {
+                writer = new BatchEncodingGATKWriter(maybeCompressedWrap(os, outputPath), encoder,
+                        encodingThreads);
+            }
+        } catch (final IOException e) {
+            throwCouldNotCreateOutputPath(outputPath, e);
+            throw new GATKException.ShouldNeverReachHereException("createBatchEncodingWriter");
+        }
+        return (useAsyncIo)
+                ? new AsyncGATKWriter(writer, asyncOutputBufferSize, asyncWaitStrategy)
+                : writer;
+    }
+
+    // encodes FASTQ records as the BasicFastqWriter
+    private static void encodeFastqBatch(final List<GATKRead> batch, final OutputStream out)
+            throws IOException {
+        final Writer writer = new OutputStreamWriter(out);
+        for (final GATKRead read : batch) {
+            FastqEncoder.write(writer, FastqGATKWriter.toFastqRecord(read));
+            writer.write(System.lineSeparator());
+        }
+        writer.flush();
+    }
 
-            // 2. Wraps the stream to compute MD5 digest if createMd5file is provided
+    // removes the BGZF terminator block at the end of the file (if present)
+    private static void removeBgzfTerminator(final Path path) throws IOException {
+        final byte[] terminator = BlockCompressedStreamConstants.EMPTY_GZIP_BLOCK;
+        try (final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            final long size = channel.size();
+            if (size < terminator.length) {
+                return;
+            }
+            final ByteBuffer last = ByteBuffer.allocate(terminator.length);
+            while (last.hasRemaining()) {
+                if (channel.read(last, size - terminator.length + last.position()) < 0) {
+                    return;
+                }
+            }
+            if (Arrays.equals(last.array(), terminator)) {
+                channel.truncate(size - terminator.length);
+            }
+        }
+    }
+
+    // the parallel writer does not track virtual offsets, so it cannot be used for indexing
+    private boolean useParallelBamWriter(final SAMFileHeader header, final Path output) {
+        return (compressionThreads > 0 || encodingThreads > 0)
+                && output.toString().endsWith(BamFileIoUtils.BAM_FILE_EXTENSION)
+                && !(createIndex && header.getSortOrder() == SAMFileHeader.SortOrder.coordinate);
+    }
+
+    // open a BAM writer with parallel compression (output already checked)
+    private SAMFileWriter openParallelBamWriter(final SAMFileHeader header,
+            final boolean presorted, final Path output) {
+        logger.debug("Using {} compression and {} encoding threads for {}",
+                () -> compressionThreads, () -> encodingThreads, output::toUri);
+        try {
+            OutputStream os = getMaybeBufferedOutputStream(output);
             os = (createMd5file)
                     ? new Md5CalculatingOutputStream(
-                    os, outputPath.getFileSystem().getPath(outputPath.toString() + ".md5"))
+                    os, output.getFileSystem().getPath(output.toString() + ".md5"))
                     : os;
+            final ParallelBAMFileWriter writer = new ParallelBAMFileWriter(os,
+                    output.toUri().toString(), compressionLevel, compressionThreads,
+                    encodingThreads, maxRecordsInRam, tmpDir);
+            writer.setSortOrder(header.getSortOrder(), presorted);
+            writer.setHeader(header);
+            return (useAsyncIo)
+                    ? new AsyncSAMWriter(writer, asyncOutputBufferSize, asyncWaitStrategy)
+                    : writer;
+        } catch (final IOException | SAMException e) {
+            throwCouldNotCreateOutputPath(output, e);
+        }
+        throw new GATKException.ShouldNeverReachHereException("openParallelBamWriter");
+    }
+
+    // get the output stream wrapped as necessary based on the params and path extension
+    private OutputStream getOutputStream(final Path outputPath) {
+        try {
+            // the same as in the SAMFileWriterFactory
+            // 1-2. get the output stream for the file (maybe buffered and with MD5)
+            final OutputStream os = getUncompressedOutputStream(outputPath);
 
             // 3. apply a compressor if the extension is correct
             return maybeCompressedWrap(os, outputPath);
@@ -273,6 +521,19 @@ public final class ReadWriterFactory {
         throw new GATKException.ShouldNeverReachHereException("getOutputStream");
     }
 
+    // get the output stream without compression, but wrapped to compute the MD5 if requested
+    private OutputStream getUncompressedOutputStream(final Path outputPath) throws IOException {
+        // 1. get the output stream for the file (maybe buffered)
+        // Note: hadoop paths are handled differently
+        final OutputStream os = getMaybeBufferedOutputStream(outputPath);
+
+        // 2. Wraps the stream to compute MD5 digest if createMd5file is provided
+        return (createMd5file)
+                ? new Md5CalculatingOutputStream(
+                os, outputPath.getFileSystem().getPath(outputPath.toString() + ".md5"))
+                : os;
+    }
+
     /**
      * Creates a maybe buffered output stream from a Path.
      *
@@ -322,7 +583,7 @@ public final class ReadWriterFactory {
         // TODO: we should be more consistent with the supported compression formats (https://github.com/magicDGS/ReadTools/issues/411)
         if (IOUtil.hasBlockCompressedExtension(outputPath.toUri())) {
             logger.debug("Using gzip compression for {}", outputPath::toUri);
-            return new CustomGzipOutputStream(outputStream, IOUtil.getCompressionLevel());
+            return new CustomGzipOutputStream(outputStream, compressionLevel);
         } else if (BZip2Utils.isCompressedFilename(outputPath.toString())) {
             // kept for backwards compatibility
             logger.debug("Using bzip2 compressor for {}", outputPath::toUri);
@@ -399,15 +660,85 @@ public final class ReadWriterFactory {
         }
     }
 
+    /** Class for appending SAM/BAM records without header. */
+    private static final class SAMRecordsAppender implements GATKReadWriter {
+
+        private final SAMFileHeader header;
+        private final OutputStream stream;
+        // null if the records are written as text
+        private final BAMRecordCodec codec;
+
+        private SAMRecordsAppender(final SAMFileHeader header, final OutputStream stream,
+                final boolean binary) {
+            this.header = header;
+            this.stream = stream;
+            if (binary) {
+                this.codec = new BAMRecordCodec(header);
+                this.codec.setOutputStream(stream);
+            } else {
+                this.codec = null;
+            }
+        }
+
+        @Override
+        public void addRead(final GATKRead read) {
+            final SAMRecord record = read.convertToSAMRecord(header);
+            if (codec == null) {
+                try {
+                    // the SAM string already includes the new line
+                    stream.write(record.getSAMString().getBytes());
+                } catch (final IOException e) {
+                    throw new RuntimeIOException(e);
+                }
+            } else {
+                codec.encode(record);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            stream.close();
+        }
+    }
+
+    /** Class for writing reads encoded in parallel into a stream. */
+    private static final class BatchEncodingGATKWriter implements GATKReadWriter {
+
+        private final OutputStream stream;
+        private final ParallelBatchEncoder<GATKRead> encoder;
+
+        private BatchEncodingGATKWriter(final OutputStream stream,
+                final BatchEncoder<GATKRead> encoder, final int threads) {
+            this.stream = stream;
+            this.encoder = new ParallelBatchEncoder<>(stream, encoder, threads,
+                    ParallelBatchEncoder.DEFAULT_BATCH_SIZE);
+        }
+
+        @Override
+        public void addRead(final GATKRead read) {
+            encoder.add(read);
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                encoder.close();
+            } finally {
+                stream.close();
+            }
+        }
+    }
+
     /** Class for writing asynchronously with custom GATKReadWriters. */
-    private static final class AsyncGATKWriter extends AbstractAsyncWriter<GATKRead>
+    private static final class AsyncGATKWriter extends AbstractRingBufferAsyncWriter<GATKRead>
             implements GATKReadWriter {
 
         private final GATKReadWriter underlyingWriter;
 
         /** Constructor for wrapping a writer. */
-        protected AsyncGATKWriter(final GATKReadWriter underlyingWriter, int queueSize) {
-            super(queueSize);
+        private AsyncGATKWriter(final GATKReadWriter underlyingWriter, final int queueSize,
+                final WaitStrategy waitStrategy) {
+            super(queueSize, waitStrategy);
             this.underlyingWriter = underlyingWriter;
         }
 
@@ -434,4 +765,77 @@ public final class ReadWriterFactory {
             return "GATKReadWriterThread-";
         }
     }
+
+    /** Class for writing asynchronously with FastqWriters. */
+    private static final class AsyncFastqWriter extends AbstractRingBufferAsyncWriter<FastqRecord>
+            implements FastqWriter {
+
+        private final FastqWriter underlyingWriter;
+
+        /** Constructor for wrapping a writer. */
+        private AsyncFastqWriter(final FastqWriter underlyingWriter, final int queueSize,
+                final WaitStrategy waitStrategy) {
+            super(queueSize, waitStrategy);
+            this.underlyingWriter = underlyingWriter;
+        }
+
+        @Override
+        protected void synchronouslyWrite(final FastqRecord item) {
+            underlyingWriter.write(item);
+        }
+
+        @Override
+        protected void synchronouslyClose() {
+            underlyingWriter.close();
+        }
+
+        @Override
+        protected String getThreadNamePrefix() {
+            return "FastqWriterThread-";
+        }
+    }
+
+    /** Class for writing asynchronously with SAMFileWriters. */
+    private static final class AsyncSAMWriter extends AbstractRingBufferAsyncWriter<SAMRecord>
+            implements SAMFileWriter {
+
+        private final SAMFileWriter underlyingWriter;
+
+        /** Constructor for wrapping a writer. */
+        private AsyncSAMWriter(final SAMFileWriter underlyingWriter, final int queueSize,
+                final WaitStrategy waitStrategy) {
+            super(queueSize, waitStrategy);
+            this.underlyingWriter = underlyingWriter;
+        }
+
+        @Override
+        public void addAlignment(final SAMRecord alignment) {
+            write(alignment);
+        }
+
+        @Override
+        public SAMFileHeader getFileHeader() {
+            return underlyingWriter.getFileHeader();
+        }
+
+        @Override
+        public void setProgressLogger(final ProgressLoggerInterface progress) {
+            underlyingWriter.setProgressLogger(progress);
+        }
+
+        @Override
+        protected void synchronouslyWrite(final SAMRecord item) {
+            underlyingWriter.addAlignment(item);
+        }
+
+        @Override
+        protected void synchronouslyClose() {
+            underlyingWriter.close();
+        }
+
+        @Override
+        protected String getThreadNamePrefix() {
+            return "SAMFileWriterThread-";
+        }
+    }
 }
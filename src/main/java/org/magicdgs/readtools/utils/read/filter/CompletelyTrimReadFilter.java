@@ -38,7 +38,7 @@ import org.broadinstitute.hellbender.utils.read.GATKRead;
  * @author Daniel Gomez-Sanchez (magicDGS)
  * @see RTReadUtils#updateCompletelyTrimReadFlag(GATKRead)
  */
-public final class CompletelyTrimReadFilter extends ReadFilter {
+public final class CompletelyTrimReadFilter extends ReadFilter implements TrimmingAwareReadFilter {
     private static final long serialVersionUID = 1L;
 
     /**
@@ -51,4 +51,15 @@ public final class CompletelyTrimReadFilter extends ReadFilter {
     public boolean test(final GATKRead read) {
         return !RTReadUtils.updateCompletelyTrimReadFlag(read);
     }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>The filter is invariant, because applying the trimming keeps the
+     * {@link org.magicdgs.readtools.utils.read.ReservedTags#ct} tag.
+     */
+    @Override
+    public TrimmingBehavior getTrimmingBehavior() {
+        return TrimmingBehavior.INVARIANT;
+    }
 }
@@ -0,0 +1,54 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.magicdgs.readtools.utils.read.filter;
+
+/**
+ * Interface for read filters that declare how their result changes if the read is trimmed.
+ * This allows to test the filter before applying the trimming (e.g., in
+ * {@link org.magicdgs.readtools.utils.trimming.TrimAndFilterPipeline}), to avoid trimming reads
+ * that would be discarded anyway.
+ *
+ * <p>Note: the filter may be tested on a read with the trimming tags
+ * ({@link org.magicdgs.readtools.utils.read.ReservedTags#ts},
+ * {@link org.magicdgs.readtools.utils.read.ReservedTags#te} and
+ * {@link org.magicdgs.readtools.utils.read.ReservedTags#ct}) already computed, but not applied.
+ *
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+public interface TrimmingAwareReadFilter {
+
+    /** Behaviour of a filter when the read is trimmed. */
+    enum TrimmingBehavior {
+        /** The result of the filter may change after trimming. */
+        VARIANT,
+        /** The result of the filter does not change after trimming. */
+        INVARIANT,
+        /** A read failing the filter before trimming fails also after trimming. */
+        MONOTONE
+    }
+
+    /** Returns the behaviour of the filter when the read is trimmed. */
+    TrimmingBehavior getTrimmingBehavior();
+}
@@ -0,0 +1,86 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.magicdgs.readtools.utils.read.stats;
+
+import org.broadinstitute.hellbender.utils.read.GATKRead;
+import scala.Tuple2;
+
+/**
+ * {@link PairEndReadStatFunction} with integer values (also for the temporary value), computed
+ * without boxing.
+ *
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+public interface IntPairEndReadStatFunction
+        extends PairEndReadStatFunction<Integer, Integer>, IntStatFunction<Tuple2<GATKRead, GATKRead>> {
+
+    /**
+     * Apply the function to the first read of the pair.
+     *
+     * @param read first read of the pair.
+     *
+     * @return the temporary value for the statistic.
+     */
+    public int computeIntermediateFirstInt(final GATKRead read);
+
+    /**
+     * Applies the function to the second read of the pair.
+     *
+     * <p>Default implementation returns the result of {@link #computeIntermediateFirstInt(GATKRead)}.
+     *
+     * @param read second read of the pair.
+     *
+     * @return the temporary value for the statistic.
+     */
+    public default int computeIntermediateSecondInt(final GATKRead read) {
+        return computeIntermediateFirstInt(read);
+    }
+
+    /**
+     * Merges the values coming from both read pairs.
+     *
+     * @param first  the value from the first read of the pair.
+     * @param second the value for the second read of the pair.
+     *
+     * @return the merged value.
+     */
+    public int mergePairValuesInt(final int first, final int second);
+
+    @Override
+    public default Integer computeIntermediateFirst(final GATKRead read) {
+        return computeIntermediateFirstInt(read);
+    }
+
+    @Override
+    public default Integer computeIntermediateSecond(final GATKRead read) {
+        return computeIntermediateSecondInt(read);
+    }
+
+    @Override
+    public default Integer mergePairValues(final Integer first, final Integer second) {
+        return mergePairValuesInt(first, second);
+    }
+}
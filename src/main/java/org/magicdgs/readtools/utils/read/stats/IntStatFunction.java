@@ -0,0 +1,59 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.magicdgs.readtools.utils.read.stats;
+
+/**
+ * {@link StatFunction} with integer values, which can be accumulated without boxing.
+ *
+ * <p>Callers which detect this interface accumulate the values in-place in an {@code int}
+ * slot using {@link #reduceInt(int, int)}, starting with the first value. The boxed methods are
+ * implemented on top of the primitive ones.
+ *
+ * @param <T> type of record to compute the statistic.
+ *
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+public interface IntStatFunction<T> extends StatFunction<Integer, T> {
+
+    /**
+     * Combines a statistic generated from one record and a running accumulator.
+     *
+     * @param current     the current value for the record.
+     * @param accumulator the accumulator (initialized with the first value).
+     *
+     * @return the reduced value.
+     */
+    public int reduceInt(final int current, final int accumulator);
+
+    /**
+     * Default implementation returns {@code current} if {@code accumulator} is {@code null};
+     * otherwise, it calls {@link #reduceInt(int, int)}.
+     */
+    @Override
+    public default Integer reduce(final Integer current, final Integer accumulator) {
+        return (accumulator == null) ? current : reduceInt(current, accumulator);
+    }
+}
@@ -0,0 +1,242 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.magicdgs.readtools.utils.read.stats.engine;
+
+import org.broadinstitute.hellbender.utils.SimpleInterval;
+import org.broadinstitute.hellbender.utils.Utils;
+import org.broadinstitute.hellbender.utils.read.GATKRead;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Index for the windows in a single contig, with a sliding range of active windows.
+ *
+ * <p>Windows are sorted by start position and stored together with the maximum end up to each
+ * of them, to find the ones overlapping a position with a binary search and a backward scan
+ * (similar to {@link org.broadinstitute.hellbender.utils.collections.IntervalsSkipList}).
+ * {@link ProperStatWindowCalculator} are created lazily when a read is added to the window, and
+ * output (and released) as soon as they are completed. Pairs waiting for the mate are stored
+ * once in a {@link PendingMateTable} for all the windows.
+ *
+ * <p>Reads should be added in coordinate-sorted order, with the same assumptions as
+ * {@link ProperStatWindowEngine#addRead(GATKRead)}.
+ *
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+final class ContigWindowIndex {
+
+    // contig for all the windows
+    private final String contig;
+    // windows sorted by start
+    private final List<SimpleInterval> windows;
+    // cached start positions
+    private final int[] starts;
+    // maximum end position up to each window (inclusive)
+    private final int[] maxEnds;
+    // calculators for the active windows (null if no read was added)
+    private final ProperStatWindowCalculator[] calculators;
+
+    // table for the pairs waiting for the mate
+    private final PendingMateTable pendingMates;
+
+    private final Function<SimpleInterval, ProperStatWindowCalculator> calculatorFactory;
+    private final Consumer<ProperStatWindowCalculator> output;
+    private final boolean outputEmpty;
+
+    // first window which is not output yet
+    private int firstActive = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param windows           windows to index (all in the same contig).
+     * @param pendingMates      table for the pairs waiting for the mate.
+     * @param calculatorFactory factory for the window calculators.
+     * @param output            consumer for completed windows, called in order.
+     * @param outputEmpty       if {@code true}, windows without reads are also output.
+     */
+    ContigWindowIndex(final List<SimpleInterval> windows,
+            final PendingMateTable pendingMates,
+            final Function<SimpleInterval, ProperStatWindowCalculator> calculatorFactory,
+            final Consumer<ProperStatWindowCalculator> output,
+            final boolean outputEmpty) {
+        Utils.nonEmpty(windows);
+        this.contig = windows.get(0).getContig();
+        Utils.validateArg(windows.stream().allMatch(w -> contig.equals(w.getContig())),
+                () -> "windows should be in the same contig: " + windows);
+        this.windows = new ArrayList<>(windows);
+        // stable sort, to output in the same order if they are already sorted
+        this.windows.sort(Comparator.comparingInt(SimpleInterval::getStart));
+        this.starts = new int[windows.size()];
+        this.maxEnds = new int[windows.size()];
+        int maxEnd = 0;
+        for (int i = 0; i < starts.length; i++) {
+            final SimpleInterval window = this.windows.get(i);
+            maxEnd = Math.max(maxEnd, window.getEnd());
+            starts[i] = window.getStart();
+            maxEnds[i] = maxEnd;
+        }
+        this.calculators = new ProperStatWindowCalculator[windows.size()];
+        this.pendingMates = Utils.nonNull(pendingMates);
+        this.calculatorFactory = Utils.nonNull(calculatorFactory);
+        this.output = Utils.nonNull(output);
+        this.outputEmpty = outputEmpty;
+    }
+
+    /** Gets the contig for the windows. */
+    public String getContig() {
+        return contig;
+    }
+
+    /** Gets the number of windows which are not output yet. */
+    public int numberOfActiveWindows() {
+        return windows.size() - firstActive;
+    }
+
+    /**
+     * Adds a mapped read on this contig to the overlapping windows, after output the completed
+     * windows upstream of the read.
+     *
+     * <p>Only the windows overlapping the start of the read, or the start of the mate for the
+     * second read of a proper pair, are visited. The pair-end statistics are computed only once
+     * for all the windows.
+     *
+     * @param read the read to add.
+     */
+    public void addRead(final GATKRead read) {
+        final int start = read.getStart();
+        flushUpTo(start);
+        if (!ProperStatWindowCalculator.mappedPairSameContig(read)) {
+            // 0 is never included in a window
+            forEachOverlapping(start, 0, true, c -> c.addSingleRead(read, false));
+            return;
+        }
+        pendingMates.advanceTo(start);
+        final int mateStart = read.getMateStart();
+        final PendingMateTable.PairValues pairValues = pendingMates.resolve(read);
+        if (pairValues != null) {
+            // second read: complete the pair in the windows of both reads
+            forEachOverlapping(start, 0, true, c -> {
+                c.addSingleRead(read, true);
+                c.addPairValues(pairValues, c.getStart() <= mateStart && mateStart <= c.getEnd());
+            });
+            forEachOverlapping(mateStart, start, false, c -> c.addPairValues(pairValues, true));
+        } else {
+            // first read (or the mate is before and missing)
+            if (mateStart >= start) {
+                pendingMates.add(read);
+            }
+            forEachOverlapping(start, 0, true, c -> {
+                c.addSingleRead(read, true);
+                c.addPendingMate(mateStart);
+            });
+        }
+    }
+
+    /**
+     * Applies the action to the active windows overlapping the position.
+     *
+     * @param position position to look for overlapping windows.
+     * @param skip     windows overlapping this position are skipped (already visited).
+     * @param create   if {@code true}, create the calculator if it does not exists.
+     * @param action   action for the calculator.
+     */
+    private void forEachOverlapping(final int position, final int skip, final boolean create,
+            final Consumer<ProperStatWindowCalculator> action) {
+        for (int i = lastStartingAtOrBefore(position);
+                i >= firstActive && maxEnds[i] >= position; i--) {
+            final int end = windows.get(i).getEnd();
+            if (end < position || (starts[i] <= skip && skip <= end)) {
+                continue;
+            }
+            if (calculators[i] == null) {
+                if (!create) {
+                    continue;
+                }
+                calculators[i] = calculatorFactory.apply(windows.get(i));
+            }
+            action.accept(calculators[i]);
+        }
+    }
+
+    // binary search for the last window starting at or before the position (-1 if none)
+    private int lastStartingAtOrBefore(final int position) {
+        int low = 0;
+        int high = starts.length;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (starts[mid] <= position) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low - 1;
+    }
+
+    /**
+     * Outputs the windows which are completed before the position, in order.
+     *
+     * <p>Output stops at the first window which is not completed, to keep the output sorted.
+     *
+     * @param position start of the next read.
+     */
+    public void flushUpTo(final int position) {
+        while (firstActive < calculators.length) {
+            final ProperStatWindowCalculator calculator = calculators[firstActive];
+            final boolean completed = (calculator == null)
+                    ? windows.get(firstActive).getEnd() < position
+                    : calculator.isCompletedBefore(position);
+            if (!completed) {
+                return;
+            }
+            outputFirstActive();
+        }
+    }
+
+    /** Outputs all the remaining windows. */
+    public void flushAll() {
+        while (firstActive < calculators.length) {
+            outputFirstActive();
+        }
+    }
+
+    // outputs the first active window and releases the calculator
+    private void outputFirstActive() {
+        final ProperStatWindowCalculator calculator = calculators[firstActive];
+        calculators[firstActive] = null;
+        if (calculator != null) {
+            output.accept(calculator);
+        } else if (outputEmpty) {
+            output.accept(calculatorFactory.apply(windows.get(firstActive)));
+        }
+        firstActive++;
+    }
+}
@@ -0,0 +1,475 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.magicdgs.readtools.utils.read.stats.engine;
+
+import org.magicdgs.readtools.utils.read.stats.IntPairEndReadStatFunction;
+import org.magicdgs.readtools.utils.read.stats.PairEndReadStatFunction;
+
+import htsjdk.samtools.util.CloserUtil;
+import htsjdk.samtools.util.RuntimeIOException;
+import org.broadinstitute.hellbender.utils.Utils;
+import org.broadinstitute.hellbender.utils.io.IOUtils;
+import org.broadinstitute.hellbender.utils.read.GATKRead;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.IntPredicate;
+
+/**
+ * Table for the first read of pairs waiting for the mate, shared by all the windows.
+ *
+ * <p>Pairs are keyed by a 64-bit hash of the read name in an open-addressing table, and the
+ * intermediate values of each {@link PairEndReadStatFunction} are stored in one slot array per
+ * function (computed only once, independently of the number of windows). Values for
+ * {@link IntPairEndReadStatFunction} are stored and merged in {@code int} slots, without boxing.
+ *
+ * <p>When the number of pending pairs reaches the maximum in memory, the pairs whose mate
+ * cannot be found anymore are discarded and the ones with the farthest mate start are spilled to
+ * a temporary file. Spilled pairs are loaded back when {@link #advanceTo(int)} reaches the
+ * mate start. Spilling requires serializable intermediate values.
+ *
+ * <p>Reads should be added in coordinate-sorted order, and the table should be cleared at the
+ * end of each contig.
+ *
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+final class PendingMateTable implements Closeable {
+
+    // initial capacity for the table (power of 2)
+    private static final int INITIAL_CAPACITY = 1 << 10;
+    // empty key in the table
+    private static final long EMPTY = 0;
+
+    private final PairEndReadStatFunction[] pairStats;
+    // primitive functions (null if the function is not primitive)
+    private final IntPairEndReadStatFunction[] intPairStats;
+    private final int maxPendingInRam;
+
+    // open-addressing table (linear probing)
+    private long[] keys;
+    private int[] mateStarts;
+    // intermediate values for each function (first index) and entry (second index)
+    // only one of them is not null for each function, depending if it is primitive
+    private Object[][] slots;
+    private int[][] intSlots;
+    private int size = 0;
+
+    // current position of the reads
+    private int position = 0;
+    // spilled runs, sorted by mate start
+    private final List<SpillRun> runs = new ArrayList<>();
+    // re-used for the merged values
+    private final PairValues resolved;
+
+    /**
+     * Constructor.
+     *
+     * @param pairStats       pair-end statistics to compute.
+     * @param maxPendingInRam maximum number of pending pairs in memory before spilling to disk.
+     */
+    PendingMateTable(final List<PairEndReadStatFunction> pairStats, final int maxPendingInRam) {
+        Utils.nonNull(pairStats);
+        Utils.validateArg(maxPendingInRam > 0, "maxPendingInRam should be positive");
+        this.pairStats = pairStats.toArray(new PairEndReadStatFunction[pairStats.size()]);
+        this.intPairStats = new IntPairEndReadStatFunction[this.pairStats.length];
+        for (int i = 0; i < this.pairStats.length; i++) {
+            if (this.pairStats[i] instanceof IntPairEndReadStatFunction) {
+                intPairStats[i] = (IntPairEndReadStatFunction) this.pairStats[i];
+            }
+        }
+        this.resolved = new PairValues(this.pairStats.length);
+        this.maxPendingInRam = maxPendingInRam;
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Computes a 64-bit hash (FNV-1a) of the read name.
+     *
+     * <p>Note: collisions are not checked. The probability of a collision between the pairs
+     * pending at the same time is negligible.
+     */
+    static long hashName(final String name) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < name.length(); i++) {
+            hash ^= name.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return (hash == EMPTY) ? 1 : hash;
+    }
+
+    /** Gets the number of pending pairs (in memory and spilled). */
+    public long size() {
+        return size + runs.stream().mapToLong(r -> r.remaining).sum();
+    }
+
+    /** Returns {@code true} if there are no pending pairs; {@code false} otherwise. */
+    public boolean isEmpty() {
+        return size == 0 && runs.isEmpty();
+    }
+
+    /**
+     * Sets the start position of the next read(s), loading the spilled pairs with the mate
+     * starting at or before it.
+     *
+     * @param position start of the next read.
+     */
+    public void advanceTo(final int position) {
+        this.position = position;
+        final Iterator<SpillRun> it = runs.iterator();
+        while (it.hasNext()) {
+            final SpillRun run = it.next();
+            while (run.remaining != 0 && run.nextMateStart <= position) {
+                run.open();
+                final int index = insert(run.nextKey, run.nextMateStart);
+                for (int i = 0; i < pairStats.length; i++) {
+                    if (intPairStats[i] != null) {
+                        intSlots[i][index] = run.readInt();
+                    } else {
+                        slots[i][index] = run.readValue();
+                    }
+                }
+                run.next();
+            }
+            if (run.remaining == 0) {
+                run.close();
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Adds the first read of a pair, computing its intermediate values.
+     *
+     * @param read the first read of the pair.
+     */
+    @SuppressWarnings("unchecked")
+    public void add(final GATKRead read) {
+        if (size >= maxPendingInRam) {
+            spill();
+        }
+        final int index = insert(hashName(read.getName()), read.getMateStart());
+        for (int i = 0; i < pairStats.length; i++) {
+            if (intPairStats[i] != null) {
+                intSlots[i][index] = intPairStats[i].computeIntermediateFirstInt(read);
+            } else {
+                slots[i][index] = pairStats[i].computeIntermediateFirst(read);
+            }
+        }
+    }
+
+    /**
+     * Removes the pending pair for the second read, and merges the intermediate values.
+     *
+     * <p>Note: the returned object is re-used by the table, so the values should be consumed
+     * before the next call.
+     *
+     * @param read the second read of the pair.
+     * @return the merged values for each function; {@code null} if there is no pending pair.
+     */
+    @SuppressWarnings("unchecked")
+    public PairValues resolve(final GATKRead read) {
+        final int index = indexOf(hashName(read.getName()));
+        if (index < 0) {
+            return null;
+        }
+        for (int i = 0; i < pairStats.length; i++) {
+            if (intPairStats[i] != null) {
+                resolved.intValues[i] = intPairStats[i].mergePairValuesInt(intSlots[i][index],
+                        intPairStats[i].computeIntermediateSecondInt(read));
+            } else {
+                resolved.values[i] = pairStats[i].mergePairValues(slots[i][index],
+                        pairStats[i].computeIntermediateSecond(read));
+            }
+        }
+        removeAt(index);
+        return resolved;
+    }
+
+    /** Removes all the pending pairs, including the spilled ones. */
+    public void clear() {
+        allocate(INITIAL_CAPACITY);
+        size = 0;
+        runs.forEach(SpillRun::close);
+        runs.clear();
+    }
+
+    @Override
+    public void close() {
+        clear();
+    }
+
+    private void allocate(final int capacity) {
+        keys = new long[capacity];
+        mateStarts = new int[capacity];
+        slots = new Object[pairStats.length][];
+        intSlots = new int[pairStats.length][];
+        for (int i = 0; i < pairStats.length; i++) {
+            if (intPairStats[i] != null) {
+                intSlots[i] = new int[capacity];
+            } else {
+                slots[i] = new Object[capacity];
+            }
+        }
+    }
+
+    // home index for the key (mixing the bits, because the mask takes only the lower ones)
+    private int home(final long key) {
+        return (int) ((key ^ (key >>> 32)) * 0x9E3779B97F4A7C15L >>> 32) & (keys.length - 1);
+    }
+
+    // index of the key; negative if it is not present
+    private int indexOf(final long key) {
+        final int mask = keys.length - 1;
+        for (int i = home(key); keys[i] != EMPTY; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // inserts (or replaces) the key, returning the index for the slots
+    private int insert(final long key, final int mateStart) {
+        if (2 * (size + 1) > keys.length) {
+            rebuild(keys.length << 1, i -> true);
+        }
+        final int mask = keys.length - 1;
+        int i = home(key);
+        while (keys[i] != EMPTY && keys[i] != key) {
+            i = (i + 1) & mask;
+        }
+        if (keys[i] == EMPTY) {
+            keys[i] = key;
+            size++;
+        }
+        mateStarts[i] = mateStart;
+        return i;
+    }
+
+    // removes the entry shifting back the next ones in the probe sequence
+    private void removeAt(final int index) {
+        final int mask = keys.length - 1;
+        int empty = index;
+        int next = index;
+        while (true) {
+            next = (next + 1) & mask;
+            if (keys[next] == EMPTY) {
+                break;
+            }
+            final int home = home(keys[next]);
+            // the entry can be moved if its home is not cyclically in (index, next]
+            final boolean inRange = (empty <= next)
+                    ? (empty < home && home <= next)
+                    : (empty < home || home <= next);
+            if (!inRange) {
+                moveEntry(next, empty);
+                empty = next;
+            }
+        }
+        keys[empty] = EMPTY;
+        for (final Object[] slot : slots) {
+            if (slot != null) {
+                slot[empty] = null;
+            }
+        }
+        size--;
+    }
+
+    private void moveEntry(final int from, final int to) {
+        keys[to] = keys[from];
+        mateStarts[to] = mateStarts[from];
+        for (int i = 0; i < pairStats.length; i++) {
+            if (intPairStats[i] != null) {
+                intSlots[i][to] = intSlots[i][from];
+            } else {
+                slots[i][to] = slots[i][from];
+            }
+        }
+    }
+
+    // re-hash the entries to keep (tested with the old index) in a new table
+    private void rebuild(final int capacity, final IntPredicate keep) {
+        final long[] oldKeys = keys;
+        final int[] oldMateStarts = mateStarts;
+        final Object[][] oldSlots = slots;
+        final int[][] oldIntSlots = intSlots;
+        allocate(capacity);
+        size = 0;
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldKeys[j] != EMPTY && keep.test(j)) {
+                final int index = insert(oldKeys[j], oldMateStarts[j]);
+                for (int i = 0; i < pairStats.length; i++) {
+                    if (intPairStats[i] != null) {
+                        intSlots[i][index] = oldIntSlots[i][j];
+                    } else {
+                        slots[i][index] = oldSlots[i][j];
+                    }
+                }
+            }
+        }
+    }
+
+    // discards the pairs which cannot be completed and spills the ones with farthest mate start
+    private void spill() {
+        final int[] currentMateStarts = mateStarts;
+        rebuild(keys.length, i -> currentMateStarts[i] >= position);
+        final int toSpill = size - maxPendingInRam / 2;
+        if (toSpill <= 0) {
+            return;
+        }
+        // sort by mate start using the index in the lower bits
+        final long[] sorted = new long[size];
+        int n = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != EMPTY) {
+                sorted[n++] = ((long) mateStarts[i] << 32) | i;
+            }
+        }
+        Arrays.sort(sorted);
+
+        final boolean[] spilled = new boolean[keys.length];
+        final File file = IOUtils.createTempFile("pendingMates", ".tmp");
+        try (final ObjectOutputStream out = new ObjectOutputStream(
+                new BufferedOutputStream(new FileOutputStream(file)))) {
+            for (int j = sorted.length - toSpill; j < sorted.length; j++) {
+                final int index = (int) sorted[j];
+                out.writeLong(keys[index]);
+                out.writeInt(mateStarts[index]);
+                for (int i = 0; i < pairStats.length; i++) {
+                    if (intPairStats[i] != null) {
+                        out.writeInt(intSlots[i][index]);
+                    } else {
+                        out.writeObject(slots[i][index]);
+                    }
+                }
+                spilled[index] = true;
+            }
+        } catch (final IOException e) {
+            throw new RuntimeIOException("Unable to spill pending mates to " + file, e);
+        }
+        rebuild(keys.length, i -> !spilled[i]);
+        runs.add(new SpillRun(file, toSpill, (int) (sorted[sorted.length - toSpill] >>> 32)));
+    }
+
+    /**
+     * Merged values for a pair, for each function.
+     *
+     * <p>Only one of the arrays is populated for each function, depending if it is an
+     * {@link IntPairEndReadStatFunction}.
+     */
+    static final class PairValues {
+        final Object[] values;
+        final int[] intValues;
+
+        private PairValues(final int numberOfFunctions) {
+            this.values = new Object[numberOfFunctions];
+            this.intValues = new int[numberOfFunctions];
+        }
+    }
+
+    /**
+     * Spilled pairs, read sequentially by mate start.
+     *
+     * <p>The file is opened only when the first mate start is reached, to do not keep open files
+     * for all the runs.
+     */
+    private static final class SpillRun implements Closeable {
+        private final File file;
+        private ObjectInputStream in = null;
+        private int remaining;
+        private long nextKey;
+        private int nextMateStart;
+
+        private SpillRun(final File file, final int count, final int firstMateStart) {
+            this.file = file;
+            this.remaining = count;
+            this.nextMateStart = firstMateStart;
+        }
+
+        // opens the file (if needed) and reads the first pair
+        private void open() {
+            if (in == null) {
+                try {
+                    in = new ObjectInputStream(
+                            new BufferedInputStream(new FileInputStream(file)));
+                } catch (final IOException e) {
+                    throw new RuntimeIOException("Unable to read pending mates from " + file, e);
+                }
+                readHeader();
+            }
+        }
+
+        // reads the key and the mate start of the next pair
+        private void readHeader() {
+            try {
+                nextKey = in.readLong();
+                nextMateStart = in.readInt();
+            } catch (final IOException e) {
+                throw new RuntimeIOException("Unable to read pending mates from " + file, e);
+            }
+        }
+
+        private int readInt() {
+            try {
+                return in.readInt();
+            } catch (final IOException e) {
+                throw new RuntimeIOException("Unable to read pending mates from " + file, e);
+            }
+        }
+
+        private Object readValue() {
+            try {
+                return in.readObject();
+            } catch (final IOException | ClassNotFoundException e) {
+                throw new RuntimeIOException("Unable to read pending mates from " + file, e);
+            }
+        }
+
+        // moves to the next pair, after reading the values of the current one
+        private void next() {
+            if (--remaining != 0) {
+                readHeader();
+            }
+        }
+
+        @Override
+        public void close() {
+            CloserUtil.close(in);
+            file.delete();
+        }
+    }
+}
@@ -24,6 +24,8 @@
 
 package org.magicdgs.readtools.utils.read.stats.engine;
 
+import org.magicdgs.readtools.utils.read.stats.IntPairEndReadStatFunction;
+import org.magicdgs.readtools.utils.read.stats.IntSingleReadStatFunction;
 import org.magicdgs.readtools.utils.read.stats.PairEndReadStatFunction;
 import org.magicdgs.readtools.utils.read.stats.SingleReadStatFunction;
 import org.magicdgs.readtools.utils.read.stats.StatFunction;
@@ -37,10 +39,7 @@ import org.broadinstitute.hellbender.utils.read.GATKRead;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
-import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Objects;
 
 /**
@@ -60,6 +59,13 @@ import java.util.Objects;
  * <p>Computation for both single and pair statistics are only triggered for "proper pairs". In the
  * case of {@link PairEndReadStatFunction}, pairs with "missing" reads are not considered.
  *
+ * <p>Statistics implementing {@link IntSingleReadStatFunction} or
+ * {@link IntPairEndReadStatFunction} are accumulated in-place in {@code int} slots, without boxing.
+ *
+ * <p>When the calculator is used standalone, pairs waiting for the mate are kept in its own
+ * {@link PendingMateTable}. {@link ProperStatWindowEngine} shares a single table between all the
+ * windows instead, and updates the calculator with the package-private methods.
+ *
  * @author Daniel Gomez-Sanchez (magicDGS)
  */
 final class ProperStatWindowCalculator implements Locatable {
@@ -79,14 +85,17 @@ final class ProperStatWindowCalculator implements Locatable {
     // store the interval data
     private final SimpleInterval window;
 
-    // store the current results (pairs)
-    private final Map<PairEndReadStatFunction, Object> pairEndResult;
-    // store the current results (single)
-    private final Map<SingleReadStatFunction, Object> singleResult;
+    // statistics to compute
+    private final List<SingleReadStatFunction> singleStats;
+    private final List<PairEndReadStatFunction> pairStats;
 
-    // TODO: performance improvements related with the cache (https://github.com/magicDGS/ReadTools/issues/451)
-    // stores a cache of hash for the first added read and list of temporary stats
-    private final Map<ProperReadHash, Map<PairEndReadStatFunction, Object>> firstCache = new HashMap<>();
+    // store the current results for each statistic (in int slots for primitive statistics)
+    private final Object[] singleResults;
+    private final int[] singleIntResults;
+    private final Object[] pairResults;
+    private final int[] pairIntResults;
+    // pending mates if the calculator is used standalone (lazily initialized)
+    private PendingMateTable pendingMates = null;
 
     // cached column names
     private final List<String> columnNames;
@@ -94,6 +103,12 @@ final class ProperStatWindowCalculator implements Locatable {
     private int total = 0;
     // total proper-pair reads
     private int proper = 0;
+    // reads in the window without the mate added
+    private int missing = 0;
+    // pairs added to the pair-end statistics
+    private int pairs = 0;
+    // last mate start of the cached pairs (used to know if the window is completed)
+    private int lastCachedMateStart = 0;
 
     /**
      * Constructor for a window calculator with default column names.
@@ -141,16 +156,13 @@ final class ProperStatWindowCalculator implements Locatable {
                         .size(),
                 () -> "invalid number of columns");
 
-        // initialize maps
-        this.singleResult = initResultMap(singleStats);
-        this.pairEndResult = initResultMap(pairStats);
-    }
-
-    // initialize the result map
-    private static <T> Map<T, Object> initResultMap(final List<T> list) {
-        final Map<T, Object> result = new LinkedHashMap<>(list.size());
-        list.forEach(s -> result.put(s, null));
-        return result;
+        // initialize results
+        this.singleStats = singleStats;
+        this.pairStats = pairStats;
+        this.singleResults = new Object[singleStats.size()];
+        this.singleIntResults = new int[singleStats.size()];
+        this.pairResults = new Object[pairStats.size()];
+        this.pairIntResults = new int[pairStats.size()];
     }
 
     /**
@@ -201,7 +213,7 @@ final class ProperStatWindowCalculator implements Locatable {
      * @return {@code true} if there are cached pairs; {@code false} otherwise.
      */
     public boolean hasCachedPairs() {
-        return !firstCache.isEmpty();
+        return missing != 0 || (pendingMates != null && !pendingMates.isEmpty());
     }
 
     /**
@@ -212,7 +224,21 @@ final class ProperStatWindowCalculator implements Locatable {
      * @return number of missing reads.
      */
     public long getMissing() {
-        return firstCache.keySet().stream().filter(hash -> hash.isInWin).count();
+        return missing;
+    }
+
+    /**
+     * Checks if the window is completed before the provided position.
+     *
+     * <p>A window is completed if no coordinate-sorted read starting at or after the position can
+     * change its statistics: the window ends before the position and none of the cached pairs
+     * have the mate starting at or after it.
+     *
+     * @param position the start position of the next read.
+     * @return {@code true} if the window is completed; {@code false} otherwise.
+     */
+    public boolean isCompletedBefore(final int position) {
+        return getEnd() < position && lastCachedMateStart < position;
     }
 
     /**
@@ -259,19 +285,23 @@ final class ProperStatWindowCalculator implements Locatable {
             addSingleRead(read, isProper);
         }
 
-        // TODO: maybe check first if there is any pair-end stat to check (performance improvement - https://github.com/magicDGS/ReadTools/issues/451)
         // only if it is proper and in the window or if it is cached
-        if (isProper && (isInWin || startOverlaps(read.getMateContig(), read.getMateStart()))) {
-            // compute the readKey and check if there is a cached value
-            final ProperReadHash readKey = new ProperReadHash(read, isInWin);
-            final Map<PairEndReadStatFunction, Object> cacheValues = firstCache.remove(readKey);
-
-            if (cacheValues == null) {
-                // if not present, add to cache
-                addToCache(readKey, read);
+        final boolean isMateInWin = isProper && startOverlaps(read.getMateContig(), read.getMateStart());
+        if (isProper && (isInWin || isMateInWin)) {
+            if (pendingMates == null) {
+                // standalone calculators keep all the pending mates in memory
+                pendingMates = new PendingMateTable(pairStats, Integer.MAX_VALUE);
+            }
+            final PendingMateTable.PairValues pairValues = pendingMates.resolve(read);
+            if (pairValues == null) {
+                // if not present, add to the pending mates
+                pendingMates.add(read);
+                if (isInWin) {
+                    addPendingMate(read.getMateStart());
+                }
             } else {
-                // otherwise, compute from cache
-                computeFromCache(cacheValues, read);
+                // otherwise, compute from the pending mate
+                addPairValues(pairValues, isMateInWin);
             }
         }
     }
@@ -285,48 +315,61 @@ final class ProperStatWindowCalculator implements Locatable {
      * @param isProper pre-computed proper status.
      */
     @SuppressWarnings("unchecked")
-    private void addSingleRead(final GATKRead read, final boolean isProper) {
+    void addSingleRead(final GATKRead read, final boolean isProper) {
         // update the total count of reads
         total++;
         if (isProper) {
             proper++;
-            for (final SingleReadStatFunction func : singleResult.keySet()) {
-                singleResult.compute(func, (f, v) -> f.reduce(f.compute(read), v));
+            for (int i = 0; i < singleStats.size(); i++) {
+                final SingleReadStatFunction func = singleStats.get(i);
+                if (func instanceof IntSingleReadStatFunction) {
+                    final IntSingleReadStatFunction intFunc = (IntSingleReadStatFunction) func;
+                    final int value = intFunc.computeInt(read);
+                    // the accumulator starts with the first value
+                    singleIntResults[i] = (proper == 1)
+                            ? value : intFunc.reduceInt(value, singleIntResults[i]);
+                } else {
+                    singleResults[i] = func.reduce(func.compute(read), singleResults[i]);
+                }
             }
         }
     }
 
     /**
-     * Adds to the cache the intermediate values for the first read.
+     * Adds a proper read in the window whose mate is not added yet (missing until it is added).
      *
-     * @param readKey pre-computed read hash.
-     * @param read    alignment to add to the cache.
+     * <p>Note: the read should be already added with {@link #addSingleRead(GATKRead, boolean)}.
+     *
+     * @param mateStart start position of the mate; if it is before the read, the mate would
+     *                  never be added.
      */
-    private void addToCache(final ProperReadHash readKey, final GATKRead read) {
-        final Map<PairEndReadStatFunction, Object> cache = new HashMap<>(pairEndResult.size());
-        for (final PairEndReadStatFunction f : pairEndResult.keySet()) {
-            cache.put(f, f.computeIntermediateFirst(read));
-        }
-        firstCache.put(readKey, cache);
+    void addPendingMate(final int mateStart) {
+        missing++;
+        lastCachedMateStart = Math.max(lastCachedMateStart, mateStart);
     }
 
     /**
-     * Computes the final result for the pair using the cache values, and reduce it for the final
-     * results.
+     * Reduces the merged values of a pair into the final results.
      *
-     * @param cacheValues cache values for the pair.
-     * @param read        the second read added for the pair.
+     * @param pairValues   merged values for each pair-end statistic.
+     * @param pendingInWin {@code true} if the first read of the pair was pending in this window.
      */
     @SuppressWarnings("unchecked")
-    private void computeFromCache(final Map<PairEndReadStatFunction, Object> cacheValues,
-            final GATKRead read) {
-        // compute the new value for each cache entry
-        for (final Map.Entry<PairEndReadStatFunction, Object> cache : cacheValues.entrySet()) {
-            final Object current = cache.getKey().mergePairValues(
-                    cache.getValue(),
-                    cache.getKey().computeIntermediateSecond(read));
-
-            pairEndResult.compute(cache.getKey(), (func, prev) -> func.reduce(current, prev));
+    void addPairValues(final PendingMateTable.PairValues pairValues, final boolean pendingInWin) {
+        if (pendingInWin) {
+            missing--;
+        }
+        pairs++;
+        for (int i = 0; i < pairStats.size(); i++) {
+            final PairEndReadStatFunction func = pairStats.get(i);
+            if (func instanceof IntPairEndReadStatFunction) {
+                final int value = pairValues.intValues[i];
+                // the accumulator starts with the first value
+                pairIntResults[i] = (pairs == 1) ? value
+                        : ((IntPairEndReadStatFunction) func).reduceInt(value, pairIntResults[i]);
+            } else {
+                pairResults[i] = func.reduce(pairValues.values[i], pairResults[i]);
+            }
         }
     }
 
@@ -341,7 +384,7 @@ final class ProperStatWindowCalculator implements Locatable {
      *
      * @return {@code true} if it is part of a "proper pair"; {@code false} otherwise.
      */
-    private static boolean mappedPairSameContig(final GATKRead read) {
+    static boolean mappedPairSameContig(final GATKRead read) {
         // the unmapped check is important to do not have NPE
         return !read.isUnmapped() &&
                 read.isPaired() &&
@@ -384,8 +427,8 @@ final class ProperStatWindowCalculator implements Locatable {
         values.add(String.valueOf(getMissing()));
 
         // now, add all the values from the windows
-        addFormatted(singleResult, values);
-        addFormatted(pairEndResult, values);
+        addFormatted(singleStats, singleResults, singleIntResults, proper != 0, values);
+        addFormatted(pairStats, pairResults, pairIntResults, pairs != 0, values);
 
         return new TableFeature(window, values, columnNames);
     }
@@ -393,14 +436,24 @@ final class ProperStatWindowCalculator implements Locatable {
     /**
      * Formats the results as a String and add to a container of results.
      *
-     * @param results   results to format.
-     * @param formatted container of formatted results.
+     * @param stats      statistics to format.
+     * @param results    results to format (non-primitive statistics).
+     * @param intResults results to format (primitive statistics).
+     * @param hasValues  {@code true} if the primitive results have values; {@code false} otherwise.
+     * @param formatted  container of formatted results.
      */
     @SuppressWarnings("unchecked")
-    private static void addFormatted(final Map<? extends StatFunction, Object> results,
+    private static void addFormatted(final List<? extends StatFunction> stats,
+            final Object[] results, final int[] intResults, final boolean hasValues,
             final List<String> formatted) {
-        results.entrySet().stream().map(e -> e.getKey().tableResultFormat(e.getValue()))
-                .forEach(formatted::add);
+        for (int i = 0; i < stats.size(); i++) {
+            final StatFunction func = stats.get(i);
+            if (func instanceof IntSingleReadStatFunction || func instanceof IntPairEndReadStatFunction) {
+                formatted.add(func.tableResultFormat(hasValues ? intResults[i] : null));
+            } else {
+                formatted.add(func.tableResultFormat(results[i]));
+            }
+        }
     }
 
     /**
@@ -415,30 +468,4 @@ final class ProperStatWindowCalculator implements Locatable {
         // for debug purposes only!
         return String.format("%s@%s%s", this.getClass().getSimpleName(), window, columnNames);
     }
-
-    // helper class to store proper reads hash information
-    // the hashCode is computed only once on construction
-    private static class ProperReadHash {
-        private final String name;
-        private final int hashCode;
-        // true if this hash comes from a read that was on the window; false otherwise
-        // this is important to mark reads as missing (only if they are in the window)
-        private final boolean isInWin;
-
-        private ProperReadHash(final GATKRead read, final boolean isInWin) {
-            this.name = read.getName();
-            this.hashCode = this.name.hashCode();
-            this.isInWin = isInWin;
-        }
-
-        @Override
-        public boolean equals(final Object obj) {
-            return (obj instanceof ProperReadHash) && name.equals(((ProperReadHash) obj).name);
-        }
-
-        @Override
-        public int hashCode() {
-            return hashCode;
-        }
-    }
 }
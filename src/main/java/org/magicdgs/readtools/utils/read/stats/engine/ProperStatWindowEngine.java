@@ -29,6 +29,7 @@ import org.magicdgs.readtools.utils.read.stats.SingleReadStatFunction;
 import org.magicdgs.readtools.utils.read.stats.StatFunction;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.io.ByteStreams;
 import htsjdk.samtools.SAMSequenceDictionary;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -38,18 +39,22 @@ import org.broadinstitute.hellbender.utils.Utils;
 import org.broadinstitute.hellbender.utils.codecs.table.TableFeature;
 import org.broadinstitute.hellbender.utils.read.GATKRead;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.Closeable;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.PrintStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * Engine to compute several {@link StatFunction} over the provided window(s).
@@ -66,6 +71,12 @@ import java.util.TreeMap;
  * <p>If these assumptions are not met, windows are output without all the data and statistics
  * would be incorrect and unpredictable.
  *
+ * <p>Windows are indexed per contig (see {@link ContigWindowIndex}), and only the ones overlapping
+ * the read or its mate start are visited. Windows upstream of the read are output as soon as
+ * they are completed (without pending mates), instead of waiting for the end of the contig.
+ * Pairs waiting for the mate are stored once for all the windows (see {@link PendingMateTable}),
+ * spilling to disk if there are more than the provided maximum in memory.
+ *
  * @author Daniel Gomez-Sanchez (magicDGS)
  */
 public class ProperStatWindowEngine implements Closeable {
@@ -73,11 +84,15 @@ public class ProperStatWindowEngine implements Closeable {
     // TODO: use the TableFeature constant (requires https://github.com/broadinstitute/gatk/issues/4842)
     protected static final String HEADER_DELIMITER = "HEADER";
 
+    /** Default maximum number of pairs waiting for the mate to keep in memory. */
+    public static final int DEFAULT_MAX_PENDING_MATES_IN_RAM = 1_000_000;
+
     private final Logger logger = LogManager.getLogger(this.getClass());
 
-    // list with all output windows
-    // TODO: possible performance improvements - use IntervalsSkipList (https://github.com/magicDGS/ReadTools/issues/458)
-    private final SortedMap<String, List<ProperStatWindowCalculator>> windowsPerContig;
+    // index of the windows for each contig
+    private final SortedMap<String, ContigWindowIndex> windowsPerContig;
+    // pairs waiting for the mate in the current contig
+    private final PendingMateTable pendingMates;
 
     // cache column names
     private final List<String> columnNames;
@@ -97,6 +112,8 @@ public class ProperStatWindowEngine implements Closeable {
      * @param output      output file to populate the results.
      * @param printAll    if {@code false}, windows with 0 reads will be discarded; otherwise,
      *                    they will be populated.
+     * @param maxPendingMatesInRam maximum number of pairs waiting for the mate to keep in memory
+     *                             before spilling to disk.
      *
      * @throws IOException if an I/O error occurs while opening the output.
      */
@@ -105,8 +122,10 @@ public class ProperStatWindowEngine implements Closeable {
             final List<SingleReadStatFunction> singleStats,
             final List<PairEndReadStatFunction> pairStats,
             final Path output,
-            final boolean printAll) throws IOException {
-        this(dict, intervals, singleStats, pairStats, Files.newOutputStream(output), printAll);
+            final boolean printAll,
+            final int maxPendingMatesInRam) throws IOException {
+        this(dict, intervals, singleStats, pairStats, Files.newOutputStream(output), printAll,
+                maxPendingMatesInRam);
     }
 
     /**
@@ -121,6 +140,8 @@ public class ProperStatWindowEngine implements Closeable {
      * @param stream      stream for the output.
      * @param printAll    if {@code false}, windows with 0 reads will be discarded; otherwise,
      *                    they will be populated.
+     * @param maxPendingMatesInRam maximum number of pairs waiting for the mate to keep in memory
+     *                             before spilling to disk.
      */
     @VisibleForTesting
     ProperStatWindowEngine(final SAMSequenceDictionary dict,
@@ -128,7 +149,8 @@ public class ProperStatWindowEngine implements Closeable {
             final List<SingleReadStatFunction> singleStats,
             final List<PairEndReadStatFunction> pairStats,
             final OutputStream stream,
-            final boolean printAll) {
+            final boolean printAll,
+            final int maxPendingMatesInRam) {
         Utils.nonNull(intervals);
         Utils.nonNull(singleStats);
         Utils.nonNull(pairStats);
@@ -138,22 +160,23 @@ public class ProperStatWindowEngine implements Closeable {
         this.columnNames =
                 ProperStatWindowCalculator.createColumnNames(singleStats, pairStats);
 
-        // create the TreeMap with sorting order using the dictionary
-        this.windowsPerContig = new TreeMap<>(Comparator.comparingInt(dict::getSequenceIndex));
-        intervals.stream()
-                .map(i -> new ProperStatWindowCalculator(i, singleStats, pairStats, columnNames))
-                .forEach(swc -> windowsPerContig.compute(swc.getContig(), (k, v) -> {
-                    if (v == null) {
-                        v = new ArrayList<>();
-                    }
-                    v.add(swc);
-                    return v;
-                }));
-
         // create the writer and write first the header
         this.writer = new PrintStream(stream);
         this.printAll = printAll;
         writeHeader();
+
+        this.pendingMates = new PendingMateTable(pairStats, maxPendingMatesInRam);
+
+        // create the TreeMap with sorting order using the dictionary
+        this.windowsPerContig = new TreeMap<>(Comparator.comparingInt(dict::getSequenceIndex));
+        final Map<String, List<SimpleInterval>> intervalsPerContig = intervals.stream()
+                .collect(Collectors.groupingBy(SimpleInterval::getContig));
+        // calculators are created lazily by the index
+        final Function<SimpleInterval, ProperStatWindowCalculator> calculatorFactory =
+                i -> new ProperStatWindowCalculator(i, singleStats, pairStats, columnNames);
+        intervalsPerContig.forEach((contig, windows) -> windowsPerContig.put(contig,
+                new ContigWindowIndex(windows, pendingMates, calculatorFactory,
+                        this::maybeWriteWindow, printAll)));
     }
 
     /**
@@ -171,48 +194,50 @@ public class ProperStatWindowEngine implements Closeable {
      * @param read the read to be added.
      */
     public void addRead(final GATKRead read) {
-        final List<ProperStatWindowCalculator> wins = flushUpToRead(read);
-        for (final ProperStatWindowCalculator w : wins) {
-            // TODO: possible performance improvements - break the loop for downstream windows (https://github.com/magicDGS/ReadTools/issues/458)
-            w.addRead(read);
+        // unmapped reads are never included in a window (and they do not have a contig)
+        if (read.isUnmapped()) {
+            return;
+        }
+        final ContigWindowIndex index = flushUpToRead(read);
+        if (index != null) {
+            index.addRead(read);
         }
     }
 
     /**
-     * Flushes the queue of windows up to the provided read.
+     * Flushes the contigs up to the provided read.
      *
-     * @param read next read to be added.
+     * @param read next (mapped) read to be added.
      *
-     * @return windows overlapping with the read.
+     * @return index for the windows in the read contig; {@code null} if there are no windows.
      */
-    private List<ProperStatWindowCalculator> flushUpToRead(final GATKRead read) {
+    private ContigWindowIndex flushUpToRead(final GATKRead read) {
         // edge case where the windows are already finalized
         if (windowsPerContig.isEmpty()) {
-            return Collections.emptyList();
+            return null;
         }
 
         // store the first key
         String firstKey = windowsPerContig.firstKey();
-        // only if the read is mapped, otherwise does not have a contig
-        if (!read.isUnmapped()) {
-            logger.debug("Flush up to {} ({} contigs)", read::toString, windowsPerContig::size);
-            final String readContig = read.getContig();
-            // remove the contigs that are before the current read
-            while (windowsPerContig.comparator().compare(firstKey, readContig) < 0) {
-                logger.debug("Output contig {}", firstKey);
-                windowsPerContig.remove(firstKey).forEach(this::maybeWriteWindow);
-                if (windowsPerContig.isEmpty()) {
-                    // early termination in this case
-                    logger.debug("No contigs are left after {}", readContig);
-                    return Collections.emptyList();
-                }
-                firstKey = windowsPerContig.firstKey();
+        logger.debug("Flush up to {} ({} contigs)", read::toString, windowsPerContig::size);
+        final String readContig = read.getContig();
+        // remove the contigs that are before the current read
+        while (windowsPerContig.comparator().compare(firstKey, readContig) < 0) {
+            logger.debug("Output contig {}", firstKey);
+            windowsPerContig.remove(firstKey).flushAll();
+            // mates are always in the same contig
+            pendingMates.clear();
+            if (windowsPerContig.isEmpty()) {
+                // early termination in this case
+                logger.debug("No contigs are left after {}", readContig);
+                return null;
             }
-            logger.debug("After flush {} contigs remain", windowsPerContig::size);
+            firstKey = windowsPerContig.firstKey();
         }
+        logger.debug("After flush {} contigs remain", windowsPerContig::size);
 
-        // TODO: possible performance improvements - flush the upstream windows (https://github.com/magicDGS/ReadTools/issues/458)
-        return windowsPerContig.get(firstKey);
+        // the upstream windows are flushed by the index when the read is added
+        return firstKey.equals(readContig) ? windowsPerContig.get(firstKey) : null;
     }
 
     /**
@@ -251,6 +276,40 @@ public class ProperStatWindowEngine implements Closeable {
         writer.println(feature.toString());
     }
 
+    /**
+     * Merges the outputs of several engines (e.g., computed independently for each contig) into
+     * a single output, keeping only the header of the first one.
+     *
+     * <p>Note: the outputs should be provided in the order of the windows (e.g., sequence
+     * dictionary order for engines over different contigs) and share the same statistics.
+     *
+     * @param outputs engine outputs to merge, in order.
+     * @param merged  output file for the merged results.
+     *
+     * @throws IOException if an I/O error occurs.
+     */
+    public static void mergeOutputs(final List<Path> outputs, final Path merged)
+            throws IOException {
+        Utils.nonEmpty(outputs, "outputs should be provided");
+        Utils.nonNull(merged);
+        try (final OutputStream out = new BufferedOutputStream(Files.newOutputStream(merged))) {
+            boolean first = true;
+            for (final Path output : outputs) {
+                try (final InputStream in = new BufferedInputStream(Files.newInputStream(output))) {
+                    if (!first) {
+                        // skip the header line
+                        int b;
+                        while ((b = in.read()) != -1 && b != '\n') {
+                            // consume the header
+                        }
+                    }
+                    ByteStreams.copy(in, out);
+                }
+                first = false;
+            }
+        }
+    }
+
     /**
      * Closes the engine, including the underlying writer.
      *
@@ -262,7 +321,8 @@ public class ProperStatWindowEngine implements Closeable {
     public void close() throws IOException {
         // write all the remaining windows
         logger.debug("Output last {} contigs", windowsPerContig::size);
-        windowsPerContig.forEach((key, value) -> value.forEach(this::maybeWriteWindow));
+        windowsPerContig.values().forEach(ContigWindowIndex::flushAll);
+        pendingMates.close();
         // finally, close the writer
         logger.debug("Clear windows");
         windowsPerContig.clear();
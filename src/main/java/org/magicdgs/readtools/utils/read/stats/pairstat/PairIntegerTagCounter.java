@@ -25,8 +25,7 @@
 package org.magicdgs.readtools.utils.read.stats.pairstat;
 
 import org.magicdgs.readtools.utils.math.RelationalOperator;
-import org.magicdgs.readtools.utils.read.stats.PairEndReadStatFunction;
-import org.magicdgs.readtools.utils.read.stats.StatFunctionUtils;
+import org.magicdgs.readtools.utils.read.stats.IntPairEndReadStatFunction;
 
 import org.broadinstitute.barclay.argparser.Argument;
 import org.broadinstitute.hellbender.utils.Utils;
@@ -42,7 +41,7 @@ import org.broadinstitute.hellbender.utils.read.ReadUtils;
  * @author Daniel Gomez-Sanchez (magicDGS)
  */
 // TODO: add group for this and documented feature once is a plugin (https://github.com/magicDGS/ReadTools/issues/448)
-public class PairIntegerTagCounter implements PairEndReadStatFunction<Integer, Boolean> {
+public class PairIntegerTagCounter implements IntPairEndReadStatFunction {
 
     public static final String TAG_ARG_NAME = "count-pair-int-tag";
     public static final String TAG_ARG_DESCRIPTION = "Integer SAM tag to count for pairs";
@@ -101,19 +100,19 @@ public class PairIntegerTagCounter implements PairEndReadStatFunction<Integer, B
     }
 
     @Override
-    public Boolean computeIntermediateFirst(final GATKRead read) {
+    public int computeIntermediateFirstInt(final GATKRead read) {
         // null values never met the threshold
         final Integer val = read.getAttributeAsInteger(tag);
-        return val != null && op.test(val, threshold);
+        return (val != null && op.test(val, threshold)) ? 1 : 0;
     }
 
     @Override
-    public Integer mergePairValues(final Boolean first, final Boolean second) {
-        return (first && second) ? 1 : 0;
+    public int mergePairValuesInt(final int first, final int second) {
+        return first & second;
     }
 
     @Override
-    public Integer reduce(final Integer current, final Integer accumulator) {
-        return StatFunctionUtils.sumReduce(current, accumulator);
+    public int reduceInt(final int current, final int accumulator) {
+        return current + accumulator;
     }
 }
@@ -32,6 +32,7 @@ import org.broadinstitute.hellbender.utils.Utils;
 import org.broadinstitute.hellbender.utils.read.GATKRead;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -44,7 +45,7 @@ import java.util.stream.Collectors;
  * @author Daniel Gomez-Sanchez (magicDGS)
  */
 // TODO: add group for this and documented feature once is a plugin (https://github.com/magicDGS/ReadTools/issues/448)
-public class PairIntegerTagListCounter implements PairEndReadStatFunction<List<Integer>, List<Boolean>> {
+public class PairIntegerTagListCounter implements PairEndReadStatFunction<List<Integer>, int[]> {
 
     public static final String TAG_ARG_NAME = PairIntegerTagCounter.TAG_ARG_NAME + "-list";
     public static final String OP_ARG_NAME = PairIntegerTagCounter.OP_ARG_NAME + "-list";
@@ -123,17 +124,31 @@ public class PairIntegerTagListCounter implements PairEndReadStatFunction<List<I
                 .collect(Collectors.joining("\t"));
     }
 
+    /**
+     * Gets the counters for each tag-operation-threshold.
+     *
+     * <p>Note: the counters can be used separately to compute the values without boxing.
+     *
+     * @return the initialized counters.
+     */
+    public List<PairIntegerTagCounter> getCounters() {
+        return Collections.unmodifiableList(counters);
+    }
+
     @Override
-    public List<Boolean> computeIntermediateFirst(final GATKRead read) {
-        return counters.stream().map(c -> c.computeIntermediateFirst(read))
-                .collect(Collectors.toList());
+    public int[] computeIntermediateFirst(final GATKRead read) {
+        final int[] res = new int[counters.size()];
+        for (int i = 0; i < res.length; i++) {
+            res[i] = counters.get(i).computeIntermediateFirstInt(read);
+        }
+        return res;
     }
 
     @Override
-    public List<Integer> mergePairValues(final List<Boolean> first, final List<Boolean> second) {
+    public List<Integer> mergePairValues(final int[] first, final int[] second) {
         final List<Integer> res = new ArrayList<>(counters.size());
         for (int i = 0; i < counters.size(); i++) {
-            res.add(counters.get(i).mergePairValues(first.get(i), second.get(i)));
+            res.add(counters.get(i).mergePairValuesInt(first[i], second[i]));
         }
         return res;
     }
@@ -24,9 +24,9 @@
 
 package org.magicdgs.readtools.utils.read.stats.singlestat;
 
-import org.magicdgs.readtools.utils.read.stats.SingleReadStatFunction;
-import org.magicdgs.readtools.utils.read.stats.StatFunctionUtils;
+import org.magicdgs.readtools.utils.read.stats.IntSingleReadStatFunction;
 
+import htsjdk.samtools.CigarElement;
 import htsjdk.samtools.CigarOperator;
 import org.broadinstitute.hellbender.utils.read.GATKRead;
 
@@ -36,7 +36,7 @@ import org.broadinstitute.hellbender.utils.read.GATKRead;
  * @author Daniel Gomez-Sanchez (magicDGS)
  */
 // TODO: add group for this and documented feature once is a plugin (https://github.com/magicDGS/ReadTools/issues/448)
-public class ContainSoftclipCounter implements SingleReadStatFunction<Integer> {
+public class ContainSoftclipCounter implements IntSingleReadStatFunction {
 
     @Override
     public String getStatName() {
@@ -44,13 +44,17 @@ public class ContainSoftclipCounter implements SingleReadStatFunction<Integer> {
     }
 
     @Override
-    public Integer compute(final GATKRead read) {
-        return read.getCigarElements().stream().anyMatch(s -> s.getOperator() == CigarOperator.S)
-                ? 1 : 0;
+    public int computeInt(final GATKRead read) {
+        for (final CigarElement element : read.getCigarElements()) {
+            if (element.getOperator() == CigarOperator.S) {
+                return 1;
+            }
+        }
+        return 0;
     }
 
     @Override
-    public Integer reduce(Integer current, Integer accumulator) {
-        return StatFunctionUtils.sumReduce(current, accumulator);
+    public int reduceInt(final int current, final int accumulator) {
+        return current + accumulator;
     }
 }
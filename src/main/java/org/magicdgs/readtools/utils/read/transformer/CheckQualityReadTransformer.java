@@ -28,44 +28,68 @@ import org.magicdgs.readtools.RTDefaults;
 
 import com.google.common.annotations.VisibleForTesting;
 import org.broadinstitute.hellbender.exceptions.UserException;
-import org.broadinstitute.hellbender.transformers.ReadTransformer;
 import org.broadinstitute.hellbender.utils.QualityUtils;
 import org.broadinstitute.hellbender.utils.read.GATKRead;
 
-import java.util.concurrent.atomic.AtomicInteger;
-
 /**
  * Checks for and errors out when it detects reads with base qualities that are not encoded with
  * PHRED-scaled quality scores, each {@link RTDefaults#SAMPLING_QUALITY_CHECKING_FREQUENCY}.
  *
+ * <p>The sampling counter is kept per-thread, to avoid contention in case of concurrent usage
+ * of this transformer.
+ *
  * Note: this is adapted from the GATK3 not back-ported behaviour of
  * {@link org.broadinstitute.hellbender.transformers.MisencodedBaseQualityReadTransformer}.
  *
  * @author Daniel Gomez-Sanchez (magicDGS)
  */
-public class CheckQualityReadTransformer implements ReadTransformer {
+public class CheckQualityReadTransformer extends QualityLookupTableReadTransformer {
     private static final long serialVersionUID = 1L;
 
     // sample 1 read each this number of reads
     private static final int SAMPLING_FREQUENCY = RTDefaults.SAMPLING_QUALITY_CHECKING_FREQUENCY;
 
-    // atomic integer in case of concurrent usage of this transformer
-    @VisibleForTesting
-    protected AtomicInteger currentReadCounter = new AtomicInteger(0);
+    // identity table, with too high qualities marked as invalid
+    private static final byte[] CHECK_TABLE = buildTable(qual ->
+            (qual > QualityUtils.MAX_REASONABLE_Q_SCORE) ? INVALID_QUALITY : qual);
+
+    // per-thread counter (initialized lazily, because it is not serializable)
+    // concurrent initialization is harmless: it only resets the sampling
+    private transient ThreadLocal<int[]> currentReadCounter = null;
+
+    /** Default constructor. */
+    public CheckQualityReadTransformer() {
+        super(CHECK_TABLE);
+    }
 
     @Override
     public GATKRead apply(GATKRead read) {
         // sample reads randomly for checking
-        if (currentReadCounter.incrementAndGet() >= SAMPLING_FREQUENCY) {
-            currentReadCounter.set(0);
+        final int[] counter = getCurrentReadCounter();
+        if (++counter[0] >= SAMPLING_FREQUENCY) {
+            counter[0] = 0;
             // we only check base qualities, so it is safe not to copy the base qualities
-            for (final byte qual : read.getBaseQualitiesNoCopy()) {
-                if (qual > QualityUtils.MAX_REASONABLE_Q_SCORE) {
-                    throw new UserException.MisencodedQualityScoresRead(read,
-                            "we encountered an extremely high quality score of " + (int) qual);
-                }
+            final byte[] quals = read.getBaseQualitiesNoCopy();
+            final int invalid = firstInvalid(quals);
+            if (invalid != -1) {
+                throw new UserException.MisencodedQualityScoresRead(read,
+                        "we encountered an extremely high quality score of " + (int) quals[invalid]);
             }
         }
         return read;
     }
+
+    // gets the counter for the current thread
+    private int[] getCurrentReadCounter() {
+        if (currentReadCounter == null) {
+            currentReadCounter = ThreadLocal.withInitial(() -> new int[1]);
+        }
+        return currentReadCounter.get();
+    }
+
+    /** Sets the sampling counter for the current thread. */
+    @VisibleForTesting
+    void setCurrentReadCounter(final int value) {
+        getCurrentReadCounter()[0] = value;
+    }
 }
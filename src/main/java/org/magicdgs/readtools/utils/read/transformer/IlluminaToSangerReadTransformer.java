@@ -0,0 +1,66 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.magicdgs.readtools.utils.read.transformer;
+
+import org.broadinstitute.hellbender.exceptions.UserException;
+import org.broadinstitute.hellbender.utils.read.GATKRead;
+
+/**
+ * Transformer that change the read encoding from Illumina (Phred+64) to Standard PHRED score. If
+ * the quality is incorrectly formatted, it will throw an error.
+ *
+ * <p>The conversion is precomputed for every possible quality, and applied in place.
+ *
+ * Note: this is equivalent to
+ * {@link org.broadinstitute.hellbender.transformers.MisencodedBaseQualityReadTransformer}.
+ *
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+public final class IlluminaToSangerReadTransformer extends QualityLookupTableReadTransformer {
+    private static final long serialVersionUID = 1L;
+
+    // difference between Illumina (64) and Standard (33) encoding
+    private static final int ILLUMINA_ENCODING_FIX_VALUE = 31;
+
+    // the conversion table: qualities lower than the difference are not Illumina-encoded
+    private final static byte[] ILLUMINA_TO_SANGER_TABLE = buildTable(qual ->
+            (qual > Byte.MAX_VALUE) ? INVALID_QUALITY : qual - ILLUMINA_ENCODING_FIX_VALUE);
+
+    /** Default constructor. */
+    public IlluminaToSangerReadTransformer() {
+        super(ILLUMINA_TO_SANGER_TABLE);
+    }
+
+    @Override
+    public GATKRead apply(final GATKRead read) {
+        // transform them in place
+        if (!translate(read.getBaseQualitiesNoCopy())) {
+            throw new UserException.BadInput(
+                    "while fixing mis-encoded base qualities we encountered a read that was correctly encoded; we cannot handle such a mixture of reads so unfortunately the input must be fixed with some other tool.");
+        }
+        return read;
+    }
+}
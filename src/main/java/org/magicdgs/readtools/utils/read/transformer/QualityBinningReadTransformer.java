@@ -0,0 +1,157 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.magicdgs.readtools.utils.read.transformer;
+
+import org.magicdgs.readtools.metrics.QualityBinningMetric;
+
+import htsjdk.samtools.SAMUtils;
+import org.broadinstitute.hellbender.utils.Utils;
+import org.broadinstitute.hellbender.utils.read.GATKRead;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Transformer that bins the base qualities, to reduce the size of the compressed outputs.
+ *
+ * <p>Bins are defined by their lower bound, and qualities are binned to the value of the bin with
+ * the highest lower bound lower or equal to them. Qualities lower than the first bound are not
+ * modified. The binning is precomputed for every possible quality, and applied in place.
+ *
+ * <p>The qualities before binning are counted to compute statistics (see
+ * {@link #getMetric()}).
+ *
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+public final class QualityBinningReadTransformer extends QualityLookupTableReadTransformer {
+    private static final long serialVersionUID = 1L;
+
+    /** Illumina 8-level binning (lower bound and binned quality); no-calls are not modified. */
+    public static final SortedMap<Integer, Integer> ILLUMINA_8_LEVEL_BINS;
+
+    static {
+        final SortedMap<Integer, Integer> bins = new TreeMap<>();
+        bins.put(2, 6);
+        bins.put(10, 15);
+        bins.put(20, 22);
+        bins.put(25, 27);
+        bins.put(30, 33);
+        bins.put(35, 37);
+        bins.put(40, 40);
+        ILLUMINA_8_LEVEL_BINS = Collections.unmodifiableSortedMap(bins);
+    }
+
+    private final SortedMap<Integer, Integer> bins;
+    // counts for each quality before binning
+    private final long[] counts = new long[256];
+
+    /**
+     * Constructor.
+     *
+     * @param bins lower bound of each bin and the binned quality (in the range [0, 93]).
+     */
+    public QualityBinningReadTransformer(final SortedMap<Integer, Integer> bins) {
+        super(buildBinningTable(bins));
+        this.bins = new TreeMap<>(bins);
+    }
+
+    // validates the bins and builds the table
+    private static byte[] buildBinningTable(final SortedMap<Integer, Integer> bins) {
+        Utils.nonNull(bins, "null bins");
+        Utils.validateArg(!bins.isEmpty(), "empty bins");
+        bins.forEach((bound, qual) ->
+                Utils.validateArg(isValidQuality(bound) && isValidQuality(qual),
+                        () -> "invalid bin: " + bound + ":" + qual));
+        final TreeMap<Integer, Integer> tree = new TreeMap<>(bins);
+        return buildTable(qual -> {
+            final Map.Entry<Integer, Integer> bin = tree.floorEntry(qual);
+            return (bin == null) ? qual : bin.getValue();
+        });
+    }
+
+    /** Returns {@code true} if the quality could be used in a bin; {@code false} otherwise. */
+    public static boolean isValidQuality(final Integer qual) {
+        return qual != null && qual >= 0 && qual <= SAMUtils.MAX_PHRED_SCORE;
+    }
+
+    @Override
+    public GATKRead apply(final GATKRead read) {
+        // all the qualities are valid for binning
+        translate(read.getBaseQualitiesNoCopy(), counts);
+        return read;
+    }
+
+    /** Gets the bins as a String (lower bound and binned quality separated by colon). */
+    public String getBinsString() {
+        return bins.entrySet().stream()
+                .map(bin -> bin.getKey() + ":" + bin.getValue())
+                .collect(Collectors.joining(","));
+    }
+
+    /** Gets the statistics for the qualities binned until now. */
+    public QualityBinningMetric getMetric() {
+        final QualityBinningMetric metric = new QualityBinningMetric(getBinsString());
+        final long[] binnedCounts = new long[counts.length];
+        for (int i = 0; i < counts.length; i++) {
+            metric.BASES += counts[i];
+            binnedCounts[getTranslation(i) & 0xFF] += counts[i];
+        }
+        metric.DISTINCT_QUALITIES_BEFORE = distinct(counts);
+        metric.DISTINCT_QUALITIES_AFTER = distinct(binnedCounts);
+        metric.ENTROPY_BEFORE = entropy(counts, metric.BASES);
+        metric.ENTROPY_AFTER = entropy(binnedCounts, metric.BASES);
+        if (metric.ENTROPY_AFTER != 0) {
+            metric.ESTIMATED_COMPRESSION_GAIN = metric.ENTROPY_BEFORE / metric.ENTROPY_AFTER;
+        }
+        return metric;
+    }
+
+    // number of non-zero counts
+    private static int distinct(final long[] counts) {
+        int distinct = 0;
+        for (final long count : counts) {
+            if (count != 0) {
+                distinct++;
+            }
+        }
+        return distinct;
+    }
+
+    // shannon entropy (in bits) of the counts
+    private static double entropy(final long[] counts, final long total) {
+        double entropy = 0;
+        for (final long count : counts) {
+            if (count != 0) {
+                final double p = (double) count / total;
+                entropy -= p * Math.log(p) / Math.log(2);
+            }
+        }
+        return entropy;
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.magicdgs.readtools.utils.read.transformer;
+
+import org.broadinstitute.hellbender.transformers.ReadTransformer;
+
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Base class for transformers that normalize or check the base qualities using a precomputed
+ * 256-entry translation table, indexed by the unsigned value of the quality.
+ *
+ * <p>Invalid qualities are marked in the table with a negative value, and they are detected in
+ * the same loop as the translation.
+ *
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+public abstract class QualityLookupTableReadTransformer implements ReadTransformer {
+    private static final long serialVersionUID = 1L;
+
+    /** Value for invalid qualities in the table. */
+    protected static final byte INVALID_QUALITY = -1;
+
+    /** Number of entries in the table. */
+    private static final int TABLE_SIZE = 256;
+
+    // table for translation/checking
+    private final byte[] table;
+
+    /**
+     * Constructor.
+     *
+     * @param table translation table with 256 entries (see {@link #buildTable(IntUnaryOperator)}).
+     */
+    protected QualityLookupTableReadTransformer(final byte[] table) {
+        this.table = table;
+    }
+
+    /**
+     * Builds a translation table.
+     *
+     * @param translation function from the unsigned quality to the translated one; should return
+     *                    a negative value for invalid qualities.
+     *
+     * @return translation table.
+     */
+    protected static byte[] buildTable(final IntUnaryOperator translation) {
+        final byte[] table = new byte[TABLE_SIZE];
+        for (int i = 0; i < TABLE_SIZE; i++) {
+            final int translated = translation.applyAsInt(i);
+            table[i] = (translated < 0) ? INVALID_QUALITY : (byte) translated;
+        }
+        return table;
+    }
+
+    /**
+     * Translates the qualities in place.
+     *
+     * <p>Note: invalid qualities are overwritten with {@link #INVALID_QUALITY}.
+     *
+     * @param quals qualities to translate.
+     *
+     * @return {@code true} if all the qualities are valid; {@code false} otherwise.
+     */
+    protected final boolean translate(final byte[] quals) {
+        int invalid = 0;
+        for (int i = 0; i < quals.length; i++) {
+            final byte translated = table[quals[i] & 0xFF];
+            invalid |= translated;
+            quals[i] = translated;
+        }
+        return invalid >= 0;
+    }
+
+    /**
+     * Translates the qualities in place, counting the qualities before translation.
+     *
+     * <p>Note: invalid qualities are overwritten with {@link #INVALID_QUALITY}.
+     *
+     * @param quals  qualities to translate.
+     * @param counts array with 256 entries to increment for each quality (as unsigned value).
+     *
+     * @return {@code true} if all the qualities are valid; {@code false} otherwise.
+     */
+    protected final boolean translate(final byte[] quals, final long[] counts) {
+        int invalid = 0;
+        for (int i = 0; i < quals.length; i++) {
+            final int index = quals[i] & 0xFF;
+            counts[index]++;
+            final byte translated = table[index];
+            invalid |= translated;
+            quals[i] = translated;
+        }
+        return invalid >= 0;
+    }
+
+    /** Gets the translation of a quality (as unsigned value). */
+    protected final byte getTranslation(final int qual) {
+        return table[qual];
+    }
+
+    /**
+     * Checks the qualities without translating them.
+     *
+     * @param quals qualities to check.
+     *
+     * @return the index of the first invalid quality; -1 if all of them are valid.
+     */
+    protected final int firstInvalid(final byte[] quals) {
+        int invalid = 0;
+        for (final byte qual : quals) {
+            invalid |= table[qual & 0xFF];
+        }
+        if (invalid >= 0) {
+            return -1;
+        }
+        // only in the error case
+        for (int i = 0; i < quals.length; i++) {
+            if (table[quals[i] & 0xFF] < 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -27,53 +27,50 @@ package org.magicdgs.readtools.utils.read.transformer;
 import htsjdk.samtools.SAMUtils;
 import htsjdk.samtools.util.SolexaQualityConverter;
 import org.broadinstitute.hellbender.exceptions.UserException;
-import org.broadinstitute.hellbender.transformers.ReadTransformer;
 import org.broadinstitute.hellbender.utils.read.GATKRead;
 
 /**
  * Transformer that change the read encoding from Solexa to Standard PHRED score. If the quality is
  * incorrectly formatted, it will throw an error.
  *
+ * <p>The conversion is precomputed for every possible quality, and applied in place.
+ *
  * @author Daniel Gomez-Sanchez (magicDGS)
  */
-public final class SolexaToSangerReadTransformer implements ReadTransformer {
-
-    // the quality converter
-    private final static SolexaQualityConverter SOLEXA_QUALITY_CONVERTER =
-            SolexaQualityConverter.getSingleton();
+public final class SolexaToSangerReadTransformer extends QualityLookupTableReadTransformer {
+    private static final long serialVersionUID = 1L;
 
     // this is the value of the minimum quality in Solexa possible before conversion (';')
     // this is necessary because the quality converter transform lower qualities to '!'
     // and cannot be catch as an exception
     private final static byte MIN_SOLEXA_BEFORE_CONVERSION = 26;
 
-    @Override
-    public GATKRead apply(final GATKRead read) {
-        // get the qualities
-        final byte[] quals = read.getBaseQualities();
+    // the conversion table
+    private final static byte[] SOLEXA_TO_SANGER_TABLE = buildTable(qual -> {
+        if (qual < MIN_SOLEXA_BEFORE_CONVERSION || qual > SAMUtils.MAX_PHRED_SCORE) {
+            return INVALID_QUALITY;
+        }
         try {
-            // transform them in place
-            for (int i = 0; i < quals.length; ++i) {
-                if (quals[i] < MIN_SOLEXA_BEFORE_CONVERSION) {
-                    // throw an exception if they are misencoded
-                    throwException();
-                }
-                // convert to Solexa
-                quals[i] = SOLEXA_QUALITY_CONVERTER
-                        .solexaCharToPhredBinary((byte) SAMUtils.phredToFastq(quals[i]));
-            }
+            return SolexaQualityConverter.getSingleton()
+                    .solexaCharToPhredBinary((byte) SAMUtils.phredToFastq(qual));
         } catch (IndexOutOfBoundsException e) {
             // if there is an index exception, that means that the qualities are not correctly encoded
-            throwException();
+            return INVALID_QUALITY;
         }
-        // set the base qualities
-        read.setBaseQualities(quals);
-        return read;
+    });
+
+    /** Default constructor. */
+    public SolexaToSangerReadTransformer() {
+        super(SOLEXA_TO_SANGER_TABLE);
     }
 
-    // throws the exception for Solexa mis-encoded qualities
-    private static void throwException() {
-        throw new UserException.BadInput(
-                "while converting Solexa base qualities we encountered a read that was correctly encoded; we cannot handle such a mixture of reads so unfortunately the input must be fixed with some other tool.");
+    @Override
+    public GATKRead apply(final GATKRead read) {
+        // transform them in place
+        if (!translate(read.getBaseQualitiesNoCopy())) {
+            throw new UserException.BadInput(
+                    "while converting Solexa base qualities we encountered a read that was correctly encoded; we cannot handle such a mixture of reads so unfortunately the input must be fixed with some other tool.");
+        }
+        return read;
     }
 }
@@ -0,0 +1,160 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.magicdgs.readtools.utils.read.transformer.trimming;
+
+import org.magicdgs.readtools.RTHelpConstants;
+import org.magicdgs.readtools.utils.trimming.AdapterMatcher;
+
+import org.broadinstitute.barclay.argparser.Argument;
+import org.broadinstitute.barclay.argparser.CommandLineException;
+import org.broadinstitute.barclay.help.DocumentedFeature;
+import org.broadinstitute.hellbender.utils.read.GATKRead;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Trims adapter sequences in the 3 prime of the read, allowing mismatches and indels. Partial
+ * adapters at the end of the read are also trimmed.
+ *
+ * <p>If several adapters are provided, the read is trimmed at the left-most adapter found.
+ *
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ * @ReadTools.note Ns in the adapter sequence match any base.
+ * @see AdapterMatcher
+ */
+@DocumentedFeature(groupName = RTHelpConstants.DOC_CAT_TRIMMERS, groupSummary = RTHelpConstants.DOC_CAT_TRIMMERS_SUMMARY, summary = "Trims adapter sequences in the 3 prime of the read.")
+public final class AdapterTrimmer extends TrimmingFunction {
+    private static final long serialVersionUID = 1L;
+
+    /** Default adapter sequence (common prefix of Illumina TruSeq adapters). */
+    public static final String DEFAULT_ADAPTER = "AGATCGGAAGAGC";
+
+    private static final String ADAPTER_LONG_NAME = "adapterSequence";
+    private static final String ADAPTER_SHORT_NAME = "adapter";
+    private static final String ERROR_RATE_LONG_NAME = "adapterMaxErrorRate";
+    private static final String ERROR_RATE_SHORT_NAME = "adapterErrorRate";
+    private static final String MIN_OVERLAP_LONG_NAME = "adapterMinOverlap";
+    private static final String MIN_OVERLAP_SHORT_NAME = "adapterOverlap";
+
+    @Argument(fullName = ADAPTER_LONG_NAME, shortName = ADAPTER_SHORT_NAME, doc = "Adapter sequence to trim in the 3 prime of the read (up to 64 bases).", optional = true)
+    public List<String> adapterSequences = new ArrayList<>(Collections.singletonList(DEFAULT_ADAPTER));
+
+    @Argument(fullName = ERROR_RATE_LONG_NAME, shortName = ERROR_RATE_SHORT_NAME, doc = "Maximum number of errors (mismatches and indels), relative to the length of the matched adapter.", optional = true)
+    public double maxErrorRate = 0.1;
+
+    @Argument(fullName = MIN_OVERLAP_LONG_NAME, shortName = MIN_OVERLAP_SHORT_NAME, doc = "Minimum number of bases of a partial adapter at the end of the read to be trimmed.", optional = true)
+    public int minOverlap = 3;
+
+    // initialized on the first use, because arguments are set after construction
+    private transient AdapterMatcher[] matchers = null;
+
+    /** Constructor with default values. */
+    public AdapterTrimmer() { }
+
+    /**
+     * Constructor.
+     *
+     * @param adapterSequences adapters to trim.
+     * @param maxErrorRate     maximum error rate, relative to the length of the matched adapter.
+     * @param minOverlap       minimum length of partial adapters at the end of the read.
+     */
+    public AdapterTrimmer(final List<String> adapterSequences, final double maxErrorRate,
+            final int minOverlap) {
+        this.adapterSequences = new ArrayList<>(adapterSequences);
+        this.maxErrorRate = maxErrorRate;
+        this.minOverlap = minOverlap;
+
+        // validate args
+        try {
+            validateArgsUnsafe();
+        } catch (CommandLineException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see AdapterMatcher#findAdapterStart(byte[])
+     */
+    @Override
+    protected void fillTrimPoints(final GATKRead read, final int[] toFill) {
+        if (matchers == null) {
+            matchers = adapterSequences.stream()
+                    .map(adapter -> new AdapterMatcher(adapter, maxErrorRate, minOverlap))
+                    .toArray(AdapterMatcher[]::new);
+        }
+        // this should be safe, because the bases are not modified in the method
+        final byte[] bases = read.getBasesNoCopy();
+        int end = bases.length;
+        for (final AdapterMatcher matcher : matchers) {
+            end = Math.min(end, matcher.findAdapterStart(bases));
+        }
+        toFill[1] = end;
+    }
+
+    /**
+     * Validates the arguments.
+     *
+     * <p>The arguments are invalid if:
+     *
+     * <ul>
+     * <li>No adapter sequence is provided.</li>
+     * <li>Adapters are longer than {@link AdapterMatcher#MAX_ADAPTER_LENGTH} or contain other
+     * bases than A, C, G, T or N.</li>
+     * <li>The maximum error rate is not in the range [0, 1).</li>
+     * <li>The minimum overlap is not a positive integer.</li>
+     * </ul>
+     *
+     * @throws CommandLineException.BadArgumentValue if the argument is invalid.
+     */
+    @Override
+    public void validateArgsUnsafe() {
+        if (adapterSequences == null || adapterSequences.isEmpty()) {
+            throw new CommandLineException.BadArgumentValue("--" + ADAPTER_LONG_NAME,
+                    String.valueOf(adapterSequences), "At least one adapter should be provided");
+        }
+        for (final String adapter : adapterSequences) {
+            if (adapter == null || adapter.isEmpty()
+                    || adapter.length() > AdapterMatcher.MAX_ADAPTER_LENGTH
+                    || !adapter.matches("[ACGTNacgtn]+")) {
+                throw new CommandLineException.BadArgumentValue("--" + ADAPTER_LONG_NAME,
+                        adapter, "Should contain between 1 and "
+                        + AdapterMatcher.MAX_ADAPTER_LENGTH + " bases (A, C, G, T or N)");
+            }
+        }
+        if (maxErrorRate < 0 || maxErrorRate >= 1) {
+            throw new CommandLineException.BadArgumentValue("--" + ERROR_RATE_LONG_NAME,
+                    String.valueOf(maxErrorRate), "Should be in the range [0, 1)");
+        }
+        if (minOverlap < 1) {
+            throw new CommandLineException.BadArgumentValue("--" + MIN_OVERLAP_LONG_NAME,
+                    String.valueOf(minOverlap), "Should be a positive integer");
+        }
+    }
+}
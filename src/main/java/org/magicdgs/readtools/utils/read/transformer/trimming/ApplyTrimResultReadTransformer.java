@@ -76,7 +76,24 @@ public final class ApplyTrimResultReadTransformer implements ReadTransformer {
         final int start = RTReadUtils.getTrimmingStartPoint(read);
         final int end = RTReadUtils.getTrimmingEndPoint(read);
         RTReadUtils.clearTrimmingPointTags(read);
+        return applyTrimPoints(read, start, end);
+    }
 
+    /**
+     * Hard-clips ("cut") the read in-place to the provided trimming points, without checking or
+     * updating the trimming tags.
+     *
+     * @param read  the read to trim.
+     * @param start the first trimming point (inclusive).
+     * @param end   the last trimming point (exclusive).
+     *
+     * @return the same read object, trimmed as necessary.
+     */
+    public static GATKRead applyTrimPoints(final GATKRead read, final int start, final int end) {
+        if (start == 0 && end == read.getLength()) {
+            // nothing to trim
+            return read;
+        }
         if (read.isUnmapped()) {
             // it is safe to use the no-copy methods because we are doing a copy anyway
             final byte[] newBases = Arrays.copyOfRange(read.getBasesNoCopy(), start, end);
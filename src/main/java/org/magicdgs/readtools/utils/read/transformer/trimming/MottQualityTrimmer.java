@@ -63,14 +63,12 @@ public final class MottQualityTrimmer extends TrimmingFunction {
     /**
      * {@inheritDoc}
      *
-     * @see TrimmingUtil#trimPointsMott(byte[], int)
+     * @see TrimmingUtil#trimPointsMott(byte[], int, int[])
      */
     @Override
     protected void fillTrimPoints(final GATKRead read, final int[] toFill) {
         // it is safe not to use the defensive copy, because TrimmingUtil does not modify qualities
-        final int[] trimPoints = TrimmingUtil.trimPointsMott(read.getBaseQualitiesNoCopy(), qualThreshold);
-        toFill[0] = trimPoints[0];
-        toFill[1] = trimPoints[1];
+        TrimmingUtil.trimPointsMott(read.getBaseQualitiesNoCopy(), qualThreshold, toFill);
     }
 
     /** Throws if there the quality threshold is negative. */
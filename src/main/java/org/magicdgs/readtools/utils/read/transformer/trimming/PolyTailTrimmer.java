@@ -0,0 +1,173 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.magicdgs.readtools.utils.read.transformer.trimming;
+
+import org.magicdgs.readtools.RTHelpConstants;
+import org.magicdgs.readtools.utils.trimming.TrimmingUtil;
+
+import org.broadinstitute.barclay.argparser.Argument;
+import org.broadinstitute.barclay.argparser.CommandLineException;
+import org.broadinstitute.barclay.help.DocumentedFeature;
+import org.broadinstitute.hellbender.utils.read.GATKRead;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Trims homopolymer tails in the 3 prime of the read, allowing mismatches. The default removes
+ * poly-G tails, which are common in two-colour chemistry sequencers (e.g., NovaSeq/NextSeq) when
+ * the signal is lost.
+ *
+ * <p>If several bases are provided, the read is trimmed at the left-most tail found.
+ *
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ * @ReadTools.note Use X as homopolymer base for trimming tails of any base (poly-X).
+ * @see TrimmingUtil#trimPointPolyTail(byte[], byte, int, double)
+ */
+@DocumentedFeature(groupName = RTHelpConstants.DOC_CAT_TRIMMERS, groupSummary = RTHelpConstants.DOC_CAT_TRIMMERS_SUMMARY, summary = "Trims homopolymer tails (e.g., poly-G) in the 3 prime of the read.")
+public final class PolyTailTrimmer extends TrimmingFunction {
+    private static final long serialVersionUID = 1L;
+
+    /** Default homopolymer base (poly-G). */
+    public static final String DEFAULT_POLY_BASE = "G";
+
+    /** Homopolymer base representing any base (poly-X). */
+    public static final String ANY_POLY_BASE = "X";
+
+    private static final String POLY_BASE_LONG_NAME = "polyTailBase";
+    private static final String POLY_BASE_SHORT_NAME = "polyBase";
+    private static final String MIN_LENGTH_LONG_NAME = "polyTailMinLength";
+    private static final String MIN_LENGTH_SHORT_NAME = "polyMinLength";
+    private static final String MISMATCH_RATE_LONG_NAME = "polyTailMaxMismatchRate";
+    private static final String MISMATCH_RATE_SHORT_NAME = "polyMismatchRate";
+
+    // bases tried for poly-X
+    private static final byte[] ALL_BASES = new byte[] {'A', 'C', 'G', 'T'};
+
+    @Argument(fullName = POLY_BASE_LONG_NAME, shortName = POLY_BASE_SHORT_NAME, doc = "Base of the homopolymer tail to trim (A, C, G, T or X for any base).", optional = true)
+    public List<String> polyBases = new ArrayList<>(Collections.singletonList(DEFAULT_POLY_BASE));
+
+    @Argument(fullName = MIN_LENGTH_LONG_NAME, shortName = MIN_LENGTH_SHORT_NAME, doc = "Minimum length of the homopolymer tail to be trimmed.", optional = true)
+    public int minLength = 10;
+
+    @Argument(fullName = MISMATCH_RATE_LONG_NAME, shortName = MISMATCH_RATE_SHORT_NAME, doc = "Maximum rate of mismatches in the homopolymer tail (by default, one in every 8 bases).", optional = true)
+    public double maxMismatchRate = 0.125;
+
+    // initialized on the first use, because arguments are set after construction
+    private transient byte[] bases = null;
+
+    /** Constructor with default values. */
+    public PolyTailTrimmer() { }
+
+    /**
+     * Constructor.
+     *
+     * @param polyBases       bases of the homopolymer tails to trim.
+     * @param minLength       minimum length of the tail.
+     * @param maxMismatchRate maximum rate of mismatches in the tail.
+     */
+    public PolyTailTrimmer(final List<String> polyBases, final int minLength,
+            final double maxMismatchRate) {
+        this.polyBases = new ArrayList<>(polyBases);
+        this.minLength = minLength;
+        this.maxMismatchRate = maxMismatchRate;
+
+        // validate args
+        try {
+            validateArgsUnsafe();
+        } catch (CommandLineException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see TrimmingUtil#trimPointPolyTail(byte[], byte, int, double)
+     */
+    @Override
+    protected void fillTrimPoints(final GATKRead read, final int[] toFill) {
+        if (bases == null) {
+            bases = getBasesToTrim(polyBases);
+        }
+        // this should be safe, because the bases are not modified in the method
+        final byte[] readBases = read.getBasesNoCopy();
+        int end = readBases.length;
+        for (final byte base : bases) {
+            end = Math.min(end,
+                    TrimmingUtil.trimPointPolyTail(readBases, base, minLength, maxMismatchRate));
+        }
+        toFill[1] = end;
+    }
+
+    // helper function to get the bases to look for (all bases if poly-X is requested)
+    private static byte[] getBasesToTrim(final List<String> polyBases) {
+        if (polyBases.stream().anyMatch(ANY_POLY_BASE::equalsIgnoreCase)) {
+            return ALL_BASES;
+        }
+        final String distinct = polyBases.stream().map(String::toUpperCase).distinct()
+                .collect(Collectors.joining());
+        return distinct.getBytes();
+    }
+
+    /**
+     * Validates the arguments.
+     *
+     * <p>The arguments are invalid if:
+     *
+     * <ul>
+     * <li>No homopolymer base is provided.</li>
+     * <li>Homopolymer bases are not a single A, C, G, T or X.</li>
+     * <li>The minimum length is not a positive integer.</li>
+     * <li>The maximum mismatch rate is not in the range [0, 1).</li>
+     * </ul>
+     *
+     * @throws CommandLineException.BadArgumentValue if the argument is invalid.
+     */
+    @Override
+    public void validateArgsUnsafe() {
+        if (polyBases == null || polyBases.isEmpty()) {
+            throw new CommandLineException.BadArgumentValue("--" + POLY_BASE_LONG_NAME,
+                    String.valueOf(polyBases), "At least one base should be provided");
+        }
+        for (final String base : polyBases) {
+            if (base == null || !base.matches("[ACGTXacgtx]")) {
+                throw new CommandLineException.BadArgumentValue("--" + POLY_BASE_LONG_NAME,
+                        base, "Should be a single base (A, C, G, T) or X for any base");
+            }
+        }
+        if (minLength < 1) {
+            throw new CommandLineException.BadArgumentValue("--" + MIN_LENGTH_LONG_NAME,
+                    String.valueOf(minLength), "Should be a positive integer");
+        }
+        if (maxMismatchRate < 0 || maxMismatchRate >= 1) {
+            throw new CommandLineException.BadArgumentValue("--" + MISMATCH_RATE_LONG_NAME,
+                    String.valueOf(maxMismatchRate), "Should be in the range [0, 1)");
+        }
+    }
+}
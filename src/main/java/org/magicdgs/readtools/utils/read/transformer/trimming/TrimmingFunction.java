@@ -69,19 +69,42 @@ public abstract class TrimmingFunction implements ReadTransformer, Serializable
         setIllegalStateException(() -> "apply");
         // update the completely trim read flag and only apply if not completely trimmed
         if (!RTReadUtils.updateCompletelyTrimReadFlag(read)) {
-            // get the trimming points from the implementation -> initial values set to not trim
-            final int[] trimmingPoints = new int[] {0, Integer.MAX_VALUE};
-            fillTrimPoints(read, trimmingPoints);
+            final int[] trimmingPoints = new int[2];
+            computeTrimPoints(read, trimmingPoints);
             // update the trimming points
-            RTReadUtils.updateTrimmingPointTags(read,
-                    // use 0 because internally it conserves the right most position
-                    (disable5prime) ? 0 : trimmingPoints[0],
-                    // use the max value because internally there is a check for the length
-                    (disable3prime) ? Integer.MAX_VALUE : trimmingPoints[1]);
+            RTReadUtils.updateTrimmingPointTags(read, trimmingPoints[0], trimmingPoints[1]);
         }
         return read;
     }
 
+    /**
+     * Computes the trimming points for the read without updating the trimming tags. Disabled
+     * ends are filled with values that do not trim the read (0 for the 5 prime and
+     * {@link Integer#MAX_VALUE} for the 3 prime).
+     *
+     * <p>Note: this method does not check if the read is already trimmed, and it is intended to
+     * be used by pipelines that keep the trimming state outside of the read.
+     *
+     * @param read   the read to use for getting the trimming points. It is not modified.
+     * @param toFill array of length 2, to fill in with the trimming points.
+     */
+    public final void computeTrimPoints(final GATKRead read, final int[] toFill) {
+        // set the illegal state exception if not present
+        setIllegalStateException(() -> "computeTrimPoints");
+        // initial values set to not trim
+        toFill[0] = 0;
+        toFill[1] = Integer.MAX_VALUE;
+        fillTrimPoints(read, toFill);
+        if (disable5prime) {
+            // use 0 because internally it conserves the right most position
+            toFill[0] = 0;
+        }
+        if (disable3prime) {
+            // use the max value because internally there is a check for the length
+            toFill[1] = Integer.MAX_VALUE;
+        }
+    }
+
     /**
      * Check if it is safe to use {@link #setDisableEnds(boolean, boolean)}.
      *
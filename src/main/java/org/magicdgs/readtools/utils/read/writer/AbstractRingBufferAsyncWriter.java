@@ -0,0 +1,173 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.magicdgs.readtools.utils.read.writer;
+
+import htsjdk.samtools.util.AbstractAsyncWriter;
+import htsjdk.samtools.util.RuntimeIOException;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.broadinstitute.hellbender.exceptions.GATKException;
+
+import java.io.Closeable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Equivalent to HTSJDK {@link AbstractAsyncWriter}, but items are passed to the writing thread
+ * through a lock-free {@link SpscRingBuffer} instead of a blocking queue. Thus, items should be
+ * written from a single thread.
+ *
+ * <p>The number of stalls in the queue is logged on close: queue-full stalls indicate that the
+ * writer is the bottleneck, while queue-empty stalls indicate that the producer is.
+ *
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+public abstract class AbstractRingBufferAsyncWriter<T> implements Closeable {
+
+    private static final Logger logger = LogManager.getLogger(AbstractRingBufferAsyncWriter.class);
+
+    // counter for the thread names
+    private static final AtomicInteger THREADS_CREATED = new AtomicInteger(0);
+
+    private final SpscRingBuffer<T> buffer;
+    private final Thread writer;
+
+    // set after the last item is published
+    private volatile boolean producerDone = false;
+    // error in the writer thread
+    private volatile Throwable error = null;
+    private boolean closed = false;
+
+    /**
+     * Constructor.
+     *
+     * @param queueSize    minimum number of items that could be queued.
+     * @param waitStrategy strategy for waiting on a full/empty queue.
+     */
+    protected AbstractRingBufferAsyncWriter(final int queueSize,
+            final WaitStrategy waitStrategy) {
+        this.buffer = new SpscRingBuffer<>(queueSize, waitStrategy);
+        this.writer = new Thread(this::runWriter,
+                getThreadNamePrefix() + THREADS_CREATED.incrementAndGet());
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /** Returns the prefix for the writer thread name. */
+    protected abstract String getThreadNamePrefix();
+
+    /** Writes the item in the writer thread. */
+    protected abstract void synchronouslyWrite(final T item);
+
+    /** Closes the underlying writer after all the items are written. */
+    protected abstract void synchronouslyClose();
+
+    /**
+     * Queues the item for writing, waiting if the queue is full.
+     *
+     * @throws RuntimeIOException if the writer is closed.
+     */
+    public void write(final T item) {
+        if (closed) {
+            throw new RuntimeIOException("Attempt to add record to closed writer.");
+        }
+        checkAndRethrow();
+        if (!buffer.put(item, () -> error != null)) {
+            checkAndRethrow();
+        }
+    }
+
+    /** Writes all the queued items and closes the underlying writer. */
+    @Override
+    public void close() {
+        checkAndRethrow();
+        if (!closed) {
+            closed = true;
+            buffer.flush();
+            producerDone = true;
+            try {
+                writer.join();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new GATKException("Interrupted while waiting for " + writer.getName(), e);
+            }
+            logger.debug("{}: {} queue-full stalls, {} queue-empty stalls", writer::getName,
+                    buffer::getQueueFullStalls, buffer::getQueueEmptyStalls);
+            synchronouslyClose();
+            checkAndRethrow();
+        }
+    }
+
+    /**
+     * Gets the number of times that the producer waited for space in the queue (the writer is
+     * slower than the producer). Accurate only after {@link #close()}.
+     */
+    public long getQueueFullStalls() {
+        return buffer.getQueueFullStalls();
+    }
+
+    /**
+     * Gets the number of times that the writer waited for items in the queue (the producer is
+     * slower than the writer). Accurate only after {@link #close()}.
+     */
+    public long getQueueEmptyStalls() {
+        return buffer.getQueueEmptyStalls();
+    }
+
+    private void runWriter() {
+        try {
+            boolean waiting = false;
+            while (true) {
+                // read the flag before draining to do not miss the last published items
+                final boolean done = producerDone;
+                if (buffer.drain(this::synchronouslyWrite) != 0) {
+                    waiting = false;
+                } else if (done) {
+                    return;
+                } else {
+                    buffer.idleOnEmpty(!waiting);
+                    waiting = true;
+                }
+            }
+        } catch (final Throwable e) {
+            error = e;
+        }
+    }
+
+    // rethrows the error in the writer thread, and closes the writer
+    private void checkAndRethrow() {
+        final Throwable e = error;
+        if (e != null) {
+            error = null;
+            closed = true;
+            if (e instanceof Error) {
+                throw (Error) e;
+            } else if (e instanceof RuntimeException) {
+                throw (RuntimeException) e;
+            }
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.magicdgs.readtools.utils.read.writer;
+
+import org.broadinstitute.hellbender.exceptions.GATKException;
+import org.broadinstitute.hellbender.utils.Utils;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Executor with a fixed number of lanes, each of them served by its own thread. Tasks submitted
+ * to the same lane are run in submission order; tasks in different lanes run concurrently.
+ *
+ * <p>Each lane has a bounded queue: submitting to a full lane blocks the caller until there is
+ * space (back-pressure). If a task fails, the rest of the tasks are discarded and the error is
+ * re-thrown in the caller thread on the next {@link #submit(int, Runnable)} or on
+ * {@link #close()}.
+ *
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+public final class OrderedLanesExecutor implements AutoCloseable {
+
+    // signals the end of the tasks for a lane
+    private static final Runnable END_OF_LANE = () -> { };
+
+    private final Thread[] threads;
+    private final BlockingQueue<Runnable>[] queues;
+
+    // first error in any lane
+    private volatile Throwable error = null;
+    private boolean closed = false;
+
+    /**
+     * Constructor.
+     *
+     * @param name     name for the threads.
+     * @param lanes    number of lanes (threads).
+     * @param capacity maximum number of pending tasks per lane.
+     */
+    @SuppressWarnings("unchecked")
+    public OrderedLanesExecutor(final String name, final int lanes, final int capacity) {
+        Utils.nonNull(name, "null name");
+        Utils.validateArg(lanes > 0, () -> "lanes should be positive: " + lanes);
+        Utils.validateArg(capacity > 0, () -> "capacity should be positive: " + capacity);
+        this.threads = new Thread[lanes];
+        this.queues = new BlockingQueue[lanes];
+        for (int i = 0; i < lanes; i++) {
+            final BlockingQueue<Runnable> queue = new ArrayBlockingQueue<>(capacity);
+            queues[i] = queue;
+            threads[i] = new Thread(() -> runLane(queue), name + "-" + i);
+            threads[i].setDaemon(true);
+            threads[i].start();
+        }
+    }
+
+    /** Gets the number of lanes. */
+    public int getNumberOfLanes() {
+        return threads.length;
+    }
+
+    /** Gets the lane for a key, based on its hash code. */
+    public int getLane(final Object key) {
+        return Math.floorMod(key.hashCode(), threads.length);
+    }
+
+    /**
+     * Submits a task to a lane, blocking if the lane is full.
+     *
+     * @throws IllegalStateException if the executor is closed.
+     */
+    public void submit(final int lane, final Runnable task) {
+        Utils.nonNull(task, "null task");
+        if (closed) {
+            throw new IllegalStateException("Executor is closed");
+        }
+        rethrowError();
+        put(queues[lane], task);
+    }
+
+    /**
+     * Waits until all the submitted tasks are finished and stops the threads.
+     *
+     * @throws RuntimeException if any of the tasks failed.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        for (final BlockingQueue<Runnable> queue : queues) {
+            put(queue, END_OF_LANE);
+        }
+        for (final Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new GATKException("Interrupted while waiting for " + thread.getName(), e);
+            }
+        }
+        rethrowError();
+    }
+
+    private void runLane(final BlockingQueue<Runnable> queue) {
+        try {
+            Runnable task;
+            while ((task = queue.take()) != END_OF_LANE) {
+                // after an error, keep draining the queue to do not block the caller
+                if (error == null) {
+                    try {
+                        task.run();
+                    } catch (final Throwable e) {
+                        setError(e);
+                    }
+                }
+            }
+        } catch (final InterruptedException e) {
+            setError(e);
+        }
+    }
+
+    private synchronized void setError(final Throwable e) {
+        if (error == null) {
+            error = e;
+        }
+    }
+
+    private void rethrowError() {
+        final Throwable e = error;
+        if (e instanceof RuntimeException) {
+            throw (RuntimeException) e;
+        } else if (e instanceof Error) {
+            throw (Error) e;
+        } else if (e != null) {
+            throw new GATKException("Error in lane thread: " + e.getMessage(), e);
+        }
+    }
+
+    private static void put(final BlockingQueue<Runnable> queue, final Runnable task) {
+        try {
+            queue.put(task);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GATKException("Interrupted while submitting task", e);
+        }
+    }
+}
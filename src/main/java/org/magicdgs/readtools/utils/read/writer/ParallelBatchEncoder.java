@@ -0,0 +1,219 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.magicdgs.readtools.utils.read.writer;
+
+import org.magicdgs.readtools.utils.ThreadUtils;
+
+import htsjdk.samtools.util.CustomGzipOutputStream;
+import htsjdk.samtools.util.RuntimeIOException;
+import org.broadinstitute.hellbender.utils.Utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Encodes records in parallel into an output stream.
+ *
+ * <p>Records are accumulated into batches, which are serialized into byte blocks by a pool of
+ * worker threads. The blocks are written to the output stream in the same order as they were
+ * submitted, so the thread adding records only copies bytes. Blocks could be compressed by the
+ * workers too (see {@link BatchEncoder#gzipMembers(BatchEncoder, int)}).
+ *
+ * <p>The number of batches in flight is bounded to twice the number of threads. Records are
+ * encoded after {@link #add(Object)} returns, so they should not be modified afterwards.
+ *
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+public final class ParallelBatchEncoder<T> implements Closeable {
+
+    /** Default number of records per batch. */
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
+    // counter for the thread names
+    private static final AtomicInteger POOL_COUNTER = new AtomicInteger(0);
+
+    /** Serializes a batch of records. */
+    @FunctionalInterface
+    public interface BatchEncoder<T> {
+
+        /**
+         * Encodes the records into the stream. Called from a worker thread.
+         *
+         * @param batch the records to encode, in order.
+         * @param out   the in-memory stream to write the encoded records (closing it has no
+         *              effect).
+         */
+        void encode(final List<T> batch, final OutputStream out) throws IOException;
+
+        /**
+         * Returns an encoder which compresses every batch as an independent gzip member. The
+         * concatenation of the members is a valid gzip file.
+         *
+         * @param encoder          the encoder for the uncompressed data.
+         * @param compressionLevel the compression level (0-9).
+         */
+        static <T> BatchEncoder<T> gzipMembers(final BatchEncoder<T> encoder,
+                final int compressionLevel) {
+            Utils.nonNull(encoder, "null encoder");
+            return (batch, out) -> {
+                final CustomGzipOutputStream gzip =
+                        new CustomGzipOutputStream(out, compressionLevel);
+                encoder.encode(batch, gzip);
+                // closing releases the deflater
+                gzip.close();
+            };
+        }
+    }
+
+    private final OutputStream out;
+    private final BatchEncoder<T> encoder;
+    private final int batchSize;
+    private final ExecutorService executor;
+    private final int maxBatchesInFlight;
+
+    // batches submitted for encoding, in output order
+    private final Queue<Future<byte[]>> inFlight = new ArrayDeque<>();
+
+    // the batch which is currently filled
+    private List<T> current;
+    private boolean closed = false;
+
+    /**
+     * Constructor.
+     *
+     * @param out       the stream to write the encoded blocks. It is not closed by this class.
+     * @param encoder   the encoder for the batches.
+     * @param threads   the number of encoding threads (at least one).
+     * @param batchSize the number of records per batch.
+     */
+    public ParallelBatchEncoder(final OutputStream out, final BatchEncoder<T> encoder,
+            final int threads, final int batchSize) {
+        this.out = Utils.nonNull(out, "null output stream");
+        this.encoder = Utils.nonNull(encoder, "null encoder");
+        Utils.validateArg(threads > 0, () -> "threads should be positive: " + threads);
+        Utils.validateArg(batchSize > 0, () -> "batchSize should be positive: " + batchSize);
+        this.batchSize = batchSize;
+        this.maxBatchesInFlight = 2 * threads;
+        this.executor = Executors.newFixedThreadPool(threads, ThreadUtils.daemonThreadFactory(
+                "batch-encoder-" + POOL_COUNTER.incrementAndGet() + "-"));
+        this.current = new ArrayList<>(batchSize);
+    }
+
+    /**
+     * Adds a record for encoding. If the batch is complete, it is submitted and the oldest
+     * encoded batches are written if too many are in flight.
+     *
+     * @throws RuntimeIOException if an I/O error occurs.
+     */
+    public void add(final T record) {
+        if (closed) {
+            throw new RuntimeIOException("Attempt to add record to closed encoder.");
+        }
+        current.add(record);
+        if (current.size() == batchSize) {
+            try {
+                submitCurrent();
+            } catch (final IOException e) {
+                throw new RuntimeIOException(e);
+            }
+        }
+    }
+
+    /** Encodes the partial batch (if any) and writes all the pending blocks. */
+    public void flush() throws IOException {
+        if (!current.isEmpty()) {
+            submitCurrent();
+        }
+        while (!inFlight.isEmpty()) {
+            writeNextBlock();
+        }
+        out.flush();
+    }
+
+    /** Writes all the pending blocks and stops the worker threads. */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            flush();
+        } finally {
+            closed = true;
+            executor.shutdownNow();
+        }
+    }
+
+    // submits the current batch for encoding and starts a new one
+    private void submitCurrent() throws IOException {
+        if (inFlight.size() >= maxBatchesInFlight) {
+            writeNextBlock();
+        }
+        final List<T> batch = current;
+        inFlight.add(executor.submit(() -> encode(batch)));
+        current = new ArrayList<>(batchSize);
+    }
+
+    // encodes the batch in the worker thread
+    private byte[] encode(final List<T> batch) throws IOException {
+        final ByteArrayOutputStream block = new ByteArrayOutputStream();
+        encoder.encode(batch, block);
+        return block.toByteArray();
+    }
+
+    // waits for the first block in flight and writes it
+    private void writeNextBlock() throws IOException {
+        final byte[] block;
+        try {
+            block = inFlight.remove().get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while encoding records");
+        } catch (final ExecutionException e) {
+            // keep the exceptions thrown by the encoder (e.g., user exceptions)
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException("Unable to encode records", cause);
+        }
+        out.write(block);
+    }
+}
@@ -44,6 +44,9 @@ public interface ReadToolsIOFormat {
     /** Output extension for metric files. */
     public static final String DEFAULT_METRICS_EXTENSION = ".metrics";
 
+    /** Extension for Distmap files. */
+    public static final String DISTMAP_EXTENSION = ".distmap";
+
     /** Gets the extension for this output format (including dot). */
     public String getExtension();
 
@@ -142,4 +145,16 @@ public interface ReadToolsIOFormat {
                 .anyMatch(f -> f.isAssignable(sourceName));
     }
 
+    /**
+     * Checks if the file is Distmap formatted by extension.
+     *
+     * @param sourceName the name of the file.
+     *
+     * @return {@code true} if the file ends with the extension for this format; {@code false}
+     * otherwise.
+     */
+    public static boolean isDistmap(final String sourceName) {
+        return DISTMAP_EXTENSION.equalsIgnoreCase("." + FilenameUtils.getExtension(sourceName));
+    }
+
 }
@@ -0,0 +1,367 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.magicdgs.readtools.utils.read.writer;
+
+import org.magicdgs.readtools.metrics.ShardMetric;
+import org.magicdgs.readtools.utils.read.ReadWriterFactory;
+
+import htsjdk.samtools.metrics.MetricsFile;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.broadinstitute.hellbender.exceptions.UserException;
+import org.broadinstitute.hellbender.utils.Utils;
+import org.broadinstitute.hellbender.utils.read.GATKRead;
+import org.broadinstitute.hellbender.utils.read.GATKReadWriter;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+import java.util.stream.IntStream;
+
+/**
+ * Writer which distributes the reads into several outputs (shards), keeping pairs together.
+ *
+ * <p>Two kind of sharding are supported:
+ *
+ * <ul>
+ * <li>Rolling over to a new shard after a number of reads or (uncompressed) bytes, with
+ * {@link #byReads(long)} or {@link #byBytes(long)}. Mates are expected to be one after the
+ * other, and they are never split between shards. Several shards could be filled at the same
+ * time with {@link #byBytes(long, int)}, to write them concurrently.</li>
+ * <li>Routing the reads into a fixed number of shards by a hash of the read name, with
+ * {@link #byReadName(int)}. Mates are always in the same shard.</li>
+ * </ul>
+ *
+ * <p>Shards could be served by a pool of threads as in {@link SplitGATKWriter}, so they are
+ * compressed concurrently. On close, a manifest with the output name and the number of reads
+ * for each shard is written as a metrics file.
+ *
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+public final class ShardedGATKWriter implements GATKReadWriter {
+
+    private static final Logger logger = LogManager.getLogger(ShardedGATKWriter.class);
+
+    /** Suffix for the shard outputs, followed by the shard index. */
+    public static final String SHARD_SUFFIX = SplitGATKWriter.KEY_SPLIT_SEPARATOR + "shard";
+
+    // maximum number of pending tasks per writer thread
+    private static final int WRITER_THREAD_QUEUE_SIZE = 1000;
+
+    private final Function<String, GATKReadWriter> writerForSuffix;
+    private final Function<String, String> outputNameForSuffix;
+    private final Sharding sharding;
+    private final Path manifest;
+
+    // all the shards created, by index
+    private final List<Shard> shards = new ArrayList<>();
+
+    // executor for the writer threads; null if writing in the caller thread
+    private final OrderedLanesExecutor executor;
+
+    /**
+     * Constructor.
+     *
+     * @param writerForSuffix     function to create the writer for a shard suffix.
+     * @param outputNameForSuffix function to get the output name for a shard suffix.
+     * @param sharding            the sharding strategy.
+     * @param manifest            the file to write the manifest into.
+     * @param writerThreads       number of threads serving the shards. If
+     *                            {@link SplitGATKWriter#NO_WRITER_THREADS}, reads are written
+     *                            in the caller thread.
+     */
+    public ShardedGATKWriter(final Function<String, GATKReadWriter> writerForSuffix,
+            final Function<String, String> outputNameForSuffix, final Sharding sharding,
+            final Path manifest, final int writerThreads) {
+        this.writerForSuffix = Utils.nonNull(writerForSuffix, "null writerForSuffix");
+        this.outputNameForSuffix = Utils.nonNull(outputNameForSuffix,
+                "null outputNameForSuffix");
+        this.sharding = Utils.nonNull(sharding, "null sharding");
+        this.manifest = Utils.nonNull(manifest, "null manifest");
+        Utils.validateArg(writerThreads >= 0,
+                () -> "writerThreads should be non-negative: " + writerThreads);
+        this.executor = (writerThreads == SplitGATKWriter.NO_WRITER_THREADS) ? null
+                : new OrderedLanesExecutor("ShardedGATKWriter", writerThreads,
+                        WRITER_THREAD_QUEUE_SIZE);
+        for (int i = 0; i < sharding.getInitialShards(); i++) {
+            openShard(i);
+        }
+    }
+
+    /** Gets the output suffix for the shard index. */
+    public static String getShardSuffix(final int index) {
+        return String.format("%s%05d", SHARD_SUFFIX, index);
+    }
+
+    /** Sharding rolling over to a new shard after {@code maxReads} reads. */
+    public static Sharding byReads(final long maxReads) {
+        Utils.validateArg(maxReads > 0, () -> "maxReads should be positive: " + maxReads);
+        return new RollingSharding(read -> 1, maxReads);
+    }
+
+    /**
+     * Sharding rolling over to a new shard after approximately {@code maxBytes} uncompressed
+     * bytes, estimated from the read names, bases and qualities.
+     */
+    public static Sharding byBytes(final long maxBytes) {
+        Utils.validateArg(maxBytes > 0, () -> "maxBytes should be positive: " + maxBytes);
+        return new RollingSharding(ShardedGATKWriter::estimateBytes, maxBytes);
+    }
+
+    /**
+     * Sharding filling {@code concurrentShards} shards at the same time (reads or pairs are
+     * distributed in round-robin), each of them rolling over to a new shard after approximately
+     * {@code maxBytes} uncompressed bytes.
+     */
+    public static Sharding byBytes(final long maxBytes, final int concurrentShards) {
+        Utils.validateArg(maxBytes > 0, () -> "maxBytes should be positive: " + maxBytes);
+        Utils.validateArg(concurrentShards > 0,
+                () -> "concurrentShards should be positive: " + concurrentShards);
+        return new ConcurrentRollingSharding(ShardedGATKWriter::estimateBytes, maxBytes,
+                concurrentShards);
+    }
+
+    /** Sharding into {@code nShards} shards by a hash of the read name. */
+    public static Sharding byReadName(final int nShards) {
+        Utils.validateArg(nShards > 0, () -> "nShards should be positive: " + nShards);
+        return new ReadNameSharding(nShards);
+    }
+
+    @Override
+    public void addRead(final GATKRead read) {
+        final int index = sharding.getShard(read);
+        if (index == shards.size()) {
+            // rolling over: the replaced shard is finished
+            closeShard(shards.get(sharding.getReplacedShard(index)));
+            openShard(index);
+        }
+        final Shard shard = shards.get(index);
+        shard.reads++;
+        execute(shard, () -> shard.writer.addRead(read));
+    }
+
+    /** Closes all the shards and writes the manifest. */
+    @Override
+    public void close() throws IOException {
+        try {
+            shards.stream().filter(shard -> !shard.closed).forEach(this::closeShard);
+        } finally {
+            if (executor != null) {
+                executor.close();
+            }
+        }
+        writeManifest();
+    }
+
+    /** Gets the metrics for each shard, in order. */
+    public List<ShardMetric> getShardMetrics() {
+        final List<ShardMetric> metrics = new ArrayList<>(shards.size());
+        for (final Shard shard : shards) {
+            metrics.add(new ShardMetric(shard.index,
+                    outputNameForSuffix.apply(getShardSuffix(shard.index)), shard.reads));
+        }
+        return metrics;
+    }
+
+    private void openShard(final int index) {
+        final int lane = (executor == null) ? 0 : index % executor.getNumberOfLanes();
+        final Shard shard = new Shard(index, lane);
+        shards.add(shard);
+        execute(shard, () -> shard.writer = writerForSuffix.apply(getShardSuffix(index)));
+    }
+
+    private void closeShard(final Shard shard) {
+        shard.closed = true;
+        execute(shard, () -> ReadWriterFactory.closeWriter(shard.writer));
+    }
+
+    // runs the task for the shard in its thread
+    private void execute(final Shard shard, final Runnable task) {
+        if (executor == null) {
+            task.run();
+        } else {
+            executor.submit(shard.lane, task);
+        }
+    }
+
+    private void writeManifest() {
+        final MetricsFile<ShardMetric, Integer> metrics = new MetricsFile<>();
+        metrics.addAllMetrics(getShardMetrics());
+        try (final Writer writer = Files.newBufferedWriter(manifest)) {
+            metrics.write(writer);
+        } catch (final IOException e) {
+            throw new UserException.CouldNotCreateOutputFile(manifest.toString(),
+                    e.getMessage(), e);
+        }
+        logger.info("{} reads written into {} shards (manifest: {})",
+                () -> shards.stream().mapToLong(s -> s.reads).sum(), shards::size,
+                manifest::toUri);
+    }
+
+    // approximate number of uncompressed bytes for the read
+    private static long estimateBytes(final GATKRead read) {
+        final String name = read.getName();
+        return ((name == null) ? 0 : name.length()) + 2L * read.getLength();
+    }
+
+    /** Strategy to assign reads to shards. */
+    public abstract static class Sharding {
+
+        // only implemented in this class
+        private Sharding() { }
+
+        /** Number of shards to open before adding any read. */
+        abstract int getInitialShards();
+
+        /**
+         * Gets the shard index for the read. The index should be lower than the number of open
+         * shards, or equal to roll over to a new one.
+         */
+        abstract int getShard(final GATKRead read);
+
+        /**
+         * Gets the shard finished when rolling over to a new one. Default implementation returns
+         * the previous shard.
+         */
+        int getReplacedShard(final int index) {
+            return index - 1;
+        }
+    }
+
+    // rolls over to a new shard after the accumulated size is reached (not splitting pairs)
+    private static final class RollingSharding extends Sharding {
+        private final ToLongFunction<GATKRead> size;
+        private final long maxSize;
+        private int current = 0;
+        private long accumulated = 0;
+
+        private RollingSharding(final ToLongFunction<GATKRead> size, final long maxSize) {
+            this.size = size;
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        int getInitialShards() {
+            return 1;
+        }
+
+        @Override
+        int getShard(final GATKRead read) {
+            // the second of pair is always written with the previous read
+            if (accumulated >= maxSize && !(read.isPaired() && read.isSecondOfPair())) {
+                current++;
+                accumulated = 0;
+            }
+            accumulated += size.applyAsLong(read);
+            return current;
+        }
+    }
+
+    // fills several shards in round-robin, rolling over each of them (not splitting pairs)
+    private static final class ConcurrentRollingSharding extends Sharding {
+        private final ToLongFunction<GATKRead> size;
+        private final long maxSize;
+        // current shard and accumulated size for each slot
+        private final int[] current;
+        private final long[] accumulated;
+        private int slot = -1;
+        private int nextShard;
+        private int replaced = -1;
+
+        private ConcurrentRollingSharding(final ToLongFunction<GATKRead> size,
+                final long maxSize, final int concurrentShards) {
+            this.size = size;
+            this.maxSize = maxSize;
+            this.current = IntStream.range(0, concurrentShards).toArray();
+            this.accumulated = new long[concurrentShards];
+            this.nextShard = concurrentShards;
+        }
+
+        @Override
+        int getInitialShards() {
+            return current.length;
+        }
+
+        @Override
+        int getShard(final GATKRead read) {
+            // the second of pair is always written with the previous read
+            if (slot == -1 || !(read.isPaired() && read.isSecondOfPair())) {
+                slot = (slot + 1) % current.length;
+                if (accumulated[slot] >= maxSize) {
+                    replaced = current[slot];
+                    current[slot] = nextShard++;
+                    accumulated[slot] = 0;
+                }
+            }
+            accumulated[slot] += size.applyAsLong(read);
+            return current[slot];
+        }
+
+        @Override
+        int getReplacedShard(final int index) {
+            return replaced;
+        }
+    }
+
+    // assigns shards by the hash of the read name
+    private static final class ReadNameSharding extends Sharding {
+        private final int nShards;
+
+        private ReadNameSharding(final int nShards) {
+            this.nShards = nShards;
+        }
+
+        @Override
+        int getInitialShards() {
+            return nShards;
+        }
+
+        @Override
+        int getShard(final GATKRead read) {
+            final String name = read.getName();
+            return (name == null) ? 0 : Math.floorMod(name.hashCode(), nShards);
+        }
+    }
+
+    // holder for the shard writer, which is only accessed from the shard thread (if any)
+    private static final class Shard {
+        private final int index;
+        private final int lane;
+        private GATKReadWriter writer = null;
+        private long reads = 0;
+        private boolean closed = false;
+
+        private Shard(final int index, final int lane) {
+            this.index = index;
+            this.lane = lane;
+        }
+    }
+}
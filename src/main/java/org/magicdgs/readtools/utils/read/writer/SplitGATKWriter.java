@@ -27,12 +27,24 @@ package org.magicdgs.readtools.utils.read.writer;
 import org.magicdgs.readtools.utils.read.ReadWriterFactory;
 
 import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMReadGroupRecord;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.util.AbstractAsyncWriter;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.broadinstitute.hellbender.tools.readersplitters.LibraryNameSplitter;
+import org.broadinstitute.hellbender.tools.readersplitters.ReadGroupIdSplitter;
 import org.broadinstitute.hellbender.tools.readersplitters.ReaderSplitter;
+import org.broadinstitute.hellbender.tools.readersplitters.SampleNameSplitter;
 import org.broadinstitute.hellbender.utils.Utils;
 import org.broadinstitute.hellbender.utils.read.GATKRead;
 import org.broadinstitute.hellbender.utils.read.GATKReadWriter;
+import org.broadinstitute.hellbender.utils.read.SAMRecordToGATKReadAdapter;
 
 import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -46,18 +58,45 @@ import java.util.stream.Collectors;
  *
  * This class have a lot of code in common with {@link org.broadinstitute.hellbender.tools.SplitReads}.
  *
+ * <p>The number of simultaneously open writers could be bounded. In that case, the least
+ * recently used writer is closed when the limit is reached, and re-opened for appending (see
+ * {@link ReadWriterFactory#createAppendingWriter(String, SAMFileHeader)}) if a new read
+ * requires it. This is only possible if the output supports appending and it does not require
+ * sorting; otherwise, the number of writers is unbounded.
+ *
+ * <p>Writers could be also served by a pool of threads: each output is assigned to a thread by
+ * its key, and every operation on it (open, add read and close) is queued in that thread. Thus,
+ * the order of the reads is kept for each output, while compression of different outputs runs
+ * concurrently. Note that reads are written asynchronously, so they should not be modified after
+ * {@link #addRead(GATKRead)}.
+ *
  * @author Daniel Gomez-Sanchez (magicDGS)
  */
 public final class SplitGATKWriter implements GATKReadWriter {
 
+    private static final Logger logger = LogManager.getLogger(SplitGATKWriter.class);
+
     /** This is the unknown prefix. */
     public static final String UNKNOWN_OUT_PREFIX = "unknown";
 
     /** This is different from the GATK4 framework. */
     public static final String KEY_SPLIT_SEPARATOR = "_";
 
-    // this is the map for every key and the writer
-    private final Map<String, GATKReadWriter> outs;
+    /** Value for unbounded number of open writers. */
+    public static final int UNBOUNDED_OPEN_WRITERS = 0;
+
+    /** Value for writing in the caller thread. */
+    public static final int NO_WRITER_THREADS = 0;
+
+    // maximum number of pending tasks per writer thread
+    private static final int WRITER_THREAD_QUEUE_SIZE = AbstractAsyncWriter.DEFAULT_QUEUE_SIZE;
+
+    // this is the map for every key and the open sink (in access order)
+    private final Map<String, Sink> outs;
+    // keys for writers that were already created (open or closed)
+    private final Set<String> created = new HashSet<>();
+    // maximum number of open writers
+    private final int maxOpenWriters;
 
     private final String outputPrefix;
     private final ReadToolsIOFormat format;
@@ -70,8 +109,14 @@ public final class SplitGATKWriter implements GATKReadWriter {
     private final ReadWriterFactory factory;
     private final boolean presorted;
 
+    // table from read group ID to key if the splitters depend only on the read group; null otherwise
+    private final Map<String, String> readGroupKeys;
+
+    // executor for the writer threads; null if writing in the caller thread
+    private final OrderedLanesExecutor executor;
+
     /**
-     * Constructor.
+     * Constructor with unbounded number of open writers.
      *
      * @param outputPrefix common output prefix for all the output files.
      * @param format       output extension for the writers. Note that some extensions will not
@@ -86,6 +131,54 @@ public final class SplitGATKWriter implements GATKReadWriter {
     public SplitGATKWriter(final String outputPrefix, final ReadToolsIOFormat format,
             final List<ReaderSplitter<?>> splitters, final SAMFileHeader header,
             final boolean presorted, final ReadWriterFactory factory, final boolean onDemand) {
+        this(outputPrefix, format, splitters, header, presorted, factory, onDemand,
+                UNBOUNDED_OPEN_WRITERS, NO_WRITER_THREADS);
+    }
+
+    /**
+     * Constructor writing in the caller thread.
+     *
+     * @param outputPrefix   common output prefix for all the output files.
+     * @param format         output extension for the writers. Note that some extensions will
+     *                       not be allowed.
+     * @param splitters      ordered list with the splitters to use, one after the other.
+     * @param header         output header for all the readers.
+     * @param presorted      if {@code true}, reads are expected to be already sorted.
+     * @param factory        factory to create the writers.
+     * @param onDemand       if {@code true}, creates the readers on demand; otherwise, all the
+     *                       writers will be generated except the unknown.
+     * @param maxOpenWriters maximum number of simultaneously open writers. If
+     *                       {@link #UNBOUNDED_OPEN_WRITERS}, all writers are kept open.
+     */
+    public SplitGATKWriter(final String outputPrefix, final ReadToolsIOFormat format,
+            final List<ReaderSplitter<?>> splitters, final SAMFileHeader header,
+            final boolean presorted, final ReadWriterFactory factory, final boolean onDemand,
+            final int maxOpenWriters) {
+        this(outputPrefix, format, splitters, header, presorted, factory, onDemand,
+                maxOpenWriters, NO_WRITER_THREADS);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param outputPrefix   common output prefix for all the output files.
+     * @param format         output extension for the writers. Note that some extensions will
+     *                       not be allowed.
+     * @param splitters      ordered list with the splitters to use, one after the other.
+     * @param header         output header for all the readers.
+     * @param presorted      if {@code true}, reads are expected to be already sorted.
+     * @param factory        factory to create the writers.
+     * @param onDemand       if {@code true}, creates the readers on demand; otherwise, all the
+     *                       writers will be generated except the unknown.
+     * @param maxOpenWriters maximum number of simultaneously open writers. If
+     *                       {@link #UNBOUNDED_OPEN_WRITERS}, all writers are kept open.
+     * @param writerThreads  number of threads serving the writers. If
+     *                       {@link #NO_WRITER_THREADS}, reads are written in the caller thread.
+     */
+    public SplitGATKWriter(final String outputPrefix, final ReadToolsIOFormat format,
+            final List<ReaderSplitter<?>> splitters, final SAMFileHeader header,
+            final boolean presorted, final ReadWriterFactory factory, final boolean onDemand,
+            final int maxOpenWriters, final int writerThreads) {
         // storing all parameters
         this.outputPrefix = Utils.nonNull(outputPrefix, "null prefix");
         this.format = Utils.nonNull(format, "null outputExtension");
@@ -93,8 +186,18 @@ public final class SplitGATKWriter implements GATKReadWriter {
         this.splitters = Utils.nonEmpty(splitters, "splitters");
         this.factory = Utils.nonNull(factory, "null factory");
         this.presorted = presorted;
+        Utils.validateArg(maxOpenWriters >= 0,
+                () -> "maxOpenWriters should be non-negative: " + maxOpenWriters);
+        this.maxOpenWriters = canBoundOpenWriters(maxOpenWriters)
+                ? maxOpenWriters : UNBOUNDED_OPEN_WRITERS;
+        this.readGroupKeys = buildReadGroupKeys();
+        Utils.validateArg(writerThreads >= 0,
+                () -> "writerThreads should be non-negative: " + writerThreads);
+        this.executor = (writerThreads == NO_WRITER_THREADS) ? null
+                : new OrderedLanesExecutor("SplitGATKWriter", writerThreads,
+                        WRITER_THREAD_QUEUE_SIZE);
         // create the outputs
-        this.outs = new LinkedHashMap<>();
+        this.outs = new LinkedHashMap<>(16, 0.75f, true);
         if (!onDemand) {
             initWriters();
         }
@@ -102,13 +205,74 @@ public final class SplitGATKWriter implements GATKReadWriter {
 
     @Override
     public void addRead(final GATKRead read) {
-        outs.computeIfAbsent(getKey(read), this::createWriter).addRead(read);
+        final String key = getKey(read);
+        Sink sink = outs.get(key);
+        if (sink == null) {
+            sink = openWriter(key);
+        }
+        if (executor == null) {
+            sink.writer.addRead(read);
+        } else {
+            final Sink target = sink;
+            executor.submit(sink.lane, () -> target.writer.addRead(read));
+        }
     }
 
     @Override
     public void close() throws IOException {
-        for (final GATKReadWriter w : outs.values()) {
-            w.close();
+        if (executor == null) {
+            for (final Sink sink : outs.values()) {
+                sink.writer.close();
+            }
+        } else {
+            try {
+                outs.values().forEach(sink -> executor.submit(sink.lane, sink::close));
+            } finally {
+                executor.close();
+            }
+        }
+    }
+
+    // checks if the open writers could be bounded for this output
+    private boolean canBoundOpenWriters(final int maxOpenWriters) {
+        if (maxOpenWriters == UNBOUNDED_OPEN_WRITERS) {
+            return false;
+        }
+        final boolean requiresSorting = !presorted
+                && header.getSortOrder() != SAMFileHeader.SortOrder.unsorted
+                && format instanceof ReadToolsIOFormat.BamFormat;
+        if (requiresSorting || !factory.supportsAppending(outputPrefix + format.getExtension(), header)) {
+            logger.warn("Cannot limit the number of open outputs to {} for {} (requires sorting or appending is not supported). All outputs will be kept open.",
+                    maxOpenWriters, outputPrefix);
+            return false;
+        }
+        return true;
+    }
+
+    // opens the writer for the key, closing the least recently used one if necessary
+    private Sink openWriter(final String key) {
+        if (maxOpenWriters != UNBOUNDED_OPEN_WRITERS && outs.size() >= maxOpenWriters) {
+            final Iterator<Sink> eldest = outs.values().iterator();
+            final Sink toClose = eldest.next();
+            eldest.remove();
+            execute(toClose, toClose::close);
+        }
+        final String output = outputPrefix + key + format.getExtension();
+        final boolean append = !created.add(key);
+        final Sink sink = new Sink((executor == null) ? 0 : executor.getLane(key));
+        execute(sink, () -> sink.writer = (append)
+                ? factory.createAppendingWriter(output, header)
+                : factory.createWriter(output, header, presorted));
+        outs.put(key, sink);
+        return sink;
+    }
+
+    // runs the task for the sink in its thread
+    private void execute(final Sink sink, final Runnable task) {
+        if (executor == null) {
+            task.run();
+        } else {
+            executor.submit(sink.lane, task);
         }
     }
 
@@ -121,7 +285,7 @@ public final class SplitGATKWriter implements GATKReadWriter {
                 .map(splitter -> new LinkedHashSet<>(splitter.getSplitsBy(header)))
                 .collect(Collectors.toList());
         // For every combination of keys, add a GATKWriter.
-        addKey(splitKeys, 0, "", key -> outs.put(key, createWriter(key)));
+        addKey(splitKeys, 0, "", this::openWriter);
     }
 
     /**
@@ -147,27 +311,80 @@ public final class SplitGATKWriter implements GATKReadWriter {
     }
 
     /**
-     * Traverses the splitters generating a key for this particular record.
+     * Builds the table from read group ID to key if all the splitters depend only on the read
+     * group.
+     *
+     * @return the table; {@code null} if some splitter depends on other read properties.
+     */
+    private Map<String, String> buildReadGroupKeys() {
+        final boolean readGroupSplitters = splitters.stream()
+                .allMatch(s -> s instanceof SampleNameSplitter
+                        || s instanceof ReadGroupIdSplitter
+                        || s instanceof LibraryNameSplitter);
+        if (!readGroupSplitters) {
+            return null;
+        }
+        final Map<String, String> table = new HashMap<>();
+        for (final SAMReadGroupRecord readGroup : header.getReadGroups()) {
+            // compute the key with the splitters for a dummy read with this read group
+            final GATKRead dummy = new SAMRecordToGATKReadAdapter(new SAMRecord(header));
+            dummy.setReadGroup(readGroup.getId());
+            table.put(readGroup.getId(), computeKey(dummy));
+        }
+        return table;
+    }
+
+    /**
+     * Gets the key for this particular record, using the read group table if available.
      *
      * @param record the record to analyze.
      *
      * @return the generated key that may then be used to find the appropriate writer.
      */
     private String getKey(final GATKRead record) {
+        if (readGroupKeys != null) {
+            final String readGroup = record.getReadGroup();
+            final String key = (readGroup == null) ? null : readGroupKeys.get(readGroup);
+            if (key != null) {
+                return key;
+            }
+        }
+        return computeKey(record);
+    }
+
+    /**
+     * Traverses the splitters generating a key for this particular record.
+     *
+     * @param record the record to analyze.
+     *
+     * @return the generated key that may then be used to find the appropriate writer.
+     */
+    private String computeKey(final GATKRead record) {
         // if a read is missing the value for the target split, return the constant "unknown" which will
         // result in a new output stream being created on demand to hold uncategorized reads
-        return splitters.stream()
-                .map(s -> {
-                    final Object key = s.getSplitBy(record, header);
-                    return key == null ? UNKNOWN_OUT_PREFIX : key.toString();
-                })
-                .reduce("", (acc, item) -> acc + KEY_SPLIT_SEPARATOR + item);
+        final StringBuilder key = new StringBuilder();
+        for (final ReaderSplitter<?> splitter : splitters) {
+            final Object value = splitter.getSplitBy(record, header);
+            key.append(KEY_SPLIT_SEPARATOR)
+                    .append(value == null ? UNKNOWN_OUT_PREFIX : value.toString());
+        }
+        return key.toString();
     }
 
-    // helper method to use the compute if absent
-    private GATKReadWriter createWriter(final String attributeValue) {
-        return factory.createWriter(outputPrefix + attributeValue + format.getExtension(),
-                header, presorted);
-    }
+    /**
+     * Holder for a writer and the thread serving it. The writer is only accessed from that
+     * thread (if any).
+     */
+    private static final class Sink {
+        private final int lane;
+        private GATKReadWriter writer = null;
 
+        private Sink(final int lane) {
+            this.lane = lane;
+        }
+
+        private void close() {
+            ReadWriterFactory.closeWriter(writer);
+        }
+    }
 }
@@ -0,0 +1,168 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.magicdgs.readtools.utils.read.writer;
+
+import org.broadinstitute.hellbender.utils.Utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * Lock-free bounded queue for a single producer and a single consumer thread.
+ *
+ * <p>The producer publishes the added elements in batches, reducing the cross-thread traffic
+ * for each element; elements not published yet are visible to the consumer after
+ * {@link #flush()}, once the batch is complete or when the buffer is full. The consumer removes
+ * all the published elements at once with {@link #drain(Consumer)}.
+ *
+ * <p>The number of times that the producer waits for space (queue-full stalls) and the consumer
+ * waits for elements (queue-empty stalls) are recorded. The counters are updated without
+ * synchronization, so they are accurate only after both threads are finished.
+ *
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+final class SpscRingBuffer<T> {
+
+    // maximum number of elements per batch
+    private static final int MAX_BATCH_SIZE = 64;
+
+    private final Object[] buffer;
+    private final int mask;
+    private final int batchSize;
+    private final WaitStrategy waitStrategy;
+
+    // next index to read by the consumer (written by the consumer)
+    private final AtomicLong head = new AtomicLong();
+    // next index to read after the last published element (written by the producer)
+    private final AtomicLong tail = new AtomicLong();
+
+    // producer-only fields
+    private long producerIndex = 0;
+    private long cachedHead = 0;
+    private long queueFullStalls = 0;
+
+    // consumer-only fields
+    private long queueEmptyStalls = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param capacity     minimum capacity of the buffer (rounded to the next power of 2).
+     * @param waitStrategy strategy to wait when the buffer is full or empty.
+     */
+    SpscRingBuffer(final int capacity, final WaitStrategy waitStrategy) {
+        Utils.validateArg(capacity > 0, () -> "capacity should be positive: " + capacity);
+        Utils.validateArg(capacity <= 1 << 30, () -> "capacity is too large: " + capacity);
+        this.waitStrategy = Utils.nonNull(waitStrategy, "null waitStrategy");
+        final int size = (capacity == 1) ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.buffer = new Object[size];
+        this.mask = size - 1;
+        this.batchSize = Math.max(1, Math.min(MAX_BATCH_SIZE, size / 4));
+    }
+
+    /** Gets the capacity of the buffer. */
+    int capacity() {
+        return buffer.length;
+    }
+
+    /**
+     * Adds an element, waiting if the buffer is full. Should be called only by the producer.
+     *
+     * @param element the element to add.
+     * @param abort   checked while waiting; if it returns {@code true}, the element is not added.
+     *
+     * @return {@code false} if aborted; {@code true} otherwise.
+     */
+    boolean put(final T element, final BooleanSupplier abort) {
+        if (producerIndex - cachedHead >= buffer.length) {
+            cachedHead = head.get();
+            if (producerIndex - cachedHead >= buffer.length) {
+                // make everything visible to the consumer before waiting
+                flush();
+                queueFullStalls++;
+                do {
+                    if (abort.getAsBoolean()) {
+                        return false;
+                    }
+                    waitStrategy.idle();
+                    cachedHead = head.get();
+                } while (producerIndex - cachedHead >= buffer.length);
+            }
+        }
+        buffer[(int) producerIndex & mask] = element;
+        producerIndex++;
+        if (producerIndex - tail.get() >= batchSize) {
+            tail.lazySet(producerIndex);
+        }
+        return true;
+    }
+
+    /** Publishes the elements added by the producer. Should be called only by the producer. */
+    void flush() {
+        tail.set(producerIndex);
+    }
+
+    /**
+     * Removes all the published elements, passing them in order to the action. Should be called
+     * only by the consumer.
+     *
+     * @return the number of elements removed.
+     */
+    @SuppressWarnings("unchecked")
+    int drain(final Consumer<? super T> action) {
+        final long start = head.get();
+        final long end = tail.get();
+        for (long i = start; i < end; i++) {
+            final int index = (int) i & mask;
+            final T element = (T) buffer[index];
+            buffer[index] = null;
+            action.accept(element);
+        }
+        if (end != start) {
+            head.lazySet(end);
+        }
+        return (int) (end - start);
+    }
+
+    /** Waits after an empty {@link #drain(Consumer)}. Should be called only by the consumer. */
+    void idleOnEmpty(final boolean newStall) {
+        if (newStall) {
+            queueEmptyStalls++;
+        }
+        waitStrategy.idle();
+    }
+
+    /** Gets the number of times that the producer waited for space. */
+    long getQueueFullStalls() {
+        return queueFullStalls;
+    }
+
+    /** Gets the number of times that the consumer waited for elements. */
+    long getQueueEmptyStalls() {
+        return queueEmptyStalls;
+    }
+}
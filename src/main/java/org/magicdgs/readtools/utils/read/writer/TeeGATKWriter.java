@@ -0,0 +1,116 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.magicdgs.readtools.utils.read.writer;
+
+import org.magicdgs.readtools.utils.read.ReadWriterFactory;
+
+import org.broadinstitute.hellbender.utils.Utils;
+import org.broadinstitute.hellbender.utils.read.GATKRead;
+import org.broadinstitute.hellbender.utils.read.GATKReadWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writer which adds every read to several outputs (e.g., BAM, FASTQ and Distmap), allowing to
+ * generate all of them in a single traversal.
+ *
+ * <p>If writer threads are used, each output is served by its own thread (including its encoding
+ * and compression), and the caller only hands the reads over. As writers might modify the read
+ * (e.g., converting it to a SAM record), each thread receives its own instance: the last output
+ * gets the added read and the rest get a copy. Otherwise, the same read instance is passed to all
+ * the outputs in the caller thread. In both cases, reads should not be modified after they are
+ * added.
+ *
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+public final class TeeGATKWriter implements GATKReadWriter {
+
+    // maximum number of pending reads per writer thread
+    private static final int WRITER_THREAD_QUEUE_SIZE = 1000;
+
+    private final List<GATKReadWriter> writers;
+
+    // executor with one lane per writer; null if writing in the caller thread
+    private final OrderedLanesExecutor executor;
+
+    /**
+     * Constructor.
+     *
+     * @param writers       the writers to add the reads to.
+     * @param writerThreads if {@code true}, each writer is served by its own thread; otherwise,
+     *                      reads are written in the caller thread.
+     */
+    public TeeGATKWriter(final List<GATKReadWriter> writers, final boolean writerThreads) {
+        Utils.nonEmpty(writers, "empty writers");
+        writers.forEach(w -> Utils.nonNull(w, "null writer"));
+        this.writers = new ArrayList<>(writers);
+        this.executor = (writerThreads)
+                ? new OrderedLanesExecutor("TeeGATKWriter", writers.size(),
+                WRITER_THREAD_QUEUE_SIZE)
+                : null;
+    }
+
+    @Override
+    public void addRead(final GATKRead read) {
+        if (executor == null) {
+            for (final GATKReadWriter writer : writers) {
+                writer.addRead(read);
+            }
+            return;
+        }
+        // copies are done in the caller thread before handing over the original read to the
+        // last writer, so the same instance is never used by two writer threads
+        final int last = writers.size() - 1;
+        for (int i = 0; i < last; i++) {
+            final GATKReadWriter writer = writers.get(i);
+            final GATKRead copy = read.deepCopy();
+            executor.submit(i, () -> writer.addRead(copy));
+        }
+        final GATKReadWriter lastWriter = writers.get(last);
+        executor.submit(last, () -> lastWriter.addRead(read));
+    }
+
+    /** Closes all the outputs. */
+    @Override
+    public void close() throws IOException {
+        if (executor == null) {
+            for (final GATKReadWriter writer : writers) {
+                writer.close();
+            }
+        } else {
+            try {
+                for (int i = 0; i < writers.size(); i++) {
+                    final GATKReadWriter writer = writers.get(i);
+                    executor.submit(i, () -> ReadWriterFactory.closeWriter(writer));
+                }
+            } finally {
+                executor.close();
+            }
+        }
+    }
+}
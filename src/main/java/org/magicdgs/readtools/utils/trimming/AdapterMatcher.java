@@ -0,0 +1,295 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.magicdgs.readtools.utils.trimming;
+
+import org.broadinstitute.hellbender.utils.Utils;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Finds an adapter sequence in the 3 prime of a read, allowing mismatches and indels.
+ *
+ * <p>The adapter is searched in the read using the bit-parallel approximate matching algorithm
+ * from Myers (1999), in the formulation of Hyyro (2003). An adapter is found if:
+ *
+ * <ul>
+ *     <li>The complete adapter is found in the read with at most {@code maxErrorRate} errors
+ *     relative to the adapter length. The left-most occurrence is returned.</li>
+ *     <li>A prefix of the adapter (of at least {@code minOverlap} bases) is found at the end of
+ *     the read with at most {@code maxErrorRate} errors relative to the prefix length. The
+ *     longest prefix is returned.</li>
+ * </ul>
+ *
+ * <p>Ns in the adapter match any base, but Ns in the read only match Ns in the adapter.
+ *
+ * <p>A complete adapter with errors contains at least one exact seed (the adapter is split in as
+ * many pieces as allowed errors plus one). Thus, the read is only searched from the first seed
+ * found, and reads without seeds are only searched at the end for partial adapters.
+ *
+ * <p>Note: this class is not thread-safe.
+ *
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+public final class AdapterMatcher implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /** Maximum length of the adapter sequence (one bit per base in a {@code long}). */
+    public static final int MAX_ADAPTER_LENGTH = Long.SIZE;
+
+    // seeds shorter than this are found by chance in most reads, so they are not used
+    private static final int MIN_SEED_LENGTH = 6;
+    // seeds are encoded with 2 bits per base in a long
+    private static final int MAX_SEED_LENGTH = Long.SIZE / 2;
+    // the last bases of the seeds are stored in a bit-set (2 bits per base) for fast look-up
+    private static final int SEED_FILTER_MASK = (1 << (2 * MIN_SEED_LENGTH)) - 1;
+
+    // encoding for bases (A=0, C=1, G=2, T=3) and anything else (4)
+    private static final int UNKNOWN_CODE = 4;
+    private static final byte[] BASE_CODES = new byte[256];
+
+    static {
+        Arrays.fill(BASE_CODES, (byte) UNKNOWN_CODE);
+        final String bases = "ACGT";
+        for (byte i = 0; i < bases.length(); i++) {
+            BASE_CODES[bases.charAt(i)] = i;
+            BASE_CODES[Character.toLowerCase(bases.charAt(i))] = i;
+        }
+    }
+
+    // adapter encoded as base codes
+    private final byte[] adapter;
+    // maximum number of errors allowed for each adapter prefix length
+    private final int[] maxErrors;
+    private final int minOverlap;
+
+    // bit-vectors for each base code with the positions matching in the adapter
+    private final long[] peq;
+
+    // exact seeds for pre-filtering (null if not used)
+    private final long[] seeds;
+    private final long[] seedFilter;
+    private final int seedLength;
+    private final long seedMask;
+
+    // re-used bit-vectors for the reversed adapter prefix
+    private final long[] reversePeq = new long[UNKNOWN_CODE + 1];
+
+    /**
+     * Constructor.
+     *
+     * @param adapter      adapter sequence (A, C, G, T or N), up to {@link #MAX_ADAPTER_LENGTH}.
+     * @param maxErrorRate maximum error rate, relative to the length of the matched adapter.
+     * @param minOverlap   minimum length of adapter prefixes at the end of the read.
+     */
+    public AdapterMatcher(final String adapter, final double maxErrorRate, final int minOverlap) {
+        Utils.nonNull(adapter, "null adapter");
+        Utils.validateArg(!adapter.isEmpty(), "empty adapter");
+        Utils.validateArg(adapter.length() <= MAX_ADAPTER_LENGTH,
+                () -> "adapter longer than " + MAX_ADAPTER_LENGTH + ": " + adapter);
+        Utils.validateArg(maxErrorRate >= 0 && maxErrorRate < 1,
+                () -> "maxErrorRate should be in the range [0, 1): " + maxErrorRate);
+        Utils.validateArg(minOverlap > 0, () -> "minOverlap should be positive: " + minOverlap);
+        this.minOverlap = minOverlap;
+
+        // encode the adapter and check that it does not contain other bases
+        this.adapter = new byte[adapter.length()];
+        boolean hasUnknown = false;
+        for (int i = 0; i < adapter.length(); i++) {
+            final char base = adapter.charAt(i);
+            this.adapter[i] = BASE_CODES[base & 0xFF];
+            if (this.adapter[i] == UNKNOWN_CODE) {
+                Utils.validateArg(base == 'N' || base == 'n',
+                        () -> "adapter should only contain A, C, G, T or N: " + adapter);
+                hasUnknown = true;
+            }
+        }
+
+        this.maxErrors = new int[adapter.length() + 1];
+        for (int i = 0; i < maxErrors.length; i++) {
+            maxErrors[i] = (int) (maxErrorRate * i);
+        }
+
+        this.peq = new long[UNKNOWN_CODE + 1];
+        fillPeq(this.adapter, this.adapter.length, false, peq);
+
+        // pigeonhole principle: at least one of the (errors + 1) pieces of an adapter with
+        // errors is found without errors; adapters with Ns cannot be pre-filtered with 2-bit seeds
+        final int fullErrors = maxErrors[this.adapter.length];
+        final int length = Math.min(MAX_SEED_LENGTH, this.adapter.length / (fullErrors + 1));
+        if (hasUnknown || length < MIN_SEED_LENGTH) {
+            this.seeds = null;
+            this.seedFilter = null;
+            this.seedLength = 0;
+            this.seedMask = 0;
+        } else {
+            this.seedLength = length;
+            this.seedMask = (length == MAX_SEED_LENGTH) ? -1L : (1L << (2 * length)) - 1;
+            this.seeds = new long[fullErrors + 1];
+            this.seedFilter = new long[(SEED_FILTER_MASK + 1) / Long.SIZE];
+            for (int s = 0; s < seeds.length; s++) {
+                long seed = 0;
+                for (int i = s * length; i < (s + 1) * length; i++) {
+                    seed = (seed << 2) | this.adapter[i];
+                }
+                seeds[s] = seed;
+                final int index = (int) seed & SEED_FILTER_MASK;
+                seedFilter[index >>> 6] |= 1L << index;
+            }
+        }
+    }
+
+    // fill the bit-vector for the adapter prefix (reversed or not)
+    private static void fillPeq(final byte[] adapter, final int length, final boolean reversed,
+            final long[] toFill) {
+        Arrays.fill(toFill, 0L);
+        for (int i = 0; i < length; i++) {
+            final byte code = adapter[(reversed) ? length - 1 - i : i];
+            final long bit = 1L << i;
+            if (code == UNKNOWN_CODE) {
+                // Ns in the adapter match everything
+                for (int c = 0; c < toFill.length; c++) {
+                    toFill[c] |= bit;
+                }
+            } else {
+                toFill[code] |= bit;
+            }
+        }
+    }
+
+    /**
+     * Finds the start of the adapter in the bases.
+     *
+     * @param bases the read bases. It is not modified.
+     *
+     * @return the index where the adapter starts; the length of the bases if not found.
+     */
+    public int findAdapterStart(final byte[] bases) {
+        Utils.nonNull(bases, "null bases");
+        final int adapterLength = adapter.length;
+        final int fullErrors = maxErrors[adapterLength];
+        final int lastShift = adapterLength - 1;
+
+        // complete adapters contain a seed, and partial adapters are at the end of the read
+        // so the search starts at the first position where an adapter could start
+        final int from = Math.max(0, firstSeedEnd(bases) - adapterLength - fullErrors);
+
+        // vertical deltas of the dynamic programming column: +1 for pv bits, -1 for mv bits
+        long pv = -1L;
+        long mv = 0L;
+        int score = adapterLength;
+        for (int j = from; j < bases.length; j++) {
+            final long eq = peq[BASE_CODES[bases[j] & 0xFF]];
+            final long xv = eq | mv;
+            final long xh = (((eq & pv) + pv) ^ pv) | eq;
+            long ph = mv | ~(xh | pv);
+            long mh = pv & xh;
+            // branch-less update of the score (ph and mh are exclusive)
+            score += (int) ((ph >>> lastShift) & 1) - (int) ((mh >>> lastShift) & 1);
+            // the first row is 0 because the adapter may start anywhere
+            ph <<= 1;
+            mh <<= 1;
+            pv = mh | ~(xv | ph);
+            mv = ph & xv;
+            if (score <= fullErrors) {
+                return findStart(bases, j, adapterLength);
+            }
+        }
+
+        // for the last column, the score of a prefix is the sum of the vertical deltas
+        for (int i = adapterLength - 1; i >= minOverlap; i--) {
+            final long mask = (1L << i) - 1;
+            if (Long.bitCount(pv & mask) - Long.bitCount(mv & mask) <= maxErrors[i]) {
+                return findStart(bases, bases.length - 1, i);
+            }
+        }
+        return bases.length;
+    }
+
+    // gets the end (exclusive) of the first seed in the bases
+    // returns the length of the bases if there is no seed, or 0 if pre-filtering is not used
+    private int firstSeedEnd(final byte[] bases) {
+        if (seeds == null) {
+            return 0;
+        }
+        long kmer = 0;
+        int valid = 0;
+        for (int i = 0; i < bases.length; i++) {
+            final byte code = BASE_CODES[bases[i] & 0xFF];
+            if (code == UNKNOWN_CODE) {
+                valid = 0;
+                continue;
+            }
+            kmer = ((kmer << 2) | code) & seedMask;
+            valid++;
+            // only check the seeds if the last bases are present in the filter
+            final int index = (int) kmer & SEED_FILTER_MASK;
+            if ((seedFilter[index >>> 6] & (1L << index)) != 0 && valid >= seedLength) {
+                for (final long seed : seeds) {
+                    if (seed == kmer) {
+                        return i + 1;
+                    }
+                }
+            }
+        }
+        return bases.length;
+    }
+
+    // finds the start of the adapter prefix ending at the end position
+    // the reversed prefix is aligned to the reversed bases starting at end, and the start with
+    // less errors is returned (the left-most in case of ties)
+    private int findStart(final byte[] bases, final int end, final int prefixLength) {
+        fillPeq(adapter, prefixLength, true, reversePeq);
+        final int lastShift = prefixLength - 1;
+        int bestErrors = maxErrors[prefixLength];
+        // this is overridden, because the prefix was already found with the maximum errors
+        int start = Math.max(0, end + 1 - prefixLength);
+
+        long pv = -1L;
+        long mv = 0L;
+        int score = prefixLength;
+        final int last = Math.max(0, end + 1 - prefixLength - bestErrors);
+        for (int j = end; j >= last; j--) {
+            final long eq = reversePeq[BASE_CODES[bases[j] & 0xFF]];
+            final long xv = eq | mv;
+            final long xh = (((eq & pv) + pv) ^ pv) | eq;
+            long ph = mv | ~(xh | pv);
+            long mh = pv & xh;
+            // branch-less update of the score (ph and mh are exclusive)
+            score += (int) ((ph >>> lastShift) & 1) - (int) ((mh >>> lastShift) & 1);
+            // the first row increases because the alignment is anchored at the end
+            ph = (ph << 1) | 1;
+            mh <<= 1;
+            pv = mh | ~(xv | ph);
+            mv = ph & xv;
+            if (score <= bestErrors) {
+                bestErrors = score;
+                start = j;
+            }
+        }
+        return start;
+    }
+}
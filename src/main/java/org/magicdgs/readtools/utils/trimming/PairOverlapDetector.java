@@ -0,0 +1,334 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.magicdgs.readtools.utils.trimming;
+
+import org.magicdgs.readtools.utils.read.RTReadUtils;
+
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMTag;
+import org.broadinstitute.hellbender.utils.BaseUtils;
+import org.broadinstitute.hellbender.utils.Utils;
+import org.broadinstitute.hellbender.utils.read.GATKRead;
+import org.broadinstitute.hellbender.utils.read.SAMRecordToGATKReadAdapter;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Detects the overlap between the first read of a pair and the reverse complement of the second,
+ * to get the size of the sequenced fragment (insert size).
+ *
+ * <p>Candidate overlaps are found by exact k-mer seeds shared by both reads, and verified by
+ * counting the mismatches in the overlapping region (without indels). Overlaps too short to
+ * contain two seeds are always verified. The candidate with less mismatches is returned (the
+ * longest overlap in case of ties).
+ *
+ * <p>If the insert size is shorter than a read, the rest of the read is adapter read-through
+ * and can be trimmed. Overlapping pairs might also be merged into a single read with
+ * {@link #mergePair(GATKRead, GATKRead, int)}.
+ *
+ * <p>Note: this class is not thread-safe.
+ *
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+public final class PairOverlapDetector implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /** Length of the seeds used to find candidate overlaps. */
+    public static final int SEED_LENGTH = 12;
+
+    // quality for merged bases where the mates disagree
+    private static final byte MIN_MERGED_QUALITY = 2;
+
+    // encoding for bases (A=0, C=1, G=2, T=3; complement is 3 - code) and anything else (4)
+    private static final int UNKNOWN_CODE = 4;
+    private static final byte[] BASE_CODES = new byte[256];
+    private static final long SEED_MASK = (1L << (2 * SEED_LENGTH)) - 1;
+    // minimum capacity for the hash table (power of 2)
+    private static final int MIN_HASH_CAPACITY = 64;
+
+    static {
+        Arrays.fill(BASE_CODES, (byte) UNKNOWN_CODE);
+        final String bases = "ACGT";
+        for (byte i = 0; i < bases.length(); i++) {
+            BASE_CODES[bases.charAt(i)] = i;
+            BASE_CODES[Character.toLowerCase(bases.charAt(i))] = i;
+        }
+    }
+
+    private final int minOverlap;
+    private final double maxMismatchRate;
+
+    // re-used hash table for the seeds of the second read (open addressing)
+    private long[] seedKeys = new long[MIN_HASH_CAPACITY];
+    private int[] seedPositions = new int[MIN_HASH_CAPACITY];
+    private int[] seedStamps = new int[MIN_HASH_CAPACITY];
+    // re-used marks for candidate insert sizes
+    private int[] candidateStamps = new int[0];
+    // current stamp for both the hash table and the candidates
+    private int stamp = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param minOverlap      minimum number of overlapping bases between the mates.
+     * @param maxMismatchRate maximum rate of mismatches in the overlapping bases.
+     */
+    public PairOverlapDetector(final int minOverlap, final double maxMismatchRate) {
+        Utils.validateArg(minOverlap > 0, () -> "minOverlap should be positive: " + minOverlap);
+        Utils.validateArg(maxMismatchRate >= 0 && maxMismatchRate < 1,
+                () -> "maxMismatchRate should be in the range [0, 1): " + maxMismatchRate);
+        this.minOverlap = minOverlap;
+        this.maxMismatchRate = maxMismatchRate;
+    }
+
+    /**
+     * Finds the insert size for the pair of reads.
+     *
+     * @param first  bases for the first read of the pair (as sequenced). It is not modified.
+     * @param second bases for the second read of the pair (as sequenced). It is not modified.
+     *
+     * @return the insert size if the reads overlap; {@code -1} otherwise.
+     */
+    public int findInsertSize(final byte[] first, final byte[] second) {
+        Utils.nonNull(first, "null first");
+        Utils.nonNull(second, "null second");
+        final int maxInsert = first.length + second.length - minOverlap;
+        if (maxInsert < minOverlap) {
+            return -1;
+        }
+        if (++stamp == 0) {
+            // overflow: reset the stamps
+            Arrays.fill(seedStamps, 0);
+            Arrays.fill(candidateStamps, 0);
+            stamp = 1;
+        }
+        if (candidateStamps.length <= maxInsert) {
+            candidateStamps = new int[maxInsert + 1];
+        }
+
+        int bestInsert = -1;
+        int bestMismatches = Integer.MAX_VALUE;
+        int bestOverlap = 0;
+
+        // short overlaps (at both sides) are always verified
+        for (int insert = minOverlap; insert <= maxInsert; insert++) {
+            final int overlap = overlapLength(first.length, second.length, insert);
+            if (overlap < 2 * SEED_LENGTH) {
+                candidateStamps[insert] = stamp;
+                final int mismatches = countMismatches(first, second, insert, overlap);
+                if (isBetter(mismatches, overlap, bestMismatches, bestOverlap)) {
+                    bestInsert = insert;
+                    bestMismatches = mismatches;
+                    bestOverlap = overlap;
+                }
+            }
+        }
+
+        // the rest are only verified if there is a seed in the overlap
+        fillSeeds(second);
+        final int mask = seedKeys.length - 1;
+        long kmer = 0;
+        int valid = 0;
+        for (int i = 0; i < first.length; i++) {
+            final byte code = BASE_CODES[first[i] & 0xFF];
+            if (code == UNKNOWN_CODE) {
+                valid = 0;
+                continue;
+            }
+            kmer = ((kmer << 2) | code) & SEED_MASK;
+            if (++valid < SEED_LENGTH) {
+                continue;
+            }
+            // look for the position in the second read with the same seed
+            int slot = hash(kmer) & mask;
+            while (seedStamps[slot] == stamp && seedKeys[slot] != kmer) {
+                slot = (slot + 1) & mask;
+            }
+            if (seedStamps[slot] == stamp) {
+                // seeds start at the same position in the fragment
+                final int insert = second.length - seedPositions[slot] + i - SEED_LENGTH + 1;
+                if (insert >= minOverlap && insert <= maxInsert
+                        && candidateStamps[insert] != stamp) {
+                    candidateStamps[insert] = stamp;
+                    final int overlap = overlapLength(first.length, second.length, insert);
+                    final int mismatches = countMismatches(first, second, insert, overlap);
+                    if (isBetter(mismatches, overlap, bestMismatches, bestOverlap)) {
+                        bestInsert = insert;
+                        bestMismatches = mismatches;
+                        bestOverlap = overlap;
+                    }
+                }
+            }
+        }
+        return bestInsert;
+    }
+
+    // number of bases in the overlap for the insert size
+    private static int overlapLength(final int firstLength, final int secondLength,
+            final int insert) {
+        return Math.min(firstLength, insert) - Math.max(0, insert - secondLength);
+    }
+
+    // less mismatches or longer overlap if the same number of mismatches
+    private static boolean isBetter(final int mismatches, final int overlap,
+            final int bestMismatches, final int bestOverlap) {
+        return mismatches != Integer.MAX_VALUE && (mismatches < bestMismatches
+                || (mismatches == bestMismatches && overlap > bestOverlap));
+    }
+
+    // counts the mismatches in the overlap, returning Integer.MAX_VALUE if the maximum is exceeded
+    // the base at first[i] corresponds to the complement of second[insert - 1 - i]
+    // unknown bases are not counted as mismatches
+    private int countMismatches(final byte[] first, final byte[] second, final int insert,
+            final int overlap) {
+        if (overlap < minOverlap) {
+            return Integer.MAX_VALUE;
+        }
+        final int maxMismatches = (int) (maxMismatchRate * overlap);
+        final int end = Math.min(first.length, insert);
+        int mismatches = 0;
+        for (int i = Math.max(0, insert - second.length); i < end; i++) {
+            final int firstCode = BASE_CODES[first[i] & 0xFF];
+            final int secondCode = BASE_CODES[second[insert - 1 - i] & 0xFF];
+            if (firstCode != UNKNOWN_CODE && secondCode != UNKNOWN_CODE
+                    && firstCode != 3 - secondCode && ++mismatches > maxMismatches) {
+                return Integer.MAX_VALUE;
+            }
+        }
+        return mismatches;
+    }
+
+    // fills the hash table with the seeds of the reverse complement of the second read
+    // positions are the start of the seed in the reverse complement
+    private void fillSeeds(final byte[] second) {
+        if (seedKeys.length < 2 * second.length) {
+            final int capacity = Integer.highestOneBit(2 * second.length) << 1;
+            seedKeys = new long[capacity];
+            seedPositions = new int[capacity];
+            seedStamps = new int[capacity];
+        }
+        final int mask = seedKeys.length - 1;
+        long kmer = 0;
+        int valid = 0;
+        for (int j = 0; j < second.length; j++) {
+            final byte code = BASE_CODES[second[second.length - 1 - j] & 0xFF];
+            if (code == UNKNOWN_CODE) {
+                valid = 0;
+                continue;
+            }
+            kmer = ((kmer << 2) | (3 - code)) & SEED_MASK;
+            if (++valid >= SEED_LENGTH) {
+                int slot = hash(kmer) & mask;
+                while (seedStamps[slot] == stamp && seedKeys[slot] != kmer) {
+                    slot = (slot + 1) & mask;
+                }
+                // repeated seeds only keep the first position (e.g., low-complexity sequences)
+                if (seedStamps[slot] != stamp) {
+                    seedStamps[slot] = stamp;
+                    seedKeys[slot] = kmer;
+                    seedPositions[slot] = j - SEED_LENGTH + 1;
+                }
+            }
+        }
+    }
+
+    private static int hash(final long kmer) {
+        final long h = kmer * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 32);
+    }
+
+    /**
+     * Merges a pair of reads with the provided insert size into a single read. The merged read is
+     * a copy of the first read, unpaired, with the bases of the first read followed by the reverse
+     * complement of the second. In the overlapping region, the qualities are the maximum of both
+     * mates if the bases are the same; otherwise, the base with the highest quality is used with
+     * the difference between the qualities.
+     *
+     * @param first  the first read of the pair (unmapped). It is not modified.
+     * @param second the second read of the pair (unmapped). It is not modified.
+     * @param insert the insert size for the pair
+     *               (see {@link #findInsertSize(byte[], byte[])}).
+     *
+     * @return a new unpaired read with the merged sequence, without first/second of pair flags
+     * and mate information.
+     */
+    public static GATKRead mergePair(final GATKRead first, final GATKRead second,
+            final int insert) {
+        Utils.nonNull(first, "null first");
+        Utils.nonNull(second, "null second");
+        final byte[] firstBases = first.getBasesNoCopy();
+        final byte[] firstQuals = first.getBaseQualitiesNoCopy();
+        final byte[] secondBases = second.getBasesNoCopy();
+        final byte[] secondQuals = second.getBaseQualitiesNoCopy();
+        Utils.validateArg(insert > 0 && insert <= firstBases.length + secondBases.length,
+                () -> "invalid insert size: " + insert);
+
+        final byte[] bases = new byte[insert];
+        final byte[] quals = new byte[insert];
+        for (int i = 0; i < insert; i++) {
+            final int j = insert - 1 - i;
+            if (j >= secondBases.length) {
+                // only covered by the first read
+                bases[i] = firstBases[i];
+                quals[i] = firstQuals[i];
+            } else if (i >= firstBases.length) {
+                // only covered by the second read
+                bases[i] = BaseUtils.simpleComplement(secondBases[j]);
+                quals[i] = secondQuals[j];
+            } else {
+                final byte secondBase = BaseUtils.simpleComplement(secondBases[j]);
+                if (BaseUtils.basesAreEqual(firstBases[i], secondBase)) {
+                    bases[i] = firstBases[i];
+                    quals[i] = (byte) Math.max(firstQuals[i], secondQuals[j]);
+                } else {
+                    bases[i] = (firstQuals[i] >= secondQuals[j]) ? firstBases[i] : secondBase;
+                    quals[i] = (byte) Math.max(MIN_MERGED_QUALITY,
+                            Math.abs(firstQuals[i] - secondQuals[j]));
+                }
+            }
+        }
+
+        // clear all the pair information (flags and mate), to be handled as a single-end read
+        final SAMRecord record = first.deepCopy().convertToSAMRecord(null);
+        record.setReadBases(bases);
+        record.setBaseQualities(quals);
+        record.setReadPairedFlag(false);
+        record.setProperPairFlag(false);
+        record.setFirstOfPairFlag(false);
+        record.setSecondOfPairFlag(false);
+        record.setMateUnmappedFlag(false);
+        record.setMateNegativeStrandFlag(false);
+        record.setMateReferenceName(SAMRecord.NO_ALIGNMENT_REFERENCE_NAME);
+        record.setMateAlignmentStart(SAMRecord.NO_ALIGNMENT_START);
+        record.setInferredInsertSize(0);
+        record.setAttribute(SAMTag.MC.name(), null);
+        record.setAttribute(SAMTag.MQ.name(), null);
+        final GATKRead merged = new SAMRecordToGATKReadAdapter(record);
+        RTReadUtils.clearTrimmingPointTags(merged);
+        return merged;
+    }
+}
@@ -24,10 +24,13 @@
 
 package org.magicdgs.readtools.utils.trimming;
 
+import org.magicdgs.readtools.RTDefaults;
 import org.magicdgs.readtools.metrics.FilterMetric;
 import org.magicdgs.readtools.metrics.TrimmerMetric;
 import org.magicdgs.readtools.utils.read.RTReadUtils;
+import org.magicdgs.readtools.utils.read.ReservedTags;
 import org.magicdgs.readtools.utils.read.filter.CompletelyTrimReadFilter;
+import org.magicdgs.readtools.utils.read.filter.TrimmingAwareReadFilter;
 import org.magicdgs.readtools.utils.read.transformer.trimming.ApplyTrimResultReadTransformer;
 import org.magicdgs.readtools.utils.read.transformer.trimming.TrimmingFunction;
 
@@ -35,14 +38,20 @@ import com.google.common.annotations.VisibleForTesting;
 import htsjdk.samtools.SAMTag;
 import org.broadinstitute.barclay.argparser.CommandLineException;
 import org.broadinstitute.barclay.argparser.CommandLinePluginDescriptor;
+import org.broadinstitute.hellbender.engine.filters.MappingQualityReadFilter;
 import org.broadinstitute.hellbender.engine.filters.ReadFilter;
+import org.broadinstitute.hellbender.engine.filters.ReadFilterLibrary;
+import org.broadinstitute.hellbender.engine.filters.ReadLengthReadFilter;
 import org.broadinstitute.hellbender.transformers.ReadTransformer;
 import org.broadinstitute.hellbender.utils.Utils;
 import org.broadinstitute.hellbender.utils.read.GATKRead;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.function.BiPredicate;
 
 /**
@@ -58,16 +67,53 @@ import java.util.function.BiPredicate;
  * - A composed AND filter with the provided ones is applied and returned the value.
  * - If a filter is applied to the read, the {@link SAMTag#FT} is updated to reflect it.
  *
+ * The pipeline could be compiled (see {@link RTDefaults#COMPILED_TRIMMING_PIPELINE}). In that
+ * case, the trimmers are applied in a single loop that keeps the trimming points outside of the
+ * read (updated only once after all trimmers are applied), and the filters are tested in a single
+ * loop instead of a chain of composed filters. Metrics are the same in both modes, but trimmers
+ * should not rely on the trimming tags of the read.
+ *
+ * If pre-filtering is enabled, the first filters are tested before applying the trimming result,
+ * as far as they are known to give the same result before and after trimming (see
+ * {@link TrimmingAwareReadFilter}). This allows to skip the trimming of reads that are going to be
+ * discarded anyway, with the same metrics.
+ *
  * @author Daniel Gomez-Sanchez (magicDGS)
  */
 public class TrimAndFilterPipeline extends ReadFilter {
 
     private static final ReadFilter COMPLETELY_TRIM_READ_FILTER = new CompletelyTrimReadFilter();
 
+    private static final ReadTransformer APPLY_TRIM_RESULT = new ApplyTrimResultReadTransformer();
+
+    // GATK filters that do not depend on the bases, qualities, length or alignment of the read
+    private static final Set<Class<? extends ReadFilter>> INVARIANT_GATK_FILTERS =
+            new HashSet<>(Arrays.asList(
+                    ReadFilterLibrary.MappedReadFilter.class,
+                    ReadFilterLibrary.PairedReadFilter.class,
+                    ReadFilterLibrary.ProperlyPairedReadFilter.class,
+                    ReadFilterLibrary.FirstOfPairReadFilter.class,
+                    ReadFilterLibrary.SecondOfPairReadFilter.class,
+                    ReadFilterLibrary.PrimaryLineReadFilter.class,
+                    ReadFilterLibrary.NotSecondaryAlignmentReadFilter.class,
+                    ReadFilterLibrary.NotSupplementaryAlignmentReadFilter.class,
+                    ReadFilterLibrary.NotDuplicateReadFilter.class,
+                    ReadFilterLibrary.PassesVendorQualityCheckReadFilter.class,
+                    ReadFilterLibrary.MappingQualityAvailableReadFilter.class,
+                    ReadFilterLibrary.MappingQualityNotZeroReadFilter.class,
+                    ReadFilterLibrary.HasReadGroupReadFilter.class,
+                    MappingQualityReadFilter.class));
+
     // these are the two pipelines, visible in the package for testing alone
+    // if pre-filtering is used, the trimming pipeline does not apply the trimming result
     private final ReadTransformer trimmingPipeline;
     private final ReadFilter filteringPipeline;
 
+    // tests before applying the trimming for the first filters (null if pre-filtering is not used)
+    private final PreTrimmingTest[] preTrimmingTests;
+    // filters in order, including the completely trim read filter
+    private final CollectingFilterMetricFilter[] collectingFilters;
+
     // these are the metrics, accumulated on construction for the collecting wrappers
     private final List<TrimmerMetric> trimmerMetrics;
     private final List<FilterMetric> filterMetrics;
@@ -75,11 +121,44 @@ public class TrimAndFilterPipeline extends ReadFilter {
     /**
      * Constructor.
      *
+     * <p>The pipeline is compiled depending on {@link RTDefaults#COMPILED_TRIMMING_PIPELINE}.
+     *
      * @param trimmers trimmers to apply (in order).
      * @param filters  filters to apply after trimming (in order).
      */
     public TrimAndFilterPipeline(final List<TrimmingFunction> trimmers,
             final List<ReadFilter> filters) {
+        this(trimmers, filters, RTDefaults.COMPILED_TRIMMING_PIPELINE);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param trimmers trimmers to apply (in order).
+     * @param filters  filters to apply after trimming (in order).
+     * @param compiled {@code true} if the pipeline should be compiled; {@code false} otherwise.
+     */
+    public TrimAndFilterPipeline(final List<TrimmingFunction> trimmers,
+            final List<ReadFilter> filters, final boolean compiled) {
+        this(trimmers, filters, compiled, false);
+    }
+
+    /**
+     * Constructor.
+     *
+     * <p>If pre-filtering is requested, the first filters are tested after computing the
+     * trimming points but before applying them to the read, as long as they could be decided
+     * (see {@link TrimmingAwareReadFilter}). Reads discarded in this way are not trimmed, but
+     * the metrics are the same as without pre-filtering.
+     *
+     * @param trimmers  trimmers to apply (in order).
+     * @param filters   filters to apply after trimming (in order).
+     * @param compiled  {@code true} if the pipeline should be compiled; {@code false} otherwise.
+     * @param preFilter {@code true} if filters might be tested before applying the trimming;
+     *                  {@code false} otherwise.
+     */
+    public TrimAndFilterPipeline(final List<TrimmingFunction> trimmers,
+            final List<ReadFilter> filters, final boolean compiled, final boolean preFilter) {
         // param checking
         Utils.nonNull(trimmers, "null trimmers");
         Utils.nonNull(filters, "null filters");
@@ -90,37 +169,67 @@ public class TrimAndFilterPipeline extends ReadFilter {
         this.trimmerMetrics = new ArrayList<>(trimmers.size());
         this.filterMetrics = new ArrayList<>(filters.size());
 
+        // set up the filters (completely trimmed is always added at the beginning)
+        this.collectingFilters = new CollectingFilterMetricFilter[filters.size() + 1];
+        collectingFilters[0] = new CollectingFilterMetricFilter(COMPLETELY_TRIM_READ_FILTER);
+        for (int i = 0; i < filters.size(); i++) {
+            collectingFilters[i + 1] = new CollectingFilterMetricFilter(filters.get(i));
+        }
+        Arrays.stream(collectingFilters).forEach(cfmf -> filterMetrics.add(cfmf.metric));
+
+        // pre-filtering only reduces computation if there are trimmers
+        this.preTrimmingTests = (preFilter && !trimmers.isEmpty())
+                ? getPreTrimmingTests(filters) : null;
+        // the trimming result is applied after pre-filtering
+        final boolean applyTrimResult = preTrimmingTests == null;
+
         // set up the trimming pipeline
         if (trimmers.isEmpty()) {
             // we do not need to apply the trimming result
             this.trimmingPipeline = ReadTransformer.identity();
+        } else if (compiled) {
+            final CompiledTrimmingTransformer compiledTrimmers =
+                    new CompiledTrimmingTransformer(trimmers, applyTrimResult);
+            trimmerMetrics.addAll(Arrays.asList(compiledTrimmers.metrics));
+            this.trimmingPipeline = compiledTrimmers;
         } else {
-            this.trimmingPipeline = composeTrimmingFunction(trimmers);
+            final ReadTransformer composed = composeTrimmingFunction(trimmers);
+            this.trimmingPipeline = (applyTrimResult)
+                    ? composed.andThen(APPLY_TRIM_RESULT) : composed;
         }
 
-        // completely trimmed is always added
-        final CollectingFilterMetricFilter completelyTrimmed =
-                new CollectingFilterMetricFilter(COMPLETELY_TRIM_READ_FILTER);
-        filterMetrics.add(completelyTrimmed.metric);
-
         // set up the filter pipeline
         if (filters.isEmpty()) {
-            this.filteringPipeline = completelyTrimmed;
+            this.filteringPipeline = collectingFilters[0];
+        } else if (compiled) {
+            this.filteringPipeline = new CompiledFilter(collectingFilters);
         } else {
             // this should leave at the beginning the COMPLETELY_TRIM_READ_FILTER
-            this.filteringPipeline = filters.stream()
-                    .map(rf -> {
-                        final CollectingFilterMetricFilter cfmf =
-                                new CollectingFilterMetricFilter(rf);
-                        filterMetrics.add(cfmf.metric);
-                        return (ReadFilter) cfmf;
-                    })
-                    .reduce(completelyTrimmed, ReadFilter::and);
+            this.filteringPipeline = Arrays.stream(collectingFilters)
+                    .map(cfmf -> (ReadFilter) cfmf)
+                    .reduce(ReadFilter::and).get();
         }
+    }
 
+    // helper function to get the tests before trimming for the first filters
+    // returns null if only the completely trimmed filter could be tested
+    private static PreTrimmingTest[] getPreTrimmingTests(final List<ReadFilter> filters) {
+        final List<PreTrimmingTest> tests = new ArrayList<>(filters.size() + 1);
+        tests.add(PreTrimmingTest.of(COMPLETELY_TRIM_READ_FILTER));
+        for (final ReadFilter filter : filters) {
+            final PreTrimmingTest test = PreTrimmingTest.of(filter);
+            // the rest of the filters cannot be tested if the previous one cannot be tested
+            if (test == null) {
+                break;
+            }
+            tests.add(test);
+        }
+        // completely trimmed reads are not trimmed anyway, so it is not worthy
+        return (tests.size() == 1) ? null : tests.toArray(new PreTrimmingTest[tests.size()]);
     }
 
     // helper function to compose the trimming functions into a single ReadTransformer
+    // the trimming result is not applied
     private ReadTransformer composeTrimmingFunction(
             final List<TrimmingFunction> trimmingFunctions) {
 
@@ -138,7 +247,7 @@ public class TrimAndFilterPipeline extends ReadFilter {
             composed = composed.andThen(ctmt);
         }
 
-        return composed.andThen(new ApplyTrimResultReadTransformer());
+        return composed;
     }
 
     /**
@@ -149,9 +258,30 @@ public class TrimAndFilterPipeline extends ReadFilter {
      */
     @Override
     public boolean test(final GATKRead read) {
-        // maybe pre-filter will allow to reduce computation,
-        // but this can be done with a different tool
-        return filteringPipeline.test(trimmingPipeline.apply(read));
+        if (preTrimmingTests == null) {
+            return filteringPipeline.test(trimmingPipeline.apply(read));
+        }
+        // this only computes the trimming points
+        trimmingPipeline.apply(read);
+        int i = 0;
+        for (; i < preTrimmingTests.length; i++) {
+            final PreTrimmingResult result = preTrimmingTests[i].test(read);
+            if (result == PreTrimmingResult.UNKNOWN) {
+                break;
+            }
+            if (!collectingFilters[i].collect(read, result == PreTrimmingResult.PASS)) {
+                // discarded without applying the trimming
+                return false;
+            }
+        }
+        // apply the trimming and test the rest of filters
+        APPLY_TRIM_RESULT.apply(read);
+        for (; i < collectingFilters.length; i++) {
+            if (!collectingFilters[i].test(read)) {
+                return false;
+            }
+        }
+        return true;
     }
 
     /** Gets the trimming statistics as a unmodifiable list. */
@@ -180,11 +310,7 @@ public class TrimAndFilterPipeline extends ReadFilter {
         CollectingTrimmingMetricTransformer(final TrimmingFunction delegate) {
             // we don't need validation here for 5/3 prime disabling, because it was done before
             this.delegate = delegate;
-            final String className = delegate.getClass().getSimpleName();
-            // anonymous classes have a 0-length simple name, but they should still be valid to
-            // apply to the pipeline. We use the default name for the metric in that case (unknown)
-            this.metric = (className.length() == 0)
-                    ? new TrimmerMetric() : new TrimmerMetric(className);
+            this.metric = newTrimmerMetric(delegate);
 
             this.fivePrimeUpdate = (delegate.isDisable5prime())
                     ? (read, previous) -> false
@@ -219,6 +345,177 @@ public class TrimAndFilterPipeline extends ReadFilter {
         }
     }
 
+    // helper function to create the metric for a trimmer
+    private static TrimmerMetric newTrimmerMetric(final TrimmingFunction trimmer) {
+        final String className = trimmer.getClass().getSimpleName();
+        // anonymous classes have a 0-length simple name, but they should still be valid to
+        // apply to the pipeline. We use the default name for the metric in that case (unknown)
+        return (className.length() == 0) ? new TrimmerMetric() : new TrimmerMetric(className);
+    }
+
+    // class for apply all the trimmers in a single loop, collecting metrics
+    // the trimming points are kept outside the read, which is updated only once at the end
+    @VisibleForTesting
+    static class CompiledTrimmingTransformer implements ReadTransformer {
+        public static final long serialVersionUID = 1L;
+
+        @VisibleForTesting
+        final TrimmerMetric[] metrics;
+        private final TrimmingFunction[] trimmers;
+        // re-used array for the trimming points of each trimmer
+        private final int[] trimPoints = new int[2];
+        // if false, the trimming tags are updated instead of applying the result
+        private final boolean applyTrimResult;
+
+        @VisibleForTesting
+        CompiledTrimmingTransformer(final List<TrimmingFunction> trimmers,
+                final boolean applyTrimResult) {
+            this.applyTrimResult = applyTrimResult;
+            this.trimmers = trimmers.toArray(new TrimmingFunction[trimmers.size()]);
+            this.metrics = new TrimmerMetric[this.trimmers.length];
+            for (int i = 0; i < this.trimmers.length; i++) {
+                metrics[i] = newTrimmerMetric(this.trimmers[i]);
+            }
+        }
+
+        @Override
+        public GATKRead apply(final GATKRead read) {
+            final int length = read.getLength();
+            // initialize the state from the read, which may be already trimmed
+            final boolean wasCompletelyTrim = RTReadUtils.isCompletelyTrimRead(read);
+            int start = RTReadUtils.getTrimmingStartPoint(read);
+            int end = RTReadUtils.getTrimmingEndPoint(read);
+            // reads already flagged as completely trimmed are not updated (use -1 for them)
+            int completelyTrimFlag = (wasCompletelyTrim)
+                    ? -1 : RTReadUtils.getCompletelyTrimFlag(start, end, length);
+
+            for (int i = 0; i < trimmers.length; i++) {
+                final TrimmerMetric metric = metrics[i];
+                metric.TOTAL++;
+                // trimmers are not applied to completely trimmed reads
+                if (completelyTrimFlag == 0) {
+                    trimmers[i].computeTrimPoints(read, trimPoints);
+                    Utils.validateArg(trimPoints[0] >= 0, "negative start not allowed");
+                    Utils.validateArg(trimPoints[1] >= 0, "negative end not allowed");
+                    // conserve the right-most start and the left-most end
+                    final boolean trimmed5p = trimPoints[0] > start;
+                    final boolean trimmed3p = trimPoints[1] < end;
+                    if (trimmed5p) {
+                        start = trimPoints[0];
+                    }
+                    if (trimmed3p) {
+                        end = trimPoints[1];
+                    }
+                    completelyTrimFlag = RTReadUtils.getCompletelyTrimFlag(start, end, length);
+                    // update the metrics
+                    if (completelyTrimFlag != 0) {
+                        metric.TRIMMED_COMPLETE++;
+                    } else {
+                        if (trimmed5p) {
+                            metric.TRIMMED_5_P++;
+                        }
+                        if (trimmed3p) {
+                            metric.TRIMMED_3_P++;
+                        }
+                    }
+                }
+            }
+
+            if (!applyTrimResult) {
+                // update the tags once
+                if (!wasCompletelyTrim) {
+                    read.setAttribute(ReservedTags.ts, start);
+                    read.setAttribute(ReservedTags.te, end);
+                    read.setAttribute(ReservedTags.ct, completelyTrimFlag);
+                }
+                return read;
+            }
+
+            // apply the trimming result once
+            read.clearAttribute(ReservedTags.ts);
+            read.clearAttribute(ReservedTags.te);
+            if (!wasCompletelyTrim) {
+                read.setAttribute(ReservedTags.ct, completelyTrimFlag);
+                if (completelyTrimFlag == 0) {
+                    ApplyTrimResultReadTransformer.applyTrimPoints(read, start, end);
+                }
+            }
+            return read;
+        }
+    }
+
+    // class for test all the filters in a single loop (short-circuiting as ReadFilter.and)
+    @VisibleForTesting
+    static class CompiledFilter extends ReadFilter {
+        public static final long serialVersionUID = 1L;
+
+        private final CollectingFilterMetricFilter[] filters;
+
+        @VisibleForTesting
+        CompiledFilter(final CollectingFilterMetricFilter[] filters) {
+            this.filters = filters;
+        }
+
+        @Override
+        public boolean test(final GATKRead read) {
+            for (final CollectingFilterMetricFilter filter : filters) {
+                if (!filter.test(read)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    // result of testing a filter before applying the trimming result
+    private enum PreTrimmingResult { PASS, FAIL, UNKNOWN }
+
+    // test for a filter before applying the trimming result (the trimming tags are present)
+    @FunctionalInterface
+    private interface PreTrimmingTest {
+
+        PreTrimmingResult test(final GATKRead read);
+
+        // gets the test for the filter; null if it cannot be tested before trimming
+        static PreTrimmingTest of(final ReadFilter filter) {
+            if (filter instanceof TrimmingAwareReadFilter) {
+                switch (((TrimmingAwareReadFilter) filter).getTrimmingBehavior()) {
+                    case INVARIANT:
+                        return read -> (filter.test(read))
+                                ? PreTrimmingResult.PASS : PreTrimmingResult.FAIL;
+                    case MONOTONE:
+                        return read -> (filter.test(read))
+                                ? PreTrimmingResult.UNKNOWN : PreTrimmingResult.FAIL;
+                    default:
+                        return null;
+                }
+            }
+            if (filter.getClass() == ReadLengthReadFilter.class) {
+                final ReadLengthReadFilter lengthFilter = (ReadLengthReadFilter) filter;
+                return read -> {
+                    // the length after trimming is at most the distance between trimming points
+                    final int length = RTReadUtils.getTrimmingEndPoint(read)
+                            - RTReadUtils.getTrimmingStartPoint(read);
+                    if (length < lengthFilter.minReadLength) {
+                        return PreTrimmingResult.FAIL;
+                    }
+                    // unmapped reads are trimmed exactly to the trimming points, but hard-clipping
+                    // mapped reads may remove some more bases
+                    if (read.isUnmapped()) {
+                        return (length <= lengthFilter.maxReadLength)
+                                ? PreTrimmingResult.PASS : PreTrimmingResult.FAIL;
+                    }
+                    return PreTrimmingResult.UNKNOWN;
+                };
+            }
+            if (INVARIANT_GATK_FILTERS.contains(filter.getClass())) {
+                return read -> (filter.test(read))
+                        ? PreTrimmingResult.PASS : PreTrimmingResult.FAIL;
+            }
+            return null;
+        }
+    }
+
     // class for collect metric for the filtering pipeline
     @VisibleForTesting
     static class CollectingFilterMetricFilter extends ReadFilter {
@@ -240,9 +537,12 @@ public class TrimAndFilterPipeline extends ReadFilter {
 
         @Override
         public boolean test(final GATKRead read) {
+            return collect(read, delegate.test(read));
+        }
+
+        // updates the metrics with the result of the filter, and returns it
+        boolean collect(final GATKRead read, final boolean pass) {
             metric.TOTAL++;
-            // trimming function modify in place the read
-            final boolean pass = delegate.test(read);
             // update the metrics
             if (pass) {
                 metric.PASSED++;
@@ -271,6 +571,30 @@ public class TrimAndFilterPipeline extends ReadFilter {
     public static TrimAndFilterPipeline fromPluginDescriptors(
             final CommandLinePluginDescriptor<TrimmingFunction> trimmingPlugin,
             final CommandLinePluginDescriptor<ReadFilter> filterPlugin) {
+        return fromPluginDescriptors(trimmingPlugin, filterPlugin, false);
+    }
+
+    /**
+     * Gets a trimming/filtering pipeline from the plugin descriptors.
+     *
+     * The list of trimmers/filters to apply is constructed first with the default ones and then
+     * with the user provided, in order.
+     *
+     * @param trimmingPlugin plugin to get the trimmer(s) from.
+     * @param filterPlugin   plugin to get the read filter(s) from.
+     * @param preFilter      {@code true} if filters might be tested before applying the
+     *                       trimming (discarded reads might not be trimmed); {@code false}
+     *                       otherwise.
+     *
+     * @return a trimming/filtering pipeline.
+     *
+     * @throws CommandLineException.BadArgumentValue if no trimmer and filter instances are
+     *                                               specified.
+     */
+    public static TrimAndFilterPipeline fromPluginDescriptors(
+            final CommandLinePluginDescriptor<TrimmingFunction> trimmingPlugin,
+            final CommandLinePluginDescriptor<ReadFilter> filterPlugin,
+            final boolean preFilter) {
 
         // add the default and afterwards the ones provided by the user
         final List<TrimmingFunction> trimmers = trimmingPlugin.getResolvedInstances();
@@ -286,6 +610,7 @@ public class TrimAndFilterPipeline extends ReadFilter {
         }
 
         // returns the new pipeline
-        return new TrimAndFilterPipeline(trimmers, filters);
+        return new TrimAndFilterPipeline(trimmers, filters,
+                RTDefaults.COMPILED_TRIMMING_PIPELINE, preFilter);
     }
 }
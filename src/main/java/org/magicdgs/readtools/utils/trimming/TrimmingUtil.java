@@ -27,6 +27,8 @@ package org.magicdgs.readtools.utils.trimming;
 import org.broadinstitute.hellbender.utils.BaseUtils;
 import org.broadinstitute.hellbender.utils.Utils;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.Arrays;
 import java.util.TreeMap;
 
@@ -61,6 +63,8 @@ public class TrimmingUtil {
      *
      * @return the zero-base indexes which should be trimmed. When no trimming is required,
      * [0, quals.length] will be returned.
+     *
+     * @see #trimPointsMott(byte[], int, int[]) for an allocation-free version.
      */
     public static int[] trimPointsMott(final byte[] quals, final int trimQual) {
         Utils.nonNull(quals, "null quals");
@@ -100,6 +104,67 @@ public class TrimmingUtil {
         return hsps.get(hsps.lastKey());
     }
 
+    /**
+     * Allocation-free version of {@link #trimPointsMott(byte[], int)}, which fills in the provided
+     * array with the trimming points instead of returning a new one.
+     *
+     * <p>Only the highest-scoring segment is tracked in a single pass over the qualities. If
+     * several segments have the same score, the last one is returned (as in
+     * {@link #trimPointsMott(byte[], int)}).
+     *
+     * @param quals    a byte[] of quality scores in phred scaling (i.e. integer values between 0
+     *                 and ~60). Note that it is safe to pass an in-use array as it would not be
+     *                 modified.
+     * @param trimQual the lowest quality that is considered "good"
+     * @param toFill   array of length 2 to fill in with the zero-base indexes which should be
+     *                 trimmed. When no trimming is required, it will be filled with
+     *                 [0, quals.length]; if the entire array is of low quality, with
+     *                 [quals.length, 0].
+     */
+    public static void trimPointsMott(final byte[] quals, final int trimQual, final int[] toFill) {
+        Utils.nonNull(quals, "null quals");
+        Utils.validateArg(trimQual >= 0, "negative trimQual");
+        Utils.validateArg(toFill != null && toFill.length == 2, "toFill should have length 2");
+        // best segment found so far (default is completely trimmed)
+        int bestScore = 0;
+        int bestStart = quals.length;
+        int bestEnd = 0;
+        // current segment
+        int highScore = 0;
+        int activeScore = 0;
+        int start = -1;
+        int end = 0;
+        for (int i = 0; i < quals.length; i++) {
+            activeScore += (quals[i] - trimQual);
+            if (activeScore > 0) {
+                if (activeScore > highScore) {
+                    highScore = activeScore;
+                    end = i;
+                }
+                if (start == -1) {
+                    start = i;
+                }
+            } else {
+                // greater or equal, because ties are resolved by keeping the last segment
+                if (highScore > 0 && highScore >= bestScore) {
+                    bestScore = highScore;
+                    bestStart = start;
+                    bestEnd = end + 1;
+                }
+                start = -1;
+                end = 0;
+                activeScore = 0;
+                highScore = 0;
+            }
+        }
+        if (highScore > 0 && highScore >= bestScore) {
+            bestStart = start;
+            bestEnd = end + 1;
+        }
+        toFill[0] = bestStart;
+        toFill[1] = bestEnd;
+    }
+
     /**
      * Implements trailing Ns (unknown nucleotide) trimming. Takes in an array of sequence value as
      * byte[] and return two indexes where the byte array should be clipped, such as that the
@@ -135,4 +200,81 @@ public class TrimmingUtil {
         return positions;
     }
 
+    // SWAR constants: a byte of ones in each lane, the high bit of each lane and the lower-case bit
+    private static final long SWAR_LOW_BITS = 0x0101010101010101L;
+    private static final long SWAR_HIGH_BITS = 0x8080808080808080L;
+    private static final long SWAR_CASE_BITS = 0x2020202020202020L;
+
+    /**
+     * Implements homopolymer tail (e.g., poly-G) trimming. Takes in an array of sequence value as
+     * byte[] and returns the index where the 3 prime of the byte array should be clipped.
+     *
+     * <p>The bases are scanned from the 3 prime end, scoring +1 for each base equal to the
+     * homopolymer base and -2 otherwise. The tail is the highest-scoring suffix starting with the
+     * homopolymer base with a mismatch rate of at most the maximum, and it is trimmed only if it
+     * is at least of the minimum length. The scan stops when the score falls more than the
+     * minimum length below the best one, so reads without a tail are checked in a few bases.
+     *
+     * <p>Blocks of 8 bases are compared at once (SWAR): if all of them are equal (or all of them
+     * are different) to the homopolymer base, the score is updated for the whole block, because
+     * only the last base of the block might be the start of the best tail.
+     *
+     * @param bases           a byte[] of bases (ACTGN). Note that it is safe to pass an in-use
+     *                        array as it would not be modified.
+     * @param base            the homopolymer base (upper-case letter).
+     * @param minLength       minimum length of the tail to be trimmed.
+     * @param maxMismatchRate maximum rate of mismatches in the tail.
+     *
+     * @return the zero-base index where the tail starts. When no trimming is required,
+     * bases.length will be returned.
+     */
+    public static int trimPointPolyTail(final byte[] bases, final byte base,
+            final int minLength, final double maxMismatchRate) {
+        Utils.nonNull(bases, "null bases");
+        Utils.validateArg(base >= 'A' && base <= 'Z',
+                () -> "homopolymer base should be an upper-case letter: " + (char) base);
+        final byte lowerCaseBase = (byte) Character.toLowerCase(base);
+        // setting the lower-case bit matches both cases of the base at once
+        final long lowerCaseWord = lowerCaseBase * SWAR_LOW_BITS;
+        final ByteBuffer words = ByteBuffer.wrap(bases).order(ByteOrder.LITTLE_ENDIAN);
+        int bestIndex = bases.length;
+        int bestScore = 0;
+        int score = 0;
+        int mismatches = 0;
+        int i = bases.length - 1;
+        while (i >= 0 && score >= bestScore - minLength) {
+            final int wordStart = i - Long.BYTES + 1;
+            if (wordStart >= 0) {
+                // zero bytes in the difference are bases equal to the homopolymer base
+                final long diff = (words.getLong(wordStart) | SWAR_CASE_BITS) ^ lowerCaseWord;
+                if (diff == 0) {
+                    score += Long.BYTES;
+                    if (score > bestScore
+                            && mismatches <= (bases.length - wordStart) * maxMismatchRate) {
+                        bestIndex = wordStart;
+                        bestScore = score;
+                    }
+                    i = wordStart - 1;
+                    continue;
+                } else if (((diff - SWAR_LOW_BITS) & ~diff & SWAR_HIGH_BITS) == 0) {
+                    score -= 2 * Long.BYTES;
+                    mismatches += Long.BYTES;
+                    i = wordStart - 1;
+                    continue;
+                }
+            }
+            // mixed block or less than 8 bases remaining
+            if (bases[i] == base || bases[i] == lowerCaseBase) {
+                if (++score > bestScore && mismatches <= (bases.length - i) * maxMismatchRate) {
+                    bestIndex = i;
+                    bestScore = score;
+                }
+            } else {
+                score -= 2;
+                mismatches++;
+            }
+            i--;
+        }
+        return (bases.length - bestIndex >= minLength) ? bestIndex : bases.length;
+    }
 }
@@ -0,0 +1,126 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.magicdgs.readtools.cmd.argumentcollections;
+
+import org.magicdgs.readtools.RTBaseTest;
+
+import htsjdk.samtools.SAMFileHeader;
+import org.broadinstitute.barclay.argparser.CommandLineException;
+import org.broadinstitute.hellbender.utils.Utils;
+import org.broadinstitute.hellbender.utils.read.ArtificialReadUtils;
+import org.broadinstitute.hellbender.utils.read.GATKRead;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+public class QualityBinningArgumentCollectionUnitTest extends RTBaseTest {
+
+    private static GATKRead createRead(final byte[] quals) {
+        return ArtificialReadUtils.createArtificialUnmappedRead(
+                ArtificialReadUtils.createArtificialSamHeader(),
+                Utils.dupBytes((byte) 'A', quals.length), quals);
+    }
+
+    @Test
+    public void testNoBinning() throws Exception {
+        final QualityBinningArgumentCollection args = new QualityBinningArgumentCollection();
+        args.validateArguments();
+        Assert.assertFalse(args.isEnabled());
+        final GATKRead read = createRead(new byte[] {10, 20, 30});
+        Assert.assertSame(args.binQualities(read), read);
+        Assert.assertEquals(read.getBaseQualities(), new byte[] {10, 20, 30});
+        final SAMFileHeader header = new SAMFileHeader();
+        args.updateHeader(header);
+        Assert.assertTrue(header.getComments().isEmpty());
+        Assert.assertNull(args.getMetric());
+    }
+
+    @DataProvider
+    public Object[][] binningArgs() {
+        return new Object[][] {
+                {QualityBinningArgumentCollection.QualityBinning.ILLUMINA,
+                        Collections.emptyList(), new byte[] {15, 22, 33}},
+                {QualityBinningArgumentCollection.QualityBinning.CUSTOM,
+                        Arrays.asList("0:5", "15:25"), new byte[] {5, 25, 25}}
+        };
+    }
+
+    @Test(dataProvider = "binningArgs")
+    public void testBinning(final QualityBinningArgumentCollection.QualityBinning binning,
+            final List<String> bins, final byte[] expectedQuals) throws Exception {
+        final QualityBinningArgumentCollection args = new QualityBinningArgumentCollection();
+        args.qualityBinning = binning;
+        args.qualityBins = bins;
+        args.validateArguments();
+        Assert.assertTrue(args.isEnabled());
+        final GATKRead read = createRead(new byte[] {10, 20, 30});
+        Assert.assertSame(args.binQualities(read), read);
+        Assert.assertEquals(read.getBaseQualities(), expectedQuals);
+        final SAMFileHeader header = new SAMFileHeader();
+        args.updateHeader(header);
+        Assert.assertEquals(header.getComments().size(), 1);
+        Assert.assertTrue(header.getComments().get(0).contains(binning.name()));
+        Assert.assertEquals(args.getMetric().BASES, 3);
+    }
+
+    @DataProvider
+    public Object[][] badArgs() {
+        return new Object[][] {
+                {QualityBinningArgumentCollection.QualityBinning.NONE,
+                        Collections.singletonList("0:5")},
+                {QualityBinningArgumentCollection.QualityBinning.ILLUMINA,
+                        Collections.singletonList("0:5")},
+                {QualityBinningArgumentCollection.QualityBinning.CUSTOM,
+                        Collections.emptyList()},
+                {QualityBinningArgumentCollection.QualityBinning.CUSTOM,
+                        Collections.singletonList("0")},
+                {QualityBinningArgumentCollection.QualityBinning.CUSTOM,
+                        Collections.singletonList("0:5:6")},
+                {QualityBinningArgumentCollection.QualityBinning.CUSTOM,
+                        Collections.singletonList("A:5")},
+                {QualityBinningArgumentCollection.QualityBinning.CUSTOM,
+                        Collections.singletonList("0:94")},
+                {QualityBinningArgumentCollection.QualityBinning.CUSTOM,
+                        Arrays.asList("0:5", "0:6")}
+        };
+    }
+
+    @Test(dataProvider = "badArgs", expectedExceptions = CommandLineException.BadArgumentValue.class)
+    public void testBadArgs(final QualityBinningArgumentCollection.QualityBinning binning,
+            final List<String> bins) throws Exception {
+        final QualityBinningArgumentCollection args = new QualityBinningArgumentCollection();
+        args.qualityBinning = binning;
+        args.qualityBins = bins;
+        args.validateArguments();
+    }
+}
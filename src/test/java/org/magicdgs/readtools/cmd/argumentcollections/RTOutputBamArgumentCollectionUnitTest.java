@@ -26,17 +26,28 @@ package org.magicdgs.readtools.cmd.argumentcollections;
 
 import org.magicdgs.readtools.exceptions.RTUserExceptions;
 import org.magicdgs.readtools.RTBaseTest;
+import org.magicdgs.readtools.utils.read.writer.ShardedGATKWriter;
+import org.magicdgs.readtools.utils.read.writer.TeeGATKWriter;
 
 import htsjdk.samtools.SAMFileHeader;
 import htsjdk.samtools.SAMProgramRecord;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SamReader;
 import htsjdk.samtools.SamReaderFactory;
 import org.broadinstitute.hellbender.exceptions.UserException;
+import org.broadinstitute.hellbender.utils.read.ArtificialReadUtils;
+import org.broadinstitute.hellbender.utils.read.GATKRead;
 import org.broadinstitute.hellbender.utils.read.GATKReadWriter;
 import org.testng.Assert;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * @author Daniel Gomez-Sanchez (magicDGS)
@@ -113,6 +124,75 @@ public class RTOutputBamArgumentCollectionUnitTest extends RTBaseTest {
         Assert.assertEquals(writtenHeader, expectedHeader);
     }
 
+    @Test
+    public void testShardedOutput() throws Exception {
+        final File testDir = createTempDir(this.getClass().getSimpleName());
+        final RTOutputBamArgumentCollection args = new RTOutputBamArgumentCollection();
+        args.outputName = new File(testDir, "sharded.bam").getAbsolutePath();
+        args.shardReads = 10L;
+        final GATKReadWriter writer = args.outputWriter(new SAMFileHeader(), null, true, null);
+        Assert.assertEquals(writer.getClass(), ShardedGATKWriter.class);
+        writer.close();
+        // only the first shard is created with rolling over
+        Assert.assertTrue(new File(testDir, "sharded_shard00000.bam").exists());
+        Assert.assertFalse(new File(testDir, "sharded_shard00001.bam").exists());
+        Assert.assertTrue(new File(testDir, "sharded_shards.metrics").exists());
+    }
+
+    @Test
+    public void testTeeOutputs() throws Exception {
+        final File testDir = createTempDir(this.getClass().getSimpleName());
+        final List<File> expectedFiles = Stream.of("tee.bam", "tee.fq.gz", "tee.distmap")
+                .map(name -> new File(testDir, name)).collect(Collectors.toList());
+        final RTOutputBamArgumentCollection args = new RTOutputBamArgumentCollection();
+        args.outputName = expectedFiles.get(0).getAbsolutePath();
+        args.teeOutputs = expectedFiles.subList(1, expectedFiles.size()).stream()
+                .map(File::getAbsolutePath).collect(Collectors.toList());
+        final GATKReadWriter writer = args.outputWriter(new SAMFileHeader(), null, true, null);
+        Assert.assertEquals(writer.getClass(), TeeGATKWriter.class);
+        writer.close();
+        expectedFiles.forEach(f -> Assert.assertTrue(f.exists(), "not output written: " + f));
+    }
+
+    @Test
+    public void testCompressionAndEncodingThreads() throws Exception {
+        final File outputFile = new File(createTempDir(this.getClass().getSimpleName()),
+                "threaded.bam");
+        final RTOutputBamArgumentCollection args = new RTOutputBamArgumentCollection();
+        args.outputName = outputFile.getAbsolutePath();
+        args.compressionLevel = 1;
+        args.compressionThreads = 2;
+        args.encodingThreads = 2;
+        final SAMFileHeader header = ArtificialReadUtils.createArtificialSamHeader();
+        header.setSortOrder(SAMFileHeader.SortOrder.unsorted);
+        final List<String> expectedNames = new ArrayList<>();
+        try (final GATKReadWriter writer = args.outputWriter(header, null, true, null)) {
+            for (int i = 0; i < 1000; i++) {
+                final GATKRead read = ArtificialReadUtils.createArtificialUnmappedRead(header,
+                        new byte[] {'A', 'C', 'G', 'T'}, new byte[] {30, 30, 30, 30});
+                read.setName("read" + i);
+                expectedNames.add(read.getName());
+                writer.addRead(read);
+            }
+        }
+        try (final SamReader reader = SamReaderFactory.makeDefault().open(outputFile)) {
+            final List<String> names = new ArrayList<>();
+            for (final SAMRecord record : reader) {
+                names.add(record.getReadName());
+            }
+            Assert.assertEquals(names, expectedNames);
+        }
+    }
+
+    @Test(expectedExceptions = RTUserExceptions.InvalidOutputFormat.class)
+    public void testIllegalTeeOutput() throws Exception {
+        final File testDir = createTempDir(this.getClass().getSimpleName());
+        final RTOutputBamArgumentCollection args = new RTOutputBamArgumentCollection();
+        args.outputName = new File(testDir, "example.bam").getAbsolutePath();
+        args.teeOutputs = Collections.singletonList(new File(testDir, "example.txt").toString());
+        args.outputWriter(new SAMFileHeader(), null, true, null);
+    }
+
     @DataProvider
     public Object[][] outputWithSuffix() throws Exception {
         return new Object[][] {
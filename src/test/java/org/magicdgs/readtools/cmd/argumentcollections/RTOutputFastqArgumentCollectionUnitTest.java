@@ -26,6 +26,7 @@ package org.magicdgs.readtools.cmd.argumentcollections;
 
 import org.magicdgs.readtools.utils.fastq.FastqGATKWriter;
 import org.magicdgs.readtools.utils.read.writer.ReadToolsIOFormat;
+import org.magicdgs.readtools.utils.read.writer.ShardedGATKWriter;
 import org.magicdgs.readtools.utils.read.writer.SplitGATKWriter;
 import org.magicdgs.readtools.RTBaseTest;
 
@@ -90,6 +91,22 @@ public class RTOutputFastqArgumentCollectionUnitTest extends RTBaseTest {
         testOutputs(args, FastqGATKWriter.class, expectedFiles);
     }
 
+    @Test
+    public void testShardedOutput() throws Exception {
+        // this are the expected files with the output prefix
+        final String outputPrefix = createTempDir(this.getClass().getSimpleName())
+                .getAbsolutePath() + "sharded";
+        final List<File> expectedFiles = Stream.of("_shard00000", "_shard00001")
+                .flatMap(shard -> Stream.of("_1", "_2", "_SE").map(e -> shard + e))
+                .map(e -> new File(outputPrefix + e + ".fq.gz")).collect(Collectors.toList());
+        expectedFiles.add(new File(outputPrefix + "_shards.metrics"));
+        // set the arguments
+        final RTOutputFastqArgumentCollection args = new RTOutputFastqArgumentCollection();
+        args.outputPrefix = outputPrefix;
+        args.shards = 2;
+        testOutputs(args, ShardedGATKWriter.class, expectedFiles);
+    }
+
     // expected files should have as prefix the test name
     private void testOutputs(final RTOutputArgumentCollection args,
             final Class expectedClass, final List<File> expectedFiles) throws Exception {
@@ -55,7 +55,7 @@ public class TrimmerPluginDescriptorUnitTest extends RTBaseTest {
     // TODO: maybe we should find another way of testing this
     // this is the number of trimmers implemented to check if a returned value is correct
     // it should be modified every time a new trimmer is implemented
-    private static final int NUMBER_OF_TRIMMERS_IMPLEMENTED = 3;
+    private static final int NUMBER_OF_TRIMMERS_IMPLEMENTED = 5;
 
     @Test
     public void testAnonymousClassAsToolDefault() throws Exception {
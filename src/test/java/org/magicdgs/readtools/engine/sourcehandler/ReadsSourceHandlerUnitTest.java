@@ -304,6 +304,56 @@ public class ReadsSourceHandlerUnitTest extends RTBaseTest {
         handler.close();
     }
 
+    @DataProvider(name = "bamSources")
+    public Object[][] bamDataSources() {
+        return new Object[][] {
+                {TestResourcesUtils.getWalkthroughDataFile("standard.dual_index.paired.bam")},
+                {TestResourcesUtils.getWalkthroughDataFile("legacy.dual_index.paired.mapped.bam")},
+                {new File(sourcesFolder, "small.mapped.sort.bam")}
+        };
+    }
+
+    @Test(dataProvider = "bamSources")
+    public void testParallelDecompressionSameAsDefault(final File source) throws Exception {
+        final ReadsSourceHandler expected = new SamSourceHandler(source.getAbsolutePath(), FACTORY_FOR_TEST);
+        final ReadsSourceHandler actual = new SamSourceHandler(source.getAbsolutePath(),
+                new ReadReaderFactory().setThreads(2));
+        Assert.assertEquals(actual.getHeader(), expected.getHeader());
+        Assert.assertEquals(actual.getQualityEncoding(100), expected.getQualityEncoding(100));
+        final Iterator<GATKRead> expectedIt = expected.toIterator();
+        final Iterator<GATKRead> actualIt = actual.toIterator();
+        while (expectedIt.hasNext()) {
+            Assert.assertTrue(actualIt.hasNext());
+            Assert.assertEquals(actualIt.next().convertToSAMRecord(actual.getHeader()).getSAMString(),
+                    expectedIt.next().convertToSAMRecord(expected.getHeader()).getSAMString());
+        }
+        Assert.assertFalse(actualIt.hasNext());
+        expected.close();
+        actual.close();
+    }
+
+    @Test
+    public void testParallelDecompressionWithIndex() throws Exception {
+        final File source = new File(sourcesFolder, "small.mapped.sort.bam");
+        final ReadsSourceHandler handler = new SamSourceHandler(source.getAbsolutePath(),
+                new ReadReaderFactory().setThreads(2));
+        // queries are delegated to the default reader
+        final Iterator<GATKRead> itInterval =
+                handler.toIntervalIterator(Collections.singletonList(INTERVAL_TO_QUERY));
+        int n = 0;
+        while (itInterval.hasNext()) {
+            n++;
+            itInterval.next();
+        }
+        Assert.assertEquals(n, 118);
+        handler.close();
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testNegativeThreads() {
+        new ReadReaderFactory().setThreads(-1);
+    }
+
     @Test
     public void testCorruptedFileHandler() throws Exception {
         // TODO - this was a truncated file from an issue report (https://github.com/magicDGS/ReadTools/issues/359)
@@ -316,4 +366,14 @@ public class ReadsSourceHandlerUnitTest extends RTBaseTest {
         Assert.assertThrows(UserException.CouldNotReadInputFile.class,
                 () -> handler.getQualityEncoding(RTDefaults.MAX_RECORDS_FOR_QUALITY));
     }
+
+    @Test
+    public void testCorruptedFileParallelDecompression() throws Exception {
+        final File testFile = new File(sourcesFolder, "premature_end.bam");
+        final ReadsSourceHandler handler = new SamSourceHandler(testFile.getAbsolutePath(),
+                new ReadReaderFactory().setThreads(2));
+        handler.close();
+        Assert.assertThrows(UserException.CouldNotReadInputFile.class,
+                () -> handler.getQualityEncoding(RTDefaults.MAX_RECORDS_FOR_QUALITY));
+    }
 }
\ No newline at end of file
@@ -25,21 +25,27 @@
 package org.magicdgs.readtools.tools.distmap;
 
 import org.magicdgs.readtools.RTCommandLineProgramTest;
+import org.magicdgs.readtools.metrics.DistmapBatchMetric;
 
+import htsjdk.samtools.metrics.MetricsFile;
 import org.apache.hadoop.hdfs.MiniDFSCluster;
 import org.broadinstitute.hellbender.exceptions.UserException;
 import org.broadinstitute.hellbender.utils.io.IOUtils;
 import org.broadinstitute.hellbender.utils.test.ArgumentsBuilder;
 import org.broadinstitute.hellbender.utils.test.IntegrationTestSpec;
 import org.broadinstitute.hellbender.utils.test.MiniClusterUtils;
+import org.testng.Assert;
 import org.testng.annotations.AfterClass;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
 import java.io.File;
+import java.io.FileReader;
+import java.io.Reader;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 
 /**
  * @author Daniel Gomez-Sanchez (magicDGS)
@@ -87,6 +93,13 @@ public class DownloadDistmapResultIntegrationTest extends RTCommandLineProgramTe
                 // test more batches
                 {new ArgumentsBuilder().addArgument("numberOfParts", "2"),
                         getTestFile("parts-00000-to-00003.sam")},
+                // test concurrent batches
+                {new ArgumentsBuilder().addArgument("numberOfParts", "1")
+                        .addArgument("downloadThreads", "2"),
+                        getTestFile("parts-00000-to-00003.sam")},
+                {new ArgumentsBuilder().addArgument("numberOfParts", "2")
+                        .addArgument("downloadThreads", "3"),
+                        getTestFile("parts-00000-to-00003.sam")},
                 // test only some parts
                 {new ArgumentsBuilder()
                         .addBooleanArgument("noRemoveTaskProgramGroup", true)
@@ -112,6 +125,88 @@ public class DownloadDistmapResultIntegrationTest extends RTCommandLineProgramTe
         testDonwloadDistmapResult(args, distmapFolder.getAbsolutePath() + "/presorted", output, expectedOutput);
     }
 
+    @DataProvider
+    public Object[][] numberOfParts() {
+        return new Object[][] {{1}, {2}, {100}};
+    }
+
+    @Test(dataProvider = "numberOfParts")
+    public void testLocalMixedPreSorted(final int numberOfParts) throws Exception {
+        // two pre-sorted parts and two unsorted parts with the same reads
+        final File inputFolder = new File(TEST_TEMP_DIR, "mixed" + numberOfParts);
+        Assert.assertTrue(inputFolder.mkdir(), "broken test: cannot create " + inputFolder);
+        for (final String part : new String[] {"presorted/part-00000.gz", "presorted/part-00001.gz",
+                "part-00002.gz", "part-00003.gz"}) {
+            final File partFile = new File(distmapFolder, part);
+            Files.copy(partFile.toPath(), new File(inputFolder, partFile.getName()).toPath());
+        }
+        final ArgumentsBuilder args = new ArgumentsBuilder()
+                .addBooleanArgument("disable-success-check", true)
+                .addArgument("numberOfParts", String.valueOf(numberOfParts));
+        final File expectedOutput = getTestFile("parts-00000-to-00003.sam");
+        final File output = new File(TEST_TEMP_DIR,
+                numberOfParts + ".local.mixed." + expectedOutput.getName() + ".sam");
+        testDonwloadDistmapResult(args, inputFolder.getAbsolutePath(), output, expectedOutput);
+    }
+
+    @Test
+    public void testResumeFromCheckpoint() throws Exception {
+        final File checkpoint = new File(TEST_TEMP_DIR, "checkpoint");
+        final File expectedOutput = getTestFile("parts-00000-to-00003.sam");
+        final ArgumentsBuilder args = new ArgumentsBuilder()
+                .addArgument("numberOfParts", "2")
+                .addFileArgument("checkpointDirectory", checkpoint);
+        testDonwloadDistmapResult(args, distmapFolder.getAbsolutePath(),
+                new File(TEST_TEMP_DIR, "checkpoint.first.sam"), expectedOutput);
+
+        // two batches should be completed
+        final File manifest = new File(checkpoint, DistmapBatchCheckpoint.MANIFEST_NAME);
+        final MetricsFile<DistmapBatchMetric, Integer> metrics = new MetricsFile<>();
+        try (final Reader reader = new FileReader(manifest)) {
+            metrics.read(reader);
+        }
+        Assert.assertEquals(metrics.getMetrics().size(), 2);
+
+        // modify the second batch and set the first one as older, to check if it is re-used
+        final File firstBatch = new File(checkpoint, "batch-0.bam");
+        final File secondBatch = new File(checkpoint, "batch-1.bam");
+        Assert.assertTrue(firstBatch.setLastModified(0));
+        Files.write(secondBatch.toPath(), new byte[] {0}, StandardOpenOption.APPEND);
+
+        testDonwloadDistmapResult(args, distmapFolder.getAbsolutePath(),
+                new File(TEST_TEMP_DIR, "checkpoint.second.sam"), expectedOutput);
+        Assert.assertEquals(firstBatch.lastModified(), 0);
+        Assert.assertEquals(secondBatch.length(), metrics.getMetrics().get(1).SIZE);
+    }
+
+    @Test
+    public void testResumeFromCheckpointWithDifferentSortOrder() throws Exception {
+        final File checkpoint = new File(TEST_TEMP_DIR, "checkpointSortOrder");
+        // first run with unsorted batches
+        runCommandLine(new ArgumentsBuilder()
+                .addArgument("numberOfParts", "2")
+                .addFileArgument("checkpointDirectory", checkpoint)
+                .addArgument("SORT_ORDER", "unsorted")
+                .addArgument("input", distmapFolder.getAbsolutePath())
+                .addFileArgument("output", new File(TEST_TEMP_DIR, "checkpointSortOrder.unsorted.sam"))
+                .addBooleanArgument("addOutputSAMProgramRecord", false));
+
+        // resume with coordinate order should discard the unsorted batches
+        final File expectedOutput = getTestFile("parts-00000-to-00003.sam");
+        testDonwloadDistmapResult(new ArgumentsBuilder()
+                        .addArgument("numberOfParts", "2")
+                        .addFileArgument("checkpointDirectory", checkpoint),
+                distmapFolder.getAbsolutePath(),
+                new File(TEST_TEMP_DIR, "checkpointSortOrder.coordinate.sam"), expectedOutput);
+
+        final MetricsFile<DistmapBatchMetric, Integer> metrics = new MetricsFile<>();
+        try (final Reader reader = new FileReader(new File(checkpoint, DistmapBatchCheckpoint.MANIFEST_NAME))) {
+            metrics.read(reader);
+        }
+        Assert.assertEquals(metrics.getMetrics().size(), 2);
+        metrics.getMetrics().forEach(m -> Assert.assertEquals(m.SORT_ORDER, "coordinate"));
+    }
+
     @Test(dataProvider = "getArguments")
     public void testDownloadDistmapResultLocal(final ArgumentsBuilder args, final File expectedOutput)
             throws Exception {
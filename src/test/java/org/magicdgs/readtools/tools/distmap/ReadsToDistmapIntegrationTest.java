@@ -28,6 +28,7 @@ import org.magicdgs.readtools.RTCommandLineProgramTest;
 import org.magicdgs.readtools.TestResourcesUtils;
 
 import org.apache.hadoop.hdfs.MiniDFSCluster;
+import org.broadinstitute.hellbender.exceptions.UserException;
 import org.broadinstitute.hellbender.utils.io.IOUtils;
 import org.broadinstitute.hellbender.utils.test.ArgumentsBuilder;
 import org.broadinstitute.hellbender.utils.test.IntegrationTestSpec;
@@ -43,7 +44,10 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.stream.Collectors;
 
 /**
  * @author Daniel Gomez-Sanchez (magicDGS)
@@ -205,6 +209,81 @@ public class ReadsToDistmapIntegrationTest extends RTCommandLineProgramTest {
         Assert.assertEquals(cluster.getFileSystem().getFileStatus(path).getBlockSize(), blockSize);
     }
 
+    @DataProvider
+    public Object[][] outputParts() {
+        return new Object[][] {
+                // small block-size to roll over the part files
+                {1, 1000L}, {3, 1000L}, {3, null}
+        };
+    }
+
+    @Test(dataProvider = "outputParts")
+    public void testOutputPartsLocal(final int outputParts, final Long blockSize)
+            throws Exception {
+        final Path output = new File(TEST_TEMP_DIR,
+                "testOutputParts." + outputParts + "." + blockSize).toPath();
+        testOutputParts(output, outputParts, blockSize);
+    }
+
+    @Test
+    public void testOutputPartsCluster() throws Exception {
+        // HDFS does not allow block-sizes smaller than 1MB
+        testOutputParts(IOUtils.getPath(clusterOutputFolder + "/testOutputParts"), 3, null);
+    }
+
+    @Test
+    public void testOutputPartsExistingFolder() throws Exception {
+        final Path output = new File(TEST_TEMP_DIR, "testOutputPartsExistingFolder").toPath();
+        testOutputParts(output, 3, null);
+        final ArgumentsBuilder args = new ArgumentsBuilder()
+                .addFileArgument("input", TestResourcesUtils.getWalkthroughDataFile("standard.single_index.paired.bam"))
+                .addBooleanArgument("interleaved", true)
+                .addArgument("output", output.toUri().toString())
+                .addArgument("outputParts", "1");
+        // the folder is not empty
+        Assert.assertThrows(UserException.class, () -> runCommandLine(args));
+        // overwriting removes the 3 part files of the previous run
+        args.addBooleanArgument("forceOverwrite", true);
+        runCommandLine(args);
+        final List<String> files = Files.list(output).map(p -> p.getFileName().toString())
+                .collect(Collectors.toList());
+        Assert.assertEquals(files.stream().filter(f -> f.startsWith("part")).count(), 1,
+                "previous part files not removed: " + files);
+        Assert.assertTrue(files.contains("_part_shards.metrics"), "no manifest: " + files);
+    }
+
+    private void testOutputParts(final Path output, final int outputParts, final Long blockSize)
+            throws Exception {
+        final ArgumentsBuilder args = new ArgumentsBuilder()
+                .addFileArgument("input", TestResourcesUtils.getWalkthroughDataFile("standard.single_index.paired.bam"))
+                .addBooleanArgument("interleaved", true)
+                .addArgument("output", output.toUri().toString())
+                .addArgument("outputParts", String.valueOf(outputParts));
+        if (blockSize != null) {
+            args.addArgument("hdfsBlockSize", blockSize.toString());
+        }
+        runCommandLine(args);
+
+        final List<Path> parts = Files.list(output)
+                .filter(p -> p.getFileName().toString().startsWith("part"))
+                .collect(Collectors.toList());
+        if (blockSize == null) {
+            Assert.assertEquals(parts.size(), outputParts);
+        } else {
+            Assert.assertTrue(parts.size() > outputParts, "part files did not roll over");
+        }
+        // reads are distributed between the parts, so only the content is the same
+        final List<String> actualLines = new ArrayList<>();
+        for (final Path part : parts) {
+            actualLines.addAll(Files.readAllLines(part));
+        }
+        final List<String> expectedLines =
+                Files.readAllLines(getTestFile("expected.single_index.paired.distmap").toPath());
+        Collections.sort(actualLines);
+        Collections.sort(expectedLines);
+        Assert.assertEquals(actualLines, expectedLines);
+    }
+
     // copied from IntegrationTestSpec.assertEqualTextFiles to allow path
     private static void assertEqualTextFiles(final Path resultPath, final File expectedFile) throws
             IOException {
@@ -115,6 +115,20 @@ public class ComputeProperStatByWindowIntegrationTest extends RTCommandLineProgr
         IntegrationTestSpec.assertEqualTextFiles(tmpOutput, expected);
     }
 
+    @Test(dataProvider = "testCases")
+    public void testComputeProperStatByWindowContigThreads(final String testName, final File input, final ArgumentsBuilder args)
+            throws Exception{
+        // same expected output as the single-threaded traversal
+        final File expected = getTestFile("expected/" + testName + ".table");
+        final File tmpOutput = new File(TEMP_DIR, "contig-threads." + expected.getName());
+        runCommandLine(args
+                .addArgument("contig-threads", "2")
+                .addFileArgument("input", input)
+                .addFileArgument("output", tmpOutput));
+
+        IntegrationTestSpec.assertEqualTextFiles(tmpOutput, expected);
+    }
+
     @DataProvider
     public Object[][] badArgs() throws Exception{
         // except output and window-size
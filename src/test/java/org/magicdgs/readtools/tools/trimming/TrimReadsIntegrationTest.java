@@ -137,6 +137,43 @@ public class TrimReadsIntegrationTest extends RTCommandLineProgramTest {
     }
 
 
+    // pair1 does not overlap; pair2 has an insert size of 45 bp (5 bp of adapter read-through)
+    private ArgumentsBuilder getOverlappingPairsArguments() {
+        return new ArgumentsBuilder()
+                .addFileArgument("input", getTestFile("overlapping_1.fq"))
+                .addFileArgument("input2", getTestFile("overlapping_2.fq"))
+                .addBooleanArgument("addOutputSAMProgramRecord", false);
+    }
+
+    @Test
+    public void testTrimReadThrough() throws Exception {
+        final File outputName = new File(TEST_TEMP_DIR, "testTrimReadThrough.sam");
+        runCommandLine(getOverlappingPairsArguments()
+                .addBooleanArgument("trimReadThrough", true)
+                .addFileArgument("output", outputName));
+        IntegrationTestSpec.assertEqualTextFiles(outputName,
+                getTestFile("testTrimReadThrough.sam"));
+    }
+
+    @Test
+    public void testMergeOverlapping() throws Exception {
+        final File outputName = new File(TEST_TEMP_DIR, "testMergeOverlapping.sam");
+        // paired Distmap output splits the merged (single-end) reads
+        final File distmapOutput = new File(TEST_TEMP_DIR, "testMergeOverlapping.distmap");
+        final File singleEndDistmapOutput =
+                new File(TEST_TEMP_DIR, "testMergeOverlapping_SE.distmap");
+        runCommandLine(getOverlappingPairsArguments()
+                .addBooleanArgument("mergeOverlapping", true)
+                .addFileArgument("output", outputName)
+                .addFileArgument("teeOutput", distmapOutput));
+        IntegrationTestSpec.assertEqualTextFiles(outputName,
+                getTestFile("testMergeOverlapping.sam"));
+        IntegrationTestSpec.assertEqualTextFiles(distmapOutput,
+                getTestFile("testMergeOverlapping.distmap"));
+        IntegrationTestSpec.assertEqualTextFiles(singleEndDistmapOutput,
+                getTestFile("testMergeOverlapping_SE.distmap"));
+    }
+
     @Test
     public void testTrimOnlyNdata() throws Exception {
         // create the output file and test that it does not exists
@@ -0,0 +1,98 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.magicdgs.readtools.utils;
+
+import org.magicdgs.readtools.RTBaseTest;
+
+import org.broadinstitute.hellbender.exceptions.GATKException;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+public class ThreadUtilsUnitTest extends RTBaseTest {
+
+    @Test
+    public void testDaemonThreadFactory() throws Exception {
+        final ThreadFactory factory = ThreadUtils.daemonThreadFactory("test-");
+        final Thread first = factory.newThread(() -> { });
+        final Thread second = factory.newThread(() -> { });
+        Assert.assertTrue(first.isDaemon());
+        Assert.assertTrue(second.isDaemon());
+        Assert.assertEquals(first.getName(), "test-1");
+        Assert.assertEquals(second.getName(), "test-2");
+    }
+
+    @Test
+    public void testGetResult() throws Exception {
+        Assert.assertEquals(
+                ThreadUtils.getResult(CompletableFuture.completedFuture("result"), "testing"),
+                "result");
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testGetResultRuntimeException() throws Exception {
+        final CompletableFuture<String> future = new CompletableFuture<>();
+        future.completeExceptionally(new IllegalStateException("failing task"));
+        ThreadUtils.getResult(future, "testing");
+    }
+
+    @Test(expectedExceptions = GATKException.class)
+    public void testGetResultCheckedException() throws Exception {
+        final CompletableFuture<String> future = new CompletableFuture<>();
+        future.completeExceptionally(new IOException("failing task"));
+        ThreadUtils.getResult(future, "testing");
+    }
+
+    @Test
+    public void testShutdownAndAwaitWaitsForRunningTasks() throws Exception {
+        final ExecutorService executor = Executors.newSingleThreadExecutor(
+                ThreadUtils.daemonThreadFactory("test-"));
+        final CountDownLatch started = new CountDownLatch(1);
+        final AtomicBoolean finished = new AtomicBoolean(false);
+        executor.submit(() -> {
+            started.countDown();
+            // ignores the interruption, as an inflater/deflater in use
+            final long end = System.nanoTime() + 100_000_000L;
+            while (System.nanoTime() < end) {
+                Thread.yield();
+            }
+            finished.set(true);
+        });
+        started.await();
+        Assert.assertTrue(ThreadUtils.shutdownAndAwait(executor));
+        Assert.assertTrue(finished.get());
+        Assert.assertTrue(executor.isTerminated());
+    }
+}
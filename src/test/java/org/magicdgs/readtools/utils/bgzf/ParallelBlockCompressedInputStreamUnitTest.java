@@ -0,0 +1,168 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.magicdgs.readtools.utils.bgzf;
+
+import org.magicdgs.readtools.RTBaseTest;
+
+import htsjdk.samtools.util.BlockCompressedOutputStream;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+public class ParallelBlockCompressedInputStreamUnitTest extends RTBaseTest {
+
+    private static final byte[] DATA = new byte[1000000];
+    static {
+        final Random random = new Random(1);
+        for (int i = 0; i < DATA.length; i++) {
+            DATA[i] = (byte) "ACGT".charAt(random.nextInt(4));
+        }
+    }
+
+    // compress with HTSJDK, flushing in the middle to get a partial block
+    private static byte[] compress(final byte[] data) throws IOException {
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (final OutputStream stream = new BlockCompressedOutputStream(compressed, (File) null)) {
+            stream.write(data, 0, data.length / 3);
+            stream.flush();
+            stream.write(data, data.length / 3, data.length - data.length / 3);
+        }
+        return compressed.toByteArray();
+    }
+
+    private static byte[] readAll(final InputStream stream, final int bufferSize)
+            throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[bufferSize];
+        int n;
+        while ((n = stream.read(buffer)) > 0) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    @DataProvider
+    public Object[][] threadsAndBuffers() {
+        return new Object[][] {{1, 1}, {1, 1000}, {2, 7777}, {4, 100000}};
+    }
+
+    @Test(dataProvider = "threadsAndBuffers")
+    public void testReadHtsjdkCompressed(final int threads, final int bufferSize)
+            throws Exception {
+        try (final InputStream stream = new ParallelBlockCompressedInputStream(
+                new ByteArrayInputStream(compress(DATA)), "test", threads)) {
+            Assert.assertEquals(readAll(stream, bufferSize), DATA);
+            Assert.assertEquals(stream.read(), -1);
+        }
+    }
+
+    @Test
+    public void testSingleByteReadAndSkip() throws Exception {
+        try (final InputStream stream = new ParallelBlockCompressedInputStream(
+                new ByteArrayInputStream(compress(DATA)), "test", 2)) {
+            Assert.assertEquals(stream.read(), DATA[0]);
+            // skip over several blocks
+            Assert.assertEquals(stream.skip(500000), 500000);
+            Assert.assertEquals(stream.read(), DATA[500001]);
+            Assert.assertEquals(stream.skip(DATA.length), DATA.length - 500002);
+            Assert.assertEquals(stream.read(), -1);
+        }
+    }
+
+    @Test
+    public void testEmptyInput() throws Exception {
+        try (final InputStream stream = new ParallelBlockCompressedInputStream(
+                new ByteArrayInputStream(compress(new byte[0])), "test", 2)) {
+            Assert.assertEquals(stream.read(), -1);
+        }
+    }
+
+    @Test
+    public void testTruncatedInputReturnsPreviousBlocks() throws Exception {
+        final byte[] compressed = compress(DATA);
+        final byte[] truncated = Arrays.copyOf(compressed, compressed.length / 2);
+        final ByteArrayOutputStream read = new ByteArrayOutputStream();
+        try (final InputStream stream = new ParallelBlockCompressedInputStream(
+                new ByteArrayInputStream(truncated), "test", 2)) {
+            int b;
+            while ((b = stream.read()) != -1) {
+                read.write(b);
+            }
+            Assert.fail("truncated input should throw");
+        } catch (final EOFException e) {
+            // all complete blocks should be returned before failing
+            Assert.assertTrue(read.size() > 0);
+            Assert.assertEquals(read.toByteArray(), Arrays.copyOf(DATA, read.size()));
+        }
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void testNotBgzfInput() throws Exception {
+        try (final InputStream stream = new ParallelBlockCompressedInputStream(
+                new ByteArrayInputStream(DATA), "test", 2)) {
+            stream.read();
+        }
+    }
+
+    @Test
+    public void testCloseWithBlocksInFlight() throws Exception {
+        final byte[] compressed = compress(DATA);
+        for (int i = 0; i < 100; i++) {
+            // closing after the first byte leaves the next blocks inflating
+            final InputStream stream = new ParallelBlockCompressedInputStream(
+                    new ByteArrayInputStream(compressed), "test", 4);
+            Assert.assertEquals(stream.read(), DATA[0]);
+            stream.close();
+            Assert.assertFalse(Thread.currentThread().isInterrupted());
+        }
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void testReadAfterClose() throws Exception {
+        final InputStream stream = new ParallelBlockCompressedInputStream(
+                new ByteArrayInputStream(compress(DATA)), "test", 1);
+        stream.close();
+        stream.read();
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidThreads() {
+        new ParallelBlockCompressedInputStream(new ByteArrayInputStream(DATA), "test", 0);
+    }
+}
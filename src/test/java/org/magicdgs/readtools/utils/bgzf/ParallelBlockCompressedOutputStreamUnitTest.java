@@ -0,0 +1,174 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.magicdgs.readtools.utils.bgzf;
+
+import org.magicdgs.readtools.RTBaseTest;
+
+import htsjdk.samtools.util.BlockCompressedInputStream;
+import htsjdk.samtools.util.BlockCompressedOutputStream;
+import htsjdk.samtools.util.BlockCompressedStreamConstants;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+public class ParallelBlockCompressedOutputStreamUnitTest extends RTBaseTest {
+
+    // several blocks, with a random (non-compressible) chunk
+    private static byte[] getTestData() {
+        final Random random = new Random(1);
+        final byte[] data = new byte[10 * BlockCompressedStreamConstants.MAX_COMPRESSED_BLOCK_SIZE];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) "ACGT".charAt(random.nextInt(4));
+        }
+        for (int i = data.length / 2; i < data.length / 2 + 100000; i++) {
+            data[i] = (byte) random.nextInt();
+        }
+        return data;
+    }
+
+    @DataProvider
+    public Object[][] compressionParams() {
+        return new Object[][] {
+                {0, 1}, {1, 2}, {5, 1}, {5, 4}, {9, 3}
+        };
+    }
+
+    @Test(dataProvider = "compressionParams")
+    public void testSameOutputAsHtsjdk(final int compressionLevel, final int threads)
+            throws Exception {
+        final byte[] data = getTestData();
+        final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        final ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        try (final OutputStream htsjdk = new BlockCompressedOutputStream(expected, (File) null,
+                compressionLevel);
+                final OutputStream parallel = new ParallelBlockCompressedOutputStream(actual,
+                        compressionLevel, threads)) {
+            // write in chunks of different sizes, flushing sometimes
+            final Random random = new Random(compressionLevel);
+            int pos = 0;
+            while (pos < data.length) {
+                final int length = Math.min(data.length - pos, random.nextInt(100000));
+                htsjdk.write(data, pos, length);
+                parallel.write(data, pos, length);
+                pos += length;
+                if (random.nextInt(10) == 0) {
+                    htsjdk.flush();
+                    parallel.flush();
+                }
+            }
+            // and a single byte
+            htsjdk.write(1);
+            parallel.write(1);
+        }
+        Assert.assertEquals(actual.toByteArray(), expected.toByteArray());
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        final byte[] data = getTestData();
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (final OutputStream parallel = new ParallelBlockCompressedOutputStream(compressed,
+                5, 2)) {
+            parallel.write(data);
+        }
+        final byte[] decompressed = new byte[data.length];
+        try (final BlockCompressedInputStream input = new BlockCompressedInputStream(
+                new ByteArrayInputStream(compressed.toByteArray()))) {
+            int read = 0;
+            int n;
+            while (read < data.length
+                    && (n = input.read(decompressed, read, data.length - read)) > 0) {
+                read += n;
+            }
+            Assert.assertEquals(read, data.length);
+            Assert.assertEquals(input.read(), -1);
+        }
+        Assert.assertEquals(decompressed, data);
+    }
+
+    @Test
+    public void testEmptyStream() throws Exception {
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        new ParallelBlockCompressedOutputStream(compressed, 5, 2).close();
+        Assert.assertEquals(compressed.toByteArray(),
+                BlockCompressedStreamConstants.EMPTY_GZIP_BLOCK);
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void testWriteAfterClose() throws Exception {
+        final OutputStream stream =
+                new ParallelBlockCompressedOutputStream(new ByteArrayOutputStream(), 5, 1);
+        stream.close();
+        stream.write(1);
+    }
+
+    @Test
+    public void testUnderlyingStreamClosedOnFailedFlush() throws Exception {
+        final AtomicBoolean underlyingClosed = new AtomicBoolean(false);
+        final OutputStream failing = new OutputStream() {
+            @Override
+            public void write(final int b) throws IOException {
+                throw new IOException("failing output");
+            }
+
+            @Override
+            public void close() {
+                underlyingClosed.set(true);
+            }
+        };
+        final OutputStream stream = new ParallelBlockCompressedOutputStream(failing, 5, 2);
+        // fewer blocks than the maximum in flight, so they are only written on close
+        stream.write(new byte[100000]);
+        try {
+            stream.close();
+            Assert.fail("close should fail writing the pending blocks");
+        } catch (final IOException e) {
+            Assert.assertTrue(underlyingClosed.get(), "underlying stream not closed");
+        }
+    }
+
+    @DataProvider
+    public Object[][] invalidParams() {
+        return new Object[][] {{-1, 1}, {10, 1}, {5, 0}, {5, -1}};
+    }
+
+    @Test(dataProvider = "invalidParams", expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidParams(final int compressionLevel, final int threads) {
+        new ParallelBlockCompressedOutputStream(new ByteArrayOutputStream(), compressionLevel,
+                threads);
+    }
+}
@@ -349,6 +349,28 @@ public class RTReadUtilsUnitTest extends RTBaseTest {
         Assert.assertTrue(RTReadUtils.updateCompletelyTrimReadFlag(read));
     }
 
+    @DataProvider(name = "completelyTrimFlagData")
+    public Object[][] getCompletelyTrimFlagData() {
+        return new Object[][] {
+                // not completely trimmed
+                {0, 10, 10, 0},
+                {2, 8, 10, 0},
+                // start equals to length
+                {10, 10, 10, 1},
+                // end is 0
+                {0, 0, 10, 2},
+                // start after end
+                {5, 5, 10, 3},
+                {6, 4, 10, 3}
+        };
+    }
+
+    @Test(dataProvider = "completelyTrimFlagData")
+    public void testGetCompletelyTrimFlag(final int start, final int end, final int length,
+            final int expected) {
+        Assert.assertEquals(RTReadUtils.getCompletelyTrimFlag(start, end, length), expected);
+    }
+
     @DataProvider(name = "fixPairTagData")
     public Object[][] getFixPairTagData() throws Exception {
         final GATKRead read1 = ArtificialReadUtils
@@ -395,4 +417,4 @@ public class RTReadUtilsUnitTest extends RTBaseTest {
     public void testGetReadNameWithIlluminaBarcode(final GATKRead read, final String expectedName) {
         Assert.assertEquals(RTReadUtils.getReadNameWithIlluminaBarcode(read), expectedName);
     }
-}
\ No newline at end of file
+}
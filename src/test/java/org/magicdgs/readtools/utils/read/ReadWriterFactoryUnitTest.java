@@ -28,9 +28,11 @@ import org.magicdgs.readtools.TestResourcesUtils;
 import org.magicdgs.readtools.exceptions.RTUserExceptions;
 import org.magicdgs.readtools.utils.fastq.FastqGATKWriter;
 import org.magicdgs.readtools.utils.read.writer.NullGATKWriter;
+import org.magicdgs.readtools.utils.read.writer.WaitStrategy;
 import org.magicdgs.readtools.RTBaseTest;
 
 import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.util.IOUtil;
 import org.apache.hadoop.hdfs.MiniDFSCluster;
 import org.broadinstitute.hellbender.exceptions.UserException;
 import org.broadinstitute.hellbender.utils.io.IOUtils;
@@ -46,13 +48,16 @@ import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.zip.GZIPInputStream;
 
 /**
  * @author Daniel Gomez-Sanchez (magicDGS)
@@ -262,6 +267,163 @@ public class ReadWriterFactoryUnitTest extends RTBaseTest {
         }
     }
 
+    @DataProvider(name = "compressionThreads")
+    public Object[][] compressionThreadsData() {
+        return new Object[][] {
+                // no async
+                {1, false, false},
+                {4, false, false},
+                // async and md5
+                {2, true, false},
+                {2, false, true},
+                {2, true, true}
+        };
+    }
+
+    @Test(dataProvider = "compressionThreads")
+    public void testParallelCompressionSameAsSingleThreaded(final int threads,
+            final boolean useAsyncIo, final boolean createMd5File) throws Exception {
+        final SAMFileHeader header = ArtificialReadUtils.createArtificialSamHeader();
+        // enough reads to fill several BGZF blocks
+        final List<GATKRead> reads = new ArrayList<>();
+        for (int i = 1; i <= 10000; i++) {
+            reads.add(ArtificialReadUtils.createArtificialRead(header, "read" + i, 0, i, 100));
+        }
+
+        final File expected = new File(testDir, "singleThreaded_" + threads + "_" + useAsyncIo
+                + "_" + createMd5File + ".bam");
+        final File actual = new File(testDir, "parallel_" + threads + "_" + useAsyncIo
+                + "_" + createMd5File + ".bam");
+        for (final File output : new File[] {expected, actual}) {
+            final GATKReadWriter writer = new ReadWriterFactory()
+                    .setCompressionThreads((output == expected) ? 0 : threads)
+                    .setUseAsyncIo(useAsyncIo)
+                    .setCreateMd5File(createMd5File)
+                    .setCreateIndex(false)
+                    .createWriter(output.getAbsolutePath(), header, true);
+            reads.forEach(writer::addRead);
+            writer.close();
+        }
+
+        // the compressed output should be exactly the same
+        Assert.assertEquals(Files.readAllBytes(actual.toPath()),
+                Files.readAllBytes(expected.toPath()));
+        if (createMd5File) {
+            Assert.assertEquals(
+                    Files.readAllBytes(new File(actual.getAbsolutePath() + ".md5").toPath()),
+                    Files.readAllBytes(new File(expected.getAbsolutePath() + ".md5").toPath()));
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testNegativeCompressionThreads() {
+        new ReadWriterFactory().setCompressionThreads(-1);
+    }
+
+    @DataProvider(name = "encodingThreads")
+    public Object[][] encodingThreads() {
+        return new Object[][] {
+                {".bam", 1, 0, false},
+                {".bam", 3, 2, true},
+                {".fq", 2, 0, false},
+                {".fq", 2, 0, true},
+                {".fq.gz", 3, 0, false},
+                {".distmap", 2, 0, false},
+                {".distmap", 2, 0, true}
+        };
+    }
+
+    @Test(dataProvider = "encodingThreads")
+    public void testParallelEncodingSameAsSingleThreaded(final String extension,
+            final int encodingThreads, final int compressionThreads, final boolean useAsyncIo)
+            throws Exception {
+        final SAMFileHeader header = ArtificialReadUtils.createArtificialSamHeader();
+        // pairs of reads, to test also Distmap pair-end output
+        final List<GATKRead> reads = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            final GATKRead read = ArtificialReadUtils
+                    .createArtificialRead(header, "read" + (i / 2), 0, i + 1, 100);
+            read.setIsPaired(true);
+            if (i % 2 == 0) {
+                read.setIsFirstOfPair();
+            } else {
+                read.setIsSecondOfPair();
+            }
+            reads.add(read);
+        }
+
+        final String prefix = encodingThreads + "_" + compressionThreads + "_" + useAsyncIo;
+        final File expected = new File(testDir, "singleThreadedEncoding_" + prefix + extension);
+        final File actual = new File(testDir, "parallelEncoding_" + prefix + extension);
+        for (final File output : new File[] {expected, actual}) {
+            final ReadWriterFactory factory = new ReadWriterFactory()
+                    .setEncodingThreads((output == expected) ? 0 : encodingThreads)
+                    .setCompressionThreads((output == expected) ? 0 : compressionThreads)
+                    .setUseAsyncIo(useAsyncIo)
+                    .setCreateIndex(false);
+            final GATKReadWriter writer = (extension.equals(".distmap"))
+                    ? factory.createDistmapWriter(output.getAbsolutePath(), true)
+                    : factory.createWriter(output.getAbsolutePath(), header, true);
+            reads.forEach(writer::addRead);
+            writer.close();
+        }
+
+        if (extension.endsWith(".gz")) {
+            // gzip members are different, but the content is the same
+            try (final InputStream actualStream =
+                    new GZIPInputStream(new FileInputStream(actual));
+                    final InputStream expectedStream =
+                            new GZIPInputStream(new FileInputStream(expected))) {
+                Assert.assertEquals(IOUtil.slurp(actualStream), IOUtil.slurp(expectedStream));
+            }
+        } else {
+            Assert.assertEquals(Files.readAllBytes(actual.toPath()),
+                    Files.readAllBytes(expected.toPath()));
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testNegativeEncodingThreads() {
+        new ReadWriterFactory().setEncodingThreads(-1);
+    }
+
+    @DataProvider(name = "asyncWaitStrategies")
+    public Iterator<Object[]> asyncWaitStrategies() {
+        final List<Object[]> data = new ArrayList<>();
+        for (final WaitStrategy strategy : WaitStrategy.values()) {
+            for (final String extension : new String[] {".sam", ".bam", ".fq", ".fq.gz"}) {
+                data.add(new Object[] {strategy, extension});
+            }
+        }
+        return data.iterator();
+    }
+
+    @Test(dataProvider = "asyncWaitStrategies")
+    public void testAsyncWritingSameAsSynchronous(final WaitStrategy strategy,
+            final String extension) throws Exception {
+        final SAMFileHeader header = ArtificialReadUtils.createArtificialSamHeader();
+        final List<GATKRead> reads = new ArrayList<>();
+        for (int i = 1; i <= 1000; i++) {
+            reads.add(ArtificialReadUtils.createArtificialRead(header, "read" + i, 0, i, 100));
+        }
+
+        final File expected = new File(testDir, "sync_" + strategy + extension);
+        final File actual = new File(testDir, "async_" + strategy + extension);
+        for (final File output : new File[] {expected, actual}) {
+            final GATKReadWriter writer = new ReadWriterFactory()
+                    .setUseAsyncIo(output == actual)
+                    .setAsyncOutputBufferSize(100)
+                    .setAsyncWaitStrategy(strategy)
+                    .setCreateIndex(false)
+                    .createWriter(output.getAbsolutePath(), header, true);
+            reads.forEach(writer::addRead);
+            writer.close();
+        }
+
+        Assert.assertEquals(Files.readAllBytes(actual.toPath()),
+                Files.readAllBytes(expected.toPath()));
+    }
+
     @DataProvider(name = "writersToClose")
     public Object[][] getWritersToClose() {
         return new Object[][] {{null}, {new NullGATKWriter()}};
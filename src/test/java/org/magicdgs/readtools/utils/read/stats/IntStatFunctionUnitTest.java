@@ -0,0 +1,109 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.magicdgs.readtools.utils.read.stats;
+
+import org.magicdgs.readtools.RTBaseTest;
+
+import org.broadinstitute.hellbender.utils.read.ArtificialReadUtils;
+import org.broadinstitute.hellbender.utils.read.GATKRead;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+import scala.Tuple2;
+
+/**
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+public class IntStatFunctionUnitTest extends RTBaseTest {
+
+    // maximum read length (single) or fragment length (pair), to test a non-sum reduction
+    private static final IntSingleReadStatFunction MAX_LENGTH = new IntSingleReadStatFunction() {
+        @Override
+        public int computeInt(final GATKRead read) {
+            return read.getLength();
+        }
+
+        @Override
+        public int reduceInt(final int current, final int accumulator) {
+            return Math.max(current, accumulator);
+        }
+
+        @Override
+        public String getStatName() {
+            return "max.length";
+        }
+    };
+
+    private static final IntPairEndReadStatFunction MAX_PAIR_LENGTH = new IntPairEndReadStatFunction() {
+        @Override
+        public int computeIntermediateFirstInt(final GATKRead read) {
+            return read.getLength();
+        }
+
+        @Override
+        public int mergePairValuesInt(final int first, final int second) {
+            return first + second;
+        }
+
+        @Override
+        public int reduceInt(final int current, final int accumulator) {
+            return Math.max(current, accumulator);
+        }
+
+        @Override
+        public String getStatName() {
+            return "max.pair.length";
+        }
+    };
+
+    @DataProvider
+    public Object[][] reduceData() {
+        return new Object[][] {
+                {1, null, 1},
+                {-1, null, -1},
+                {1, 2, 2},
+                {3, 2, 3}
+        };
+    }
+
+    @Test(dataProvider = "reduceData")
+    public void testDefaultReduce(final Integer current, final Integer accumulator,
+            final Integer expected) {
+        Assert.assertEquals(MAX_LENGTH.reduce(current, accumulator), expected);
+        Assert.assertEquals(MAX_PAIR_LENGTH.reduce(current, accumulator), expected);
+    }
+
+    @Test
+    public void testDefaultCompute() {
+        final GATKRead first = ArtificialReadUtils.createArtificialRead("10M");
+        final GATKRead second = ArtificialReadUtils.createArtificialRead("5M");
+        Assert.assertEquals(MAX_LENGTH.compute(first).intValue(), 10);
+        Assert.assertEquals(MAX_PAIR_LENGTH.computeIntermediateFirst(first).intValue(), 10);
+        Assert.assertEquals(MAX_PAIR_LENGTH.computeIntermediateSecond(second).intValue(), 5);
+        Assert.assertEquals(MAX_PAIR_LENGTH.mergePairValues(10, 5).intValue(), 15);
+        Assert.assertEquals(MAX_PAIR_LENGTH.compute(Tuple2.apply(first, second)).intValue(), 15);
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.magicdgs.readtools.utils.read.stats.engine;
+
+import org.magicdgs.readtools.RTBaseTest;
+
+import htsjdk.samtools.SAMFileHeader;
+import org.broadinstitute.hellbender.utils.SimpleInterval;
+import org.broadinstitute.hellbender.utils.read.ArtificialReadUtils;
+import org.broadinstitute.hellbender.utils.read.GATKRead;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+public class ContigWindowIndexUnitTest extends RTBaseTest {
+
+    private static final SAMFileHeader TEST_HEADER = ArtificialReadUtils.createArtificialSamHeader();
+    private static final String CONTIG = TEST_HEADER.getSequence(0).getSequenceName();
+
+    private static final Function<SimpleInterval, ProperStatWindowCalculator> FACTORY =
+            w -> new ProperStatWindowCalculator(w, Collections.emptyList(), Collections.emptyList());
+
+    private static PendingMateTable createPendingMates() {
+        return new PendingMateTable(Collections.emptyList(), 10);
+    }
+
+    private static List<String> getTotals(final List<ProperStatWindowCalculator> output) {
+        return output.stream().map(c -> c.toTableFeature().get("total"))
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    public void testOverlappingWindows() throws Exception {
+        final List<SimpleInterval> windows = Arrays.asList(
+                new SimpleInterval(CONTIG, 1, 100),
+                new SimpleInterval(CONTIG, 51, 150),
+                new SimpleInterval(CONTIG, 101, 200));
+        final List<ProperStatWindowCalculator> output = new ArrayList<>();
+        final ContigWindowIndex index =
+                new ContigWindowIndex(windows, createPendingMates(), FACTORY, output::add, true);
+
+        final List<GATKRead> pair = ArtificialReadUtils.createPair(TEST_HEADER, "pair", 50, 0,
+                10, 120, true, false);
+        index.addRead(pair.get(0));
+        index.addRead(ArtificialReadUtils.createArtificialRead(TEST_HEADER, "single", 0, 60, 50));
+        index.addRead(pair.get(1));
+        // the first window has a pending mate until the second read is added
+        Assert.assertTrue(output.isEmpty());
+        Assert.assertEquals(index.numberOfActiveWindows(), 3);
+
+        index.flushAll();
+        Assert.assertEquals(output.stream().map(ProperStatWindowCalculator::getStart)
+                .collect(Collectors.toList()), Arrays.asList(1, 51, 101));
+        // each read is counted only once per window
+        Assert.assertEquals(getTotals(output), Arrays.asList("2", "2", "1"));
+        output.forEach(c -> Assert.assertFalse(c.hasCachedPairs(), c.toString()));
+        Assert.assertEquals(index.numberOfActiveWindows(), 0);
+    }
+
+    @DataProvider
+    public Object[][] outputEmpty() {
+        return new Object[][] {
+                {true, Arrays.asList("0", "0")},
+                {false, Collections.emptyList()}
+        };
+    }
+
+    @Test(dataProvider = "outputEmpty")
+    public void testFlushUpstreamEmptyWindows(final boolean outputEmpty,
+            final List<String> expectedTotals) throws Exception {
+        final List<SimpleInterval> windows = Arrays.asList(
+                new SimpleInterval(CONTIG, 1, 10),
+                new SimpleInterval(CONTIG, 11, 20),
+                new SimpleInterval(CONTIG, 21, 30));
+        final List<ProperStatWindowCalculator> output = new ArrayList<>();
+        final ContigWindowIndex index =
+                new ContigWindowIndex(windows, createPendingMates(), FACTORY, output::add,
+                        outputEmpty);
+
+        index.addRead(ArtificialReadUtils.createArtificialRead(TEST_HEADER, "read", 0, 25, 10));
+        Assert.assertEquals(getTotals(output), expectedTotals);
+        Assert.assertEquals(index.numberOfActiveWindows(), 1);
+
+        index.flushAll();
+        Assert.assertEquals(output.get(output.size() - 1).getStart(), 21);
+        Assert.assertEquals(output.get(output.size() - 1).toTableFeature().get("total"), "1");
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testWindowsInDifferentContigs() throws Exception {
+        new ContigWindowIndex(Arrays.asList(
+                new SimpleInterval(CONTIG, 1, 10),
+                new SimpleInterval(TEST_HEADER.getSequence(1).getSequenceName(), 1, 10)),
+                createPendingMates(), FACTORY, c -> {}, true);
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.magicdgs.readtools.utils.read.stats.engine;
+
+import org.magicdgs.readtools.RTBaseTest;
+import org.magicdgs.readtools.utils.math.RelationalOperator;
+import org.magicdgs.readtools.utils.read.stats.PairEndReadStatFunction;
+import org.magicdgs.readtools.utils.read.stats.pairstat.PairIntegerTagCounter;
+import org.magicdgs.readtools.utils.read.stats.pairstat.PairIntegerTagListCounter;
+
+import htsjdk.samtools.SAMFileHeader;
+import org.broadinstitute.hellbender.utils.read.ArtificialReadUtils;
+import org.broadinstitute.hellbender.utils.read.GATKRead;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+public class PendingMateTableUnitTest extends RTBaseTest {
+
+    private static final SAMFileHeader TEST_HEADER = ArtificialReadUtils.createArtificialSamHeader();
+    private static final List<PairEndReadStatFunction> NM_EQ_ZERO_COUNTER = Collections.singletonList(
+            new PairIntegerTagCounter("NM", RelationalOperator.EQ, 0));
+    // primitive and non-primitive functions
+    private static final List<PairEndReadStatFunction> NM_EQ_ZERO_COUNTERS = Arrays.asList(
+            new PairIntegerTagCounter("NM", RelationalOperator.EQ, 0),
+            new PairIntegerTagListCounter(Collections.singletonList("NM"),
+                    Collections.singletonList(RelationalOperator.EQ), Collections.singletonList(0)));
+
+    // pairs with the second read starting at the provided distance, and the NM tag on the first
+    private static List<List<GATKRead>> createPairs(final int numberOfPairs, final int distance) {
+        final List<List<GATKRead>> pairs = new ArrayList<>(numberOfPairs);
+        for (int i = 1; i <= numberOfPairs; i++) {
+            final List<GATKRead> pair = ArtificialReadUtils.createPair(TEST_HEADER, "pair" + i,
+                    10, 0, i, i + distance, true, false);
+            pair.get(0).setAttribute("NM", i % 2);
+            pair.get(1).setAttribute("NM", 0);
+            pairs.add(pair);
+        }
+        return pairs;
+    }
+
+    @DataProvider
+    public Object[][] maxPendingInRam() {
+        return new Object[][] {{1}, {10}, {Integer.MAX_VALUE}};
+    }
+
+    @Test(dataProvider = "maxPendingInRam")
+    public void testAddAndResolve(final int maxPendingInRam) throws Exception {
+        final List<List<GATKRead>> pairs = createPairs(5000, 10000);
+        try (final PendingMateTable table = new PendingMateTable(NM_EQ_ZERO_COUNTERS, maxPendingInRam)) {
+            for (final List<GATKRead> pair : pairs) {
+                table.advanceTo(pair.get(0).getStart());
+                Assert.assertNull(table.resolve(pair.get(0)));
+                table.add(pair.get(0));
+            }
+            Assert.assertEquals(table.size(), pairs.size());
+            for (final List<GATKRead> pair : pairs) {
+                final GATKRead second = pair.get(1);
+                table.advanceTo(second.getStart());
+                final PendingMateTable.PairValues values = table.resolve(second);
+                Assert.assertNotNull(values, second.getName());
+                final int expected = second.getStart() % 2 == 0 ? 1 : 0;
+                Assert.assertEquals(values.intValues[0], expected);
+                Assert.assertEquals(values.values[1], Collections.singletonList(expected));
+                // only once
+                Assert.assertNull(table.resolve(second), second.getName());
+            }
+            Assert.assertTrue(table.isEmpty());
+        }
+    }
+
+    @Test
+    public void testDiscardMissingMatesBeforeSpill() throws Exception {
+        final List<List<GATKRead>> pairs = createPairs(3, 5);
+        try (final PendingMateTable table = new PendingMateTable(NM_EQ_ZERO_COUNTER, 2)) {
+            table.add(pairs.get(0).get(0));
+            table.add(pairs.get(1).get(0));
+            // after the mate of the first pair, it is discarded instead of spilled
+            table.advanceTo(pairs.get(0).get(1).getStart() + 1);
+            table.add(pairs.get(2).get(0));
+            Assert.assertEquals(table.size(), 2);
+            Assert.assertNull(table.resolve(pairs.get(0).get(1)));
+            Assert.assertNotNull(table.resolve(pairs.get(2).get(1)));
+            Assert.assertNotNull(table.resolve(pairs.get(1).get(1)));
+            Assert.assertTrue(table.isEmpty());
+        }
+    }
+
+    @Test
+    public void testClear() throws Exception {
+        final List<List<GATKRead>> pairs = createPairs(10, 100);
+        try (final PendingMateTable table = new PendingMateTable(NM_EQ_ZERO_COUNTER, 1)) {
+            pairs.forEach(p -> table.add(p.get(0)));
+            Assert.assertEquals(table.size(), pairs.size());
+            table.clear();
+            Assert.assertTrue(table.isEmpty());
+            table.advanceTo(Integer.MAX_VALUE);
+            pairs.forEach(p -> Assert.assertNull(table.resolve(p.get(1))));
+        }
+    }
+
+    @Test
+    public void testHashNameIsNeverEmpty() throws Exception {
+        Assert.assertNotEquals(PendingMateTable.hashName(""), 0L);
+        Assert.assertNotEquals(PendingMateTable.hashName("pair1"),
+                PendingMateTable.hashName("pair2"));
+    }
+}
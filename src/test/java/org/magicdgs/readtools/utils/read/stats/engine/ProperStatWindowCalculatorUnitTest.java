@@ -27,6 +27,7 @@ package org.magicdgs.readtools.utils.read.stats.engine;
 import org.magicdgs.readtools.RTBaseTest;
 import org.magicdgs.readtools.utils.math.RelationalOperator;
 import org.magicdgs.readtools.utils.read.stats.pairstat.PairIntegerTagCounter;
+import org.magicdgs.readtools.utils.read.stats.pairstat.PairIntegerTagListCounter;
 import org.magicdgs.readtools.utils.read.stats.singlestat.ContainSoftclipCounter;
 
 import htsjdk.samtools.SAMFileHeader;
@@ -280,6 +281,35 @@ public class ProperStatWindowCalculatorUnitTest extends RTBaseTest {
     }
 
 
+    @Test
+    public void testNonPrimitiveStatistics() throws Exception {
+        // the list counter is not primitive, but it should produce the same output
+        final PairIntegerTagListCounter listCounter = new PairIntegerTagListCounter(
+                Collections.singletonList("NM"), Collections.singletonList(RelationalOperator.EQ),
+                Collections.singletonList(0));
+        final ProperStatWindowCalculator primitive = createTestWindow();
+        final ProperStatWindowCalculator nonPrimitive = new ProperStatWindowCalculator(
+                TEST_INTERVAL,
+                Collections.singletonList(SOFTCLIP_COUNTER),
+                Collections.singletonList(listCounter));
+        Assert.assertEquals(nonPrimitive.toTableFeature().getAllValues(),
+                primitive.toTableFeature().getAllValues());
+
+        for (final Tuple2<GATKRead, GATKRead> pair : Arrays.asList(
+                createPair("100M", "10S90M", 0, 0, TEST_INTERVAL, TEST_INTERVAL),
+                createPair("100M", "100M", 1, 0, TEST_INTERVAL, TEST_OUTSIDE_INTERVAL),
+                createPair("100M", "100M", 0, 0, TEST_OUTSIDE_INTERVAL, TEST_INTERVAL))) {
+            primitive.addRead(pair._1);
+            primitive.addRead(pair._2);
+            nonPrimitive.addRead(pair._1);
+            nonPrimitive.addRead(pair._2);
+        }
+        Assert.assertEquals(nonPrimitive.toTableFeature().getAllValues(),
+                primitive.toTableFeature().getAllValues());
+        Assert.assertEquals(primitive.toTableFeature().getAllValues(),
+                Arrays.asList("4", "4", "0", "1", "2"));
+    }
+
     @Test
     public void testToTableFeatureEmptyWindow() throws Exception {
         final ProperStatWindowCalculator calculator = createTestWindow();
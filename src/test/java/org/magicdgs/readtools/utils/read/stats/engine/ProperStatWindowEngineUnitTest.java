@@ -38,8 +38,14 @@ import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
 
 /**
  * @author Daniel Gomez-Sanchez (magicDGS)
@@ -71,7 +77,7 @@ public class ProperStatWindowEngineUnitTest extends RTBaseTest {
                 Arrays.asList(FIRST_CONTIG_INTERVAL_1, FIRST_CONTIG_INTERVAL_2, SECOND_CONTIG_INTERVAL),
                 Collections.singletonList(SOFTCLIP_COUNTER),
                 Collections.singletonList(NM_EQ_ZERO_COUNTER),
-                resultStream, printAll);
+                resultStream, printAll, ProperStatWindowEngine.DEFAULT_MAX_PENDING_MATES_IN_RAM);
     }
 
     private static String formatExpectedRow(final SimpleInterval interval,
@@ -186,6 +192,91 @@ public class ProperStatWindowEngineUnitTest extends RTBaseTest {
                 formatExpectedRow(SECOND_CONTIG_INTERVAL, 2, 2, 0, "0", "0"));
     }
 
+    @Test
+    public void testFlushUpstreamWindows() throws Exception {
+        final ByteArrayOutputStream result = new ByteArrayOutputStream();
+        final ProperStatWindowEngine engine = createEngineInstance(result, true);
+
+        // single read on the first window
+        engine.addRead(ArtificialReadUtils.createArtificialRead(TEST_HEADER, "single.first", 0,
+                FIRST_CONTIG_INTERVAL_1.getStart(), 50));
+        Assert.assertEquals(result.toString(), EXPECTED_OUTPUT_HEADER);
+
+        // single read on the second window flushes the first one
+        engine.addRead(ArtificialReadUtils.createArtificialRead(TEST_HEADER, "single.second", 0,
+                FIRST_CONTIG_INTERVAL_2.getStart(), 50));
+        final String firstFlush = EXPECTED_OUTPUT_HEADER +
+                formatExpectedRow(FIRST_CONTIG_INTERVAL_1, 1, 0, 0, "NA", "NA");
+        Assert.assertEquals(result.toString(), firstFlush);
+
+        engine.close();
+        Assert.assertEquals(result.toString(), firstFlush +
+                formatExpectedRow(FIRST_CONTIG_INTERVAL_2, 1, 0, 0, "NA", "NA") +
+                formatExpectedRow(SECOND_CONTIG_INTERVAL, 0, 0, 0, "NA", "NA"));
+    }
+
+    @Test
+    public void testDoNotFlushUpstreamWindowWithPendingMate() throws Exception {
+        final ByteArrayOutputStream result = new ByteArrayOutputStream();
+        final ProperStatWindowEngine engine = createEngineInstance(result, false);
+
+        // pair with the second read after the second window
+        final List<GATKRead> pair = ArtificialReadUtils.createPair(TEST_HEADER, "distant.pair",
+                50, // read length
+                0, // on first contig (ref-index = 0)
+                FIRST_CONTIG_INTERVAL_1.getStart(), FIRST_CONTIG_INTERVAL_2.getEnd() + 1,
+                true, false);
+        engine.addRead(pair.get(0));
+
+        // a read on the second window does not flush the first one (pending mate)
+        engine.addRead(ArtificialReadUtils.createArtificialRead(TEST_HEADER, "single", 0,
+                FIRST_CONTIG_INTERVAL_2.getStart(), 50));
+        Assert.assertEquals(result.toString(), EXPECTED_OUTPUT_HEADER);
+
+        // adding the mate does not flush yet, but a read after it flushes both windows
+        engine.addRead(pair.get(1));
+        Assert.assertEquals(result.toString(), EXPECTED_OUTPUT_HEADER);
+        engine.addRead(ArtificialReadUtils.createArtificialRead(TEST_HEADER, "last", 0,
+                pair.get(1).getStart() + 1, 50));
+        final String flushed = EXPECTED_OUTPUT_HEADER +
+                formatExpectedRow(FIRST_CONTIG_INTERVAL_1, 1, 1, 0, "0", "0") +
+                formatExpectedRow(FIRST_CONTIG_INTERVAL_2, 1, 0, 0, "NA", "NA");
+        Assert.assertEquals(result.toString(), flushed);
+
+        engine.close();
+        Assert.assertEquals(result.toString(), flushed);
+    }
+
+    @DataProvider
+    public Object[][] maxPendingMatesInRam() {
+        return new Object[][] {{1}, {2}, {ProperStatWindowEngine.DEFAULT_MAX_PENDING_MATES_IN_RAM}};
+    }
+
+    @Test(dataProvider = "maxPendingMatesInRam")
+    public void testSpillPendingMates(final int maxPendingMatesInRam) throws Exception {
+        final ByteArrayOutputStream result = new ByteArrayOutputStream();
+        final ProperStatWindowEngine engine = new ProperStatWindowEngine(
+                TEST_HEADER.getSequenceDictionary(),
+                Arrays.asList(FIRST_CONTIG_INTERVAL_1, FIRST_CONTIG_INTERVAL_2, SECOND_CONTIG_INTERVAL),
+                Collections.singletonList(SOFTCLIP_COUNTER),
+                Collections.singletonList(NM_EQ_ZERO_COUNTER),
+                result, true, maxPendingMatesInRam);
+
+        // three pairs with the mate on the second window
+        final List<GATKRead> reads = new ArrayList<>();
+        reads.addAll(ArtificialReadUtils.createPair(TEST_HEADER, "pair1", 50, 0, 1, 150, true, false));
+        reads.addAll(ArtificialReadUtils.createPair(TEST_HEADER, "pair2", 50, 0, 20, 120, true, false));
+        reads.addAll(ArtificialReadUtils.createPair(TEST_HEADER, "pair3", 50, 0, 60, 180, true, false));
+        reads.sort(Comparator.comparingInt(GATKRead::getStart));
+        reads.forEach(engine::addRead);
+
+        engine.close();
+        Assert.assertEquals(result.toString(), EXPECTED_OUTPUT_HEADER +
+                formatExpectedRow(FIRST_CONTIG_INTERVAL_1, 3, 3, 0, "0", "0") +
+                formatExpectedRow(FIRST_CONTIG_INTERVAL_2, 3, 3, 0, "0", "0") +
+                formatExpectedRow(SECOND_CONTIG_INTERVAL, 0, 0, 0, "NA", "NA"));
+    }
+
     @Test
     public void testAddingPairInConsecutiveWindows() throws Exception {
         // result stream and add both reads
@@ -210,4 +301,29 @@ public class ProperStatWindowEngineUnitTest extends RTBaseTest {
                 formatExpectedRow(FIRST_CONTIG_INTERVAL_1, 1, 1, 0, "0", "0") +
                 formatExpectedRow(FIRST_CONTIG_INTERVAL_2, 1, 1, 0, "0", "0"));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testMergeOutputs() throws Exception {
+        final File tempDir = createTempDir("testMergeOutputs");
+        final List<Path> outputs = new ArrayList<>(2);
+        for (final SimpleInterval interval : Arrays.asList(FIRST_CONTIG_INTERVAL_1, SECOND_CONTIG_INTERVAL)) {
+            final Path output = new File(tempDir, interval.getContig() + ".table").toPath();
+            new ProperStatWindowEngine(
+                    TEST_HEADER.getSequenceDictionary(),
+                    Collections.singletonList(interval),
+                    Collections.singletonList(SOFTCLIP_COUNTER),
+                    Collections.singletonList(NM_EQ_ZERO_COUNTER),
+                    output, true, ProperStatWindowEngine.DEFAULT_MAX_PENDING_MATES_IN_RAM).close();
+            outputs.add(output);
+        }
+        final Path merged = new File(tempDir, "merged.table").toPath();
+        ProperStatWindowEngine.mergeOutputs(outputs, merged);
+
+        final String lineSeparator = System.lineSeparator();
+        Assert.assertEquals(new String(Files.readAllBytes(merged)),
+                (EXPECTED_OUTPUT_HEADER
+                        + formatExpectedRow(FIRST_CONTIG_INTERVAL_1, 0, 0, 0, "NA", "NA")
+                        + formatExpectedRow(SECOND_CONTIG_INTERVAL, 0, 0, 0, "NA", "NA"))
+                        .replace(NL, lineSeparator));
+    }
+}
@@ -65,7 +65,7 @@ public class CheckQualityReadTransformerUnitTest extends RTBaseTest {
                 new CheckQualityReadTransformer();
         final GATKRead copy = read.deepCopy();
         Assert.assertEquals(transformer.apply(read), copy);
-        transformer.currentReadCounter.set(1001);
+        transformer.setCurrentReadCounter(1001);
         Assert.assertEquals(transformer.apply(read), copy);
     }
 
@@ -93,7 +93,7 @@ public class CheckQualityReadTransformerUnitTest extends RTBaseTest {
                 header, new byte[] {'A'}, SAMUtils.fastqToPhred(badQual));
         final CheckQualityReadTransformer transformer =
                 new CheckQualityReadTransformer();
-        transformer.currentReadCounter.set(1001);
+        transformer.setCurrentReadCounter(1001);
         transformer.apply(read);
         log(String.valueOf(read.getBaseQuality(0)));
     }
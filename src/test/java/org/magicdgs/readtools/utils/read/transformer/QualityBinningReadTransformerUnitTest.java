@@ -0,0 +1,115 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.magicdgs.readtools.utils.read.transformer;
+
+import org.magicdgs.readtools.RTBaseTest;
+import org.magicdgs.readtools.metrics.QualityBinningMetric;
+
+import htsjdk.samtools.SAMFileHeader;
+import org.broadinstitute.hellbender.utils.Utils;
+import org.broadinstitute.hellbender.utils.read.ArtificialReadUtils;
+import org.broadinstitute.hellbender.utils.read.GATKRead;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.Collections;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+public class QualityBinningReadTransformerUnitTest extends RTBaseTest {
+
+    private static final SAMFileHeader header = ArtificialReadUtils.createArtificialSamHeader();
+
+    private static GATKRead createRead(final byte[] quals) {
+        return ArtificialReadUtils.createArtificialUnmappedRead(header,
+                Utils.dupBytes((byte) 'A', quals.length), quals);
+    }
+
+    @Test
+    public void testIllumina8LevelBinning() throws Exception {
+        final QualityBinningReadTransformer transformer = new QualityBinningReadTransformer(
+                QualityBinningReadTransformer.ILLUMINA_8_LEVEL_BINS);
+        final GATKRead read = createRead(
+                new byte[] {0, 1, 2, 9, 10, 19, 20, 24, 25, 29, 30, 34, 35, 39, 40, 41, 60});
+        transformer.apply(read);
+        Assert.assertEquals(read.getBaseQualities(),
+                new byte[] {0, 1, 6, 6, 15, 15, 22, 22, 27, 27, 33, 33, 37, 37, 40, 40, 40});
+        Assert.assertEquals(transformer.getBinsString(),
+                "2:6,10:15,20:22,25:27,30:33,35:37,40:40");
+    }
+
+    @Test
+    public void testCustomBinning() throws Exception {
+        final SortedMap<Integer, Integer> bins = new TreeMap<>();
+        bins.put(0, 2);
+        bins.put(20, 30);
+        final QualityBinningReadTransformer transformer = new QualityBinningReadTransformer(bins);
+        final GATKRead read = createRead(new byte[] {0, 19, 20, 40});
+        transformer.apply(read);
+        Assert.assertEquals(read.getBaseQualities(), new byte[] {2, 2, 30, 30});
+    }
+
+    @Test
+    public void testMetric() throws Exception {
+        final QualityBinningReadTransformer transformer = new QualityBinningReadTransformer(
+                QualityBinningReadTransformer.ILLUMINA_8_LEVEL_BINS);
+        // empty metric
+        QualityBinningMetric metric = transformer.getMetric();
+        Assert.assertEquals(metric.BASES, 0);
+        Assert.assertEquals(metric.ESTIMATED_COMPRESSION_GAIN, 1.0);
+
+        // 4 equally distributed qualities binned into 2
+        transformer.apply(createRead(new byte[] {30, 31, 35, 36}));
+        transformer.apply(createRead(new byte[] {30, 31, 35, 36}));
+        metric = transformer.getMetric();
+        Assert.assertEquals(metric.BINS, transformer.getBinsString());
+        Assert.assertEquals(metric.BASES, 8);
+        Assert.assertEquals(metric.DISTINCT_QUALITIES_BEFORE, 4);
+        Assert.assertEquals(metric.DISTINCT_QUALITIES_AFTER, 2);
+        Assert.assertEquals(metric.ENTROPY_BEFORE, 2.0, 1e-10);
+        Assert.assertEquals(metric.ENTROPY_AFTER, 1.0, 1e-10);
+        Assert.assertEquals(metric.ESTIMATED_COMPRESSION_GAIN, 2.0, 1e-10);
+    }
+
+    @DataProvider
+    public Object[][] badBins() {
+        return new Object[][] {
+                {Collections.emptySortedMap()},
+                {new TreeMap<>(Collections.singletonMap(-1, 2))},
+                {new TreeMap<>(Collections.singletonMap(2, -1))},
+                {new TreeMap<>(Collections.singletonMap(2, 94))}
+        };
+    }
+
+    @Test(dataProvider = "badBins", expectedExceptions = IllegalArgumentException.class)
+    public void testBadBins(final SortedMap<Integer, Integer> bins) throws Exception {
+        new QualityBinningReadTransformer(bins);
+    }
+}
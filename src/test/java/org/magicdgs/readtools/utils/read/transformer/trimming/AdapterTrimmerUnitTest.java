@@ -0,0 +1,120 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.magicdgs.readtools.utils.read.transformer.trimming;
+
+import org.magicdgs.readtools.RTBaseTest;
+
+import org.broadinstitute.barclay.argparser.CommandLineException;
+import org.broadinstitute.hellbender.utils.Utils;
+import org.broadinstitute.hellbender.utils.read.ArtificialReadUtils;
+import org.broadinstitute.hellbender.utils.read.GATKRead;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+public class AdapterTrimmerUnitTest extends RTBaseTest {
+
+    @DataProvider
+    public Object[][] badArgs() {
+        return new Object[][] {
+                {Collections.emptyList(), 0.1, 3},
+                {Collections.singletonList(""), 0.1, 3},
+                {Arrays.asList(AdapterTrimmer.DEFAULT_ADAPTER, "ACTGX"), 0.1, 3},
+                {Collections.singletonList(AdapterTrimmer.DEFAULT_ADAPTER), -0.1, 3},
+                {Collections.singletonList(AdapterTrimmer.DEFAULT_ADAPTER), 1, 3},
+                {Collections.singletonList(AdapterTrimmer.DEFAULT_ADAPTER), 0.1, 0}
+        };
+    }
+
+    @Test(dataProvider = "badArgs", expectedExceptions = IllegalArgumentException.class)
+    public void testFailConstructor(final List<String> adapters, final double maxErrorRate,
+            final int minOverlap) throws Exception {
+        new AdapterTrimmer(adapters, maxErrorRate, minOverlap);
+    }
+
+    @Test(dataProvider = "badArgs")
+    public void testFailValidation(final List<String> adapters, final double maxErrorRate,
+            final int minOverlap) throws Exception {
+        final AdapterTrimmer trimmer = new AdapterTrimmer();
+        // this should not thrown
+        trimmer.validateArgs();
+        // bad arguments after construction should thrown
+        trimmer.adapterSequences = adapters;
+        trimmer.maxErrorRate = maxErrorRate;
+        trimmer.minOverlap = minOverlap;
+        Assert.assertThrows(CommandLineException.BadArgumentValue.class, trimmer::validateArgs);
+    }
+
+    @DataProvider
+    public Object[][] readsToTrim() {
+        final String adapter = AdapterTrimmer.DEFAULT_ADAPTER;
+        return new Object[][] {
+                // no adapter
+                {"ACTGACTGACTGACTGACTA", 20},
+                // complete and partial adapter
+                {"ACTGACTGAC" + adapter + "ACTG", 10},
+                {"ACTGACTGAC" + adapter.substring(0, 5), 10},
+                // adapter with one mismatch
+                {"ACTGACTGAC" + adapter.replace('T', 'A'), 10},
+                // second adapter
+                {"ACTGACTGAC" + "CTGTCTCTTATACACATCT", 10},
+                // left-most adapter
+                {"ACTGA" + adapter + "ACTGACTGAC" + "CTGTCTCTTATACACATCT", 5},
+                // completely trimmed
+                {adapter + "ACTGACTGAC", 0}
+        };
+    }
+
+    @Test(dataProvider = "readsToTrim")
+    public void testTrimmer(final String bases, final int expectedEnd) throws Exception {
+        final GATKRead read = ArtificialReadUtils.createArtificialRead(bases.getBytes(),
+                Utils.repeatBytes((byte) 30, bases.length()), bases.length() + "M");
+        final TrimmingFunction trimmer = new AdapterTrimmer(
+                Arrays.asList(AdapterTrimmer.DEFAULT_ADAPTER, "CTGTCTCTTATACACATCT"), 0.1, 3);
+        trimmer.apply(read);
+        Assert.assertEquals(read.getAttributeAsInteger("ts").intValue(), 0, "wrong 'ts'");
+        Assert.assertEquals(read.getAttributeAsInteger("te").intValue(), expectedEnd,
+                "wrong 'te'");
+    }
+
+    @Test
+    public void testDisable3prime() throws Exception {
+        final String bases = "ACTGACTGAC" + AdapterTrimmer.DEFAULT_ADAPTER;
+        final GATKRead read = ArtificialReadUtils.createArtificialRead(bases.getBytes(),
+                Utils.repeatBytes((byte) 30, bases.length()), bases.length() + "M");
+        final TrimmingFunction trimmer = new AdapterTrimmer();
+        trimmer.setDisableEnds(false, true);
+        trimmer.apply(read);
+        Assert.assertEquals(read.getAttributeAsInteger("te").intValue(), bases.length());
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.magicdgs.readtools.utils.read.transformer.trimming;
+
+import org.magicdgs.readtools.RTBaseTest;
+
+import org.broadinstitute.barclay.argparser.CommandLineException;
+import org.broadinstitute.hellbender.utils.Utils;
+import org.broadinstitute.hellbender.utils.read.ArtificialReadUtils;
+import org.broadinstitute.hellbender.utils.read.GATKRead;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+public class PolyTailTrimmerUnitTest extends RTBaseTest {
+
+    @DataProvider
+    public Object[][] badArgs() {
+        return new Object[][] {
+                {Collections.emptyList(), 10, 0.125},
+                {Collections.singletonList(""), 10, 0.125},
+                {Collections.singletonList("GG"), 10, 0.125},
+                {Arrays.asList("G", "N"), 10, 0.125},
+                {Collections.singletonList("G"), 0, 0.125},
+                {Collections.singletonList("G"), 10, -0.1},
+                {Collections.singletonList("G"), 10, 1}
+        };
+    }
+
+    @Test(dataProvider = "badArgs", expectedExceptions = IllegalArgumentException.class)
+    public void testFailConstructor(final List<String> polyBases, final int minLength,
+            final double maxMismatchRate) throws Exception {
+        new PolyTailTrimmer(polyBases, minLength, maxMismatchRate);
+    }
+
+    @Test(dataProvider = "badArgs")
+    public void testFailValidation(final List<String> polyBases, final int minLength,
+            final double maxMismatchRate) throws Exception {
+        final PolyTailTrimmer trimmer = new PolyTailTrimmer();
+        // this should not thrown
+        trimmer.validateArgs();
+        // bad arguments after construction should thrown
+        trimmer.polyBases = polyBases;
+        trimmer.minLength = minLength;
+        trimmer.maxMismatchRate = maxMismatchRate;
+        Assert.assertThrows(CommandLineException.BadArgumentValue.class, trimmer::validateArgs);
+    }
+
+    @DataProvider
+    public Object[][] readsToTrim() {
+        return new Object[][] {
+                // no tail
+                {"ACTGACTGACTGACTGACTA", Collections.singletonList("G"), 20},
+                // poly-G with and without mismatches
+                {"ACTGACTGACGGGGGGGGGGGG", Collections.singletonList("G"), 10},
+                {"ACTGACTGACGGGGGAGGGGGG", Collections.singletonList("g"), 10},
+                // poly-A is not trimmed by default, but it is with X
+                {"ACTGACTGACAAAAAAAAAAAA", Collections.singletonList("G"), 22},
+                {"ACTGACTGACAAAAAAAAAAAA", Collections.singletonList("X"), 10},
+                // only tails at the end
+                {"ACTGACTGACAAAAAAAAAAGGGGGGGGGG", Arrays.asList("G", "A"), 20},
+                // completely trimmed
+                {"GGGGGGGGGGGG", Collections.singletonList("G"), 0}
+        };
+    }
+
+    @Test(dataProvider = "readsToTrim")
+    public void testTrimmer(final String bases, final List<String> polyBases,
+            final int expectedEnd) throws Exception {
+        final GATKRead read = ArtificialReadUtils.createArtificialRead(bases.getBytes(),
+                Utils.repeatBytes((byte) 30, bases.length()), bases.length() + "M");
+        final TrimmingFunction trimmer = new PolyTailTrimmer(polyBases, 10, 0.125);
+        trimmer.apply(read);
+        Assert.assertEquals(read.getAttributeAsInteger("ts").intValue(), 0, "wrong 'ts'");
+        Assert.assertEquals(read.getAttributeAsInteger("te").intValue(), expectedEnd,
+                "wrong 'te'");
+    }
+
+    @Test
+    public void testDisable3prime() throws Exception {
+        final String bases = "ACTGACTGACGGGGGGGGGGGG";
+        final GATKRead read = ArtificialReadUtils.createArtificialRead(bases.getBytes(),
+                Utils.repeatBytes((byte) 30, bases.length()), bases.length() + "M");
+        final TrimmingFunction trimmer = new PolyTailTrimmer();
+        trimmer.setDisableEnds(false, true);
+        trimmer.apply(read);
+        Assert.assertEquals(read.getAttributeAsInteger("te").intValue(), bases.length());
+    }
+}
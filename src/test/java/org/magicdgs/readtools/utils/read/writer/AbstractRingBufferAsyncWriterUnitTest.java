@@ -0,0 +1,164 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.magicdgs.readtools.utils.read.writer;
+
+import org.magicdgs.readtools.RTBaseTest;
+
+import htsjdk.samtools.util.RuntimeIOException;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+public class AbstractRingBufferAsyncWriterUnitTest extends RTBaseTest {
+
+    // writes the items into a list, failing on the requested item (if any)
+    private static class ListWriter extends AbstractRingBufferAsyncWriter<Integer> {
+        private final List<Integer> written = new ArrayList<>();
+        private final Integer failOn;
+        private final long sleepMillis;
+        private boolean underlyingClosed = false;
+
+        private ListWriter(final int queueSize, final WaitStrategy waitStrategy,
+                final Integer failOn, final long sleepMillis) {
+            super(queueSize, waitStrategy);
+            this.failOn = failOn;
+            this.sleepMillis = sleepMillis;
+        }
+
+        @Override
+        protected String getThreadNamePrefix() {
+            return "ListWriter-";
+        }
+
+        @Override
+        protected void synchronouslyWrite(final Integer item) {
+            if (item.equals(failOn)) {
+                throw new IllegalStateException("failed on " + item);
+            }
+            if (sleepMillis > 0) {
+                try {
+                    Thread.sleep(sleepMillis);
+                } catch (final InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+            written.add(item);
+        }
+
+        @Override
+        protected void synchronouslyClose() {
+            underlyingClosed = true;
+        }
+    }
+
+    @DataProvider(name = "queueSizes")
+    public Iterator<Object[]> queueSizes() {
+        final List<Object[]> data = new ArrayList<>();
+        for (final WaitStrategy strategy : WaitStrategy.values()) {
+            for (final int queueSize : new int[] {1, 3, 100, 10000}) {
+                // busy-spin is too slow for small queues if there are not enough cores
+                if (strategy != WaitStrategy.SPIN || queueSize >= 100) {
+                    data.add(new Object[] {queueSize, strategy});
+                }
+            }
+        }
+        return data.iterator();
+    }
+
+    @Test(dataProvider = "queueSizes")
+    public void testItemsWrittenInOrder(final int queueSize, final WaitStrategy strategy) {
+        final ListWriter writer = new ListWriter(queueSize, strategy, null, 0);
+        final List<Integer> expected = IntStream.range(0, 10000).boxed()
+                .collect(Collectors.toList());
+        expected.forEach(writer::write);
+        writer.close();
+        Assert.assertTrue(writer.underlyingClosed);
+        Assert.assertEquals(writer.written, expected);
+        Assert.assertTrue(writer.getQueueFullStalls() >= 0);
+        Assert.assertTrue(writer.getQueueEmptyStalls() >= 0);
+    }
+
+    @Test
+    public void testQueueFullStallsWithSlowWriter() {
+        final ListWriter writer = new ListWriter(2, WaitStrategy.PARK, null, 1);
+        IntStream.range(0, 20).forEach(writer::write);
+        writer.close();
+        Assert.assertEquals(writer.written.size(), 20);
+        Assert.assertTrue(writer.getQueueFullStalls() > 0);
+    }
+
+    @Test
+    public void testQueueEmptyStallsWithSlowProducer() throws Exception {
+        final ListWriter writer = new ListWriter(1, WaitStrategy.PARK, null, 0);
+        for (int i = 0; i < 5; i++) {
+            writer.write(i);
+            Thread.sleep(5);
+        }
+        writer.close();
+        Assert.assertEquals(writer.written.size(), 5);
+        Assert.assertTrue(writer.getQueueEmptyStalls() > 0);
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class, expectedExceptionsMessageRegExp = "failed on 10")
+    public void testErrorInWriterThreadRethrown() {
+        // queue of size 1 to force the error while writing
+        final ListWriter writer = new ListWriter(1, WaitStrategy.YIELD, 10, 0);
+        IntStream.range(0, 10000).forEach(writer::write);
+        writer.close();
+    }
+
+    @Test(expectedExceptions = RuntimeIOException.class)
+    public void testWriteAfterClose() {
+        final ListWriter writer = new ListWriter(10, WaitStrategy.PARK, null, 0);
+        writer.close();
+        writer.write(1);
+    }
+
+    @DataProvider(name = "capacities")
+    public Object[][] capacities() {
+        return new Object[][] {{1, 1}, {2, 2}, {3, 4}, {64, 64}, {100, 128}};
+    }
+
+    @Test(dataProvider = "capacities")
+    public void testRingBufferCapacity(final int requested, final int expected) {
+        Assert.assertEquals(new SpscRingBuffer<>(requested, WaitStrategy.SPIN).capacity(),
+                expected);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidRingBufferCapacity() {
+        new SpscRingBuffer<>(0, WaitStrategy.SPIN);
+    }
+}
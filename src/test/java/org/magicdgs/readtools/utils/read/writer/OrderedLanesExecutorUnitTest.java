@@ -0,0 +1,138 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.magicdgs.readtools.utils.read.writer;
+
+import org.magicdgs.readtools.RTBaseTest;
+
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+public class OrderedLanesExecutorUnitTest extends RTBaseTest {
+
+    @Test
+    public void testTasksInSubmissionOrderPerLane() throws Exception {
+        final int nLanes = 3;
+        final List<List<Integer>> results = IntStream.range(0, nLanes)
+                .mapToObj(i -> Collections.synchronizedList(new ArrayList<Integer>()))
+                .collect(Collectors.toList());
+        try (final OrderedLanesExecutor executor = new OrderedLanesExecutor("test", nLanes, 2)) {
+            Assert.assertEquals(executor.getNumberOfLanes(), nLanes);
+            for (int i = 0; i < 1000; i++) {
+                final int value = i;
+                final int lane = executor.getLane(value);
+                executor.submit(lane, () -> results.get(lane).add(value));
+            }
+        }
+        for (int lane = 0; lane < nLanes; lane++) {
+            final int current = lane;
+            Assert.assertEquals(results.get(lane), IntStream.range(0, 1000)
+                    .filter(i -> Math.floorMod(Integer.hashCode(i), nLanes) == current)
+                    .boxed().collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    public void testLanesRunConcurrently() throws Exception {
+        // the first lane waits for the second one: it will never finish if run sequentially
+        final CountDownLatch latch = new CountDownLatch(1);
+        final List<String> results = Collections.synchronizedList(new ArrayList<>());
+        try (final OrderedLanesExecutor executor = new OrderedLanesExecutor("test", 2, 1)) {
+            executor.submit(0, () -> {
+                try {
+                    latch.await();
+                } catch (final InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                results.add("first");
+            });
+            executor.submit(1, () -> {
+                results.add("second");
+                latch.countDown();
+            });
+        }
+        Assert.assertEquals(results, Arrays.asList("second", "first"));
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class, expectedExceptionsMessageRegExp = "failed")
+    public void testErrorRethrownOnClose() throws Exception {
+        try (final OrderedLanesExecutor executor = new OrderedLanesExecutor("test", 1, 1)) {
+            executor.submit(0, () -> {
+                throw new IllegalStateException("failed");
+            });
+        }
+    }
+
+    @Test
+    public void testTasksAfterErrorAreSkipped() throws Exception {
+        final List<Integer> results = Collections.synchronizedList(new ArrayList<>());
+        final OrderedLanesExecutor executor = new OrderedLanesExecutor("test", 1, 10);
+        executor.submit(0, () -> results.add(0));
+        executor.submit(0, () -> {
+            throw new IllegalArgumentException("failed");
+        });
+        for (int i = 1; i < 5; i++) {
+            final int value = i;
+            try {
+                executor.submit(0, () -> results.add(value));
+            } catch (final IllegalArgumentException e) {
+                // expected if the error was already found
+            }
+        }
+        Assert.assertThrows(IllegalArgumentException.class, executor::close);
+        Assert.assertEquals(results, Collections.singletonList(0));
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testSubmitAfterClose() throws Exception {
+        final OrderedLanesExecutor executor = new OrderedLanesExecutor("test", 1, 1);
+        executor.close();
+        executor.submit(0, () -> { });
+    }
+
+    @DataProvider(name = "invalidArguments")
+    public Object[][] invalidArguments() {
+        return new Object[][] {
+                {0, 1}, {-1, 1}, {1, 0}, {1, -1}
+        };
+    }
+
+    @Test(dataProvider = "invalidArguments", expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidArguments(final int lanes, final int capacity) throws Exception {
+        new OrderedLanesExecutor("test", lanes, capacity);
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.magicdgs.readtools.utils.read.writer;
+
+import org.magicdgs.readtools.RTBaseTest;
+
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+public class ParallelBatchEncoderUnitTest extends RTBaseTest {
+
+    // encodes each integer as a line
+    private static final ParallelBatchEncoder.BatchEncoder<Integer> LINE_ENCODER =
+            (batch, out) -> {
+                for (final Integer i : batch) {
+                    out.write((i + "\n").getBytes());
+                }
+            };
+
+    private static byte[] expectedLines(final int nRecords) {
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < nRecords; i++) {
+            builder.append(i).append('\n');
+        }
+        return builder.toString().getBytes();
+    }
+
+    @DataProvider(name = "encodingParams")
+    public Object[][] encodingParams() {
+        return new Object[][] {
+                {1, 1, 0}, {1, 1, 100}, {3, 1, 100},
+                {2, 10, 5}, {2, 10, 10}, {4, 7, 1000}, {4, 1000, 10000}
+        };
+    }
+
+    @Test(dataProvider = "encodingParams")
+    public void testBlocksWrittenInOrder(final int threads, final int batchSize,
+            final int nRecords) throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final ParallelBatchEncoder<Integer> encoder =
+                new ParallelBatchEncoder<>(out, LINE_ENCODER, threads, batchSize);
+        for (int i = 0; i < nRecords; i++) {
+            encoder.add(i);
+        }
+        encoder.close();
+        Assert.assertEquals(out.toByteArray(), expectedLines(nRecords));
+    }
+
+    @Test(dataProvider = "encodingParams")
+    public void testGzipMembers(final int threads, final int batchSize,
+            final int nRecords) throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final ParallelBatchEncoder<Integer> encoder = new ParallelBatchEncoder<>(out,
+                ParallelBatchEncoder.BatchEncoder.gzipMembers(LINE_ENCODER, 5),
+                threads, batchSize);
+        for (int i = 0; i < nRecords; i++) {
+            encoder.add(i);
+        }
+        encoder.close();
+        // the concatenated members are read as a single gzip file
+        final ByteArrayOutputStream decompressed = new ByteArrayOutputStream();
+        try (final GZIPInputStream in =
+                new GZIPInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            final byte[] buffer = new byte[1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                decompressed.write(buffer, 0, read);
+            }
+        } catch (final EOFException e) {
+            // no members if no records
+            Assert.assertEquals(nRecords, 0);
+        }
+        Assert.assertEquals(decompressed.toByteArray(), expectedLines(nRecords));
+    }
+
+    @Test
+    public void testFlushWritesPartialBatch() throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final ParallelBatchEncoder<Integer> encoder =
+                new ParallelBatchEncoder<>(out, LINE_ENCODER, 2, 100);
+        for (int i = 0; i < 10; i++) {
+            encoder.add(i);
+        }
+        Assert.assertEquals(out.size(), 0);
+        encoder.flush();
+        Assert.assertEquals(out.toByteArray(), expectedLines(10));
+        encoder.close();
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class, expectedExceptionsMessageRegExp = "failed")
+    public void testEncoderRuntimeExceptionRethrown() throws Exception {
+        final ParallelBatchEncoder<Integer> encoder = new ParallelBatchEncoder<>(
+                new ByteArrayOutputStream(), (batch, out) -> {
+            throw new IllegalStateException("failed");
+        }, 2, 1);
+        for (int i = 0; i < 100; i++) {
+            encoder.add(i);
+        }
+        encoder.close();
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void testEncoderIOExceptionRethrown() throws Exception {
+        final ParallelBatchEncoder<Integer> encoder = new ParallelBatchEncoder<>(
+                new ByteArrayOutputStream(), (batch, out) -> {
+            throw new IOException("failed");
+        }, 2, 10);
+        encoder.add(1);
+        encoder.close();
+    }
+
+    @DataProvider(name = "invalidArguments")
+    public Object[][] invalidArguments() {
+        return new Object[][] {{0, 1}, {-1, 1}, {1, 0}, {1, -1}};
+    }
+
+    @Test(dataProvider = "invalidArguments", expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidArguments(final int threads, final int batchSize) {
+        new ParallelBatchEncoder<>(new ByteArrayOutputStream(), LINE_ENCODER, threads, batchSize);
+    }
+}
@@ -0,0 +1,218 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.magicdgs.readtools.utils.read.writer;
+
+import org.magicdgs.readtools.RTBaseTest;
+import org.magicdgs.readtools.metrics.ShardMetric;
+
+import htsjdk.samtools.metrics.MetricsFile;
+import org.broadinstitute.hellbender.utils.read.ArtificialReadUtils;
+import org.broadinstitute.hellbender.utils.read.GATKRead;
+import org.broadinstitute.hellbender.utils.read.GATKReadWriter;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+public class ShardedGATKWriterUnitTest extends RTBaseTest {
+
+    // in-memory writer, to check the reads on each shard
+    private static final class ListWriter implements GATKReadWriter {
+        private final List<GATKRead> reads = Collections.synchronizedList(new ArrayList<>());
+        private volatile boolean closed = false;
+
+        @Override
+        public void addRead(final GATKRead read) {
+            Assert.assertFalse(closed, "adding reads to closed shard");
+            reads.add(read);
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    // 10 single reads, followed by 20 pairs
+    private static List<GATKRead> createReads() {
+        final List<GATKRead> reads = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            reads.add(ArtificialReadUtils.createArtificialRead("10M"));
+            reads.get(i).setName("single" + i);
+        }
+        for (int i = 0; i < 20; i++) {
+            final GATKRead first = ArtificialReadUtils.createArtificialRead("10M");
+            first.setName("pair" + i);
+            first.setIsPaired(true);
+            first.setIsFirstOfPair();
+            final GATKRead second = first.copy();
+            second.setIsSecondOfPair();
+            reads.add(first);
+            reads.add(second);
+        }
+        return reads;
+    }
+
+    private static Map<String, ListWriter> writeShards(final ShardedGATKWriter.Sharding sharding,
+            final List<GATKRead> reads, final File manifest, final int threads)
+            throws Exception {
+        final Map<String, ListWriter> shards = Collections.synchronizedMap(new LinkedHashMap<>());
+        final ShardedGATKWriter writer = new ShardedGATKWriter(suffix -> {
+            final ListWriter shard = new ListWriter();
+            shards.put(suffix, shard);
+            return shard;
+        }, suffix -> "output" + suffix, sharding, manifest.toPath(), threads);
+        reads.forEach(writer::addRead);
+        writer.close();
+        shards.values().forEach(shard -> Assert.assertTrue(shard.closed));
+        return shards;
+    }
+
+    private static void assertManifest(final File manifest, final Map<String, ListWriter> shards)
+            throws Exception {
+        final MetricsFile<ShardMetric, Integer> metrics = new MetricsFile<>();
+        try (final Reader reader = new FileReader(manifest)) {
+            metrics.read(reader);
+        }
+        final List<ShardMetric> expected = new ArrayList<>();
+        int index = 0;
+        for (final Map.Entry<String, ListWriter> shard : shards.entrySet()) {
+            Assert.assertEquals(shard.getKey(), ShardedGATKWriter.getShardSuffix(index));
+            expected.add(new ShardMetric(index++, "output" + shard.getKey(),
+                    shard.getValue().reads.size()));
+        }
+        Assert.assertEquals(metrics.getMetrics(), expected);
+    }
+
+    // mates should be always in the same shard, one after the other
+    private static void assertPairsNotSplit(final Map<String, ListWriter> shards) {
+        for (final ListWriter shard : shards.values()) {
+            final List<GATKRead> reads = shard.reads;
+            for (int i = 0; i < reads.size(); i++) {
+                if (reads.get(i).isPaired()) {
+                    Assert.assertTrue(reads.get(i).isFirstOfPair());
+                    Assert.assertEquals(reads.get(i + 1).getName(), reads.get(i).getName());
+                    i++;
+                }
+            }
+        }
+    }
+
+    @DataProvider(name = "threads")
+    public Object[][] threads() {
+        return new Object[][] {{0}, {1}, {3}};
+    }
+
+    @Test(dataProvider = "threads")
+    public void testShardingByReads(final int threads) throws Exception {
+        final File manifest = new File(createTempDir("testShardingByReads"), "manifest.metrics");
+        final List<GATKRead> reads = createReads();
+        final Map<String, ListWriter> shards =
+                writeShards(ShardedGATKWriter.byReads(3), reads, manifest, threads);
+        // 10 singles are 4 shards (3, 3, 3, 1 + first pair) and the other 19 pairs 10 shards
+        Assert.assertEquals(shards.values().stream().map(s -> s.reads.size())
+                        .collect(Collectors.toList()),
+                Arrays.asList(3, 3, 3, 3, 4, 4, 4, 4, 4, 4, 4, 4, 4, 2));
+        Assert.assertEquals(shards.values().stream().flatMap(s -> s.reads.stream())
+                .collect(Collectors.toList()), reads);
+        assertPairsNotSplit(shards);
+        assertManifest(manifest, shards);
+    }
+
+    @Test(dataProvider = "threads")
+    public void testShardingByBytes(final int threads) throws Exception {
+        final File manifest = new File(createTempDir("testShardingByBytes"), "manifest.metrics");
+        final List<GATKRead> reads = createReads();
+        // 10 bases reads have at least 20 bytes
+        final Map<String, ListWriter> shards =
+                writeShards(ShardedGATKWriter.byBytes(100), reads, manifest, threads);
+        Assert.assertTrue(shards.size() > 1);
+        Assert.assertEquals(shards.values().stream().flatMap(s -> s.reads.stream())
+                .collect(Collectors.toList()), reads);
+        assertPairsNotSplit(shards);
+        assertManifest(manifest, shards);
+    }
+
+    @Test(dataProvider = "threads")
+    public void testShardingByBytesConcurrent(final int threads) throws Exception {
+        final File manifest =
+                new File(createTempDir("testShardingByBytesConcurrent"), "manifest.metrics");
+        final List<GATKRead> reads = createReads();
+        final Map<String, ListWriter> shards =
+                writeShards(ShardedGATKWriter.byBytes(100, 3), reads, manifest, threads);
+        Assert.assertTrue(shards.size() > 3);
+        // reads are distributed in round-robin, so only the content is the same
+        Assert.assertEquals(shards.values().stream().flatMap(s -> s.reads.stream())
+                .collect(Collectors.toSet()), new HashSet<>(reads));
+        Assert.assertEquals(shards.values().stream().mapToInt(s -> s.reads.size()).sum(),
+                reads.size());
+        assertPairsNotSplit(shards);
+        assertManifest(manifest, shards);
+    }
+
+    @Test(dataProvider = "threads")
+    public void testShardingByReadName(final int threads) throws Exception {
+        final File manifest = new File(createTempDir("testShardingByReadName"), "manifest.metrics");
+        final List<GATKRead> reads = createReads();
+        final Map<String, ListWriter> shards =
+                writeShards(ShardedGATKWriter.byReadName(4), reads, manifest, threads);
+        // all shards are created
+        Assert.assertEquals(shards.size(), 4);
+        Assert.assertEquals(shards.values().stream().mapToInt(s -> s.reads.size()).sum(),
+                reads.size());
+        assertPairsNotSplit(shards);
+        assertManifest(manifest, shards);
+    }
+
+    @DataProvider(name = "invalidSharding")
+    public Object[][] invalidSharding() {
+        return new Object[][] {
+                {(Runnable) () -> ShardedGATKWriter.byReads(0)},
+                {(Runnable) () -> ShardedGATKWriter.byBytes(-1)},
+                {(Runnable) () -> ShardedGATKWriter.byBytes(100, 0)},
+                {(Runnable) () -> ShardedGATKWriter.byReadName(0)}
+        };
+    }
+
+    @Test(dataProvider = "invalidSharding", expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidSharding(final Runnable sharding) {
+        sharding.run();
+    }
+}
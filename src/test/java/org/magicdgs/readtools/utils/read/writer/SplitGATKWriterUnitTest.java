@@ -29,11 +29,15 @@ import org.magicdgs.readtools.utils.read.ReadReaderFactory;
 import org.magicdgs.readtools.utils.read.ReadWriterFactory;
 import org.magicdgs.readtools.RTBaseTest;
 
+import htsjdk.samtools.BamFileIoUtils;
 import htsjdk.samtools.SAMFileHeader;
 import htsjdk.samtools.SAMReadGroupRecord;
 import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMRecordIterator;
 import htsjdk.samtools.SamReader;
+import htsjdk.samtools.SamReaderFactory;
 import htsjdk.samtools.ValidationStringency;
+import org.broadinstitute.hellbender.tools.readersplitters.ReadGroupIdSplitter;
 import org.broadinstitute.hellbender.tools.readersplitters.ReaderSplitter;
 import org.broadinstitute.hellbender.tools.readersplitters.SampleNameSplitter;
 import org.broadinstitute.hellbender.utils.read.ArtificialReadUtils;
@@ -188,4 +192,185 @@ public class SplitGATKWriterUnitTest extends RTBaseTest {
         }
     }
 
-}
\ No newline at end of file
+    @DataProvider(name = "boundedFormats")
+    public Object[][] boundedFormats() {
+        return new Object[][] {
+                {ReadToolsIOFormat.BamFormat.SAM, true},
+                {ReadToolsIOFormat.BamFormat.BAM, true},
+                {ReadToolsIOFormat.BamFormat.BAM, false},
+                {ReadToolsIOFormat.FastqFormat.PLAIN, true},
+                {ReadToolsIOFormat.FastqFormat.GZIP, false}
+        };
+    }
+
+    // five read groups with two samples
+    private static SAMFileHeader createMultipleReadGroupsHeader() {
+        final List<SAMReadGroupRecord> readGroups = IntStream.range(0, 5).mapToObj(n -> {
+            final SAMReadGroupRecord rg = new SAMReadGroupRecord(String.valueOf(n));
+            rg.setSample("sample" + (n % 2));
+            return rg;
+        }).collect(Collectors.toList());
+        final SAMFileHeader header = ArtificialReadUtils.createArtificialSamHeader();
+        header.setSortOrder(SAMFileHeader.SortOrder.unsorted);
+        header.setReadGroups(readGroups);
+        return header;
+    }
+
+    // reads cycling over the read groups (including unknown), to force re-opening
+    private static List<GATKRead> createReadsCyclingReadGroups(final int nReads) {
+        return IntStream.range(0, nReads).mapToObj(n -> {
+            final GATKRead read = ArtificialReadUtils.createArtificialRead("5M");
+            read.setName("read" + n);
+            if (n % 6 != 5) {
+                read.setReadGroup(String.valueOf(n % 6));
+            }
+            return read;
+        }).collect(Collectors.toList());
+    }
+
+    // asserts that the outputs with the expected prefix are the same as the ones with the actual
+    private static void assertSameSplitOutputs(final File testDir, final String expectedPrefix,
+            final String actualPrefix) throws Exception {
+        final String[] outputNames = testDir.list((dir, name) -> name.startsWith(expectedPrefix));
+        Assert.assertNotNull(outputNames);
+        Assert.assertTrue(outputNames.length > 2);
+        for (final String name : outputNames) {
+            final File expected = new File(testDir, name);
+            final File actual = new File(testDir, name.replace(expectedPrefix, actualPrefix));
+            Assert.assertTrue(actual.exists(), actual + " does not exist");
+            final ReadsSourceHandler expectedHandler =
+                    ReadsSourceHandler.getHandler(expected.getAbsolutePath(), READER_FACTORY);
+            final ReadsSourceHandler actualHandler =
+                    ReadsSourceHandler.getHandler(actual.getAbsolutePath(), READER_FACTORY);
+            Assert.assertEquals(actualHandler.getHeader(), expectedHandler.getHeader());
+            Assert.assertEquals(
+                    actualHandler.toStream().map(GATKRead::getName).collect(Collectors.toList()),
+                    expectedHandler.toStream().map(GATKRead::getName).collect(Collectors.toList()));
+            expectedHandler.close();
+            actualHandler.close();
+        }
+    }
+
+    @Test(dataProvider = "boundedFormats")
+    public void testBoundedOpenWritersSameAsUnbounded(final ReadToolsIOFormat format,
+            final boolean onDemand) throws Exception {
+        final File testDir = createTempDir("testBoundedOpenWriters");
+        final SAMFileHeader header = createMultipleReadGroupsHeader();
+        final List<ReaderSplitter<?>> splitters =
+                Arrays.asList(new SampleNameSplitter(), new ReadGroupIdSplitter());
+        final List<GATKRead> reads = createReadsCyclingReadGroups(100);
+
+        final String unboundedPrefix = new File(testDir, "unbounded").getAbsolutePath();
+        final String boundedPrefix = new File(testDir, "bounded").getAbsolutePath();
+        final SplitGATKWriter unbounded = new SplitGATKWriter(unboundedPrefix, format, splitters,
+                header, true, new ReadWriterFactory(), onDemand);
+        final SplitGATKWriter bounded = new SplitGATKWriter(boundedPrefix, format, splitters,
+                header, true, new ReadWriterFactory(), onDemand, 2);
+        reads.forEach(unbounded::addRead);
+        reads.forEach(bounded::addRead);
+        unbounded.close();
+        bounded.close();
+
+        assertSameSplitOutputs(testDir, "unbounded", "bounded");
+    }
+
+    @Test
+    public void testBoundedOpenWritersCoordinateSortedWithIndex() throws Exception {
+        final File testDir = createTempDir("testBoundedOpenWritersWithIndex");
+        final SAMFileHeader header = createMultipleReadGroupsHeader();
+        header.setSortOrder(SAMFileHeader.SortOrder.coordinate);
+        final List<ReaderSplitter<?>> splitters =
+                Collections.singletonList(new ReadGroupIdSplitter());
+        final List<GATKRead> reads = createReadsCyclingReadGroups(100);
+        final String contig = header.getSequence(0).getSequenceName();
+        for (int i = 0; i < reads.size(); i++) {
+            reads.get(i).setPosition(contig, i + 1);
+        }
+
+        final String unboundedPrefix = new File(testDir, "unbounded").getAbsolutePath();
+        final String boundedPrefix = new File(testDir, "bounded").getAbsolutePath();
+        final SplitGATKWriter unbounded = new SplitGATKWriter(unboundedPrefix,
+                ReadToolsIOFormat.BamFormat.BAM, splitters, header, true,
+                new ReadWriterFactory().setCreateIndex(true), true);
+        final SplitGATKWriter bounded = new SplitGATKWriter(boundedPrefix,
+                ReadToolsIOFormat.BamFormat.BAM, splitters, header, true,
+                new ReadWriterFactory().setCreateIndex(true), true, 2);
+        reads.forEach(unbounded::addRead);
+        reads.forEach(bounded::addRead);
+        unbounded.close();
+        bounded.close();
+
+        assertSameSplitOutputs(testDir, "unbounded", "bounded");
+
+        // the index should cover all the reads in the file
+        final String[] bamNames = testDir.list((dir, name) -> name.startsWith("bounded")
+                && name.endsWith(BamFileIoUtils.BAM_FILE_EXTENSION));
+        Assert.assertNotNull(bamNames);
+        for (final String name : bamNames) {
+            try (final SamReader reader = SamReaderFactory.makeDefault()
+                    .open(new File(testDir, name))) {
+                Assert.assertTrue(reader.hasIndex(), name + " without index");
+                final List<String> all = new ArrayList<>();
+                try (final SAMRecordIterator it = reader.iterator()) {
+                    it.forEachRemaining(r -> all.add(r.getReadName()));
+                }
+                final List<String> queried = new ArrayList<>();
+                try (final SAMRecordIterator it =
+                        reader.queryOverlapping(contig, 1, reads.size() + 10)) {
+                    it.forEachRemaining(r -> queried.add(r.getReadName()));
+                }
+                Assert.assertFalse(all.isEmpty(), name);
+                Assert.assertEquals(queried, all, name);
+            }
+        }
+    }
+
+    @DataProvider(name = "writerThreads")
+    public Object[][] writerThreads() {
+        return new Object[][] {
+                {ReadToolsIOFormat.BamFormat.BAM, SplitGATKWriter.UNBOUNDED_OPEN_WRITERS, 1},
+                {ReadToolsIOFormat.BamFormat.BAM, SplitGATKWriter.UNBOUNDED_OPEN_WRITERS, 3},
+                {ReadToolsIOFormat.BamFormat.SAM, 2, 3},
+                {ReadToolsIOFormat.FastqFormat.GZIP, SplitGATKWriter.UNBOUNDED_OPEN_WRITERS, 2},
+                {ReadToolsIOFormat.FastqFormat.PLAIN, 2, 2}
+        };
+    }
+
+    @Test(dataProvider = "writerThreads")
+    public void testWriterThreadsSameAsCallerThread(final ReadToolsIOFormat format,
+            final int maxOpenWriters, final int writerThreads) throws Exception {
+        final File testDir = createTempDir("testWriterThreads");
+        final SAMFileHeader header = createMultipleReadGroupsHeader();
+        final List<ReaderSplitter<?>> splitters =
+                Arrays.asList(new SampleNameSplitter(), new ReadGroupIdSplitter());
+        final List<GATKRead> reads = createReadsCyclingReadGroups(1000);
+
+        final String callerPrefix = new File(testDir, "caller").getAbsolutePath();
+        final String threadedPrefix = new File(testDir, "threaded").getAbsolutePath();
+        final SplitGATKWriter caller = new SplitGATKWriter(callerPrefix, format, splitters,
+                header, true, new ReadWriterFactory(), true);
+        final SplitGATKWriter threaded = new SplitGATKWriter(threadedPrefix, format, splitters,
+                header, true, new ReadWriterFactory(), true, maxOpenWriters, writerThreads);
+        reads.forEach(caller::addRead);
+        reads.forEach(threaded::addRead);
+        caller.close();
+        threaded.close();
+
+        assertSameSplitOutputs(testDir, "caller", "threaded");
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testNegativeMaxOpenWriters() {
+        new SplitGATKWriter("prefix", ReadToolsIOFormat.BamFormat.SAM,
+                Collections.singletonList(new SampleNameSplitter()), new SAMFileHeader(), true,
+                new ReadWriterFactory(), true, -1);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testNegativeWriterThreads() {
+        new SplitGATKWriter("prefix", ReadToolsIOFormat.BamFormat.SAM,
+                Collections.singletonList(new SampleNameSplitter()), new SAMFileHeader(), true,
+                new ReadWriterFactory(), true, SplitGATKWriter.UNBOUNDED_OPEN_WRITERS, -1);
+    }
+
+}
@@ -0,0 +1,134 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.magicdgs.readtools.utils.read.writer;
+
+import org.magicdgs.readtools.RTBaseTest;
+
+import org.broadinstitute.hellbender.utils.read.ArtificialReadUtils;
+import org.broadinstitute.hellbender.utils.read.GATKRead;
+import org.broadinstitute.hellbender.utils.read.GATKReadWriter;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+public class TeeGATKWriterUnitTest extends RTBaseTest {
+
+    // in-memory writer, which checks that it is called always from the same thread
+    private static final class ListWriter implements GATKReadWriter {
+        private final List<GATKRead> reads = new ArrayList<>();
+        private Thread thread = null;
+        private volatile boolean closed = false;
+
+        private void checkThread() {
+            if (thread == null) {
+                thread = Thread.currentThread();
+            }
+            Assert.assertSame(Thread.currentThread(), thread);
+        }
+
+        @Override
+        public void addRead(final GATKRead read) {
+            checkThread();
+            Assert.assertFalse(closed, "adding reads to closed writer");
+            reads.add(read);
+        }
+
+        @Override
+        public void close() {
+            checkThread();
+            closed = true;
+        }
+    }
+
+    @DataProvider
+    public Object[][] writerThreads() {
+        return new Object[][] {{false}, {true}};
+    }
+
+    @Test(dataProvider = "writerThreads")
+    public void testAllOutputsReceiveAllReads(final boolean writerThreads) throws Exception {
+        final List<ListWriter> outputs =
+                Arrays.asList(new ListWriter(), new ListWriter(), new ListWriter());
+        final List<GATKRead> reads = new ArrayList<>();
+        for (int i = 0; i < 2500; i++) {
+            reads.add(ArtificialReadUtils.createArtificialRead("10M"));
+        }
+        final TeeGATKWriter writer = new TeeGATKWriter(new ArrayList<>(outputs), writerThreads);
+        reads.forEach(writer::addRead);
+        writer.close();
+        for (final ListWriter output : outputs) {
+            Assert.assertTrue(output.closed);
+            Assert.assertEquals(output.reads.size(), reads.size());
+            for (int i = 0; i < reads.size(); i++) {
+                Assert.assertEquals(output.reads.get(i), reads.get(i));
+            }
+        }
+        for (int i = 0; i < reads.size(); i++) {
+            final GATKRead last = outputs.get(outputs.size() - 1).reads.get(i);
+            // the last output always receives the added instance
+            Assert.assertSame(last, reads.get(i));
+            for (final ListWriter output : outputs.subList(0, outputs.size() - 1)) {
+                if (writerThreads) {
+                    // each writer thread receives its own instance
+                    Assert.assertNotSame(output.reads.get(i), last);
+                } else {
+                    // the same instances are shared between outputs
+                    Assert.assertSame(output.reads.get(i), last);
+                }
+            }
+        }
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testErrorInOutputThread() throws Exception {
+        final GATKReadWriter failing = new GATKReadWriter() {
+            @Override
+            public void addRead(final GATKRead read) {
+                throw new IllegalStateException("failing output");
+            }
+
+            @Override
+            public void close() { }
+        };
+        final TeeGATKWriter writer =
+                new TeeGATKWriter(Arrays.asList(new ListWriter(), failing), true);
+        writer.addRead(ArtificialReadUtils.createArtificialRead("10M"));
+        writer.close();
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testEmptyWriters() throws Exception {
+        new TeeGATKWriter(Collections.emptyList(), false);
+    }
+}
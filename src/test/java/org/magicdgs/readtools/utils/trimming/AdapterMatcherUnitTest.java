@@ -0,0 +1,216 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.magicdgs.readtools.utils.trimming;
+
+import org.magicdgs.readtools.RTBaseTest;
+
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+public class AdapterMatcherUnitTest extends RTBaseTest {
+
+    private static final String ADAPTER = "AGATCGGAAGAGC";
+
+    @DataProvider
+    public Object[][] adapterData() {
+        return new Object[][] {
+                // complete adapter
+                {ADAPTER, 0.1, 3, "ACGTACGTAC" + ADAPTER + "TTTT", 10},
+                {ADAPTER, 0.1, 3, "ACGTACGTAC" + ADAPTER, 10},
+                {ADAPTER, 0.1, 3, ADAPTER + "ACGTACGTAC", 0},
+                // no adapter
+                {ADAPTER, 0.1, 3, "ACGTACGTACGTACGT", 16},
+                {ADAPTER, 0.1, 3, "", 0},
+                // partial adapters at the end
+                {ADAPTER, 0.1, 3, "ACGTACGTAC" + "AGATC", 10},
+                {ADAPTER, 0.1, 3, "CCCCCCAGA", 6},
+                {ADAPTER, 0.1, 3, "CCCCCCCAG", 9},
+                {ADAPTER, 0.1, 2, "CCCCCCCAG", 7},
+                // with one error
+                {ADAPTER, 0.1, 3, "ACGTACGTAC" + "AGATCGCAAGAGC", 10},
+                {ADAPTER, 0.1, 3, "ACGTACGTAC" + "AGATCGGAGAGC", 10},
+                {ADAPTER, 0.1, 3, "ACGTACGTAC" + "AGATCGGTAAGAGC", 10},
+                {ADAPTER, 0.1, 3, "ACGTACGTAC" + "AGATCNGAAGAGC", 10},
+                // with two errors
+                {ADAPTER, 0.1, 3, "ACGTACGTAC" + "AGTTCGCAAGAGC" + "TTTTTTTTTT", 33},
+                {ADAPTER, 0.2, 3, "ACGTACGTAC" + "AGTTCGCAAGAGC" + "TTTTTTTTTT", 10},
+                // the left-most adapter is found
+                {ADAPTER, 0.1, 3, "CC" + ADAPTER + "CC" + ADAPTER, 2},
+                // adapter with Ns
+                {"ACGNNACGT", 0, 3, "TTTTTACGCCACGTTTTT", 5},
+                {"ACGNNACGT", 0, 3, "TTTTTACNCCACGTTTTT", 18},
+                // lower case
+                {ADAPTER.toLowerCase(), 0.1, 3, "acgtacgtac" + ADAPTER.toLowerCase(), 10}
+        };
+    }
+
+    @Test(dataProvider = "adapterData")
+    public void testFindAdapterStart(final String adapter, final double maxErrorRate,
+            final int minOverlap, final String read, final int expected) {
+        final AdapterMatcher matcher = new AdapterMatcher(adapter, maxErrorRate, minOverlap);
+        Assert.assertEquals(matcher.findAdapterStart(read.getBytes()), expected);
+        // re-using the matcher does not change the result
+        Assert.assertEquals(matcher.findAdapterStart(read.getBytes()), expected);
+    }
+
+    @DataProvider
+    public Iterator<Object[]> randomReads() {
+        final String[] adapters = new String[] {ADAPTER,
+                "AGATCGGAAGAGCACACGTCTGAACTCCAGTCAC", "ACGNNACGT", "CTGTCTCTTATACACATCT"};
+        final double[] errorRates = new double[] {0, 0.1, 0.2};
+        final Random random = new Random(1984);
+        final List<Object[]> data = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            final String adapter = adapters[random.nextInt(adapters.length)];
+            final StringBuilder read = randomBases(random, random.nextInt(40));
+            // most of the reads contain a mutated adapter
+            if (random.nextInt(4) != 0) {
+                final StringBuilder mutated = new StringBuilder(
+                        adapter.replace('N', "ACGT".charAt(random.nextInt(4))));
+                for (int m = random.nextInt(4); m > 0 && mutated.length() > 0; m--) {
+                    final int position = random.nextInt(mutated.length());
+                    switch (random.nextInt(3)) {
+                        case 0:
+                            mutated.setCharAt(position, "ACGT".charAt(random.nextInt(4)));
+                            break;
+                        case 1:
+                            mutated.deleteCharAt(position);
+                            break;
+                        default:
+                            mutated.insert(position, "ACGT".charAt(random.nextInt(4)));
+                    }
+                }
+                read.insert(random.nextInt(read.length() + 1), mutated);
+                // partial adapter at the end
+                read.setLength(random.nextInt(read.length() + 1));
+            }
+            data.add(new Object[] {adapter, errorRates[random.nextInt(errorRates.length)],
+                    1 + random.nextInt(5), read.toString()});
+        }
+        return data.iterator();
+    }
+
+    private static StringBuilder randomBases(final Random random, final int length) {
+        final StringBuilder bases = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            // some Ns in the read
+            bases.append("ACGTN".charAt(random.nextInt((random.nextInt(10) == 0) ? 5 : 4)));
+        }
+        return bases;
+    }
+
+    @Test(dataProvider = "randomReads")
+    public void testFindAdapterStartSameAsDynamicProgramming(final String adapter,
+            final double maxErrorRate, final int minOverlap, final String read) {
+        final AdapterMatcher matcher = new AdapterMatcher(adapter, maxErrorRate, minOverlap);
+        Assert.assertEquals(matcher.findAdapterStart(read.getBytes()),
+                findAdapterStartDynamicProgramming(adapter, maxErrorRate, minOverlap, read));
+    }
+
+    // reference implementation using the edit distance for each possible alignment
+    private static int findAdapterStartDynamicProgramming(final String adapter,
+            final double maxErrorRate, final int minOverlap, final String read) {
+        // left-most complete adapter
+        for (int end = 0; end < read.length(); end++) {
+            final int start = bestStart(adapter, read, end, (int) (maxErrorRate * adapter.length()));
+            if (start != -1) {
+                return start;
+            }
+        }
+        // longest partial adapter at the end
+        for (int length = adapter.length() - 1; length >= minOverlap; length--) {
+            final int start = bestStart(adapter.substring(0, length), read, read.length() - 1,
+                    (int) (maxErrorRate * length));
+            if (start != -1) {
+                return start;
+            }
+        }
+        return read.length();
+    }
+
+    // left-most start with less errors for the adapter ending at end; -1 if not found
+    private static int bestStart(final String adapter, final String read, final int end,
+            final int maxErrors) {
+        int bestErrors = maxErrors;
+        int bestStart = -1;
+        for (int start = end; start >= 0; start--) {
+            final int errors = editDistance(adapter, read.substring(start, end + 1));
+            if (errors <= bestErrors) {
+                bestErrors = errors;
+                bestStart = start;
+            }
+        }
+        return bestStart;
+    }
+
+    private static int editDistance(final String adapter, final String read) {
+        final int[][] distance = new int[adapter.length() + 1][read.length() + 1];
+        for (int i = 0; i <= adapter.length(); i++) {
+            distance[i][0] = i;
+        }
+        for (int j = 0; j <= read.length(); j++) {
+            distance[0][j] = j;
+        }
+        for (int i = 1; i <= adapter.length(); i++) {
+            for (int j = 1; j <= read.length(); j++) {
+                final char a = adapter.charAt(i - 1);
+                final char r = read.charAt(j - 1);
+                final boolean match = a == 'N' || (a == r && r != 'N');
+                distance[i][j] = Math.min(Math.min(distance[i - 1][j], distance[i][j - 1]) + 1,
+                        distance[i - 1][j - 1] + ((match) ? 0 : 1));
+            }
+        }
+        return distance[adapter.length()][read.length()];
+    }
+
+    @DataProvider
+    public Object[][] badArgs() {
+        return new Object[][] {
+                {"", 0.1, 3},
+                {ADAPTER + "X", 0.1, 3},
+                {new String(new char[AdapterMatcher.MAX_ADAPTER_LENGTH + 1]).replace('\0', 'A'),
+                        0.1, 3},
+                {ADAPTER, -0.1, 3},
+                {ADAPTER, 1, 3},
+                {ADAPTER, 0.1, 0}
+        };
+    }
+
+    @Test(dataProvider = "badArgs", expectedExceptions = IllegalArgumentException.class)
+    public void testBadArgs(final String adapter, final double maxErrorRate,
+            final int minOverlap) {
+        new AdapterMatcher(adapter, maxErrorRate, minOverlap);
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.magicdgs.readtools.utils.trimming;
+
+import org.magicdgs.readtools.RTBaseTest;
+
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMFlag;
+import htsjdk.samtools.SAMRecord;
+import org.broadinstitute.hellbender.utils.BaseUtils;
+import org.broadinstitute.hellbender.utils.Utils;
+import org.broadinstitute.hellbender.utils.read.ArtificialReadUtils;
+import org.broadinstitute.hellbender.utils.read.GATKRead;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+public class PairOverlapDetectorUnitTest extends RTBaseTest {
+
+    private static final String ADAPTER_1 = "AGATCGGAAGAGCACACGTCTGAACTCCAGTCAC";
+    private static final String ADAPTER_2 = "AGATCGGAAGAGCGTCGTGTAGGGAAAGAGTGTA";
+
+    // simulates the first and second read for a fragment, including adapter read-through
+    private static byte[][] simulatePair(final String fragment, final int readLength) {
+        final String first = fragment + ADAPTER_1 + Utils.dupString('A', readLength);
+        final String second = new String(BaseUtils.simpleReverseComplement(fragment.getBytes()))
+                + ADAPTER_2 + Utils.dupString('A', readLength);
+        return new byte[][] {first.substring(0, readLength).getBytes(),
+                second.substring(0, readLength).getBytes()};
+    }
+
+    @DataProvider
+    public Iterator<Object[]> simulatedPairs() {
+        final Random random = new Random(1984);
+        final List<Object[]> data = new ArrayList<>();
+        for (final int insert : new int[] {20, 35, 50, 75, 99, 100, 101, 150, 180}) {
+            final StringBuilder fragment = new StringBuilder(insert);
+            for (int i = 0; i < insert; i++) {
+                fragment.append("ACGT".charAt(random.nextInt(4)));
+            }
+            final byte[][] pair = simulatePair(fragment.toString(), 100);
+            data.add(new Object[] {pair[0], pair[1], insert});
+            // with one mismatch and one N at the beginning of the reads
+            final byte[][] mutated = simulatePair(fragment.toString(), 100);
+            mutated[0][1] = 'N';
+            mutated[1][3] = (byte) ((mutated[1][3] == 'A') ? 'C' : 'A');
+            data.add(new Object[] {mutated[0], mutated[1], insert});
+        }
+        return data.iterator();
+    }
+
+    @Test(dataProvider = "simulatedPairs")
+    public void testFindInsertSize(final byte[] first, final byte[] second, final int insert) {
+        final PairOverlapDetector detector = new PairOverlapDetector(15, 0.1);
+        Assert.assertEquals(detector.findInsertSize(first, second), insert);
+        // re-using the detector does not change the result
+        Assert.assertEquals(detector.findInsertSize(first, second), insert);
+    }
+
+    @Test
+    public void testFindInsertSizeNoOverlap() {
+        final byte[] first = "ACGTTGCAAGGCTTACGGATCAGATTACGACT".getBytes();
+        final byte[] second = "TTTTTTTTTTGGGGGGGGGGCCCCCCCCCCAA".getBytes();
+        Assert.assertEquals(new PairOverlapDetector(10, 0.1).findInsertSize(first, second), -1);
+        Assert.assertEquals(new PairOverlapDetector(10, 0.1).findInsertSize(first, new byte[0]),
+                -1);
+    }
+
+    @Test
+    public void testMergePair() {
+        final SAMFileHeader header = ArtificialReadUtils.createArtificialSamHeader();
+        // fragment: ACGTACGTTTGGCC (insert size 14), with a mismatch in the first read (ACGTACGATT)
+        final GATKRead first = ArtificialReadUtils.createArtificialUnmappedRead(header,
+                "ACGTACGATT".getBytes(), new byte[] {30, 30, 30, 30, 30, 30, 10, 30, 30, 30});
+        first.setIsPaired(true);
+        first.setIsFirstOfPair();
+        // reverse complement of the fragment
+        final GATKRead second = ArtificialReadUtils.createArtificialUnmappedRead(header,
+                "GGCCAAACGTAC".getBytes(),
+                new byte[] {20, 20, 20, 20, 20, 20, 20, 20, 20, 20, 20, 20});
+        second.setIsPaired(true);
+        second.setIsSecondOfPair();
+
+        final GATKRead merged = PairOverlapDetector.mergePair(first, second, 14);
+        Assert.assertEquals(merged.getName(), first.getName());
+        Assert.assertFalse(merged.isPaired());
+        // pair information is cleared
+        final SAMRecord mergedRecord = merged.convertToSAMRecord(header);
+        Assert.assertEquals(mergedRecord.getFlags(), SAMFlag.READ_UNMAPPED.intValue());
+        Assert.assertEquals(mergedRecord.getMateReferenceName(), SAMRecord.NO_ALIGNMENT_REFERENCE_NAME);
+        Assert.assertEquals(mergedRecord.getMateAlignmentStart(), SAMRecord.NO_ALIGNMENT_START);
+        // the mismatch is resolved by quality, and the quality is the maximum for matches
+        Assert.assertEquals(merged.getBasesString(), "ACGTACGATTGGCC");
+        Assert.assertEquals(merged.getBaseQualities(),
+                new byte[] {30, 30, 30, 30, 30, 30, 20, 10, 30, 30, 20, 20, 20, 20});
+        // the input reads are not modified
+        Assert.assertEquals(first.getBasesString(), "ACGTACGATT");
+        Assert.assertEquals(second.getBasesString(), "GGCCAAACGTAC");
+    }
+
+    @DataProvider
+    public Object[][] badArgs() {
+        return new Object[][] {{0, 0.1}, {10, -0.1}, {10, 1}};
+    }
+
+    @Test(dataProvider = "badArgs", expectedExceptions = IllegalArgumentException.class)
+    public void testBadArgs(final int minOverlap, final double maxMismatchRate) {
+        new PairOverlapDetector(minOverlap, maxMismatchRate);
+    }
+}
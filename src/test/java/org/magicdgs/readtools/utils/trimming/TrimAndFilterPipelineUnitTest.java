@@ -30,10 +30,12 @@ import org.magicdgs.readtools.metrics.FilterMetric;
 import org.magicdgs.readtools.metrics.TrimmerMetric;
 import org.magicdgs.readtools.tools.trimming.TrimReadsTrimmerPluginArgumentCollection;
 import org.magicdgs.readtools.utils.read.transformer.trimming.CutReadTrimmer;
+import org.magicdgs.readtools.utils.read.transformer.trimming.MottQualityTrimmer;
 import org.magicdgs.readtools.utils.read.transformer.trimming.TrailingNtrimmer;
 import org.magicdgs.readtools.utils.read.transformer.trimming.TrimmingFunction;
 import org.magicdgs.readtools.RTBaseTest;
 
+import htsjdk.samtools.SAMFileHeader;
 import org.broadinstitute.barclay.argparser.CommandLineArgumentParser;
 import org.broadinstitute.barclay.argparser.CommandLineException;
 import org.broadinstitute.barclay.argparser.CommandLineParser;
@@ -41,6 +43,7 @@ import org.broadinstitute.hellbender.cmdline.GATKPlugin.GATKReadFilterPluginDesc
 import org.broadinstitute.hellbender.engine.filters.ReadFilter;
 import org.broadinstitute.hellbender.engine.filters.ReadFilterLibrary;
 import org.broadinstitute.hellbender.engine.filters.ReadLengthReadFilter;
+import org.broadinstitute.hellbender.utils.Utils;
 import org.broadinstitute.hellbender.utils.read.ArtificialReadUtils;
 import org.broadinstitute.hellbender.utils.read.GATKRead;
 import org.testng.Assert;
@@ -556,6 +559,135 @@ public class TrimAndFilterPipelineUnitTest extends RTBaseTest {
         Assert.assertEquals(pipeline.getFilterStats().size(), expectedFilters);
     }
 
+    // reads for testing the compiled pipeline (new reads on each call)
+    private static List<GATKRead> readsForCompiledPipeline() {
+        final SAMFileHeader header = ArtificialReadUtils.createArtificialSamHeader();
+        final byte[] bases = "NNACTGACTGACTGACTGACTGANNN".getBytes();
+        final byte[] quals = new byte[] {2, 2, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30,
+                30, 30, 30, 30, 30, 10, 10, 10, 30, 30, 2, 2, 2};
+        final List<GATKRead> reads = new ArrayList<>();
+        // mapped and unmapped reads with the full sequence or a shorter one
+        for (int length = 1; length <= bases.length; length++) {
+            final byte[] b = Arrays.copyOf(bases, length);
+            final byte[] q = Arrays.copyOf(quals, length);
+            reads.add(ArtificialReadUtils.createArtificialUnmappedRead(header, b, q));
+            reads.add(ArtificialReadUtils.createArtificialRead(header, b, q, length + "M"));
+        }
+        // read already trimmed
+        final GATKRead alreadyTrimmed =
+                ArtificialReadUtils.createArtificialUnmappedRead(header, bases, quals);
+        alreadyTrimmed.setAttribute("ts", 5);
+        alreadyTrimmed.setAttribute("te", 20);
+        reads.add(alreadyTrimmed);
+        // read already completely trimmed
+        final GATKRead alreadyCompletelyTrimmed =
+                ArtificialReadUtils.createArtificialUnmappedRead(header, bases, quals);
+        alreadyCompletelyTrimmed.setAttribute("ct", 1);
+        reads.add(alreadyCompletelyTrimmed);
+        // read completely trimmed by the trimming tags
+        final GATKRead completelyTrimmedByTags =
+                ArtificialReadUtils.createArtificialUnmappedRead(header, bases, quals);
+        completelyTrimmedByTags.setAttribute("ts", 10);
+        completelyTrimmedByTags.setAttribute("te", 10);
+        reads.add(completelyTrimmedByTags);
+        return reads;
+    }
+
+    @DataProvider(name = "pipelineModesData")
+    public Iterator<Object[]> getPipelineModesData() {
+        final CutReadTrimmer cut5p = new CutReadTrimmer(3, 3);
+        cut5p.setDisableEnds(false, true);
+        final List<List<TrimmingFunction>> trimmers = Arrays.asList(
+                Collections.singletonList(new MottQualityTrimmer()),
+                Arrays.asList(new TrailingNtrimmer(), new MottQualityTrimmer()),
+                Arrays.asList(new TrailingNtrimmer(), cut5p, new MottQualityTrimmer(25)),
+                Collections.emptyList());
+        final List<List<ReadFilter>> filters = Arrays.asList(
+                Collections.emptyList(),
+                Collections.singletonList(new ReadLengthReadFilter(10, 100)),
+                Collections.singletonList(new ReadLengthReadFilter(10, 15)),
+                Arrays.asList(ReadFilterLibrary.MAPPED, new ReadLengthReadFilter(10, 100)),
+                Arrays.asList(new ReadLengthReadFilter(5, 100), ReadFilterLibrary.GOOD_CIGAR,
+                        ReadFilterLibrary.MAPPED));
+        final List<Object[]> data = new ArrayList<>();
+        for (final List<TrimmingFunction> t : trimmers) {
+            for (final List<ReadFilter> f : filters) {
+                if (!t.isEmpty() || !f.isEmpty()) {
+                    data.add(new Object[] {t, f, true, false});
+                    data.add(new Object[] {t, f, false, true});
+                    data.add(new Object[] {t, f, true, true});
+                }
+            }
+        }
+        return data.iterator();
+    }
+
+    @Test(dataProvider = "pipelineModesData")
+    public void testPipelineModesSameAsComposed(final List<TrimmingFunction> trimmers,
+            final List<ReadFilter> filters, final boolean compiled, final boolean preFilter) {
+        final TrimAndFilterPipeline composed =
+                new TrimAndFilterPipeline(trimmers, filters, false, false);
+        final TrimAndFilterPipeline pipeline =
+                new TrimAndFilterPipeline(trimmers, filters, compiled, preFilter);
+
+        final List<GATKRead> expectedReads = readsForCompiledPipeline();
+        final List<GATKRead> actualReads = readsForCompiledPipeline();
+        for (int i = 0; i < expectedReads.size(); i++) {
+            final GATKRead expected = expectedReads.get(i);
+            final GATKRead actual = actualReads.get(i);
+            final boolean pass = composed.test(expected);
+            Assert.assertEquals(pipeline.test(actual), pass);
+            Assert.assertEquals(actual.getAttributeAsString("FT"),
+                    expected.getAttributeAsString("FT"));
+            Assert.assertEquals(actual.getAttributeAsString("ct"),
+                    expected.getAttributeAsString("ct"));
+            // discarded reads might not be trimmed with pre-filtering
+            if (pass || !preFilter) {
+                Assert.assertEquals(actual.getBases(), expected.getBases());
+                Assert.assertEquals(actual.getBaseQualities(), expected.getBaseQualities());
+                Assert.assertEquals(actual.getCigar(), expected.getCigar());
+                Assert.assertEquals(actual.getStart(), expected.getStart());
+                Assert.assertEquals(actual.getAttributeAsString("ts"),
+                        expected.getAttributeAsString("ts"));
+                Assert.assertEquals(actual.getAttributeAsString("te"),
+                        expected.getAttributeAsString("te"));
+            }
+        }
+
+        // metrics should be the same
+        Assert.assertEquals(pipeline.getTrimmingStats().size(), composed.getTrimmingStats().size());
+        for (int i = 0; i < composed.getTrimmingStats().size(); i++) {
+            final TrimmerMetric expected = composed.getTrimmingStats().get(i);
+            testTrimmingMetric(pipeline.getTrimmingStats().get(i), expected.TRIMMER,
+                    expected.TOTAL, expected.TRIMMED_5_P, expected.TRIMMED_3_P,
+                    expected.TRIMMED_COMPLETE);
+        }
+        Assert.assertEquals(pipeline.getFilterStats().size(), composed.getFilterStats().size());
+        for (int i = 0; i < composed.getFilterStats().size(); i++) {
+            final FilterMetric expected = composed.getFilterStats().get(i);
+            testFilterMetric(pipeline.getFilterStats().get(i), expected.FILTER,
+                    expected.TOTAL, expected.PASSED);
+        }
+    }
+
+    @Test
+    public void testPreFilterDoesNotTrimDiscardedReads() {
+        final TrimAndFilterPipeline pipeline = new TrimAndFilterPipeline(
+                Collections.singletonList(new CutReadTrimmer(1, 1)),
+                Collections.singletonList(new ReadLengthReadFilter(9, 100)),
+                false, true);
+        final GATKRead read = ArtificialReadUtils.createArtificialUnmappedRead(
+                ArtificialReadUtils.createArtificialSamHeader(),
+                "ACTGACTGAC".getBytes(), Utils.repeatBytes((byte) 30, 10));
+        // the read is not trimmed
+        Assert.assertFalse(pipeline.test(read));
+        Assert.assertEquals(read.getLength(), 10);
+        Assert.assertEquals(read.getAttributeAsString("FT"), "ReadLengthReadFilter");
+        testTrimmingMetric(pipeline.getTrimmingStats().get(0), "CutReadTrimmer", 1, 1, 1, 0);
+        testFilterMetric(pipeline.getFilterStats().get(0), "CompletelyTrimReadFilter", 1, 1);
+        testFilterMetric(pipeline.getFilterStats().get(1), "ReadLengthReadFilter", 1, 0);
+    }
+
     @Test
     public void testFilterTagApplyForFirst() throws Exception {
         // pipeline only with read filter
@@ -30,6 +30,8 @@ import org.testng.Assert;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
+import java.util.Random;
+
 /**
  * @author Daniel Gomez-Sanchez (magicDGS)
  */
@@ -66,6 +68,61 @@ public class TrimmingUtilTest extends RTBaseTest {
         Assert.assertEquals(TrimmingUtil.trimPointsMott(quals, threshold), expected);
     }
 
+    @Test(dataProvider = "trimMottData")
+    public void testTrimPointsMottToFill(final byte[] quals, final int threshold,
+            final int[] expected) {
+        final int[] toFill = new int[2];
+        TrimmingUtil.trimPointsMott(quals, threshold, toFill);
+        Assert.assertEquals(toFill, expected);
+    }
+
+    @DataProvider(name = "randomQualityProfiles")
+    public Object[][] randomQualityProfiles() {
+        final Random random = new Random(1984);
+        final Object[][] data = new Object[500][];
+        for (int i = 0; i < data.length; i++) {
+            // simulates Illumina-like profiles: quality decays towards the 3' end, with random
+            // drops and low-quality runs
+            final byte[] quals = new byte[1 + random.nextInt(250)];
+            final int decayStart = random.nextInt(quals.length);
+            for (int j = 0; j < quals.length; j++) {
+                int qual = 38 - random.nextInt(8);
+                if (j > decayStart) {
+                    qual -= (j - decayStart) / 4;
+                }
+                if (random.nextInt(20) == 0) {
+                    qual = 2;
+                }
+                quals[j] = (byte) Math.max(2, qual);
+            }
+            data[i] = new Object[] {quals, random.nextInt(35)};
+        }
+        return data;
+    }
+
+    @Test(dataProvider = "randomQualityProfiles")
+    public void testTrimPointsMottToFillSameAsTrimPointsMott(final byte[] quals,
+            final int threshold) {
+        final int[] toFill = new int[] {-1, -1};
+        TrimmingUtil.trimPointsMott(quals, threshold, toFill);
+        Assert.assertEquals(toFill, TrimmingUtil.trimPointsMott(quals, threshold));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testTrimPointsMottToFillNullQuals() {
+        TrimmingUtil.trimPointsMott(null, 1, new int[2]);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testTrimPointsMottToFillNegativeThreshold() {
+        TrimmingUtil.trimPointsMott(new byte[] {20, 20}, -1, new int[2]);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testTrimPointsMottToFillWrongArrayLength() {
+        TrimmingUtil.trimPointsMott(new byte[] {20, 20}, 1, new int[1]);
+    }
+
     @Test(expectedExceptions = IllegalArgumentException.class)
     public void testTrimPointsMottNullQuals() {
         TrimmingUtil.trimPointsMott(null, 1);
@@ -113,4 +170,95 @@ public class TrimmingUtilTest extends RTBaseTest {
         TrimmingUtil.trimPointsTrailingNs(null);
     }
 
-}
\ No newline at end of file
+    @DataProvider(name = "trimPolyTailData")
+    public static Object[][] trimPolyTailData() {
+        return new Object[][] {
+                // no tail
+                {"", 'G', 0},
+                {"ACGTACGTACGTACGT", 'G', 16},
+                // tail shorter than the minimum length
+                {"ACGTACGTACGTGGGGGGGGG", 'G', 21},
+                // perfect tails
+                {"ACGTACGTACGGGGGGGGGGGG", 'G', 10},
+                {"ACGTACGTACgggggggggggg", 'G', 10},
+                {"GGGGGGGGGGGG", 'G', 0},
+                {"ACGTACGTACAAAAAAAAAAAA", 'A', 10},
+                // tails with mismatches (also at the end)
+                {"ACGTACGTACGGGGGGAGGGGG", 'G', 10},
+                {"ACGTACGTACGGGGGGGGGGGA", 'G', 10},
+                {"GGGGGGGGGA", 'G', 0},
+                // too many mismatches in the tail
+                {"ACGTACGTACGGGGAGGAGGGGG", 'G', 23},
+                {"ACGTACGTACGTAGGGGGGGGGTA", 'G', 24},
+                // other base
+                {"ACGTACGTACGGGGGGGGGGGG", 'A', 22},
+                // long tails and reads without the base (8 bases blocks)
+                {"ACGTACGTACGGGGGGGGGGGGGGGGGGGGGGGGGGGG", 'G', 10},
+                {"ACGTACGTACGGGGGGGgGGGGGGGGGGGGGGGGGGGG", 'G', 10},
+                {"GGGGGGGGGGGGGGGGGGGGGGGGGGGGGGGGGGGGGG", 'G', 0},
+                {"ACGTACGTACGGGGGGGGAGGGGGGGGAGGGGGGGGGA", 'G', 10},
+                {"GGGGGGGGGGGGGGGGGGGGACTTACTAACTTAAACTT", 'G', 38},
+                {"ACTTACTAACTTAAACTTACTTACTAACTTAAACTTAC", 'G', 38}
+        };
+    }
+
+    @Test(dataProvider = "trimPolyTailData")
+    public void testTrimPointPolyTail(final String bases, final char base, final int expected) {
+        Assert.assertEquals(
+                TrimmingUtil.trimPointPolyTail(bases.getBytes(), (byte) base, 10, 0.125),
+                expected);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testTrimPointPolyTailNullBases() {
+        TrimmingUtil.trimPointPolyTail(null, (byte) 'G', 10, 0.125);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testTrimPointPolyTailNonLetterBase() {
+        TrimmingUtil.trimPointPolyTail("ACGT".getBytes(), (byte) '*', 10, 0.125);
+    }
+
+    @Test
+    public void testTrimPointPolyTailRandomReads() {
+        final Random random = new Random(1);
+        final byte[] alphabet = "ACGTNacgtn".getBytes();
+        for (int n = 0; n < 10000; n++) {
+            final byte[] bases = new byte[random.nextInt(200)];
+            final int tailStart = random.nextInt(bases.length + 1);
+            final double tailRate = random.nextDouble();
+            for (int i = 0; i < bases.length; i++) {
+                bases[i] = (i >= tailStart && random.nextDouble() < tailRate)
+                        ? (byte) (random.nextBoolean() ? 'G' : 'g')
+                        : alphabet[random.nextInt(alphabet.length)];
+            }
+            final int minLength = 1 + random.nextInt(20);
+            final double maxMismatchRate = random.nextDouble() / 2;
+            Assert.assertEquals(
+                    TrimmingUtil.trimPointPolyTail(bases, (byte) 'G', minLength, maxMismatchRate),
+                    naiveTrimPointPolyTail(bases, (byte) 'G', minLength, maxMismatchRate),
+                    new String(bases));
+        }
+    }
+
+    // base-by-base implementation of the poly-tail scoring to compare with the block version
+    private static int naiveTrimPointPolyTail(final byte[] bases, final byte base,
+            final int minLength, final double maxMismatchRate) {
+        int bestIndex = bases.length;
+        int bestScore = 0;
+        int score = 0;
+        int mismatches = 0;
+        for (int i = bases.length - 1; i >= 0 && score >= bestScore - minLength; i--) {
+            if (Character.toUpperCase(bases[i]) == base) {
+                if (++score > bestScore && mismatches <= (bases.length - i) * maxMismatchRate) {
+                    bestIndex = i;
+                    bestScore = score;
+                }
+            } else {
+                score -= 2;
+                mismatches++;
+            }
+        }
+        return (bases.length - bestIndex >= minLength) ? bestIndex : bases.length;
+    }
+}